@@ -0,0 +1,77 @@
+package com.github.mubot.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.RowsFetchSpec;
+
+import com.github.mubot.command.util.Pair;
+import com.github.mubot.database.DatabaseManager;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Loads the database caches from a stubbed client so the benchmarks can use
+ * the real caches without a database. Every select for prefixes returns the
+ * same generated prefixes, every other select returns nothing.
+ */
+final class BenchmarkDatabase {
+
+	static final long FIRST_GUILD_ID = 776639160164941824L;
+	static final int GUILDS = 10_000;
+
+	// prefixes guilds commonly change to
+	private static final String[] CUSTOM_PREFIXES = { "?", "$", ".", "-", "mu!", "!!", "->", "~", ">", "+" };
+
+	private static boolean installed = false;
+
+	private BenchmarkDatabase() {
+	}
+
+	/**
+	 * Creates the {@link DatabaseManager} with one in five of {@link #GUILDS}
+	 * guilds having a custom prefix
+	 */
+	@SuppressWarnings("unchecked")
+	static synchronized void install() {
+		if (installed)
+			return;
+
+		final List<Pair<Long, String>> prefixes = new ArrayList<>();
+		final Random random = new Random(GUILDS);
+		for (int i = 0; i < GUILDS; i++) {
+			if (random.nextInt(5) == 0)
+				prefixes.add(new Pair<>(FIRST_GUILD_ID + i, CUSTOM_PREFIXES[random.nextInt(CUSTOM_PREFIXES.length)]));
+		}
+
+		final DatabaseClient client = mock(DatabaseClient.class);
+		when(client.sql(anyString())).thenAnswer(sqlInvocation -> {
+			final String sql = sqlInvocation.getArgument(0);
+			final GenericExecuteSpec spec = mock(GenericExecuteSpec.class);
+			when(spec.filter(any(Function.class))).thenReturn(spec);
+			when(spec.map(any(BiFunction.class))).thenAnswer(mapInvocation -> {
+				final RowsFetchSpec<Object> rows = mock(RowsFetchSpec.class);
+				when(rows.all()).thenReturn(
+						sql.contains("prefix") ? Flux.fromIterable(prefixes).cast(Object.class) : Flux.empty());
+				return rows;
+			});
+			return spec;
+		});
+
+		DatabaseManager.create(client);
+		DatabaseManager.getInstance().getPrefixCache().whenLoaded().block();
+		DatabaseManager.getInstance().getGuildCache().whenLoaded().block();
+		installed = true;
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.github.mubot.benchmark;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+
+/**
+ * A player manager that encodes tracks the way LavaPlayer does, the track info
+ * as one message, without any source managers
+ */
+final class BenchmarkPlayerManager {
+
+	private BenchmarkPlayerManager() {
+	}
+
+	static AudioPlayerManager create() {
+		final AudioPlayerManager playerManager = mock(AudioPlayerManager.class);
+		try {
+			doAnswer(invocation -> {
+				final MessageOutput stream = invocation.getArgument(0);
+				final AudioTrackInfo info = invocation.<AudioTrack>getArgument(1).getInfo();
+				final DataOutput output = stream.startMessage();
+				output.write(2);
+				output.writeUTF(info.title);
+				output.writeUTF(info.author);
+				output.writeLong(info.length);
+				output.writeUTF(info.identifier);
+				output.writeBoolean(info.isStream);
+				output.writeUTF(info.uri);
+				output.writeUTF("benchmark");
+				output.writeLong(0);
+				stream.commitMessage(1);
+				return null;
+			}).when(playerManager).encodeTrack(any(), any());
+
+			doAnswer(invocation -> {
+				final DataInput input = invocation.<MessageInput>getArgument(0).nextMessage();
+				input.readByte();
+				final AudioTrackInfo info = new AudioTrackInfo(input.readUTF(), input.readUTF(), input.readLong(),
+						input.readUTF(), input.readBoolean(), input.readUTF());
+				return new DecodedTrackHolder(new BenchmarkTrack(info));
+			}).when(playerManager).decodeTrack(any());
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return playerManager;
+	}
+
+}
@@ -0,0 +1,36 @@
+package com.github.mubot.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler so every result reports the
+ * allocation per operation next to the throughput. Takes the same arguments as
+ * the JMH command line, e.g. a regex to only run some of the benchmarks.
+ * Logging below warnings is turned off in the forks so the benchmarks don't
+ * measure writing to the console.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		// keep any -jvmArgsAppend given on the command line
+		List<String> jvmArgs = new ArrayList<>(commandLine.getJvmArgsAppend().orElse(Collections.emptyList()));
+		jvmArgs.add(0, "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn");
+
+		new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class)
+				.jvmArgsAppend(jvmArgs.toArray(new String[0])).build()).run();
+	}
+
+}
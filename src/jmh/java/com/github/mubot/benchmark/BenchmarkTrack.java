@@ -0,0 +1,32 @@
+package com.github.mubot.benchmark;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BaseAudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.LocalAudioTrackExecutor;
+
+/**
+ * A track that never plays, used to fill queues without loading anything
+ */
+final class BenchmarkTrack extends BaseAudioTrack {
+
+	BenchmarkTrack(int number) {
+		super(new AudioTrackInfo("Benchmark track " + number, "Benchmark artist " + (number % 100),
+				90_000 + (number % 300) * 1000L, "benchmark" + number, false,
+				"https://www.youtube.com/watch?v=benchmark" + number));
+	}
+
+	@Override
+	public void process(LocalAudioTrackExecutor executor) {
+	}
+
+	@Override
+	protected AudioTrack makeShallowClone() {
+		return new BenchmarkTrack(trackInfo);
+	}
+
+	BenchmarkTrack(AudioTrackInfo trackInfo) {
+		super(trackInfo);
+	}
+
+}
@@ -0,0 +1,152 @@
+package com.github.mubot.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.database.cache.LongStringMap;
+
+/**
+ * The maps of the guild and prefix caches, a ConcurrentHashMap&lt;Long,
+ * String&gt; against a LongStringMap, filled with the names of GUILDS guilds
+ * and the custom prefixes of one in five of them. Lookups mix guilds with and
+ * without a prefix. The lookups report the heap the maps retain per guild as
+ * the retainedBytesPerGuild secondary result, and running with -prof gc shows
+ * the bytes allocated to fill them in gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CacheMapBenchmark {
+
+	private static final int GUILDS = 100_000;
+	private static final int IDS = 4096;
+
+	// prefixes guilds commonly change to
+	private static final String[] CUSTOM_PREFIXES = { "?", "$", ".", "-", "mu!", "!!", "->", "~", ">", "+" };
+
+	@Param({ "ConcurrentHashMap", "LongStringMap" })
+	public String map;
+
+	// measured once per trial
+	private long retainedBytesPerGuild;
+	private LongFunction<String> names;
+	private LongFunction<String> prefixes;
+	private long[] guildIds;
+	private int index = 0;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		final long before = memory.getHeapMemoryUsage().getUsed();
+		final Object[] filled = fill();
+		memory.gc();
+		retainedBytesPerGuild = (memory.getHeapMemoryUsage().getUsed() - before) / GUILDS;
+		names = lookup(filled[0]);
+		prefixes = lookup(filled[1]);
+
+		final Random random = new Random(IDS);
+		guildIds = new long[IDS];
+		for (int i = 0; i < IDS; i++)
+			guildIds[i] = BenchmarkDatabase.FIRST_GUILD_ID + random.nextInt(GUILDS);
+	}
+
+	@Benchmark
+	public String getPrefix(Retained retained) {
+		return prefixes.apply(guildIds[index++ & (IDS - 1)]);
+	}
+
+	@Benchmark
+	public String getName(Retained retained) {
+		return names.apply(guildIds[index++ & (IDS - 1)]);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 10)
+	public Object[] fillMaps() {
+		return fill();
+	}
+
+	/**
+	 * Reports the heap the filled maps retain with the results of the lookups
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Retained {
+
+		public long retainedBytesPerGuild;
+
+		// JMH clears the counters when an iteration starts and reads them at its end
+		@TearDown(Level.Iteration)
+		public void report(CacheMapBenchmark benchmark) {
+			retainedBytesPerGuild = benchmark.retainedBytesPerGuild;
+		}
+	}
+
+	/**
+	 * @return the map of guild names and the map of prefixes
+	 */
+	private Object[] fill() {
+		final Random random = new Random(GUILDS);
+		if (map.equals("LongStringMap")) {
+			final LongStringMap guildNames = new LongStringMap();
+			final LongStringMap guildPrefixes = new LongStringMap();
+			for (int i = 0; i < GUILDS; i++) {
+				guildNames.put(BenchmarkDatabase.FIRST_GUILD_ID + i, "Guild " + i);
+				if (random.nextInt(5) == 0)
+					guildPrefixes.put(BenchmarkDatabase.FIRST_GUILD_ID + i, prefix(random));
+			}
+			return new Object[] { guildNames, guildPrefixes };
+		}
+
+		final ConcurrentHashMap<Long, String> guildNames = new ConcurrentHashMap<>();
+		final ConcurrentHashMap<Long, String> guildPrefixes = new ConcurrentHashMap<>();
+		for (int i = 0; i < GUILDS; i++) {
+			guildNames.put(BenchmarkDatabase.FIRST_GUILD_ID + i, "Guild " + i);
+			if (random.nextInt(5) == 0)
+				guildPrefixes.put(BenchmarkDatabase.FIRST_GUILD_ID + i, prefix(random));
+		}
+		return new Object[] { guildNames, guildPrefixes };
+	}
+
+	/**
+	 * @return a custom prefix as a new string, like the rows read from the
+	 *         database
+	 */
+	private static String prefix(Random random) {
+		return new String(CUSTOM_PREFIXES[random.nextInt(CUSTOM_PREFIXES.length)]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static LongFunction<String> lookup(Object filled) {
+		if (filled instanceof LongStringMap)
+			return ((LongStringMap) filled)::get;
+		return ((ConcurrentHashMap<Long, String>) filled)::get;
+	}
+
+}
@@ -0,0 +1,79 @@
+package com.github.mubot.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandsHelper;
+import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.util.CommandUtil;
+
+import discord4j.core.spec.EmbedCreateSpec;
+import discord4j.core.spec.MessageCreateSpec;
+
+/**
+ * Creating the help embed of every registered command in turn, both rendering
+ * it from scratch and getting it from the help cache through Command.getHelp,
+ * including applying the result to a message
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandHelpSpecBenchmark {
+
+	private Command[] commands;
+	private long[] guildIds;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		BenchmarkDatabase.install();
+		final List<Command> values = new ArrayList<>(CommandsHelper.values());
+		values.sort((a, b) -> a.getPrimaryTrigger().compareTo(b.getPrimaryTrigger()));
+		commands = values.toArray(new Command[0]);
+
+		guildIds = new long[commands.length];
+		for (int i = 0; i < guildIds.length; i++) {
+			guildIds[i] = BenchmarkDatabase.FIRST_GUILD_ID + i;
+		}
+	}
+
+	@Benchmark
+	public EmbedCreateSpec build() {
+		final int i = index++ % commands.length;
+		final Command command = commands[i];
+		final List<String> aliases = new ArrayList<>(command.getCommandTriggers());
+		aliases.remove(command.getPrimaryTrigger());
+
+		final CommandHelpSpec spec = new CommandHelpSpec(command.getPrimaryTrigger(), aliases,
+				CommandUtil.getRawGuildPrefixFromId(guildIds[i]), command.getArgumentSchema());
+		command.createHelpSpec().accept(spec);
+		final EmbedCreateSpec embed = new EmbedCreateSpec();
+		spec.build().accept(embed);
+		return embed;
+	}
+
+	@Benchmark
+	public MessageCreateSpec getHelp() {
+		final int i = index++ % commands.length;
+		final MessageCreateSpec message = new MessageCreateSpec();
+		commands[i].getHelp(guildIds[i]).block().getSpec().accept(message);
+		return message;
+	}
+
+}
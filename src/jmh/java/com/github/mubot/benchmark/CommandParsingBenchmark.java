@@ -0,0 +1,90 @@
+package com.github.mubot.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandsHelper;
+import com.github.mubot.command.args.Arguments;
+import com.github.mubot.command.exceptions.ArgumentException;
+import com.github.mubot.command.util.CommandTokenizer;
+import com.github.mubot.command.util.Pair;
+import com.github.mubot.eventlistener.CommandListener;
+
+/**
+ * Parsing of every message the bot receives with
+ * CommandListener.parseCommands, and parsing the arguments of the commands
+ * against their schemas like CommandExecutor does
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandParsingBenchmark {
+
+	private static final int CORPUS_SIZE = 4096;
+
+	@Param({ "!", "mu!" })
+	public String prefix;
+
+	private String[] messages;
+	private String[] triggers;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		messages = MessageCorpus.create(prefix, CORPUS_SIZE);
+		triggers = new String[CORPUS_SIZE];
+		for (int i = 0; i < CORPUS_SIZE; i++) {
+			final CommandTokenizer tokenizer = new CommandTokenizer(messages[i], prefix);
+			triggers[i] = tokenizer.next() ? tokenizer.getTrigger() : messages[i];
+		}
+	}
+
+	@Benchmark
+	public List<Pair<Command, CharSequence>> parseMessage() {
+		return CommandListener.parseCommands(messages[index++ & (CORPUS_SIZE - 1)], prefix);
+	}
+
+	@Benchmark
+	public List<Arguments> parseArguments() {
+		final List<Pair<Command, CharSequence>> commands = CommandListener
+				.parseCommands(messages[index++ & (CORPUS_SIZE - 1)], prefix);
+		final List<Arguments> arguments = new ArrayList<>(commands.size());
+		for (Pair<Command, CharSequence> command : commands) {
+			try {
+				arguments.add(command.getKey().parseArguments(command.getValue()));
+			} catch (ArgumentException e) {
+				// rejected arguments are answered with the help or an error
+			}
+		}
+		return arguments;
+	}
+
+	@Benchmark
+	public boolean mayContainCommand() {
+		return CommandTokenizer.mayContainCommand(messages[index++ & (CORPUS_SIZE - 1)], prefix);
+	}
+
+	@Benchmark
+	public Optional<Command> lookup() {
+		return CommandsHelper.get(triggers[index++ & (CORPUS_SIZE - 1)]);
+	}
+
+}
@@ -0,0 +1,77 @@
+package com.github.mubot.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.command.util.CommandUtil;
+import com.github.mubot.command.util.EmojiHelper;
+
+import discord4j.core.object.reaction.ReactionEmoji.Unicode;
+
+/**
+ * The helpers used to format replies, over the values they are called with in
+ * practice: queue positions, reactions on menus and track lengths
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FormattingBenchmark {
+
+	private static final int VALUES = 1024;
+
+	private int[] queuePositions;
+	private Unicode[] reactions;
+	private long[] trackLengths;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(VALUES);
+		final Unicode[] menuReactions = { EmojiHelper.ZERO_UNICODE, EmojiHelper.ONE_UNICODE, EmojiHelper.TWO_UNICODE,
+				EmojiHelper.THREE_UNICODE, EmojiHelper.FOUR_UNICODE, EmojiHelper.FIVE_UNICODE, EmojiHelper.SIX_UNICODE,
+				EmojiHelper.SEVEN_UNICODE, EmojiHelper.EIGHT_UNICODE, EmojiHelper.NINE_UNICODE,
+				EmojiHelper.RED_X_UNICODE, EmojiHelper.LEFT_ARROW };
+
+		queuePositions = new int[VALUES];
+		reactions = new Unicode[VALUES];
+		trackLengths = new long[VALUES];
+		for (int i = 0; i < VALUES; i++) {
+			// most queues are short, a few are whole playlists
+			queuePositions[i] = random.nextInt(10) == 0 ? random.nextInt(5000) : random.nextInt(30);
+			reactions[i] = menuReactions[random.nextInt(menuReactions.length)];
+			// mostly songs of a few minutes, some hour long mixes
+			trackLengths[i] = random.nextInt(10) == 0 ? TimeUnit.MINUTES.toMillis(60 + random.nextInt(120))
+					: TimeUnit.SECONDS.toMillis(90 + random.nextInt(300));
+		}
+	}
+
+	@Benchmark
+	public String numToEmoji() {
+		return EmojiHelper.numToEmoji(queuePositions[index++ & (VALUES - 1)]);
+	}
+
+	@Benchmark
+	public int unicodeToNum() {
+		return EmojiHelper.unicodeToNum(reactions[index++ & (VALUES - 1)]);
+	}
+
+	@Benchmark
+	public String convertMillisToTime() {
+		return CommandUtil.convertMillisToTime(trackLengths[index++ & (VALUES - 1)]);
+	}
+
+}
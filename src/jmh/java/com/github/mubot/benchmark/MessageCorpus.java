@@ -0,0 +1,65 @@
+package com.github.mubot.benchmark;
+
+import java.util.Random;
+
+/**
+ * Generates a reproducible corpus of messages resembling the traffic of a
+ * guild. Most messages are chat that never contains a command, some of it with
+ * links, mentions, emojis or a lone prefix character, the rest are commands
+ * with typical arguments, a few messages with several commands and a few
+ * unknown triggers.
+ */
+final class MessageCorpus {
+
+	private static final String[] CHAT = { "lol", "gg", "anyone up for a game tonight?", "brb",
+			"that was actually insane", "wait what!", "no way!! that's crazy", "ok", "hahahaha",
+			"did you see the new patch notes", "I'm so tired of this map", "can someone send me the link again",
+			"who's playing later? I can be on around 9", "wow !", "this song slaps", "good morning everyone :)",
+			"nah I think he's right tbh", "<@!201453987632119808> you coming?", "check this out https://i.imgur.com/4AiXzf8.jpeg",
+			"😂😂😂", "🔥 🔥 🔥 let's go", "what is the bot prefix here", "!!!!!!", "hey ! where did everyone go",
+			"https://www.youtube.com/watch?v=dQw4w9WgXcQ", "i have been waiting in the lobby for twenty minutes now and nobody"
+					+ " has joined, if you are not coming just say so so I can play with randoms instead",
+			"<:pepega:764210387549290527>", "yo", "thx", "same" };
+
+	private static final String[] COMMANDS = { "play https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+			"p https://open.spotify.com/track/4cOdK2wGLETKBW3PvgPWqT", "play lofi hip hop radio beats to relax/study to",
+			"skip", "skip 4", "q", "viewqueue", "np", "pause", "volume 50", "volume reset", "seek 1:30",
+			"ff 30", "rw 10", "remove 3", "shuffle", "repeat", "stop", "leave", "join", "help", "play help",
+			"roll 20", "echo hello there", "joke programming", "search never gonna give you up",
+			"poll \"pizza or tacos\" \"pizza\" \"tacos\"", "ping", "setprefix ?" };
+
+	private static final String[] MULTI_COMMANDS = { "join {}play https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+			"skip {}np", "clear {}play lofi {}shuffle", "pause {}q" };
+
+	private static final String[] UNKNOWN_COMMANDS = { "lol", "rank", "daily", "meme", "playlist save" };
+
+	private MessageCorpus() {
+	}
+
+	/**
+	 * @param prefix the command prefix of the guild
+	 * @param size   the number of messages, must be a power of two
+	 * @return the messages
+	 */
+	static String[] create(String prefix, int size) {
+		final Random random = new Random(size);
+		final String[] messages = new String[size];
+		for (int i = 0; i < size; i++) {
+			final int kind = random.nextInt(100);
+			if (kind < 80)
+				messages[i] = pick(random, CHAT);
+			else if (kind < 93)
+				messages[i] = prefix + pick(random, COMMANDS);
+			else if (kind < 97)
+				messages[i] = prefix + pick(random, MULTI_COMMANDS).replace("{}", prefix);
+			else
+				messages[i] = prefix + pick(random, UNKNOWN_COMMANDS);
+		}
+		return messages;
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+}
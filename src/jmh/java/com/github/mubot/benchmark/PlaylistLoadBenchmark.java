@@ -0,0 +1,70 @@
+package com.github.mubot.benchmark;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.music.TrackScheduler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+/**
+ * Queueing a whole playlist into an empty queue, track by track the way
+ * playlists used to be loaded and with the bulk append. The player is a mock
+ * that is always busy and doesn't record its calls, so every track is queued.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PlaylistLoadBenchmark {
+
+	@Param({ "10000" })
+	public int playlistSize;
+
+	private TrackScheduler scheduler;
+	private List<AudioTrack> playlist;
+
+	@Setup
+	public void setup() {
+		scheduler = new TrackScheduler(mock(AudioPlayer.class, withSettings().stubOnly()),
+				BenchmarkPlayerManager.create());
+		playlist = new ArrayList<>(playlistSize);
+		for (int i = 0; i < playlistSize; i++) {
+			playlist.add(new BenchmarkTrack(i));
+		}
+	}
+
+	@Benchmark
+	public int queueEach() {
+		scheduler.clearQueue();
+		for (AudioTrack track : playlist) {
+			scheduler.queue(track);
+		}
+		return scheduler.getQueue().size();
+	}
+
+	@Benchmark
+	public String queueAll() {
+		scheduler.clearQueue();
+		return scheduler.queueAll(playlist);
+	}
+
+}
@@ -0,0 +1,61 @@
+package com.github.mubot.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.command.util.CommandUtil;
+import com.github.mubot.database.DatabaseManager;
+import com.github.mubot.database.cache.PrefixCache;
+
+/**
+ * Prefix lookups done for every message and every help embed, over guilds
+ * with and without a custom prefix
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PrefixBenchmark {
+
+	private static final int IDS = 4096;
+
+	private PrefixCache prefixCache;
+	private long[] guildIds;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		BenchmarkDatabase.install();
+		prefixCache = DatabaseManager.getInstance().getPrefixCache();
+
+		final Random random = new Random(IDS);
+		guildIds = new long[IDS];
+		for (int i = 0; i < IDS; i++) {
+			guildIds[i] = BenchmarkDatabase.FIRST_GUILD_ID + random.nextInt(BenchmarkDatabase.GUILDS);
+		}
+	}
+
+	@Benchmark
+	public String getPrefix() {
+		return prefixCache.getPrefix(guildIds[index++ & (IDS - 1)]);
+	}
+
+	@Benchmark
+	public String getEscapedGuildPrefixFromId() {
+		return CommandUtil.getEscapedGuildPrefixFromId(guildIds[index++ & (IDS - 1)]);
+	}
+
+}
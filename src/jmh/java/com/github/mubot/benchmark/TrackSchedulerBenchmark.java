@@ -0,0 +1,98 @@
+package com.github.mubot.benchmark;
+
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.mubot.music.QueuedTrack;
+import com.github.mubot.music.TrackScheduler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+/**
+ * Queue operations of the commands that change or show the queue. Operations
+ * that shrink the queue are paired with adding a track back so the queue keeps
+ * its size for the whole run. The player is a mock that is always busy, so
+ * every queued track stays in the queue, and queueing and playing a track
+ * includes encoding and decoding it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TrackSchedulerBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int queueSize;
+
+	private TrackScheduler scheduler;
+	private AudioTrack[] tracks;
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		scheduler = new TrackScheduler(mock(AudioPlayer.class), BenchmarkPlayerManager.create());
+		tracks = new AudioTrack[queueSize];
+		for (int i = 0; i < queueSize; i++) {
+			tracks[i] = new BenchmarkTrack(i);
+			scheduler.queue(tracks[i]);
+		}
+	}
+
+	private AudioTrack nextTrack() {
+		final AudioTrack track = tracks[index];
+		index = (index + 1) % tracks.length;
+		return track;
+	}
+
+	/**
+	 * Playing the next track and queueing another one, the common case of a track
+	 * ending while someone adds a song
+	 */
+	@Benchmark
+	public String nextTrackAndQueue() {
+		scheduler.nextTrack();
+		return scheduler.queue(nextTrack());
+	}
+
+	@Benchmark
+	public QueuedTrack removeFromQueue() {
+		final QueuedTrack removed = scheduler.removeFromQueue(queueSize / 2);
+		scheduler.queue(nextTrack());
+		return removed;
+	}
+
+	@Benchmark
+	public String skipQueueAndRefill() {
+		final String skipped = scheduler.skipQueue(2);
+		scheduler.queue(nextTrack());
+		scheduler.queue(nextTrack());
+		return skipped;
+	}
+
+	@Benchmark
+	public void shuffleQueue() {
+		scheduler.shuffleQueue();
+	}
+
+	@Benchmark
+	public List<QueuedTrack> getQueue() {
+		return scheduler.getQueue();
+	}
+
+}
@@ -1,13 +1,21 @@
 package com.github.mubot.command;
 
+import static com.github.mubot.command.util.CommandUtil.getRawGuildPrefixFromId;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.args.ArgumentParser;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
+import com.github.mubot.command.exceptions.ArgumentException;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.help.HelpCache;
+import com.github.mubot.command.registry.RegisterCommand;
 
 import discord4j.common.util.Snowflake;
-import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.spec.EmbedCreateSpec;
 import reactor.core.publisher.Mono;
 
 public abstract class Command implements CommandInterface {
@@ -15,15 +23,20 @@ public abstract class Command implements CommandInterface {
 	protected String commandTrigger;
 	protected List<String> aliases;
 	private List<String> triggers = new ArrayList<String>();
+	// created on first use, a racing thread at worst creates an identical schema
+	private ArgumentSchema argumentSchema;
 
-	public Command(String commandTrigger) {
-		this.commandTrigger = commandTrigger;
-		triggers.add(commandTrigger);
-	}
+	/**
+	 * Reads the triggers of this command from its {@link RegisterCommand}
+	 * annotation
+	 */
+	public Command() {
+		RegisterCommand registration = getClass().getAnnotation(RegisterCommand.class);
+		if (registration == null)
+			throw new IllegalStateException(getClass().getName() + " is not annotated with @RegisterCommand");
 
-	public Command(String commandTrigger, List<String> aliases) {
-		this.commandTrigger = commandTrigger;
-		this.aliases = aliases;
+		this.commandTrigger = registration.trigger();
+		this.aliases = List.of(registration.aliases());
 
 		triggers.add(commandTrigger);
 		triggers.addAll(aliases);
@@ -43,15 +56,45 @@ public abstract class Command implements CommandInterface {
 		return commandTrigger;
 	}
 
+	/**
+	 * Commands take no arguments unless they override this
+	 */
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.NONE;
+	}
+
+	/**
+	 * @return the arguments this command takes
+	 */
+	public ArgumentSchema getArgumentSchema() {
+		ArgumentSchema schema = argumentSchema;
+		if (schema == null) {
+			schema = createArgumentSchema();
+			argumentSchema = schema;
+		}
+		return schema;
+	}
+
+	/**
+	 * @param args everything after the trigger of the command
+	 * @return the arguments parsed against the schema of this command
+	 * @throws ArgumentException if the arguments don't match the schema
+	 */
+	public Arguments parseArguments(CharSequence args) {
+		return ArgumentParser.parse(getArgumentSchema(), args);
+	}
+
 	/**
 	 * 
-	 * @param spec the CommandHelpSpec to use to create the embed
-	 * @return the help embed as a CommandResponse
+	 * @param prefix the raw prefix to show in the help embed
+	 * @return the rendered help embed
 	 */
-	private final Mono<CommandResponse> createCommandHelpEmbed(Consumer<? super CommandHelpSpec> spec, long guildId) {
-		CommandHelpSpec mutatedSpec = new CommandHelpSpec(getPrimaryTrigger(), aliases, guildId);
-		spec.accept(mutatedSpec);
-		return CommandResponse.create(s -> s.setEmbed(mutatedSpec.build()));
+	private final Consumer<? super EmbedCreateSpec> createCommandHelpEmbed(String prefix) {
+		CommandHelpSpec mutatedSpec = new CommandHelpSpec(getPrimaryTrigger(), aliases, prefix,
+				getArgumentSchema());
+		createHelpSpec().accept(mutatedSpec);
+		return mutatedSpec.build();
 	}
 
 	/**
@@ -59,15 +102,17 @@ public abstract class Command implements CommandInterface {
 	 * @return the help embed for this command as a CommandResponse
 	 */
 	public Mono<CommandResponse> getHelp(long guildId) {
-		return createCommandHelpEmbed(createHelpSpec(), guildId);
+		final Consumer<? super EmbedCreateSpec> embed = HelpCache.getCommandHelp(getRawGuildPrefixFromId(guildId),
+				getPrimaryTrigger(), this::createCommandHelpEmbed);
+		return CommandResponse.create(s -> s.setEmbed(embed));
 	}
 	
 	/**
-	 * @param event
+	 * @param context
 	 * @return the help embed for this command as a CommandResponse
 	 */
-	public Mono<CommandResponse> getHelp(MessageCreateEvent event) {
-		return getHelp(event.getGuildId().orElse(Snowflake.of(0)).asLong());
+	public Mono<CommandResponse> getHelp(CommandContext context) {
+		return getHelp(context.getGuildId().orElse(Snowflake.of(0)).asLong());
 
 	}
 	
@@ -0,0 +1,197 @@
+package com.github.mubot.command;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.VoiceState;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.channel.GuildChannel;
+import discord4j.core.object.entity.channel.MessageChannel;
+import discord4j.core.object.entity.channel.VoiceChannel;
+import discord4j.rest.util.PermissionSet;
+import reactor.core.publisher.Mono;
+
+/**
+ * Everything a single command invocation needs to know about the message it was
+ * used in. The guild, channels, voice states and permissions are looked up on
+ * first use and cached for the rest of the invocation, so the permission
+ * checks, the command itself and sending the reply share one lookup of each.
+ * Every lookup that goes to the gateway store or REST is counted.
+ */
+public final class CommandContext {
+
+	/**
+	 * The entities a context looks up
+	 */
+	public enum Lookup {
+		GUILD, CHANNEL, MEMBER_VOICE_STATE, MEMBER_VOICE_CHANNEL, MEMBER_GUILD_PERMISSIONS, SELF_MEMBER,
+		SELF_VOICE_STATE, SELF_GUILD_PERMISSIONS, SELF_CHANNEL_PERMISSIONS
+	}
+
+	private final MessageCreateEvent event;
+	private final AtomicIntegerArray lookups = new AtomicIntegerArray(Lookup.values().length);
+
+	private Mono<Guild> guild;
+	private Mono<MessageChannel> channel;
+	private Mono<VoiceState> memberVoiceState;
+	private Mono<VoiceChannel> memberVoiceChannel;
+	private Mono<PermissionSet> memberGuildPermissions;
+	private Mono<Member> selfMember;
+	private Mono<VoiceState> selfVoiceState;
+	private Mono<PermissionSet> selfGuildPermissions;
+	// channel id -> permissions of the bot in that channel
+	private final Map<Snowflake, Mono<PermissionSet>> selfChannelPermissions = new ConcurrentHashMap<>(2);
+
+	public CommandContext(MessageCreateEvent event) {
+		this.event = event;
+	}
+
+	public MessageCreateEvent getEvent() {
+		return event;
+	}
+
+	public Message getMessage() {
+		return event.getMessage();
+	}
+
+	public GatewayDiscordClient getClient() {
+		return event.getClient();
+	}
+
+	public Optional<Snowflake> getGuildId() {
+		return event.getGuildId();
+	}
+
+	/**
+	 * @return the member who used the command, empty in private messages
+	 */
+	public Optional<Member> getMember() {
+		return event.getMember();
+	}
+
+	public synchronized Mono<Guild> getGuild() {
+		if (guild == null)
+			guild = lookup(Lookup.GUILD, event::getGuild);
+		return guild;
+	}
+
+	/**
+	 * @return the channel the command was used in
+	 */
+	public synchronized Mono<MessageChannel> getChannel() {
+		if (channel == null)
+			channel = lookup(Lookup.CHANNEL, event.getMessage()::getChannel);
+		return channel;
+	}
+
+	/**
+	 * @return the voice state of the member who used the command, empty in private
+	 *         messages
+	 */
+	public synchronized Mono<VoiceState> getMemberVoiceState() {
+		if (memberVoiceState == null)
+			memberVoiceState = lookup(Lookup.MEMBER_VOICE_STATE,
+					() -> Mono.justOrEmpty(event.getMember()).flatMap(Member::getVoiceState));
+		return memberVoiceState;
+	}
+
+	/**
+	 * @return the voice channel the member who used the command is in, empty if
+	 *         they aren't in one
+	 */
+	public synchronized Mono<VoiceChannel> getMemberVoiceChannel() {
+		if (memberVoiceChannel == null)
+			memberVoiceChannel = getMemberVoiceState().flatMap(voiceState -> lookup(Lookup.MEMBER_VOICE_CHANNEL,
+					() -> Mono.justOrEmpty(voiceState.getChannelId()).flatMap(event.getClient()::getChannelById)
+							.cast(VoiceChannel.class)))
+					.cache();
+		return memberVoiceChannel;
+	}
+
+	public synchronized Mono<PermissionSet> getMemberGuildPermissions() {
+		if (memberGuildPermissions == null)
+			memberGuildPermissions = lookup(Lookup.MEMBER_GUILD_PERMISSIONS,
+					() -> Mono.justOrEmpty(event.getMember()).flatMap(Member::getBasePermissions));
+		return memberGuildPermissions;
+	}
+
+	/**
+	 * @return the bot as a member of the guild, empty in private messages
+	 */
+	public synchronized Mono<Member> getSelfMember() {
+		if (selfMember == null)
+			selfMember = lookup(Lookup.SELF_MEMBER, () -> Mono.justOrEmpty(event.getGuildId())
+					.flatMap(guildId -> event.getClient().getMemberById(guildId, event.getClient().getSelfId())));
+		return selfMember;
+	}
+
+	/**
+	 * @return the voice state of the bot, empty if it isn't in a voice channel
+	 */
+	public synchronized Mono<VoiceState> getSelfVoiceState() {
+		if (selfVoiceState == null)
+			selfVoiceState = getSelfMember()
+					.flatMap(member -> lookup(Lookup.SELF_VOICE_STATE, member::getVoiceState)).cache();
+		return selfVoiceState;
+	}
+
+	/**
+	 * Drops the cached voice state of the bot so the next call to
+	 * {@link #getSelfVoiceState()} looks it up again, for when the bot joined or
+	 * left a channel during the command
+	 */
+	public synchronized void invalidateSelfVoiceState() {
+		selfVoiceState = null;
+	}
+
+	public synchronized Mono<PermissionSet> getSelfGuildPermissions() {
+		if (selfGuildPermissions == null)
+			selfGuildPermissions = getSelfMember()
+					.flatMap(member -> lookup(Lookup.SELF_GUILD_PERMISSIONS, member::getBasePermissions)).cache();
+		return selfGuildPermissions;
+	}
+
+	/**
+	 * @param channel a channel of the guild the command was used in
+	 * @return the permissions of the bot in the channel
+	 */
+	public Mono<PermissionSet> getSelfPermissions(GuildChannel channel) {
+		return selfChannelPermissions.computeIfAbsent(channel.getId(), id -> lookup(Lookup.SELF_CHANNEL_PERMISSIONS,
+				() -> channel.getEffectivePermissions(event.getClient().getSelfId())));
+	}
+
+	/**
+	 * @param lookup the kind of lookup
+	 * @return how often the lookup went to the gateway store or REST
+	 */
+	public int getLookupCount(Lookup lookup) {
+		return lookups.get(lookup.ordinal());
+	}
+
+	/**
+	 * @return how many lookups went to the gateway store or REST in total
+	 */
+	public int getLookupCount() {
+		int total = 0;
+		for (int i = 0; i < lookups.length(); i++) {
+			total += lookups.get(i);
+		}
+		return total;
+	}
+
+	private <T> Mono<T> lookup(Lookup lookup, Supplier<Mono<T>> source) {
+		return Mono.defer(() -> {
+			lookups.incrementAndGet(lookup.ordinal());
+			return source.get();
+		}).cache();
+	}
+
+}
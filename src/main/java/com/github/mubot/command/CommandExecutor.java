@@ -1,6 +1,8 @@
 package com.github.mubot.command;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
+import com.github.mubot.command.args.Arguments;
+import com.github.mubot.command.exceptions.ArgumentException;
+
 import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
@@ -8,14 +10,48 @@ import reactor.util.Loggers;
 public class CommandExecutor {
 	private static final Logger LOGGER = Loggers.getLogger(CommandExecutor.class);
 
-	public Mono<CommandResponse> executeCommand(MessageCreateEvent event, Command command, String[] args) {
-		if (args.length > 0 && args[0].equals("help")) {
+	private static final String HELP = "help";
+
+	/**
+	 * Parses the arguments against the schema of the command and executes it. The
+	 * help of the command is shown instead if it was asked for or if a required
+	 * argument is missing.
+	 * 
+	 * @param context the context of the message the command was used in
+	 * @param command the command to execute
+	 * @param args    everything after the trigger of the command
+	 * @return the response of the command
+	 */
+	public Mono<CommandResponse> executeCommand(CommandContext context, Command command, CharSequence args) {
+		if (isHelpRequest(args)) {
 			LOGGER.info("Help called for " + command.getPrimaryTrigger());
-			return command.getHelp(event);
+			return command.getHelp(context);
+		}
+
+		final Arguments arguments;
+		try {
+			arguments = command.parseArguments(args);
+		} catch (ArgumentException e) {
+			if (e.isMissing())
+				return command.getHelp(context);
+			return Mono.error(e);
 		}
 
-		LOGGER.info("Command executed: " + event.getMessage().getContent());
-		return command.execute(event, args);
+		LOGGER.info("Command executed: " + context.getMessage().getContent());
+		return command.execute(context, arguments);
+	}
+
+	/**
+	 * @return true if the first word of the arguments is "help"
+	 */
+	private static boolean isHelpRequest(CharSequence args) {
+		if (args.length() < HELP.length() || (args.length() > HELP.length() && args.charAt(HELP.length()) != ' '))
+			return false;
+		for (int i = 0; i < HELP.length(); i++) {
+			if (args.charAt(i) != HELP.charAt(i))
+				return false;
+		}
+		return true;
 	}
 
-}
\ No newline at end of file
+}
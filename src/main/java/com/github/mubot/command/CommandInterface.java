@@ -2,9 +2,10 @@ package com.github.mubot.command;
 
 import java.util.function.Consumer;
 
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import reactor.core.publisher.Mono;
 
 /**
@@ -15,11 +16,22 @@ public interface CommandInterface {
 	/**
 	 * Executes the command
 	 * 
-	 * @param event the MessageCreateEvent
-	 * @param args  the arguments for the command
+	 * @param context the context of the message the command was used in
+	 * @param args    the arguments for the command, parsed against its
+	 *                {@link ArgumentSchema}
 	 * @return the response of the command
 	 */
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args);
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args);
+
+	/**
+	 * Used to create the {@link ArgumentSchema} of this command, which the
+	 * arguments are parsed against and which the usage in the help of the command
+	 * is generated from. Called once per command, so it must not depend on the
+	 * state of the command.
+	 * 
+	 * @return the arguments this command takes
+	 */
+	public ArgumentSchema createArgumentSchema();
 
 	/**
 	 * Used to create the {@link CommandHelpSpec} for this command
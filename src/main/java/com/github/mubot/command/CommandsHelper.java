@@ -1,68 +1,25 @@
 package com.github.mubot.command;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 
-import org.reflections.Reflections;
-
-import reactor.util.Logger;
-import reactor.util.Loggers;
+import com.github.mubot.command.registry.RegisterCommand;
 
 public final class CommandsHelper {
 
-	private static final Logger LOGGER = Loggers.getLogger(CommandsHelper.class);
-
 	// Immutable structure that maps string commands to the concrete implementation
-	// of that command.
-	private static final HashMap<String, Command> COMMANDS = new HashMap<>();
-
-	static {
-		buildCommandMap();
-	}
-
-	/**
-	 * Use Reflections library to scan class path for subclasses of {@link Command}
-	 * and adds those to the commands map. This way any new commands that are
-	 * created that extend {@link Command} automatically get added to the map
-	 * without any extra work
-	 */
-	private static void buildCommandMap() {
-		// scan urls that contain 'com.github.mubot.command.commands.', include
-		// inputs starting with'com.github.mubot.command.commands.', use the
-		// default scanners
-		Reflections reflections = new Reflections("com.github.mubot.command.commands.");
-		// get a set of all the subclasses of Command
-		Set<Class<? extends Command>> subTypes = reflections.getSubTypesOf(Command.class);
-
-		// loop through list of subclasses and instantiate each one and add it to the
-		// map with the command trigger as the key
-		for (Class<? extends Command> c : subTypes) {
-			try {
-
-				Class<?> clazz = Class.forName(c.getName());
-				Constructor<?> constructor = clazz.getConstructor();
-				Command instance = (Command) constructor.newInstance();
-				for (String trigger : instance.getCommandTriggers()) {
-					COMMANDS.put(trigger, instance);
-				}
-			} catch (SecurityException | InstantiationException | IllegalAccessException | IllegalArgumentException
-					| InvocationTargetException | ClassNotFoundException e) {
-				LOGGER.error(e.getMessage(), e);
-			} catch (NoSuchMethodException e) {
-				continue;
-			}
-		}
-	}
+	// of that command. The table is generated at compile time from every class
+	// annotated with @RegisterCommand, so any new command that is annotated
+	// automatically gets added to the map without any extra work
+	private static final Map<String, Command> COMMANDS = CommandRegistry.create();
 
 	/**
-	 * returns a copy of the collection to prevent the COMMANDS hashmap from being
+	 * returns a copy of the collection to prevent the COMMANDS map from being
 	 * mutated through this method
 	 * 
 	 * @return the literal String values of the command map
@@ -73,7 +30,7 @@ public final class CommandsHelper {
 	}
 
 	/**
-	 * returns a copy of the set to prevent the COMMANDS hashmap from being mutated
+	 * returns a copy of the set to prevent the COMMANDS map from being mutated
 	 * through this method
 	 * 
 	 * @return the entries of the command map
@@ -82,6 +39,11 @@ public final class CommandsHelper {
 		return new HashSet<Entry<String, Command>>(COMMANDS.entrySet());
 	}
 
+	/**
+	 * @param key the trigger of the command
+	 * @return the command registered with {@link RegisterCommand} for the given
+	 *         trigger, or empty if there is none
+	 */
 	public static final Optional<Command> get(String key) {
 		return Optional.ofNullable(COMMANDS.get(key));
 	}
@@ -0,0 +1,98 @@
+package com.github.mubot.command.args;
+
+import java.util.List;
+
+/**
+ * A single argument of an {@link ArgumentSchema}, created through
+ * {@link ArgumentSchema.Builder}
+ */
+public final class Argument {
+
+	private final String name;
+	private final String description;
+	private final ArgumentType type;
+	private final boolean optional;
+	private final List<String> keywords;
+	private final long min;
+	private final long max;
+	private final int maxRepeats;
+
+	Argument(String name, String description, ArgumentType type, boolean optional, List<String> keywords, long min,
+			long max, int maxRepeats) {
+		this.name = name;
+		this.description = description;
+		this.type = type;
+		this.optional = optional;
+		this.keywords = keywords;
+		this.min = min;
+		this.max = max;
+		this.maxRepeats = maxRepeats;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public ArgumentType getType() {
+		return type;
+	}
+
+	public boolean isOptional() {
+		return optional;
+	}
+
+	/**
+	 * @return the words that are accepted in place of a value of the type of this
+	 *         argument, like "all" or "reset"
+	 */
+	public List<String> getKeywords() {
+		return keywords;
+	}
+
+	/**
+	 * @return the smallest accepted value of a number argument
+	 */
+	public long getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest accepted value of a number argument
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @return how many values this argument takes at most, more than 1 only for
+	 *         the last argument of a schema
+	 */
+	public int getMaxRepeats() {
+		return maxRepeats;
+	}
+
+	/**
+	 * @return how this argument is shown in the usage of a command, e.g.
+	 *         "&lt;volume&gt;|reset", "[any|pun]" or "[&lt;choice&gt;...]"
+	 */
+	public String getUsage() {
+		StringBuilder sb = new StringBuilder();
+		// keyword arguments only show their keywords
+		if (type != ArgumentType.KEYWORD)
+			sb.append('<').append(name).append('>');
+		for (String keyword : keywords) {
+			if (sb.length() > 0)
+				sb.append('|');
+			sb.append(keyword);
+		}
+		if (maxRepeats > 1)
+			sb.append("...");
+
+		return optional ? "[" + sb + "]" : sb.toString();
+	}
+
+}
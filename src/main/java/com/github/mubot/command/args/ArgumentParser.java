@@ -0,0 +1,283 @@
+package com.github.mubot.command.args;
+
+import java.util.List;
+
+import com.github.mubot.command.exceptions.ArgumentException;
+
+/**
+ * Parses the arguments of a command against its {@link ArgumentSchema} in a
+ * single pass over the arguments. Values are read in place, numbers are parsed
+ * from the characters directly and text values are kept as bounds into the
+ * arguments, so no Strings or arrays are created for the words of the message.
+ */
+public final class ArgumentParser {
+
+	// enough digits for any int, longer numbers can't be in range anyway
+	private static final int MAX_NUMBER_DIGITS = 10;
+	// snowflakes are at most 20 digits but fit in a signed long until 19
+	private static final int MAX_SNOWFLAKE_DIGITS = 19;
+
+	private final ArgumentSchema schema;
+	private final CharSequence input;
+	private final int length;
+	private int position;
+
+	private ArgumentParser(ArgumentSchema schema, CharSequence input) {
+		this.schema = schema;
+		this.input = input;
+		this.length = input.length();
+		this.position = 0;
+	}
+
+	/**
+	 * @param schema the arguments the command takes
+	 * @param input  everything after the trigger of the command
+	 * @return the parsed arguments
+	 * @throws ArgumentException if a required argument is missing or a value
+	 *                           doesn't match its type
+	 */
+	public static Arguments parse(ArgumentSchema schema, CharSequence input) {
+		return new ArgumentParser(schema, input).parse();
+	}
+
+	private Arguments parse() {
+		final Arguments arguments = new Arguments(schema, input);
+		for (Argument argument : schema.getArguments()) {
+			for (int i = 0; i < argument.getMaxRepeats(); i++) {
+				skipWhitespace();
+				if (position >= length) {
+					// only the first value of a repeated argument can be required
+					if (i == 0 && !argument.isOptional())
+						throw new ArgumentException("Missing " + argument.getName(), argument, true);
+					return arguments;
+				}
+				readValue(argument, arguments);
+			}
+		}
+		return arguments;
+	}
+
+	private void readValue(Argument argument, Arguments arguments) {
+		final int start = position;
+		if (argument.getType() == ArgumentType.REST) {
+			int end = length;
+			while (end > start && Character.isWhitespace(input.charAt(end - 1))) {
+				end--;
+			}
+			position = length;
+			arguments.add(start, end, 0, -1);
+			return;
+		}
+
+		if (argument.getType() == ArgumentType.QUOTED_STRING && input.charAt(start) == '"') {
+			int end = start + 1;
+			while (end < length && input.charAt(end) != '"') {
+				end++;
+			}
+			// an unclosed quote runs until the end
+			position = Math.min(end + 1, length);
+			arguments.add(start + 1, end, 0, -1);
+			return;
+		}
+
+		int end = start;
+		while (end < length && !Character.isWhitespace(input.charAt(end))) {
+			end++;
+		}
+		position = end;
+
+		final int keyword = findKeyword(argument.getKeywords(), start, end);
+		if (keyword >= 0) {
+			arguments.add(start, end, 0, keyword);
+			return;
+		}
+
+		long number;
+		switch (argument.getType()) {
+		case KEYWORD:
+			throw invalid(argument, start, end, "");
+		case INTEGER:
+			number = parseInteger(start, end);
+			checkRange(argument, start, end, number != Long.MIN_VALUE, number, "a number");
+			break;
+		case DURATION:
+			number = parseDuration(start, end);
+			checkRange(argument, start, end, number >= 0, number, "an amount of time like 90, 1:30 or 1m30s");
+			break;
+		case MENTION:
+			number = parseMention(start, end);
+			if (number < 0)
+				throw invalid(argument, start, end, "a mention of a user");
+			break;
+		default:
+			number = 0;
+			break;
+		}
+		arguments.add(start, end, number, -1);
+	}
+
+	private void checkRange(Argument argument, int start, int end, boolean valid, long number, String expected) {
+		if (valid && number >= argument.getMin() && number <= argument.getMax())
+			return;
+
+		StringBuilder sb = new StringBuilder(expected);
+		if (argument.getMin() > Integer.MIN_VALUE && argument.getMax() < Integer.MAX_VALUE)
+			sb.append(" from ").append(argument.getMin()).append(" to ").append(argument.getMax());
+		else if (argument.getMin() > 0)
+			sb.append(" of at least ").append(argument.getMin());
+		throw invalid(argument, start, end, sb.toString());
+	}
+
+	private ArgumentException invalid(Argument argument, int start, int end, String expected) {
+		StringBuilder sb = new StringBuilder();
+		sb.append('"').append(input, start, end).append("\" is not a valid ").append(argument.getName())
+				.append(", expected ").append(expected);
+		List<String> keywords = argument.getKeywords();
+		for (int i = 0; i < keywords.size(); i++) {
+			// keyword arguments only list their keywords
+			if (i > 0 || !expected.isEmpty())
+				sb.append(i == keywords.size() - 1 ? " or " : ", ");
+			sb.append(keywords.get(i));
+		}
+		return new ArgumentException(sb.toString(), argument, false);
+	}
+
+	private void skipWhitespace() {
+		while (position < length && Character.isWhitespace(input.charAt(position))) {
+			position++;
+		}
+	}
+
+	private int findKeyword(List<String> keywords, int start, int end) {
+		for (int i = 0; i < keywords.size(); i++) {
+			if (regionMatchesIgnoreCase(keywords.get(i), start, end))
+				return i;
+		}
+		return -1;
+	}
+
+	private boolean regionMatchesIgnoreCase(String word, int start, int end) {
+		if (end - start != word.length())
+			return false;
+		for (int i = 0; i < word.length(); i++) {
+			if (Character.toLowerCase(input.charAt(start + i)) != Character.toLowerCase(word.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number between start and end, or Long.MIN_VALUE if it isn't a
+	 *         number
+	 */
+	private long parseInteger(int start, int end) {
+		boolean negative = false;
+		if (start < end && (input.charAt(start) == '-' || input.charAt(start) == '+')) {
+			negative = input.charAt(start) == '-';
+			start++;
+		}
+		if (start == end || end - start > MAX_NUMBER_DIGITS)
+			return Long.MIN_VALUE;
+
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			final int digit = input.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				return Long.MIN_VALUE;
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Reads seconds, "m:ss", "h:mm:ss" or a combination of numbers followed by h,
+	 * m or s, each unit at most once and from hours down to seconds
+	 * 
+	 * @return the duration in seconds, or -1 if it isn't a duration
+	 */
+	private long parseDuration(int start, int end) {
+		long total = 0;
+		long value = 0;
+		int digits = 0;
+		boolean units = false;
+		boolean colons = false;
+		// seconds per unit of the last unit read, a unit has to be smaller
+		long lastUnit = Long.MAX_VALUE;
+		for (int i = start; i < end; i++) {
+			final char c = input.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digits > MAX_NUMBER_DIGITS)
+					return -1;
+				value = value * 10 + (c - '0');
+				continue;
+			}
+			if (digits == 0)
+				return -1;
+
+			final long unit;
+			switch (Character.toLowerCase(c)) {
+			case ':':
+				if (units)
+					return -1;
+				colons = true;
+				total = (total + value) * 60;
+				value = 0;
+				digits = 0;
+				continue;
+			case 'h':
+				unit = 3600;
+				break;
+			case 'm':
+				unit = 60;
+				break;
+			case 's':
+				unit = 1;
+				break;
+			default:
+				return -1;
+			}
+			// "1m1m" or "30s1m"
+			if (colons || unit >= lastUnit)
+				return -1;
+			total += value * unit;
+			lastUnit = unit;
+			units = true;
+			value = 0;
+			digits = 0;
+		}
+
+		// "1m" ends on a unit, "1:" is incomplete and digits after a unit like
+		// "1m30" are seconds, unless seconds were already given
+		if (digits == 0)
+			return units ? total : -1;
+		if (lastUnit <= 1)
+			return -1;
+		return total + value;
+	}
+
+	/**
+	 * @return the id of the mentioned user, or -1 if it isn't a user mention
+	 */
+	private long parseMention(int start, int end) {
+		if (end - start < 4 || input.charAt(start) != '<' || input.charAt(start + 1) != '@'
+				|| input.charAt(end - 1) != '>')
+			return -1;
+
+		int i = start + 2;
+		if (input.charAt(i) == '!')
+			i++;
+		if (i == end - 1 || end - 1 - i > MAX_SNOWFLAKE_DIGITS)
+			return -1;
+
+		long id = 0;
+		for (; i < end - 1; i++) {
+			final int digit = input.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			id = id * 10 + digit;
+		}
+		// ids too large for a long overflow into negative values
+		return id;
+	}
+
+}
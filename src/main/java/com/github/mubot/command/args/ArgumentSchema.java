@@ -0,0 +1,197 @@
+package com.github.mubot.command.args;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The arguments a command takes, in the order they are given. Optional
+ * arguments may only be followed by other optional arguments, and only the
+ * last argument may be repeated or read the rest of the line, so every message
+ * can be parsed in a single pass without backtracking.
+ */
+public final class ArgumentSchema {
+
+	/**
+	 * Schema of commands without arguments, anything after the trigger is ignored
+	 */
+	public static final ArgumentSchema NONE = new ArgumentSchema(Collections.emptyList());
+
+	private final List<Argument> arguments;
+	// number of values a parse result has to make room for
+	private final int maxValues;
+
+	private ArgumentSchema(List<Argument> arguments) {
+		this.arguments = arguments;
+		int values = 0;
+		for (Argument argument : arguments) {
+			values += argument.getMaxRepeats();
+		}
+		this.maxValues = values;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public List<Argument> getArguments() {
+		return arguments;
+	}
+
+	public boolean isEmpty() {
+		return arguments.isEmpty();
+	}
+
+	/**
+	 * @param name the name of the argument
+	 * @return the position of the argument, or -1 if there is no argument with
+	 *         that name
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < arguments.size(); i++) {
+			if (arguments.get(i).getName().equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	int getMaxValues() {
+		return maxValues;
+	}
+
+	/**
+	 * @return the arguments as shown in the usage of a command, e.g.
+	 *         "&lt;position&gt;|all"
+	 */
+	public String getUsage() {
+		StringBuilder sb = new StringBuilder();
+		for (Argument argument : arguments) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(argument.getUsage());
+		}
+		return sb.toString();
+	}
+
+	public static final class Builder {
+
+		private final List<Argument> arguments = new ArrayList<>();
+
+		private String name;
+		private String description;
+		private ArgumentType type;
+		private boolean optional;
+		private List<String> keywords;
+		private long min;
+		private long max;
+		private int maxRepeats;
+
+		private Builder() {
+		}
+
+		public Builder word(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.WORD, optional);
+		}
+
+		/**
+		 * An argument that only accepts one of the given keywords
+		 */
+		public Builder keyword(String name, String description, boolean optional, String... keywords) {
+			add(name, description, ArgumentType.KEYWORD, optional);
+			return keywords(keywords);
+		}
+
+		public Builder integer(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.INTEGER, optional);
+		}
+
+		public Builder duration(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.DURATION, optional);
+		}
+
+		public Builder quoted(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.QUOTED_STRING, optional);
+		}
+
+		public Builder mention(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.MENTION, optional);
+		}
+
+		public Builder rest(String name, String description, boolean optional) {
+			return add(name, description, ArgumentType.REST, optional);
+		}
+
+		/**
+		 * Limits the value of the last added argument, in seconds for durations
+		 */
+		public Builder range(long min, long max) {
+			if (type != ArgumentType.INTEGER && type != ArgumentType.DURATION)
+				throw new IllegalStateException("Only numbers and durations have a range");
+			this.min = min;
+			this.max = max;
+			return this;
+		}
+
+		/**
+		 * Words that are accepted in place of a value for the last added argument.
+		 * Keywords are matched ignoring case.
+		 */
+		public Builder keywords(String... keywords) {
+			checkAdded();
+			this.keywords = List.of(keywords);
+			return this;
+		}
+
+		/**
+		 * Lets the last added argument take up to max values
+		 */
+		public Builder repeated(int max) {
+			checkAdded();
+			if (type == ArgumentType.REST || max < 1)
+				throw new IllegalStateException("Can't repeat " + name + " " + max + " times");
+			this.maxRepeats = max;
+			return this;
+		}
+
+		public ArgumentSchema build() {
+			flush();
+			for (int i = 0; i < arguments.size(); i++) {
+				Argument argument = arguments.get(i);
+				boolean last = i == arguments.size() - 1;
+				if (!last && (argument.getType() == ArgumentType.REST || argument.getMaxRepeats() > 1))
+					throw new IllegalStateException(argument.getName() + " has to be the last argument");
+				if (argument.getType() == ArgumentType.KEYWORD && argument.getKeywords().isEmpty())
+					throw new IllegalStateException(argument.getName() + " has no keywords");
+				if (i > 0 && !argument.isOptional() && arguments.get(i - 1).isOptional())
+					throw new IllegalStateException(argument.getName() + " can't follow an optional argument");
+			}
+			return arguments.isEmpty() ? NONE : new ArgumentSchema(List.copyOf(arguments));
+		}
+
+		private Builder add(String name, String description, ArgumentType type, boolean optional) {
+			flush();
+			this.name = name;
+			this.description = description;
+			this.type = type;
+			this.optional = optional;
+			this.keywords = Collections.emptyList();
+			this.min = type == ArgumentType.DURATION ? 0 : Integer.MIN_VALUE;
+			this.max = Integer.MAX_VALUE;
+			this.maxRepeats = 1;
+			return this;
+		}
+
+		private void flush() {
+			if (type != null)
+				arguments.add(new Argument(name, description, type, optional, keywords, min, max, maxRepeats));
+			type = null;
+		}
+
+		private void checkAdded() {
+			if (type == null)
+				throw new IllegalStateException("No argument added yet");
+		}
+
+	}
+
+}
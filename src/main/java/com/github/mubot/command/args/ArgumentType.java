@@ -0,0 +1,45 @@
+package com.github.mubot.command.args;
+
+/**
+ * The kinds of values an {@link Argument} can be parsed into
+ */
+public enum ArgumentType {
+
+	/**
+	 * A single word, read until the next space
+	 */
+	WORD,
+
+	/**
+	 * One of the keywords of the argument, any other word is rejected
+	 */
+	KEYWORD,
+
+	/**
+	 * A whole number
+	 */
+	INTEGER,
+
+	/**
+	 * An amount of time, given in seconds ("90"), as "m:ss" or "h:mm:ss" ("1:30")
+	 * or with units ("1m30s", "2h")
+	 */
+	DURATION,
+
+	/**
+	 * Text between double quotes that may contain spaces, or a single word if it
+	 * isn't quoted
+	 */
+	QUOTED_STRING,
+
+	/**
+	 * A mention of a user, either &lt;@id&gt; or &lt;@!id&gt;
+	 */
+	MENTION,
+
+	/**
+	 * Everything until the end of the command, must be the last argument
+	 */
+	REST
+
+}
@@ -0,0 +1,173 @@
+package com.github.mubot.command.args;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import discord4j.common.util.Snowflake;
+
+/**
+ * The arguments of a single command invocation, parsed against the
+ * {@link ArgumentSchema} of the command by {@link ArgumentParser}. Text values
+ * are views of the content of the message and are only copied into Strings
+ * when a command asks for one.
+ */
+public final class Arguments {
+
+	public static final Arguments EMPTY = new Arguments(ArgumentSchema.NONE, "");
+
+	private final ArgumentSchema schema;
+	private final CharSequence raw;
+
+	// bounds of every value in raw, the values of a repeated last argument follow
+	// each other at the end
+	private final int[] starts;
+	private final int[] ends;
+	// the value of numbers, durations in seconds and the ids of mentions
+	private final long[] numbers;
+	// index of the keyword a value matched, or -1
+	private final int[] keywords;
+	private int count;
+
+	Arguments(ArgumentSchema schema, CharSequence raw) {
+		this.schema = schema;
+		this.raw = raw;
+		final int maxValues = schema.getMaxValues();
+		this.starts = new int[maxValues];
+		this.ends = new int[maxValues];
+		this.numbers = new long[maxValues];
+		this.keywords = new int[maxValues];
+	}
+
+	void add(int start, int end, long number, int keyword) {
+		starts[count] = start;
+		ends[count] = end;
+		numbers[count] = number;
+		keywords[count] = keyword;
+		count++;
+	}
+
+	/**
+	 * @return the arguments exactly as they were typed, everything after the
+	 *         trigger of the command
+	 */
+	public CharSequence getRaw() {
+		return raw;
+	}
+
+	/**
+	 * @return true if no arguments were given
+	 */
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	/**
+	 * @param name the name of the argument
+	 * @return true if a value was given for the argument
+	 */
+	public boolean has(String name) {
+		return indexOf(name) < count;
+	}
+
+	/**
+	 * @param name the name of the argument
+	 * @return the text of the argument, or null if it wasn't given
+	 */
+	public CharSequence getText(String name) {
+		final int index = indexOf(name);
+		return index < count ? raw.subSequence(starts[index], ends[index]) : null;
+	}
+
+	/**
+	 * @param name the name of the argument
+	 * @return the text of the argument as a String, or null if it wasn't given
+	 */
+	public String getString(String name) {
+		final CharSequence text = getText(name);
+		return text != null ? text.toString() : null;
+	}
+
+	/**
+	 * @param name the name of a repeated argument
+	 * @return the texts of all values given for the argument
+	 */
+	public List<CharSequence> getAll(String name) {
+		final int index = indexOf(name);
+		if (index >= count)
+			return Collections.emptyList();
+
+		final int last = index == schema.getArguments().size() - 1 ? count : index + 1;
+		final List<CharSequence> values = new ArrayList<>(last - index);
+		for (int i = index; i < last; i++) {
+			values.add(raw.subSequence(starts[i], ends[i]));
+		}
+		return values;
+	}
+
+	/**
+	 * @param name         the name of a number argument
+	 * @param defaultValue returned if the argument wasn't given or is a keyword
+	 * @return the value of the argument
+	 */
+	public int getInt(String name, int defaultValue) {
+		final int index = indexOf(name);
+		return index < count && keywords[index] < 0 ? (int) numbers[index] : defaultValue;
+	}
+
+	/**
+	 * @param name the name of a duration argument
+	 * @return the value of the argument, or null if it wasn't given or is a
+	 *         keyword
+	 */
+	public Duration getDuration(String name) {
+		final int index = indexOf(name);
+		return index < count && keywords[index] < 0 ? Duration.ofSeconds(numbers[index]) : null;
+	}
+
+	/**
+	 * @param name the name of a mention argument
+	 * @return the id of the mentioned user, or null if it wasn't given
+	 */
+	public Snowflake getMention(String name) {
+		final int index = indexOf(name);
+		return index < count && keywords[index] < 0 ? Snowflake.of(numbers[index]) : null;
+	}
+
+	/**
+	 * @param name    the name of the argument
+	 * @param keyword one of the keywords of the argument
+	 * @return true if the keyword was given in place of a value
+	 */
+	public boolean isKeyword(String name, String keyword) {
+		final int index = indexOf(name);
+		return index < count && keywords[index] >= 0
+				&& schema.getArguments().get(index).getKeywords().get(keywords[index]).equals(keyword);
+	}
+
+	/**
+	 * @param name the name of the argument
+	 * @return the keyword given for the argument as the schema declares it, or
+	 *         null if it wasn't given or isn't a keyword
+	 */
+	public String getKeyword(String name) {
+		final int index = indexOf(name);
+		return index < count && keywords[index] >= 0
+				? schema.getArguments().get(index).getKeywords().get(keywords[index])
+				: null;
+	}
+
+	private int indexOf(String name) {
+		final int index = schema.indexOf(name);
+		if (index < 0)
+			throw new IllegalArgumentException("No argument named " + name);
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return raw.toString();
+	}
+
+}
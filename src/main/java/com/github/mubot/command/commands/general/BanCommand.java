@@ -1,46 +1,44 @@
 package com.github.mubot.command.commands.general;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.help.CommandHelpSpec;
-import discord4j.core.event.domain.message.MessageCreateEvent;
+import com.github.mubot.command.registry.RegisterCommand;
 import discord4j.rest.http.client.ClientException;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "ban")
 public class BanCommand extends RequireMemberAndBotPermissionsCommand {
 
 	public BanCommand() {
-		super("ban", Permission.BAN_MEMBERS);
+		super(Permission.BAN_MEMBERS);
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args) {
-
-		StringBuilder sb = new StringBuilder();
-		if (args.length >= 2) {
-			for (String param : Arrays.copyOfRange(args, 1, args.length)) {
-				sb.append(param).append(" ");
-			}
-		}
-
-		String reason = sb.toString().isEmpty() ? "Reason not specified" : sb.toString().trim();
-
-		return event.getGuild()
-				.flatMap(guild -> event.getMessage().getUserMentions().take(1)
-						.switchIfEmpty(Mono.error(new CommandException("User not found on server.")))
-						.flatMap(user -> guild.ban(user.getId(), s -> s.setReason(reason).setDeleteMessageDays(7)))
-						.then(CommandResponse.create("User " + args[0] + " has been banned.")))
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args) {
+		String reason = args.has("reason") ? args.getString("reason") : "Reason not specified";
+
+		return context.getGuild()
+				.flatMap(guild -> guild.ban(args.getMention("@user"), s -> s.setReason(reason).setDeleteMessageDays(7))
+						.then(CommandResponse.create("User " + args.getText("@user") + " has been banned.")))
 				.onErrorResume(ClientException.class, error -> Mono.error(new CommandException("Error banning user")));
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().mention("@user", "The user's mention", false)
+				.rest("reason", "Reason for banning", true).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription("Ban a user and delete their messages from the last 7 days.")
-				.addArg("@user", "The user's mention", false).addArg("reason", "Reason for banning", true)
 				.addExample("@JohnDoe I don't know who this is.");
 	}
 
@@ -3,20 +3,19 @@ package com.github.mubot.command.commands.general;
 import java.util.function.Consumer;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "echo")
 public class EchoCommand extends Command {
 
-	public EchoCommand() {
-		super("echo");
-	};
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
 		return echo();
 	}
 
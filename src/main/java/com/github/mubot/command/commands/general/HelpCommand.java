@@ -1,49 +1,63 @@
 package com.github.mubot.command.commands.general;
 
-import java.util.Arrays;
-import java.util.Map.Entry;
+import static com.github.mubot.command.util.CommandUtil.escapeSpecialRegexChars;
+import static com.github.mubot.command.util.CommandUtil.getRawGuildPrefixFromEvent;
 
-import static com.github.mubot.command.util.CommandUtil.getEscapedGuildPrefixFromEvent;
-
-import java.util.Set;
+import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
 import com.github.mubot.command.CommandsHelper;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
-import discord4j.core.event.domain.message.MessageCreateEvent;
+import com.github.mubot.command.help.HelpCache;
+import com.github.mubot.command.registry.RegisterCommand;
+import discord4j.core.spec.EmbedCreateSpec;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "help", aliases = { "commands", "h" })
 public class HelpCommand extends Command {
 
-	public HelpCommand() {
-		super("help", Arrays.asList("commands", "h"));
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return help(event);
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return help(context);
 	}
 
 	/**
 	 * Returns a list of all commands in the channel the message was sent.
 	 * 
-	 * @param event
+	 * @param context
 	 * 
 	 * @return List of available commands
 	 */
-	public Mono<CommandResponse> help(MessageCreateEvent event) {
-		Set<Entry<String, Command>> entries = CommandsHelper.getEntries();
-		String commands = entries.stream()
-				.map(entry -> String.format("%n%s%s", getEscapedGuildPrefixFromEvent(event),
-						entry.getValue().getPrimaryTrigger()))
-				.distinct().sorted().collect(Collectors.joining()).toString();
-
-		return CommandResponse.create(message -> message.setEmbed(
-				embed -> embed.setTitle(String.format("Use ***help*** with any command to get more information on that command, for example `%splay help`.", getEscapedGuildPrefixFromEvent(event)))
-						.addField("Available commands: ", commands, false)));
+	public Mono<CommandResponse> help(CommandContext context) {
+		final Consumer<? super EmbedCreateSpec> embed = HelpCache
+				.getHelpIndex(getRawGuildPrefixFromEvent(context.getEvent()), this::createHelpIndex);
+		return CommandResponse.create(message -> message.setEmbed(embed));
+	}
+
+	/**
+	 * @param prefix the raw prefix to show in the list
+	 * @return the rendered list of every command
+	 */
+	private Consumer<? super EmbedCreateSpec> createHelpIndex(String prefix) {
+		final String escapedPrefix = escapeSpecialRegexChars(prefix);
+		final List<String> triggers = CommandsHelper.values().stream().map(Command::getPrimaryTrigger).distinct()
+				.sorted().collect(Collectors.toList());
+
+		final StringBuilder commands = new StringBuilder();
+		for (String trigger : triggers) {
+			commands.append(System.lineSeparator()).append(escapedPrefix).append(trigger);
+		}
+
+		final String title = String.format(
+				"Use ***help*** with any command to get more information on that command, for example `%splay help`.",
+				escapedPrefix);
+		final String commandList = commands.toString();
+		return embed -> embed.setTitle(title).addField("Available commands: ", commandList, false);
 	}
 
 	@Override
@@ -1,63 +1,48 @@
 package com.github.mubot.command.commands.general;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
 import com.github.mubot.command.menu.menus.JokeMenu;
-import com.github.mubot.jokeapi.JokeClient;
+import com.github.mubot.command.registry.RegisterCommand;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
+@RegisterCommand(trigger = "joke")
 public class JokeCommand extends RequireBotPermissionsCommand {
 
 	public JokeCommand() {
-		super("joke", Permission.MANAGE_MESSAGES);
+		super(Permission.MANAGE_MESSAGES);
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args) {
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args) {
 		return joke(args);
 	}
 
-	private Mono<CommandResponse> joke(@NonNull String[] args) {
-		boolean unsafe = false;
-		JokeMenu menu = null;
-		if (args.length > 0) {
-			List<String> argList = Arrays.asList(args);
-			unsafe = argList.contains("unsafe");
-			List<String> categories = JokeClient.getJokeService().getCategories().map(List::stream)
-					.map(s -> s.map(String::toLowerCase).collect(Collectors.toList())).block();
-			for (String arg : argList) {
-				if (categories.contains(arg.toLowerCase())) {
-					// no safe-dark jokes, so ignore
-					if (arg.equals("dark") && !unsafe)
-						break;
-
-					menu = new JokeMenu(unsafe, arg);
-					break;
-				}
-			}
-		}
-
-		if (menu == null)
-			menu = new JokeMenu(unsafe);
-
+	private Mono<CommandResponse> joke(@NonNull Arguments args) {
+		final String category = args.getKeyword("category");
+		final JokeMenu menu = category == null ? new JokeMenu() : new JokeMenu(category);
 		return CommandResponse.create(menu.createMessage(), menu);
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		// the categories of JokeAPI that have safe jokes, Spooky only has one
+		return ArgumentSchema.builder().keyword("category", "Gets a joke of only the given category.", true, "Any",
+				"Misc", "Programming", "Pun", "Christmas").build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
-		return spec -> spec.setDescription("Tells a random joke from the chosen category of jokes.")
-				.addArg("unsafe", "Allows \"unsafe\" jokes to be returned by the bot.", true)
-				.addArg("category", "Gets a joke of only the given category.", true).addExample("pun")
-				.addExample("unsafe").addExample("unsafe any").addExample("misc unsafe");
+		return spec -> spec.setDescription("Tells a random joke from the chosen category of jokes.").addExample("pun")
+				.addExample("any");
 	}
 
 }
@@ -1,46 +1,45 @@
 package com.github.mubot.command.commands.general;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.http.client.ClientException;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "kick")
 public class KickCommand extends RequireMemberAndBotPermissionsCommand {
 
 	public KickCommand() {
-		super("kick", Permission.KICK_MEMBERS);
+		super(Permission.KICK_MEMBERS);
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args) {
-		StringBuilder sb = new StringBuilder();
-		if (args.length >= 2) {
-			for (String param : Arrays.copyOfRange(args, 1, args.length)) {
-				sb.append(param).append(" ");
-			}
-		}
-
-		String reason = sb.toString().isEmpty() ? "Reason not specified" : sb.toString().trim();
-
-		return event.getGuild()
-				.flatMap(guild -> event.getMessage().getUserMentions().take(1).singleOrEmpty()
-						.switchIfEmpty(Mono.error(new CommandException("User not found on server.")))
-						.flatMap(user -> guild.kick(user.getId(), reason))
-						.then(CommandResponse.create("User " + args[0] + " has been kicked.")))
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args) {
+		String reason = args.has("reason") ? args.getString("reason") : "Reason not specified";
+
+		return context.getGuild()
+				.flatMap(guild -> guild.kick(args.getMention("@user"), reason)
+						.then(CommandResponse.create("User " + args.getText("@user") + " has been kicked.")))
 				.onErrorResume(ClientException.class, error -> Mono.error(new CommandException("Error kicking user")));
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().mention("@user", "The user's mention", false)
+				.rest("reason", "Reason for kicking", true).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription("Kick a user from the server but not ban them.")
-				.addArg("@user", "The user's mention", false).addArg("reason", "Reason for kicking", true)
 				.addExample("@JohnDoe I don't know who this is.");
 	}
 
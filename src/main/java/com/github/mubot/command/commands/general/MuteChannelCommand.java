@@ -8,13 +8,15 @@ import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.command.util.EmojiHelper;
 import com.github.mubot.eventlistener.MuteOnJoinListener;
 
 import discord4j.common.util.Snowflake;
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.VoiceState;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.channel.VoiceChannel;
@@ -24,18 +26,15 @@ import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
+@RegisterCommand(trigger = "mutechannel")
 public class MuteChannelCommand extends Command {
 
 	private static final Logger LOGGER = Loggers.getLogger(MuteChannelCommand.class);
 
-	public MuteChannelCommand() {
-		super("mutechannel");
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireVoiceChannel(event).flatMap(
-				channel -> requireBotChannelPermissions(channel, Permission.MUTE_MEMBERS).flatMap(ignored -> mute(channel)));
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return requireVoiceChannel(context).flatMap(channel -> requireBotChannelPermissions(context, channel,
+				Permission.MUTE_MEMBERS).flatMap(ignored -> mute(channel)));
 	}
 
 
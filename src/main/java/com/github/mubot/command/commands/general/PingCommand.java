@@ -4,26 +4,25 @@ import java.time.Duration;
 import java.util.function.Consumer;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.gateway.GatewayClient;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "ping")
 public class PingCommand extends Command {
 
-	public PingCommand() {
-		super("ping");
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return ping(event);
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return ping(context);
 	}
 
-	private Mono<CommandResponse> ping(MessageCreateEvent event) {
-		String pingTime = event.getClient().getGatewayClientGroup().find(event.getShardInfo().getIndex())
+	private Mono<CommandResponse> ping(CommandContext context) {
+		String pingTime = context.getClient().getGatewayClientGroup().find(context.getEvent().getShardInfo().getIndex())
 				.map(GatewayClient::getResponseTime).map(Duration::toMillis).orElse(-1L).toString();
 		String responseTime = String.format("Response time: %sms", pingTime);
 		return CommandResponse.create(responseTime);
@@ -2,33 +2,27 @@ package com.github.mubot.command.commands.general;
 
 import static com.github.mubot.command.util.PermissionsHelper.requireUserGuildPermissions;
 
-import java.util.List;
-
 import static com.github.mubot.command.util.PermissionsHelper.requireBotGuildPermissions;
 import static com.github.mubot.command.util.PermissionsHelper.requireNotPrivateMessage;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
 public abstract class RequireMemberAndBotPermissionsCommand extends RequirePermissionsCommand {
 
-	public RequireMemberAndBotPermissionsCommand(String commandTrigger, Permission... permissions) {
-		super(commandTrigger, permissions);
-	}
-
-	public RequireMemberAndBotPermissionsCommand(String commandTrigger, List<String> aliases,
-			Permission... permissions) {
-		super(commandTrigger, aliases, permissions);
+	public RequireMemberAndBotPermissionsCommand(Permission... permissions) {
+		super(permissions);
 	}
 
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireNotPrivateMessage(event).flatMap(ignored -> requireUserGuildPermissions(event, this.permissions))
-				.flatMap(ignored -> requireBotGuildPermissions(event, this.permissions))
-				.flatMap(ignored -> action(event, args));
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return requireNotPrivateMessage(context).flatMap(ignored -> requireUserGuildPermissions(context, this.permissions))
+				.flatMap(ignored -> requireBotGuildPermissions(context, this.permissions))
+				.flatMap(ignored -> action(context, args));
 	}
 
 }
@@ -1,11 +1,10 @@
 package com.github.mubot.command.commands.general;
 
-import java.util.List;
-
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
@@ -13,15 +12,9 @@ public abstract class RequirePermissionsCommand extends Command {
 
 	protected Permission[] permissions;
 
-	public RequirePermissionsCommand(String commandTrigger, Permission... permissions) {
-		super(commandTrigger);
-		this.permissions = permissions;
-	}
-
-	public RequirePermissionsCommand(String commandTrigger, List<String> aliases, Permission... permissions) {
-		super(commandTrigger, aliases);
+	public RequirePermissionsCommand(Permission... permissions) {
 		this.permissions = permissions;
 	}
 
-	protected abstract Mono<CommandResponse> action(MessageCreateEvent event, String[] args);
+	protected abstract Mono<CommandResponse> action(CommandContext context, Arguments args);
 }
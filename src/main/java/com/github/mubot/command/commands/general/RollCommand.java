@@ -5,41 +5,41 @@ import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.command.util.EmojiHelper;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "roll")
 public class RollCommand extends Command {
 
 	private static Random rand = new Random();
 
-	public RollCommand() {
-		super("roll");
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return roll(event, args);
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return roll(context, args);
 	}
 
 	/**
 	 * Bot rolls dice and returns results
 	 * 
-	 * @param event
+	 * @param context
 	 * 
 	 * @param args  The number and type of dice to roll, eg "1d20"
 	 * @return The results of the dice roll
 	 */
-	public Mono<CommandResponse> roll(MessageCreateEvent event, String[] args) {
+	public Mono<CommandResponse> roll(CommandContext context, Arguments args) {
 
-		if (args == null || args.length <= 0) {
-			return getHelp(event);
+		if (args == null || args.isEmpty()) {
+			return getHelp(context);
 		}
 
-		String dice = args[0];
+		String dice = args.getString("dice");
 
 		// only roll if 2nd part of command matches the reg ex
 		if (Pattern.matches("[1-9][0-9]*[Dd][1-9][0-9]*", dice)) {
@@ -61,13 +61,17 @@ public class RollCommand extends Command {
 			return CommandResponse.create(sb.toString());
 		}
 
-		return getHelp(event);
+		return getHelp(context);
+	}
+
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().word("dice", "Number and type of dice to roll.", false).build();
 	}
 
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
-		return spec -> spec.setDescription("Rolls a dice of the given amount.")
-				.addArg("dice", "Number and type of dice to roll.", false).addExample("1d20").addExample("5d8");
+		return spec -> spec.setDescription("Rolls a dice of the given amount.").addExample("1d20").addExample("5d8");
 	}
 
 }
@@ -5,38 +5,40 @@ import static com.github.mubot.command.util.PermissionsHelper.requireNotPrivateM
 import java.util.function.Consumer;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.database.DatabaseManager;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "setprefix")
 public class SetPrefixCommand extends Command {
 
-	public SetPrefixCommand() {
-		super("setprefix");
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireNotPrivateMessage(event).flatMap(ignored -> prefix(event, args));
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return requireNotPrivateMessage(context).flatMap(ignored -> prefix(context, args));
 	}
 
-	private Mono<CommandResponse> prefix(MessageCreateEvent event, String[] args) {
-		if (args.length >= 1) {
-			DatabaseManager.getInstance().getPrefixCache().addPrefix(event.getGuildId().get().asLong(), args[0])
-					.onErrorResume(error -> Mono.empty()).subscribe();
+	private Mono<CommandResponse> prefix(CommandContext context, Arguments args) {
+		final String prefix = args.getString("prefix");
+		DatabaseManager.getInstance().getPrefixCache().addPrefix(context.getGuildId().get().asLong(), prefix)
+				.onErrorResume(error -> Mono.empty()).subscribe();
 
-			return CommandResponse.create("Set guild command prefix to " + args[0]);
-		}
-		return getHelp(event);
+		return CommandResponse.create("Set guild command prefix to " + prefix);
+	}
+
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().word("prefix", "New prefix for bot-commands.", false).build();
 	}
 
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
-		return spec -> spec.setDescription("Set the command-prefix of this server.")
-				.addArg("prefix", "New prefix for bot-commands.", false).addExample("$").addExample("!");
+		return spec -> spec.setDescription("Set the command-prefix of this server.").addExample("$").addExample("!");
 	}
 
 }
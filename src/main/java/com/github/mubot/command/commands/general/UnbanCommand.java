@@ -2,36 +2,47 @@ package com.github.mubot.command.commands.general;
 
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.common.util.Snowflake;
 import discord4j.rest.http.client.ClientException;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "unban")
 public class UnbanCommand extends RequireMemberAndBotPermissionsCommand {
 
 	public UnbanCommand() {
-		super("unban", Permission.BAN_MEMBERS);
+		super(Permission.BAN_MEMBERS);
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args) {
-		return event.getGuild().flatMapMany(guild -> guild.getBans().map(ban -> {
-			if (ban.getUser().getMention().equals(args[0]))
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args) {
+		final Snowflake userId = args.getMention("@user");
+		return context.getGuild().flatMapMany(guild -> guild.getBans().map(ban -> {
+			if (ban.getUser().getId().equals(userId))
 				return ban.getUser();
 			return null;
 		}).switchIfEmpty(Mono.error(new CommandException("User not found in ban list.")))
 				.flatMap(user -> guild.unban(user.getId())))
-				.then(CommandResponse.create("User " + args[0] + " has been unbanned.")).onErrorResume(
+				.then(CommandResponse.create("User " + args.getText("@user") + " has been unbanned.")).onErrorResume(
 						ClientException.class, error -> Mono.error(new CommandException("Error unbanning user")));
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().mention("@user", "The user's mention", false).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
-		return spec -> spec.setDescription("Unban a user.").addArg("@user", "The user's mention", false);
+		return spec -> spec.setDescription("Unban a user.");
 	}
 
 }
@@ -2,23 +2,22 @@ package com.github.mubot.command.commands.music;
 
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "clear")
 public class ClearCommand extends MusicCommand {
 
-	public ClearCommand() {
-		super("clear");
-	}
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
 		return clearQueue(scheduler);
 	}
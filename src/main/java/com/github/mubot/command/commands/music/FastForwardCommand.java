@@ -1,25 +1,30 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.args.ArgumentSchema;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.music.TrackScheduler;
 
+@RegisterCommand(trigger = "fastforward", aliases = { "ff" })
 public class FastForwardCommand extends TrackSeekingCommand {
 
-	public FastForwardCommand() {
-		super("fastforward", Arrays.asList("ff"));
-	}
-
 	@Override
 	protected void doSeeking(TrackScheduler scheduler, int amountInSeconds) {
 		scheduler.fastForward(amountInSeconds);
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().duration("time",
+				"amount of time in seconds to fast foward. Also accepts minutes and seconds like \"1:30\" or \"1m30s\".",
+				false).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription("Fast fowards the currently playing song by the given amount of seconds.")
-				.addArg("time", "amount of time in seconds to fast foward", false).addExample("60");
+				.addExample("60").addExample("1m30s");
 	}
 }
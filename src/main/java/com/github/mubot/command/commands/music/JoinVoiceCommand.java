@@ -4,65 +4,79 @@ import static com.github.mubot.command.util.PermissionsHelper.requireBotChannelP
 import static com.github.mubot.command.util.PermissionsHelper.requireVoiceChannel;
 
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
+import com.github.mubot.music.AudioLoadGovernor;
 import com.github.mubot.music.GuildMusicManager;
 import com.github.mubot.music.TrackScheduler;
+import com.github.mubot.music.VoiceReadiness;
 
 import discord4j.common.util.Snowflake;
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.Guild;
-import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.rest.util.Permission;
 import discord4j.voice.VoiceConnection;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "join", aliases = { "j" })
 public class JoinVoiceCommand extends MusicCommand {
 
 	// private static final Logger LOGGER =
 	// Loggers.getLogger(JoinVoiceCommand.class);
 
-	public JoinVoiceCommand() {
-		super("join", Arrays.asList("j"));
-	};
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireVoiceChannel(event)
-				.flatMap(channel -> requireBotChannelPermissions(channel, Permission.CONNECT, Permission.VIEW_CHANNEL)
-						.flatMap(ignored -> action(event, args, null, channel)));
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		// commands after the join, like the play in "!join !play", wait for the
+		// connection from now on instead of racing the lookups of the join
+		return Mono.defer(() -> {
+			context.getGuildId().ifPresent(VoiceReadiness::connecting);
+			return requireVoiceChannel(context)
+					.flatMap(channel -> requireBotChannelPermissions(context, channel, Permission.CONNECT,
+							Permission.VIEW_CHANNEL).flatMap(ignored -> action(context, args, null, channel)));
+		}).doFinally(signal -> {
+			// a join that failed, was cancelled or ended without connecting lets the
+			// waiting commands go, after connecting this changes nothing
+			context.getGuildId().ifPresent(VoiceReadiness::failed);
+		});
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
-		return join(channel);
+		return join(context, channel);
 	}
 
 	/**
-	 * Bot joins the same voice channel as the user who uses the command.
+	 * Bot joins the same voice channel as the user who uses the command. The guild
+	 * is marked as connecting by {@link #execute(CommandContext, Arguments)}
+	 * before the lookups of the join.
 	 * 
+	 * @param context the context of the command
 	 * @param channel the channel to join
 	 * @return
 	 */
-	public Mono<CommandResponse> join(VoiceChannel channel) {
+	public Mono<CommandResponse> join(CommandContext context, VoiceChannel channel) {
 
 		/*
 		 * Work around for disconnect when moving channels. Disconnect from any channel
 		 * first and then connect to new channel. Should be able to just join new
 		 * channel but D4J 3.1.x is bugged. Fixed in 3.2.x
 		 */
-		final Mono<Snowflake> checkSameVoiceChannel = channel.getClient().getSelf()
-				.flatMap(user -> user.asMember(channel.getGuildId())).flatMap(Member::getVoiceState)
+		final Snowflake guildId = channel.getGuildId();
+		final Mono<Snowflake> checkSameVoiceChannel = context.getSelfVoiceState()
 				.flatMap(vs -> Mono.justOrEmpty(vs.getChannelId())).defaultIfEmpty(Snowflake.of(0L))
-				.filter(channelId -> !channelId.equals(channel.getId()))
-				.switchIfEmpty(Mono.error(new CommandException("Bot already connected to channel",
-						"I'm already connected to your voice channel")));
+				.filter(channelId -> !channelId.equals(channel.getId())).switchIfEmpty(Mono.defer(() -> {
+					// commands waiting for the join can go ahead in the channel
+					VoiceReadiness.connected(guildId, channel.getId());
+					return Mono.error(new CommandException("Bot already connected to channel",
+							"I'm already connected to your voice channel"));
+				}));
 
 		Mono<Void> disconnect = channel.getGuild().flatMap(Guild::getVoiceConnection)
 				.flatMap(VoiceConnection::disconnect);
@@ -71,7 +85,16 @@ public class JoinVoiceCommand extends MusicCommand {
 				.flatMap(guildMusic -> channel.join(spec -> spec.setProvider(guildMusic.getAudioProvider())))
 				.delaySubscription(Duration.ofMillis(1));// delay to allow disconnect first if already connected
 
-		return checkSameVoiceChannel.then(disconnect).then(joinChannel).thenReturn(CommandResponse.emptyFlat());
+		if (!AudioLoadGovernor.canJoin(guildId))
+			return Mono.error(new CommandException("Audio over budget",
+					"I'm playing music in too many places right now, please try again in a few minutes"));
+
+		// commands waiting for the bot to be in the channel are let through once it
+		// joined, the voice state of the bot changes by joining
+		return checkSameVoiceChannel.flatMap(ignored -> disconnect.then(joinChannel).doOnSuccess(connection -> {
+			context.invalidateSelfVoiceState();
+			VoiceReadiness.connected(guildId, channel.getId());
+		})).thenReturn(CommandResponse.emptyFlat());
 	}
 
 	@Override
@@ -1,28 +1,26 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.voice.VoiceConnection;
 import reactor.core.publisher.Mono;
 
+@RegisterCommand(trigger = "leave", aliases = { "quit", "l" })
 public class LeaveVoiceCommand extends MusicCommand {
 
 	// private static final Logger LOGGER =
 	// Loggers.getLogger(LeaveVoiceCommand.class);
 
-	public LeaveVoiceCommand() {
-		super("leave", Arrays.asList("quit", "q", "l"));
-	};
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
 		return leave(channel);
 	}
@@ -3,35 +3,26 @@ package com.github.mubot.command.commands.music;
 import static com.github.mubot.command.util.PermissionsHelper.requireBotChannelPermissions;
 import static com.github.mubot.command.util.PermissionsHelper.requireSameVoiceChannel;
 
-import java.util.List;
-
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.music.GuildMusicManager;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 
 public abstract class MusicCommand extends Command {
 
-	public MusicCommand(String commandTrigger) {
-		super(commandTrigger);
-	}
-
-	public MusicCommand(String commandTrigger, List<String> aliases) {
-		super(commandTrigger, aliases);
-	}
-
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireSameVoiceChannel(event).flatMap(channel -> GuildMusicManager.getScheduler(channel)
-				.flatMap(scheduler -> action(event, args, scheduler, channel)));
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return requireSameVoiceChannel(context).flatMap(channel -> GuildMusicManager.getScheduler(channel)
+				.flatMap(scheduler -> action(context, args, scheduler, channel)));
 	}
 
-	protected abstract Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected abstract Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel);
 
 	public Mono<VoiceChannel> withPermissions(Mono<VoiceChannel> channelMono, Permission... permissions) {
@@ -1,28 +1,26 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.command.util.CommandUtil;
 import com.github.mubot.command.util.EmojiHelper;
 import com.github.mubot.music.TrackScheduler;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "nowplaying", aliases = { "np", "playing" })
 public class NowPlayingCommand extends MusicCommand {
 
-	public NowPlayingCommand() {
-		super("nowplaying", Arrays.asList("np", "playing"));
-	}
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
 		return nowPlaying(scheduler);
 	}
@@ -2,19 +2,20 @@ package com.github.mubot.command.commands.music;
 
 import static com.github.mubot.command.util.PermissionsHelper.requireSameVoiceChannel;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
 import com.github.mubot.command.CommandsHelper;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.music.GuildMusicManager;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
-import discord4j.core.object.VoiceState;
-import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
@@ -22,69 +23,73 @@ import reactor.util.Logger;
 import reactor.util.Loggers;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "play", aliases = { "p", "add" })
 public class PlayCommand extends MusicPermissionCommand {
 
 	private static final Logger LOGGER = Loggers.getLogger(PlayCommand.class);
 
 	public PlayCommand() {
-		super("play", Arrays.asList("p", "add"), Permission.SPEAK);
+		super(Permission.SPEAK);
 	}
 
 	// If the bot is not in the same channel first try to use the join command
 	@Override
-	public Mono<CommandResponse> execute(MessageCreateEvent event, String[] args) {
-		return requireSameVoiceChannel(event)
+	public Mono<CommandResponse> execute(CommandContext context, Arguments args) {
+		return requireSameVoiceChannel(context)
 				.onErrorResume(CommandException.class,
-						error -> CommandsHelper.get("join").get().execute(event, args)
-								.then(event.getMessage().getAuthorAsMember().flatMap(Member::getVoiceState)
-										.flatMap(VoiceState::getChannel)))
+						error -> CommandsHelper.get("join").get().execute(context, args)
+								.then(context.getMemberVoiceChannel()))
 				.flatMap(channel -> GuildMusicManager.getScheduler(channel)
-						.flatMap(scheduler -> action(event, args, scheduler, channel)));
+						.flatMap(scheduler -> action(context, args, scheduler, channel)));
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
-		return play(event, args, scheduler);
+		return play(context, args, scheduler);
 	}
 
 	/**
 	 * Attempts to play the link in the message
 	 * 
-	 * @param event The message event
+	 * @param context The context of the command
 	 * @param args  The link of the audio
 	 * @return null
 	 */
-	public Mono<CommandResponse> play(MessageCreateEvent event, @NonNull String[] args,
+	public Mono<CommandResponse> play(CommandContext context, @NonNull Arguments args,
 			@NonNull TrackScheduler scheduler) {
 		// unpause
-		if (args.length == 0 || args[0].isEmpty()) {
+		if (args.isEmpty()) {
 			if (scheduler.getNowPlaying() != null) {
 				scheduler.pause(!scheduler.isPaused());
 				return CommandResponse.empty();
 			}
-			return getHelp(event);
+			return getHelp(context);
 
 		}
 
-		if (args.length <= 0 || args[0].isEmpty()) {
-			return getHelp(event);
-		}
-
+		final String url = args.getString("url");
 		// if its not a link assume they are trying to search for something
-		if (!args[0].startsWith("http") && !args[0].startsWith("www"))
-			return CommandsHelper.get("search").get().execute(event, args);
+		if (!url.startsWith("http") && !url.startsWith("www")) {
+			Command search = CommandsHelper.get("search").get();
+			return search.execute(context, search.parseArguments(args.getRaw()));
+		}
 
-		GuildMusicManager.loadItemOrdered(args[0], scheduler, event);
-		LOGGER.info("Loaded music item: " + args[0]);
+		GuildMusicManager.loadItemOrdered(url, scheduler, context.getEvent());
+		LOGGER.info("Loaded music item: " + url);
 		return CommandResponse.empty();
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder()
+				.rest("url", "Url of the song/playlist to be played from YouTube/SoundCloud/Bandcamp/Twitch/ect.", true)
+				.build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
-		return spec -> spec
-				.setDescription("Plays the song(s) from the given url.").addArg("url",
-						"Url of the song/playlist to be played from YouTube/SoundCloud/Bandcamp/Twitch/ect.", false)
+		return spec -> spec.setDescription("Plays the song(s) from the given url.")
 				.addExample("https://www.youtube.com/watch?v=dQw4w9WgXcQ");
 	}
 
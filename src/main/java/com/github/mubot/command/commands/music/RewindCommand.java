@@ -1,15 +1,17 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.args.ArgumentSchema;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.music.TrackScheduler;
 
+@RegisterCommand(trigger = "rewind", aliases = { "rw" })
 public class RewindCommand extends TrackSeekingCommand {
 
 	public RewindCommand() {
-		super("rewind", Arrays.asList("rw"));
+		super();
 	}
 	
 	@Override
@@ -17,10 +19,17 @@ public class RewindCommand extends TrackSeekingCommand {
 		scheduler.rewind(amountInSeconds);
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().duration("time",
+				"amount of time in seconds to rewind. Also accepts minutes and seconds like \"1:30\" or \"1m30s\".",
+				false).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription("Rewinds the currently playing song by the given amount of seconds.")
-				.addArg("time", "amount of time in seconds to rewind", false).addExample("60");
+				.addExample("60").addExample("1m30s");
 	}
 
 
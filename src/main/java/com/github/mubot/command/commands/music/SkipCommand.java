@@ -1,27 +1,26 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.command.util.CommandUtil;
 import com.github.mubot.command.util.EmojiHelper;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "skip", aliases = { "next" })
 public class SkipCommand extends MusicCommand {
 
-	public SkipCommand() {
-		super("skip", Arrays.asList("next"));
-	}
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
 		return skip(args, scheduler);
 	}
@@ -33,17 +32,13 @@ public class SkipCommand extends MusicCommand {
 	 * @param scheduler the track scheduler
 	 * @return
 	 */
-	public Mono<CommandResponse> skip(@NonNull String[] args, @NonNull TrackScheduler scheduler) {
+	public Mono<CommandResponse> skip(@NonNull Arguments args, @NonNull TrackScheduler scheduler) {
 		if (scheduler.getNowPlaying() != null) {
 
-			if (args.length > 0 && !args[0].isBlank()) {
-				try {
-					int element = Integer.parseInt(args[0]);
-					return CommandResponse.create(EmojiHelper.NEXT_TRACK + " Skipping to "
-							+ scheduler.skipQueue(element) + " " + EmojiHelper.NEXT_TRACK);
-				} catch (NumberFormatException ignored) {
-					// if there isn't an int as the args than just skip the current song
-				}
+			if (args.has("skipTo")) {
+				int element = args.getInt("skipTo", 1);
+				return CommandResponse.create(EmojiHelper.NEXT_TRACK + " Skipping to " + scheduler.skipQueue(element)
+						+ " " + EmojiHelper.NEXT_TRACK);
 			}
 
 			String response = EmojiHelper.NEXT_TRACK + " Skipping " + CommandUtil.trackInfo(scheduler.getNowPlaying())
@@ -55,11 +50,17 @@ public class SkipCommand extends MusicCommand {
 		}
 	}
 
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder().integer("skipTo", "skips to the specific number in the queue", true)
+				.range(1, Integer.MAX_VALUE).build();
+	}
+
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription(
 				"Skips the currently playing song and plays the next song in the queue or skips to the specific song number in the queue.")
-				.addArg("skipTo", "skips to the specific number in the queue", true).addExample("").addExample("3");
+				.addExample("").addExample("3");
 	}
 
 }
@@ -1,38 +1,24 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.List;
-
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Mono;
 
+/**
+ * Base of the commands that move the playing track, they all take a required
+ * "time" argument in their {@link #createArgumentSchema()}
+ */
 public abstract class TrackSeekingCommand extends MusicCommand {
 
-	public TrackSeekingCommand(String commandTrigger) {
-		super(commandTrigger);
-	}
-
-	public TrackSeekingCommand(String commandTrigger, List<String> aliases) {
-		super(commandTrigger, aliases);
-	}
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
-		if (args.length > 0) {
-			try {
-				int amountInSeconds = Integer.parseInt(args[0]);
-				this.doSeeking(scheduler, amountInSeconds);
-				return Mono.empty();
-			} catch (NumberFormatException e) {
-				// just ignore commands with improper number
-				return Mono.empty();
-			}
-		}
-		return getHelp(event);
+		this.doSeeking(scheduler, (int) args.getDuration("time").getSeconds());
+		return Mono.empty();
 	}
 
 	protected abstract void doSeeking(TrackScheduler scheduler, int amountInSeconds);
@@ -1,18 +1,20 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
 import com.github.mubot.command.menu.menus.Paginator;
 import com.github.mubot.command.menu.menus.Paginator.Builder;
+import com.github.mubot.command.registry.RegisterCommand;
 import com.github.mubot.command.util.CommandUtil;
 import com.github.mubot.command.util.EmojiHelper;
+import com.github.mubot.music.QueuedTrack;
 import com.github.mubot.music.TrackScheduler;
-import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
-import discord4j.core.event.domain.message.MessageCreateEvent;
+
 import discord4j.core.object.entity.channel.MessageChannel;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.core.spec.MessageCreateSpec;
@@ -20,16 +22,17 @@ import discord4j.rest.util.Permission;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "viewqueue", aliases = { "vq", "queue", "q" })
 public class ViewQueueCommand extends MusicPermissionCommand {
 
 	public ViewQueueCommand() {
-		super("viewqueue", Arrays.asList("vq", "queue", "q"), Permission.MANAGE_MESSAGES);
+		super(Permission.MANAGE_MESSAGES);
 	}
 
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
-		return viewQueue(scheduler, event.getMessage().getChannel());
+		return viewQueue(scheduler, context.getChannel());
 	}
 
 	/**
@@ -42,7 +45,7 @@ public class ViewQueueCommand extends MusicPermissionCommand {
 	 */
 	public Mono<CommandResponse> viewQueue(@NonNull TrackScheduler scheduler, Mono<MessageChannel> channelMono) {
 		// get list of songs currently in the queue
-		List<AudioTrack> queue = scheduler.getQueue();
+		List<QueuedTrack> queue = scheduler.getQueue();
 		Builder paginatorBuilder = new Paginator.Builder();
 		// if the queue is not empty
 		if (queue.size() > 0) {
@@ -50,10 +53,11 @@ public class ViewQueueCommand extends MusicPermissionCommand {
 			// print total number of songs
 			paginatorBuilder.withMessageContent("Currently playing: " + CommandUtil.trackInfo(scheduler.getNowPlaying())
 					+ "\n" + "There are currently " + EmojiHelper.numToEmoji(queue.size()) + " songs in the queue");
-			for (int i = 0; i < queue.size(); i++) {
-				AudioTrack track = queue.get(i);
+			int i = 0;
+			for (QueuedTrack track : queue) {
 				// print title and author of song on its own line
 				queueEntries[i] = EmojiHelper.numToEmoji(i + 1) + " - " + CommandUtil.trackInfo(track) + "\n";
+				i++;
 			}
 
 			Paginator paginator = paginatorBuilder.withEntries(queueEntries).build();
@@ -1,27 +1,25 @@
 package com.github.mubot.command.commands.music;
 
-import java.util.Arrays;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
+import com.github.mubot.command.args.ArgumentSchema;
+import com.github.mubot.command.args.Arguments;
 import com.github.mubot.command.help.CommandHelpSpec;
-import com.github.mubot.music.GuildMusicManager;
+import com.github.mubot.command.registry.RegisterCommand;
+import com.github.mubot.music.LoudnessNormalizer;
 import com.github.mubot.music.TrackScheduler;
 
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Mono;
 import reactor.util.annotation.NonNull;
 
+@RegisterCommand(trigger = "volume", aliases = { "vol" })
 public class VolumeCommand extends MusicCommand {
 
-	public VolumeCommand() {
-		super("volume", Arrays.asList("vol"));
-	}
-
 	@Override
-	protected Mono<CommandResponse> action(MessageCreateEvent event, String[] args, TrackScheduler scheduler,
+	protected Mono<CommandResponse> action(CommandContext context, Arguments args, TrackScheduler scheduler,
 			VoiceChannel channel) {
 		return volume(args, scheduler);
 	}
@@ -35,31 +33,34 @@ public class VolumeCommand extends MusicCommand {
 	 * @param scheduler the track scheduler
 	 * @return
 	 */
-	public Mono<CommandResponse> volume(@NonNull String[] args, @NonNull TrackScheduler scheduler) {
+	public Mono<CommandResponse> volume(@NonNull Arguments args, @NonNull TrackScheduler scheduler) {
 		StringBuilder sb = new StringBuilder();
-		if (args.length == 0) {
+		if (args.isEmpty()) {
 			return CommandResponse
 					.create(sb.append("Volume is currently " + scheduler.getPlayer().getVolume()).toString());
-		} else if (args[0].equalsIgnoreCase("reset")) {
-			scheduler.getPlayer().setVolume(GuildMusicManager.DEFAULT_VOLUME);
+		} else if (args.isKeyword("volume", "reset")) {
+			scheduler.resetVolume();
 			return CommandResponse.create(sb.append("Volume reset to default").toString());
 		}
 
-		if (Pattern.matches("^[1-9][0-9]?$|^100$", args[0])) {
-			int volume = Integer.parseInt(args[0]);
-			sb.append("Changing volume from ").append(scheduler.getPlayer().getVolume()).append(" to ").append(volume);
-			scheduler.getPlayer().setVolume(volume);
-			return CommandResponse.create(sb.toString());
-		} else
-			return CommandResponse.create("Invalid volume amount");
+		int volume = args.getInt("volume", LoudnessNormalizer.getDefaultVolume());
+		sb.append("Changing volume from ").append(scheduler.getPlayer().getVolume()).append(" to ").append(volume);
+		scheduler.setVolume(volume);
+		return CommandResponse.create(sb.toString());
+	}
+
+	@Override
+	public ArgumentSchema createArgumentSchema() {
+		return ArgumentSchema.builder()
+				.integer("volume", "Volume to set the bot to from 0 to 100 or \"reset\" to reset the volume to default.",
+						true)
+				.range(0, 100).keywords("reset").build();
 	}
 
 	@Override
 	public Consumer<? super CommandHelpSpec> createHelpSpec() {
 		return spec -> spec.setDescription(
 				"Changes the volume to the given amount, or to the default amount if reset is given, or no argument to get the current volume.")
-				.addArg("volume||reset",
-						"Volume to set the bot to from 0 to 100 or \"reset\" to reset the volume to default.", true)
 				.addExample("50").addExample("reset");
 	}
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.github.mubot.command.exceptions;
+
+import com.github.mubot.command.args.Argument;
+
+public class ArgumentException extends CommandException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Argument argument;
+	private final boolean missing;
+
+	/**
+	 * @param message  the user friendly reason the argument was rejected
+	 * @param argument the argument that was rejected
+	 * @param missing  true if the argument is required but wasn't given
+	 */
+	public ArgumentException(String message, Argument argument, boolean missing) {
+		super(message);
+		this.argument = argument;
+		this.missing = missing;
+	}
+
+	public Argument getArgument() {
+		return argument;
+	}
+
+	/**
+	 * @return true if a required argument wasn't given at all, false if it was
+	 *         given but is invalid
+	 */
+	public boolean isMissing() {
+		return missing;
+	}
+
+}
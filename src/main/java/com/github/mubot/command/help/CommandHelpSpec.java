@@ -1,11 +1,14 @@
 package com.github.mubot.command.help;
 
-import static com.github.mubot.command.util.CommandUtil.getEscapedGuildPrefixFromId;
-import static com.github.mubot.command.util.CommandUtil.getRawGuildPrefixFromId;
+import static com.github.mubot.command.util.CommandUtil.escapeSpecialRegexChars;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+
+import com.github.mubot.command.args.ArgumentSchema;
+
 import discord4j.core.spec.EmbedCreateSpec;
 import discord4j.rest.util.Color;
 
@@ -15,24 +18,28 @@ public class CommandHelpSpec {
 	private List<String> aliases;
 	private String description;
 	private List<String> examples;
-	private List<CommandArgument> arguments;
-	private long guildId;
-
-	public CommandHelpSpec(String commandName, List<String> aliases, long guildId) {
+	private ArgumentSchema arguments;
+	private String rawPrefix;
+	private String escapedPrefix;
+
+	/**
+	 * @param commandName the primary trigger of the command
+	 * @param aliases     the other triggers of the command
+	 * @param prefix      the raw prefix of the guild the help is shown in
+	 * @param arguments   the arguments of the command, the usage and the list of
+	 *                    arguments are generated from them
+	 */
+	public CommandHelpSpec(String commandName, List<String> aliases, String prefix, ArgumentSchema arguments) {
 		this.commandName = commandName;
 		this.aliases = aliases;
-		this.guildId = guildId;
-		arguments = new ArrayList<>();
+		this.rawPrefix = prefix;
+		this.escapedPrefix = escapeSpecialRegexChars(prefix);
+		this.arguments = arguments;
 		examples = new ArrayList<>();
 	}
 
-	public CommandHelpSpec addArg(String name, String desc, boolean optional) {
-		arguments.add(new CommandArgument(name, desc, optional));
-		return this;
-	}
-
 	public CommandHelpSpec addExample(String example) {
-		examples.add(getEscapedGuildPrefixFromId(guildId) + commandName + " " + example);
+		examples.add(escapedPrefix + commandName + " " + example);
 		return this;
 	}
 
@@ -46,45 +53,55 @@ public class CommandHelpSpec {
 		return this;
 	}
 
+	/**
+	 * Renders the text of the embed once, the returned consumer only copies the
+	 * rendered text into the embed so it can be cached and reused
+	 * 
+	 * @return the help embed
+	 */
 	public Consumer<? super EmbedCreateSpec> build() {
+		final String title = escapedPrefix + commandName;
+		final String renderedAliases = aliases != null && !aliases.isEmpty() ? getAliases() : null;
+		final String usage = getUsage();
+		final String renderedDescription = description != null && !description.isBlank() ? description : null;
+		final String renderedArguments = arguments != null ? getArguments() : "";
+		final String renderedExamples = examples != null ? getExamples() : "";
+
 		return spec -> {
 			spec.setColor(DEFAULT_HELP_EMBED_COLOR);
 
-			spec.setTitle(getEscapedGuildPrefixFromId(guildId) + commandName);
-			if (aliases != null && !this.aliases.isEmpty()) {
-				spec.addField("Aliases", this.getAliases(), false);
+			spec.setTitle(title);
+			if (renderedAliases != null) {
+				spec.addField("Aliases", renderedAliases, false);
 			}
 
-			spec.addField("Usage", getUsage(), false);
+			spec.addField("Usage", usage, false);
 
-			if (description != null && !this.description.isBlank()) {
-				spec.setDescription(description);
+			if (renderedDescription != null) {
+				spec.setDescription(renderedDescription);
 			}
 
-			if (this.arguments != null && !this.getArguments().isEmpty()) {
-				spec.addField("Arguments", this.getArguments(), false);
+			if (!renderedArguments.isEmpty()) {
+				spec.addField("Arguments", renderedArguments, false);
 			}
 
-			if (this.examples != null && !this.getExamples().isEmpty()) {
-				spec.addField("Examples", this.getExamples(), false);
+			if (!renderedExamples.isEmpty()) {
+				spec.addField("Examples", renderedExamples, false);
 			}
 		};
 	}
 
 	private String getUsage() {
 		if (this.arguments.isEmpty()) {
-			return String.format("`%s%s`", getRawGuildPrefixFromId(guildId), this.commandName);
+			return String.format("`%s%s`", rawPrefix, this.commandName);
 		}
 
-		String usage = arguments.stream().map(arg -> String.format(arg.isOptional() ? "[<%s>]" : "<%s>", arg.getName()))
-				.collect(Collectors.joining(" "));
-		return String.format("`%s%s %s`", getRawGuildPrefixFromId(guildId), this.commandName, usage);
+		return String.format("`%s%s %s`", rawPrefix, this.commandName, arguments.getUsage());
 	}
 
 	private String getArguments() {
-		return arguments.stream().filter(arg -> arg != null && !arg.getName().isBlank()).map(arg -> String
-				.format("%n**%s** %s - %s", arg.getName(), arg.isOptional() ? "[optional]" : "", arg.getDescription()))
-				.collect(Collectors.joining());
+		return arguments.getArguments().stream().map(arg -> String.format("%n**%s** %s - %s", arg.getName(),
+				arg.isOptional() ? "[optional]" : "", arg.getDescription())).collect(Collectors.joining());
 	}
 
 	private String getExamples() {
@@ -92,7 +109,7 @@ public class CommandHelpSpec {
 	}
 
 	private String getAliases() {
-		return aliases.stream().map(alias -> String.format("`%s%s`", getRawGuildPrefixFromId(guildId), alias))
+		return aliases.stream().map(alias -> String.format("`%s%s`", rawPrefix, alias))
 				.collect(Collectors.joining(", "));
 	}
 }
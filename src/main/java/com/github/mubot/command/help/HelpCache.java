@@ -0,0 +1,66 @@
+package com.github.mubot.command.help;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import discord4j.core.spec.EmbedCreateSpec;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Caches the rendered help embeds of every command and the list of commands.
+ * The help only depends on the prefix it is shown with, so entries are kept
+ * per prefix instead of per guild and guilds sharing a prefix share the
+ * rendered help. Entries of a prefix are dropped once no guild uses that prefix
+ * anymore.
+ */
+public final class HelpCache {
+
+	private static final Logger LOGGER = Loggers.getLogger(HelpCache.class);
+
+	// prefix -> primary trigger -> rendered help embed of that command
+	private static final Map<String, Map<String, Consumer<? super EmbedCreateSpec>>> COMMAND_HELP =
+			new ConcurrentHashMap<>();
+	// prefix -> rendered list of commands
+	private static final Map<String, Consumer<? super EmbedCreateSpec>> HELP_INDEX = new ConcurrentHashMap<>();
+
+	private HelpCache() {
+	}
+
+	/**
+	 * @param prefix  the raw prefix the help is shown with
+	 * @param trigger the primary trigger of the command
+	 * @param render  renders the help embed for a prefix if it isn't cached yet
+	 * @return the help embed of the command
+	 */
+	public static Consumer<? super EmbedCreateSpec> getCommandHelp(String prefix, String trigger,
+			Function<String, Consumer<? super EmbedCreateSpec>> render) {
+		return COMMAND_HELP.computeIfAbsent(prefix, ignored -> new ConcurrentHashMap<>()).computeIfAbsent(trigger,
+				ignored -> render.apply(prefix));
+	}
+
+	/**
+	 * @param prefix the raw prefix the list is shown with
+	 * @param render renders the list of commands for a prefix if it isn't cached
+	 *               yet
+	 * @return the embed listing every command
+	 */
+	public static Consumer<? super EmbedCreateSpec> getHelpIndex(String prefix,
+			Function<String, Consumer<? super EmbedCreateSpec>> render) {
+		return HELP_INDEX.computeIfAbsent(prefix, render);
+	}
+
+	/**
+	 * Drops the rendered help of a prefix, called when the last guild using the
+	 * prefix changed it
+	 *
+	 * @param prefix the raw prefix
+	 */
+	public static void invalidate(String prefix) {
+		if (COMMAND_HELP.remove(prefix) != null | HELP_INDEX.remove(prefix) != null)
+			LOGGER.info("Dropped cached help for prefix {}", prefix);
+	}
+
+}
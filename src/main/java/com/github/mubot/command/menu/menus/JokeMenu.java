@@ -23,15 +23,12 @@ public class JokeMenu extends SingleChoiceActionMenu {
 
 	private static final Logger LOGGER = Loggers.getLogger(JokeMenu.class);
 	private List<String> categories;
-	private boolean unsafe = false;
 	private String selectedCategory;
 
-	public JokeMenu(boolean unsafe) {
-		this.unsafe = unsafe;
+	public JokeMenu() {
 	}
 
-	public JokeMenu(boolean unsafe, String category) {
-		this.unsafe = unsafe;
+	public JokeMenu(String category) {
 		this.selectedCategory = category;
 	}
 
@@ -44,9 +41,8 @@ public class JokeMenu extends SingleChoiceActionMenu {
 		return JokeClient.getJokeService().getCategories().map(categories -> {
 			StringBuilder sb = new StringBuilder();
 			this.categories = categories;
-			// there are no safe dark jokes, so remove it if safe mode is on
-			if (!unsafe)
-				categories.remove("Dark");
+			// there are no safe dark jokes
+			categories.remove("Dark");
 			// spooky only has 1 joke, so just remove it
 			categories.remove("Spooky");
 			for (int i = 0; i < categories.size(); i++) {
@@ -76,8 +72,8 @@ public class JokeMenu extends SingleChoiceActionMenu {
 
 	private Mono<Void> loadJoke(String category) {
 		// no racist or sexist jokes allowed
-		JokeRequest request = new JokeRequest(new JokeRequestOptions().safeMode(!unsafe).addBlacklistFlag(BlacklistFlag.RACIST)
-				.addBlacklistFlag(BlacklistFlag.SEXIST).addCategory(category));
+		JokeRequest request = new JokeRequest(new JokeRequestOptions().safeMode(true)
+				.addBlacklistFlag(BlacklistFlag.RACIST).addBlacklistFlag(BlacklistFlag.SEXIST).addCategory(category));
 		return JokeClient.getJokeService().getJoke(request).flatMap(jokeLines -> {
 			if (jokeLines.size() == 1)
 				return message.edit(spec -> spec.setContent(jokeLines.get(0)).setEmbed(null)).then();
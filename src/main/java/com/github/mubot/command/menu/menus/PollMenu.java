@@ -2,7 +2,6 @@ package com.github.mubot.command.menu.menus;
 
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -23,7 +22,7 @@ public final class PollMenu extends Menu {
 	private static final Logger LOGGER = Loggers.getLogger(PollMenu.class);
 	public static final Color DEFAULT_POLL_EMBED_COLOR = Color.of(23, 53, 77);
 	private final int MAX_ANSWERS = 11;
-	private String[] args;
+	private List<? extends CharSequence> args;
 	private Member member;
 	private String authorName;
 	private String authorIcon;
@@ -31,7 +30,7 @@ public final class PollMenu extends Menu {
 	private ArrayList<String> answers = new ArrayList<String>();
 	private String description;
 
-	public PollMenu(String[] args, Member member) {
+	public PollMenu(List<? extends CharSequence> args, Member member) {
 		this.args = args;
 		this.member = member;
 		createPoll();
@@ -61,13 +60,14 @@ public final class PollMenu extends Menu {
 		setDescription();
 	}
 
-	private void setAnswers(String[] args) {
-		if (args == null || args.length < 3) {
+	private void setAnswers(List<? extends CharSequence> args) {
+		if (args == null || args.size() < 3) {
 			LOGGER.info("Not enough arguments for poll command");
 			return;
 		}
 		// only allow of 1 question and 10 answers as arguments
-		List<String> arguments = Arrays.stream(args).limit(MAX_ANSWERS).collect(Collectors.toList());
+		List<String> arguments = args.stream().limit(MAX_ANSWERS).map(CharSequence::toString)
+				.collect(Collectors.toList());
 		title = arguments.get(0);
 		for (int i = 1; i < arguments.size(); i++) {
 			answers.add(arguments.get(i));
@@ -9,6 +9,7 @@ import com.github.mubot.command.menu.SingleChoiceActionMenu;
 import com.github.mubot.command.util.CommandUtil;
 import com.github.mubot.command.util.EmojiHelper;
 import com.github.mubot.music.GuildMusicManager;
+import com.github.mubot.music.TrackLoadCache;
 import com.github.mubot.music.TrackScheduler;
 import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
@@ -95,7 +96,8 @@ public class SearchMenu extends SingleChoiceActionMenu implements AudioLoadResul
 	@Override
 	public void setMessage(Message message) {
 		this.message = message;
-		GuildMusicManager.getPlayerManager().loadItemOrdered(message.getGuild(), SEARCH_PREFIX + identifier, this);
+		TrackLoadCache.loadItemOrdered(GuildMusicManager.getPlayerManager(),
+				message.getGuildId().orElse(message.getChannelId()), SEARCH_PREFIX + identifier, this);
 	}
 
 	@Override
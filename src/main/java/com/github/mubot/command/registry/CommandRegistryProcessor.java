@@ -0,0 +1,180 @@
+package com.github.mubot.command.registry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the immutable trigger to command table used by
+ * {@link com.github.mubot.command.CommandsHelper} from every class annotated
+ * with {@link RegisterCommand}. The build fails if two commands share a
+ * trigger, if a trigger could never be typed, or if a concrete command was not
+ * registered.
+ */
+@SupportedAnnotationTypes("com.github.mubot.command.registry.RegisterCommand")
+public class CommandRegistryProcessor extends AbstractProcessor {
+
+	private static final String COMMAND_CLASS = "com.github.mubot.command.Command";
+	private static final String REGISTRY_PACKAGE = "com.github.mubot.command";
+	private static final String REGISTRY_CLASS = "CommandRegistry";
+
+	// trigger -> class that registered the trigger, sorted so the output is stable
+	private final Map<String, TypeElement> triggers = new TreeMap<>();
+	private final List<TypeElement> commands = new ArrayList<>();
+	private boolean generated = false;
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (generated || roundEnv.processingOver())
+			return false;
+
+		TypeElement commandType = processingEnv.getElementUtils().getTypeElement(COMMAND_CLASS);
+		if (commandType == null)
+			return false;
+
+		for (Element element : roundEnv.getElementsAnnotatedWith(RegisterCommand.class)) {
+			registerCommand(element, commandType.asType());
+		}
+
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			checkRegistered(type, commandType.asType());
+		}
+
+		if (!commands.isEmpty()) {
+			writeRegistry();
+			generated = true;
+		}
+		return true;
+	}
+
+	private void registerCommand(Element element, TypeMirror commandType) {
+		if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)
+				|| !element.getModifiers().contains(Modifier.PUBLIC)) {
+			error(element, "@RegisterCommand can only be used on public concrete classes");
+			return;
+		}
+
+		TypeElement type = (TypeElement) element;
+		if (!processingEnv.getTypeUtils().isAssignable(type.asType(), commandType)) {
+			error(element, "@RegisterCommand classes must extend " + COMMAND_CLASS);
+			return;
+		}
+
+		if (!hasPublicNoArgConstructor(type)) {
+			error(element, "@RegisterCommand classes need a public no-argument constructor");
+			return;
+		}
+
+		RegisterCommand registration = type.getAnnotation(RegisterCommand.class);
+		addTrigger(type, registration.trigger());
+		for (String alias : registration.aliases()) {
+			addTrigger(type, alias);
+		}
+		commands.add(type);
+	}
+
+	private void addTrigger(TypeElement type, String trigger) {
+		if (trigger.isBlank() || !trigger.equals(trigger.strip()) || trigger.indexOf(' ') >= 0) {
+			error(type, "Trigger \"" + trigger + "\" can't be empty or contain spaces");
+			return;
+		}
+
+		// triggers are looked up lower-cased, so any upper-case trigger could never
+		// be used
+		if (!trigger.equals(trigger.toLowerCase(Locale.ROOT))) {
+			error(type, "Trigger \"" + trigger + "\" must be lower-case");
+			return;
+		}
+
+		TypeElement existing = triggers.putIfAbsent(trigger, type);
+		if (existing != null) {
+			error(type, "Trigger \"" + trigger + "\" is already used by " + existing.getQualifiedName());
+		}
+	}
+
+	/**
+	 * Makes sure no concrete command is silently left out of the table, this used
+	 * to be guaranteed by scanning the class path
+	 */
+	private void checkRegistered(TypeElement type, TypeMirror commandType) {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT))
+			return;
+		if (type.getQualifiedName().contentEquals(COMMAND_CLASS))
+			return;
+		if (processingEnv.getTypeUtils().isAssignable(type.asType(), commandType)
+				&& type.getAnnotation(RegisterCommand.class) == null) {
+			error(type, "Commands must be annotated with @RegisterCommand");
+		}
+	}
+
+	private boolean hasPublicNoArgConstructor(TypeElement type) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+		}
+		return false;
+	}
+
+	private void writeRegistry() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package ").append(REGISTRY_PACKAGE).append(";\n\n");
+		sb.append("import java.util.Map;\n\n");
+		sb.append("import javax.annotation.processing.Generated;\n\n");
+		sb.append("@Generated(\"").append(CommandRegistryProcessor.class.getName()).append("\")\n");
+		sb.append("final class ").append(REGISTRY_CLASS).append(" {\n\n");
+		sb.append("\tprivate ").append(REGISTRY_CLASS).append("() {\n\t}\n\n");
+		sb.append("\tstatic Map<String, Command> create() {\n");
+
+		List<TypeElement> sorted = new ArrayList<>(commands);
+		sorted.sort((a, b) -> a.getQualifiedName().toString().compareTo(b.getQualifiedName().toString()));
+		for (int i = 0; i < sorted.size(); i++) {
+			sb.append("\t\tfinal Command command").append(i).append(" = new ")
+					.append(sorted.get(i).getQualifiedName()).append("();\n");
+		}
+
+		sb.append("\n\t\treturn Map.ofEntries(");
+		int entry = 0;
+		for (Map.Entry<String, TypeElement> trigger : triggers.entrySet()) {
+			sb.append(entry++ == 0 ? "" : ",").append("\n\t\t\t\tMap.entry(\"").append(trigger.getKey())
+					.append("\", command").append(sorted.indexOf(trigger.getValue())).append(")");
+		}
+		sb.append(");\n\t}\n\n}\n");
+
+		try (Writer writer = processingEnv.getFiler()
+				.createSourceFile(REGISTRY_PACKAGE + "." + REGISTRY_CLASS, commands.toArray(new Element[0]))
+				.openWriter()) {
+			writer.write(sb.toString());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not write command registry: " + e.getMessage());
+		}
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.github.mubot.command.registry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers a {@link com.github.mubot.command.Command} with the bot. Every
+ * class with this annotation is added to the generated command table at
+ * compile time by {@link CommandRegistryProcessor}, using the trigger and
+ * aliases given here.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface RegisterCommand {
+
+	/**
+	 * @return the primary trigger of the command, i.e. "play" for "!play"
+	 */
+	String trigger();
+
+	/**
+	 * @return the other triggers of the command, i.e. "p" for "!p"
+	 */
+	String[] aliases() default {};
+
+}
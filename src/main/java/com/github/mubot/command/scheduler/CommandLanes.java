@@ -0,0 +1,207 @@
+package com.github.mubot.command.scheduler;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Runs the commands of a guild one message at a time, in the order the messages
+ * were received. Every guild has its own lane, so guilds still run in parallel
+ * while the commands of one message, e.g. "!join !play x !volume 50", always
+ * run in the order they were written. A message that takes longer than
+ * COMMAND_LANE_TIMEOUT_MS is cancelled so it can't hold up its guild. A guild
+ * has at most COMMAND_LANE_MAX_DEPTH messages running or waiting, later
+ * messages are rejected right away, so a spamming guild can't take up every
+ * message the bot handles at once while its messages wait.
+ */
+public final class CommandLanes {
+
+	private static final Logger LOGGER = Loggers.getLogger(CommandLanes.class);
+
+	private static final String WAIT_SECONDS = "mubot_command_lane_wait_seconds";
+
+	private static CommandLanes instance;
+
+	private final Duration timeout = Duration.ofMillis(Config.getInt("COMMAND_LANE_TIMEOUT_MS", 30000));
+	private final int maxDepth = Math.max(1, Config.getInt("COMMAND_LANE_MAX_DEPTH", 5));
+
+	// messages of each guild, the head of a lane is the one running, guarded by
+	// this
+	private final Map<Long, ArrayDeque<LaneEntry>> lanes = new HashMap<>();
+	private int queued = 0;
+
+	// how long messages waited for the earlier messages of their guild
+	private final LatencyHistogram waits = new LatencyHistogram();
+
+	private CommandLanes() {
+		MetricsRegistry.register("mubot_command_lanes", "gauge", "Number of guilds with messages running or waiting",
+				this::getLaneCount);
+		MetricsRegistry.register("mubot_command_lane_queued", "gauge",
+				"Number of messages waiting for an earlier message of their guild", this::getQueued);
+		MetricsRegistry.register("mubot_command_lane_depth_max", "gauge",
+				"Number of messages in the deepest guild lane, including the running one", this::getMaxDepth);
+		MetricsRegistry.register(this::collect);
+	}
+
+	public static synchronized CommandLanes getInstance() {
+		if (instance == null)
+			instance = new CommandLanes();
+		return instance;
+	}
+
+	/**
+	 * Runs the commands of a message after every earlier message of the lane has
+	 * finished
+	 *
+	 * @param laneId   the guild id, or the channel id in private messages
+	 * @param commands the execution of the commands of the message
+	 * @param rejected runs instead of the commands if the lane is full
+	 * @return completes when the commands have finished
+	 */
+	public Mono<Void> submit(long laneId, Mono<Void> commands, Mono<Void> rejected) {
+		return Mono.create(sink -> enqueue(new LaneEntry(laneId, commands, sink), rejected));
+	}
+
+	private void enqueue(LaneEntry entry, Mono<Void> rejected) {
+		boolean start = false;
+		boolean full = false;
+		synchronized (this) {
+			ArrayDeque<LaneEntry> lane = lanes.get(entry.laneId);
+			if (lane == null) {
+				lane = new ArrayDeque<>(2);
+				lanes.put(entry.laneId, lane);
+			}
+			if (lane.size() >= maxDepth) {
+				full = true;
+			} else {
+				if (!lane.isEmpty())
+					queued++;
+				lane.add(entry);
+				start = lane.size() == 1;
+			}
+		}
+
+		if (full) {
+			LOGGER.info("Lane {} has {} messages, rejecting message", entry.laneId, maxDepth);
+			entry.start(rejected);
+		} else if (start) {
+			run(entry);
+		}
+	}
+
+	private void run(LaneEntry entry) {
+		waits.record(System.nanoTime() - entry.enqueued);
+		entry.start(entry.commands.timeout(timeout).onErrorResume(TimeoutException.class, error -> {
+			LOGGER.warn("Commands of lane {} took longer than {}ms, cancelled", entry.laneId, timeout.toMillis());
+			return Mono.empty();
+		}).doFinally(signal -> release(entry.laneId)));
+	}
+
+	/**
+	 * Called when a message finishes, starts the next message of the lane
+	 */
+	private void release(long laneId) {
+		LaneEntry next = null;
+		synchronized (this) {
+			final ArrayDeque<LaneEntry> lane = lanes.get(laneId);
+			lane.poll();
+			while (!lane.isEmpty()) {
+				queued--;
+				if (!lane.peek().isCancelled()) {
+					next = lane.peek();
+					break;
+				}
+				lane.poll();
+			}
+			if (lane.isEmpty())
+				lanes.remove(laneId);
+		}
+
+		if (next != null) {
+			// start on another thread so that messages finishing synchronously don't
+			// recurse through the whole lane
+			final LaneEntry toRun = next;
+			Schedulers.parallel().schedule(() -> run(toRun));
+		}
+	}
+
+	private void collect(PrometheusWriter writer) {
+		writer.header(WAIT_SECONDS, "histogram", "Time messages waited for earlier messages of their guild");
+		waits.write(writer, WAIT_SECONDS);
+	}
+
+	/**
+	 * @return the number of lanes with messages running or waiting
+	 */
+	public synchronized int getLaneCount() {
+		return lanes.size();
+	}
+
+	/**
+	 * @return the number of messages waiting for an earlier message of their lane
+	 */
+	public synchronized int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return the number of messages in the deepest lane, including the running
+	 *         one
+	 */
+	public synchronized int getMaxDepth() {
+		int max = 0;
+		for (ArrayDeque<LaneEntry> lane : lanes.values()) {
+			max = Math.max(max, lane.size());
+		}
+		return max;
+	}
+
+	private static final class LaneEntry {
+		private final long laneId;
+		private final Mono<Void> commands;
+		private final MonoSink<Void> sink;
+		private final long enqueued = System.nanoTime();
+
+		private volatile boolean cancelled = false;
+		private volatile Disposable running;
+
+		private LaneEntry(long laneId, Mono<Void> commands, MonoSink<Void> sink) {
+			this.laneId = laneId;
+			this.commands = commands;
+			this.sink = sink;
+			sink.onCancel(this::cancel);
+		}
+
+		private void start(Mono<Void> execution) {
+			running = execution.subscribe(null, sink::error, sink::success);
+			if (cancelled)
+				running.dispose();
+		}
+
+		private void cancel() {
+			cancelled = true;
+			Disposable disposable = running;
+			if (disposable != null)
+				disposable.dispose();
+		}
+
+		private boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+}
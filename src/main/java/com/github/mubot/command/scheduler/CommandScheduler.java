@@ -0,0 +1,313 @@
+package com.github.mubot.command.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mubot.command.exceptions.CommandException;
+import com.github.mubot.command.util.EmojiHelper;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.User;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Schedules the execution of commands so that one busy guild can't delay the
+ * commands of every other guild. Commands are rate limited with a token bucket
+ * per guild and per user, and at most a fixed number of commands run at the
+ * same time. Commands that have to wait are queued per guild and the guilds are
+ * served round-robin.
+ */
+public final class CommandScheduler {
+
+	private static final Logger LOGGER = Loggers.getLogger(CommandScheduler.class);
+
+	private static CommandScheduler instance;
+
+	// the cooldown users are told when their command couldn't be queued
+	private static final long OVERLOADED_COOLDOWN = TimeUnit.SECONDS.toNanos(5);
+
+	private final int maxInFlight = Config.getInt("COMMAND_MAX_IN_FLIGHT", 16);
+	private final int maxQueued = Config.getInt("COMMAND_MAX_QUEUED", 500);
+	private final int maxQueuedPerGuild = Config.getInt("COMMAND_MAX_QUEUED_PER_GUILD", 20);
+	private final double guildBurst = Config.getDouble("COMMAND_GUILD_BURST", 10);
+	private final double guildRate = Config.getDouble("COMMAND_GUILD_RATE", 2);
+	private final double userBurst = Config.getDouble("COMMAND_USER_BURST", 5);
+	private final double userRate = Config.getDouble("COMMAND_USER_RATE", 1);
+
+	private final Map<Long, TokenBucket> guildBuckets = new ConcurrentHashMap<>();
+	private final Map<Long, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+
+	// queued commands of each guild, guarded by this
+	private final Map<Long, ArrayDeque<PendingCommand>> lanes = new HashMap<>();
+	// guilds with queued commands in the order they will be served, guarded by
+	// this
+	private final ArrayDeque<Long> ring = new ArrayDeque<>();
+	private int inFlight = 0;
+	private int queued = 0;
+
+	private final AtomicLong rejectedRateLimited = new AtomicLong();
+	private final AtomicLong rejectedOverloaded = new AtomicLong();
+
+	private CommandScheduler() {
+		// forget buckets that have refilled so the maps don't grow with every user
+		// that ever used a command
+		Schedulers.parallel().schedulePeriodically(this::evictIdleBuckets, 1, 1, TimeUnit.MINUTES);
+
+		MetricsRegistry.register("mubot_command_queued", "gauge", "Number of commands waiting for capacity",
+				this::getQueued);
+		MetricsRegistry.register("mubot_command_in_flight", "gauge", "Number of commands currently running",
+				this::getInFlight);
+		MetricsRegistry.register("mubot_command_rejected_rate_limited_total", "counter",
+				"Number of commands rejected because a guild or user was over its rate limit",
+				this::getRejectedRateLimited);
+		MetricsRegistry.register("mubot_command_rejected_overloaded_total", "counter",
+				"Number of commands rejected because the queue was full", this::getRejectedOverloaded);
+	}
+
+	public static synchronized CommandScheduler getInstance() {
+		if (instance == null)
+			instance = new CommandScheduler();
+		return instance;
+	}
+
+	/**
+	 * Schedules the command to run once the guild and user are within their rate
+	 * limits and there is capacity to run it
+	 *
+	 * @param event   the event of the message the command was used in
+	 * @param command the execution of the command
+	 * @return completes when the command has finished, or errors with a
+	 *         {@link CommandException} telling the user to slow down if the
+	 *         command was rejected
+	 */
+	public Mono<Void> schedule(MessageCreateEvent event, Mono<Void> command) {
+		// private messages have no guild, each channel gets a bucket of its own
+		// instead of all of them sharing one
+		final long guildId = event.getGuildId().orElse(event.getMessage().getChannelId()).asLong();
+		return schedule(guildId, userId(event), command);
+	}
+
+	/**
+	 * Rejects a message that couldn't even be queued, e.g. because its guild
+	 * already has too many messages waiting, the same way as a command rejected
+	 * for a full queue
+	 *
+	 * @param event the event of the rejected message
+	 * @return errors with a {@link CommandException} telling the user to slow
+	 *         down, or completes if they were already told during this cooldown
+	 */
+	public Mono<Void> reject(MessageCreateEvent event) {
+		return reject(userId(event));
+	}
+
+	public Mono<Void> reject(long userId) {
+		return Mono.defer(() -> {
+			final long now = System.nanoTime();
+			final TokenBucket userBucket = userBuckets.computeIfAbsent(userId,
+					id -> new TokenBucket(userBurst, userRate, now));
+			rejectedOverloaded.incrementAndGet();
+			return shed(userBucket, now, OVERLOADED_COOLDOWN);
+		});
+	}
+
+	private static long userId(MessageCreateEvent event) {
+		return event.getMessage().getAuthor().map(User::getId).orElse(Snowflake.of(0)).asLong();
+	}
+
+	public Mono<Void> schedule(long guildId, long userId, Mono<Void> command) {
+		return Mono.defer(() -> {
+			final long now = System.nanoTime();
+			final TokenBucket userBucket = userBuckets.computeIfAbsent(userId,
+					id -> new TokenBucket(userBurst, userRate, now));
+			final TokenBucket guildBucket = guildBuckets.computeIfAbsent(guildId,
+					id -> new TokenBucket(guildBurst, guildRate, now));
+
+			if (!userBucket.tryConsume(now)) {
+				rejectedRateLimited.incrementAndGet();
+				return shed(userBucket, now, userBucket.nanosUntilAvailable(now));
+			}
+			if (!guildBucket.tryConsume(now)) {
+				// the command didn't run, so it doesn't count against the user
+				userBucket.refund(now);
+				rejectedRateLimited.incrementAndGet();
+				return shed(userBucket, now, guildBucket.nanosUntilAvailable(now));
+			}
+
+			return Mono.<Void>create(sink -> enqueue(new PendingCommand(guildId, userBucket, command, sink)));
+		});
+	}
+
+	/**
+	 * Rejects a command. The user is told how long to wait only the first time
+	 * during a cooldown, any other commands during that cooldown are dropped
+	 * silently.
+	 */
+	private Mono<Void> shed(TokenBucket userBucket, long now, long cooldown) {
+		if (!userBucket.shouldNotify(now, cooldown))
+			return Mono.empty();
+
+		long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(cooldown + TimeUnit.SECONDS.toNanos(1) - 1));
+		return Mono.error(new CommandException("Command rejected, cooldown of " + seconds + "s",
+				EmojiHelper.STOP_SIGN + " Slow down! You can use another command in " + seconds
+						+ (seconds == 1 ? " second." : " seconds.")));
+	}
+
+	private void enqueue(PendingCommand pending) {
+		boolean start = false;
+		boolean overloaded = false;
+		synchronized (this) {
+			if (inFlight < maxInFlight && ring.isEmpty()) {
+				inFlight++;
+				start = true;
+			} else {
+				ArrayDeque<PendingCommand> lane = lanes.get(pending.guildId);
+				if (queued >= maxQueued || (lane != null && lane.size() >= maxQueuedPerGuild)) {
+					overloaded = true;
+				} else {
+					if (lane == null) {
+						lane = new ArrayDeque<>();
+						lanes.put(pending.guildId, lane);
+						ring.add(pending.guildId);
+					}
+					lane.add(pending);
+					queued++;
+				}
+			}
+		}
+
+		if (start) {
+			run(pending);
+		} else if (overloaded) {
+			rejectedOverloaded.incrementAndGet();
+			LOGGER.info("Command queue full, rejecting command for guild {}", pending.guildId);
+			final long now = System.nanoTime();
+			shed(pending.userBucket, now, OVERLOADED_COOLDOWN).subscribe(null, pending.sink::error,
+					pending.sink::success);
+		}
+	}
+
+	private void run(PendingCommand pending) {
+		pending.start(pending.command.doFinally(signal -> release()));
+	}
+
+	/**
+	 * Called when a command finishes, starts the next queued command of the next
+	 * guild in line
+	 */
+	private void release() {
+		PendingCommand next;
+		synchronized (this) {
+			inFlight--;
+			next = pollNext();
+			if (next != null)
+				inFlight++;
+		}
+
+		if (next != null) {
+			// start on another thread so that commands finishing synchronously don't
+			// recurse through the whole queue
+			final PendingCommand toRun = next;
+			Schedulers.parallel().schedule(() -> run(toRun));
+		}
+	}
+
+	private PendingCommand pollNext() {
+		while (!ring.isEmpty()) {
+			Long guildId = ring.poll();
+			ArrayDeque<PendingCommand> lane = lanes.get(guildId);
+			PendingCommand pending = lane.poll();
+			queued--;
+			if (lane.isEmpty())
+				lanes.remove(guildId);
+			else
+				ring.add(guildId);
+
+			if (!pending.isCancelled())
+				return pending;
+		}
+		return null;
+	}
+
+	private void evictIdleBuckets() {
+		final long now = System.nanoTime();
+		userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+		guildBuckets.values().removeIf(bucket -> bucket.isFull(now));
+	}
+
+	/**
+	 * @return the number of commands waiting for capacity
+	 */
+	public synchronized int getQueued() {
+		return queued;
+	}
+
+	/**
+	 * @return the number of commands currently running
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * @return the number of commands rejected because a guild or user was over
+	 *         its rate limit
+	 */
+	public long getRejectedRateLimited() {
+		return rejectedRateLimited.get();
+	}
+
+	/**
+	 * @return the number of commands rejected because the queue was full
+	 */
+	public long getRejectedOverloaded() {
+		return rejectedOverloaded.get();
+	}
+
+	private static final class PendingCommand {
+		private final long guildId;
+		private final TokenBucket userBucket;
+		private final Mono<Void> command;
+		private final MonoSink<Void> sink;
+
+		private volatile boolean cancelled = false;
+		private volatile Disposable running;
+
+		private PendingCommand(long guildId, TokenBucket userBucket, Mono<Void> command, MonoSink<Void> sink) {
+			this.guildId = guildId;
+			this.userBucket = userBucket;
+			this.command = command;
+			this.sink = sink;
+			sink.onCancel(this::cancel);
+		}
+
+		private void start(Mono<Void> execution) {
+			running = execution.subscribe(null, sink::error, sink::success);
+			if (cancelled)
+				running.dispose();
+		}
+
+		private void cancel() {
+			cancelled = true;
+			Disposable disposable = running;
+			if (disposable != null)
+				disposable.dispose();
+		}
+
+		private boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+}
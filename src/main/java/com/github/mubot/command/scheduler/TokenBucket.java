@@ -0,0 +1,102 @@
+package com.github.mubot.command.scheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple token bucket used to rate limit commands. Tokens are refilled
+ * continuously up to the capacity of the bucket and every command consumes one
+ * token.
+ */
+final class TokenBucket {
+
+	private final double capacity;
+	private final double tokensPerNano;
+
+	private double tokens;
+	private long lastRefill;
+	// until when the owner of this bucket has already been told to slow down
+	private long cooldownNotifiedUntil;
+
+	/**
+	 * @param capacity        the maximum amount of tokens, i.e. the largest burst
+	 *                        of commands allowed
+	 * @param tokensPerSecond how many tokens are added back every second
+	 * @param now             the current time from {@link System#nanoTime()}
+	 */
+	TokenBucket(double capacity, double tokensPerSecond, long now) {
+		this.capacity = capacity;
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.tokens = capacity;
+		this.lastRefill = now;
+		this.cooldownNotifiedUntil = now;
+	}
+
+	/**
+	 * @param now the current time from {@link System#nanoTime()}
+	 * @return true if a token was consumed, false if the bucket is empty
+	 */
+	synchronized boolean tryConsume(long now) {
+		refill(now);
+		if (tokens >= 1) {
+			tokens -= 1;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gives back a token that was consumed by a command that didn't run
+	 * 
+	 * @param now the current time from {@link System#nanoTime()}
+	 */
+	synchronized void refund(long now) {
+		refill(now);
+		tokens = Math.min(capacity, tokens + 1);
+	}
+
+	/**
+	 * @param now the current time from {@link System#nanoTime()}
+	 * @return the nanoseconds until the next token is available
+	 */
+	synchronized long nanosUntilAvailable(long now) {
+		refill(now);
+		if (tokens >= 1)
+			return 0;
+		return (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	/**
+	 * Checks if the owner of the bucket should be told to slow down. This is only
+	 * true once per cooldown so that a rejected command doesn't cause a reply every
+	 * time.
+	 * 
+	 * @param now      the current time from {@link System#nanoTime()}
+	 * @param cooldown how long in nanoseconds the owner will have to wait
+	 * @return true if the owner hasn't been notified of this cooldown yet
+	 */
+	synchronized boolean shouldNotify(long now, long cooldown) {
+		if (now - cooldownNotifiedUntil < 0)
+			return false;
+		cooldownNotifiedUntil = now + cooldown;
+		return true;
+	}
+
+	/**
+	 * @param now the current time from {@link System#nanoTime()}
+	 * @return true if the bucket has refilled completely, meaning it holds no
+	 *         state worth keeping
+	 */
+	synchronized boolean isFull(long now) {
+		refill(now);
+		return tokens >= capacity && now - cooldownNotifiedUntil >= 0;
+	}
+
+	private void refill(long now) {
+		long elapsed = now - lastRefill;
+		if (elapsed > 0) {
+			tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+			lastRefill = now;
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+package com.github.mubot.command.util;
+
+import java.nio.CharBuffer;
+
+/**
+ * Splits the content of a message into the commands it contains in a single
+ * pass over the content. A command starts at the guild prefix, either at the
+ * very beginning of the message or right after a space, and runs until the
+ * next command or the end of the message, i.e. "!join !play url" contains the
+ * two commands "join" and "play url".
+ *
+ * No regular expressions or intermediate arrays are used while scanning, the
+ * only objects created are the triggers of commands that are actually read and
+ * views of their arguments.
+ */
+public final class CommandTokenizer {
+
+	private final String content;
+	private final String prefix;
+
+	// start of the fragment that will be read by the next call to next()
+	private int position;
+
+	private int triggerStart;
+	private int triggerEnd;
+	private int argsStart;
+	private int argsEnd;
+
+	/**
+	 * @param content the content of the message
+	 * @param prefix  the raw command prefix of the guild the message was sent in
+	 */
+	public CommandTokenizer(String content, String prefix) {
+		this.content = content;
+		this.prefix = prefix;
+		this.position = 0;
+	}
+
+	/**
+	 * Quick check that rejects messages that can't contain a command. Messages
+	 * that start with the prefix are accepted on their first characters, anything
+	 * else needs a single scan for a space followed by the prefix.
+	 *
+	 * @param content the content of the message
+	 * @param prefix  the raw command prefix of the guild
+	 * @return true if the message may contain a command, false if it can't
+	 */
+	public static boolean mayContainCommand(String content, String prefix) {
+		if (content == null || content.isEmpty() || prefix.isEmpty())
+			return false;
+
+		return content.startsWith(prefix) || findSeparator(content, prefix, 0) >= 0;
+	}
+
+	/**
+	 * Moves to the next command in the message. Fragments of the message that
+	 * don't start with the prefix or that are blank after the prefix are skipped.
+	 *
+	 * @return true if another command was found, false if the end of the message
+	 *         was reached
+	 */
+	public boolean next() {
+		final int length = content.length();
+		while (position <= length) {
+			final int start = position;
+			int end = findSeparator(content, prefix, start);
+			if (end < 0) {
+				end = length;
+			}
+			// the separating space is not part of either fragment
+			position = end + 1;
+
+			if (content.startsWith(prefix, start) && !isBlank(start + prefix.length(), end)) {
+				readFragment(start + prefix.length(), end);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the lower-cased trigger of the current command
+	 */
+	public String getTrigger() {
+		return content.substring(triggerStart, triggerEnd).toLowerCase();
+	}
+
+	/**
+	 * Returns a view of the arguments of the current command, everything after
+	 * the trigger without trailing whitespace. The characters aren't copied, the
+	 * view reads the content of the message.
+	 *
+	 * @return the arguments of the current command
+	 */
+	public CharSequence getArguments() {
+		if (argsStart >= argsEnd) {
+			return "";
+		}
+		return CharBuffer.wrap(content, argsStart, argsEnd);
+	}
+
+	/**
+	 * Sets the trigger and argument bounds of the fragment between start and end,
+	 * where start is the first character after the prefix
+	 */
+	private void readFragment(int start, int end) {
+		// the trigger runs until the first space
+		triggerStart = start;
+		int spaceIndex = content.indexOf(' ', start);
+		triggerEnd = spaceIndex < 0 || spaceIndex > end ? end : spaceIndex;
+
+		// trailing whitespace is not part of the arguments
+		int trimmedEnd = end;
+		while (trimmedEnd > triggerEnd && content.charAt(trimmedEnd - 1) <= ' ') {
+			trimmedEnd--;
+		}
+
+		argsStart = triggerEnd + 1;
+		argsEnd = trimmedEnd;
+	}
+
+	private boolean isBlank(int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (!Character.isWhitespace(content.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the index of the next space that is followed by the prefix, or -1
+	 *         if there is none
+	 */
+	private static int findSeparator(String content, String prefix, int from) {
+		int index = content.indexOf(prefix, from + 1);
+		while (index > 0) {
+			if (content.charAt(index - 1) == ' ')
+				return index - 1;
+			index = content.indexOf(prefix, index + 1);
+		}
+		return -1;
+	}
+
+}
@@ -4,11 +4,14 @@ import static com.github.mubot.command.util.PermissionsHelper.requireBotChannelP
 
 import java.time.Duration;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandResponse;
 import com.github.mubot.command.exceptions.SendMessagesException;
 import com.github.mubot.database.DatabaseManager;
+import com.github.mubot.music.QueuedTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
 import discord4j.common.util.Snowflake;
@@ -39,14 +42,30 @@ public final class CommandUtil {
 			return CommandResponse.empty();
 		// send reply, on CommandException error send the message to the member in a
 		// private message
-		return sendReply(event.getMember(), event.getMessage().getChannel(), response);
+		return sendReply(event.getMember(), event.getMessage().getChannel(),
+				channel -> requireBotChannelPermissions(channel, Permission.SEND_MESSAGES), response);
+	}
+
+	/**
+	 * Sends the reply to a command, reusing the channel and permissions the command
+	 * already looked up
+	 * 
+	 * @param context  the context of the command
+	 * @param response the command response of the reply
+	 * @return the command response
+	 */
+	public static Mono<CommandResponse> sendReply(CommandContext context, CommandResponse response) {
+		if (response.getSpec() == null)
+			return CommandResponse.empty();
+		return sendReply(context.getMember(), context.getChannel(),
+				channel -> requireBotChannelPermissions(context, channel, Permission.SEND_MESSAGES), response);
 	}
 
 	private static Mono<CommandResponse> sendReply(Optional<Member> memberOpt, Mono<MessageChannel> channelMono,
-			CommandResponse response) {
+			Function<GuildChannel, Mono<PermissionSet>> requirePermissions, CommandResponse response) {
 		return channelMono.flatMap(channel -> {
 			Mono<PermissionSet> permissions = channel instanceof PrivateChannel ? Mono.just(PermissionSet.all())
-					: requireBotChannelPermissions((GuildChannel) channel, Permission.SEND_MESSAGES);
+					: requirePermissions.apply((GuildChannel) channel);
 
 			return permissions.flatMap(ignored -> {
 				if (response.getSpec() != null) {
@@ -119,6 +138,10 @@ public final class CommandUtil {
 		return "**" + track.getInfo().title + "** by " + track.getInfo().author;
 	}
 
+	public static String trackInfo(QueuedTrack track) {
+		return "**" + track.getTitle() + "** by " + track.getAuthor();
+	}
+
 	public static String trackCurrentTime(AudioTrack track) {
 		return "[" + convertMillisToTime(track.getPosition()) + "/" + convertMillisToTime(track.getDuration()) + "]";
 	}
@@ -139,6 +162,15 @@ public final class CommandUtil {
 		return getRawGuildPrefixFromId(event.getGuildId().orElse(Snowflake.of(0)).asLong());
 	}
 
+	/**
+	 * Gets the prefix of the guild of the event, reading it from the database if
+	 * the prefixes are still loading
+	 */
+	public static Mono<String> fetchRawGuildPrefixFromEvent(MessageCreateEvent event) {
+		return DatabaseManager.getInstance().getPrefixCache()
+				.fetchPrefix(event.getGuildId().orElse(Snowflake.of(0)).asLong());
+	}
+
 	public static String getRawGuildPrefixFromId(long guildId) {
 		return DatabaseManager.getInstance().getPrefixCache().getPrefix(guildId);
 	}
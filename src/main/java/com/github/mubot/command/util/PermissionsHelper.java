@@ -1,20 +1,22 @@
 package com.github.mubot.command.util;
 
+import static com.github.mubot.metrics.CommandMetrics.timePermissionCheck;
+
 import java.util.Optional;
 
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.exceptions.BotPermissionException;
 import com.github.mubot.command.exceptions.CommandException;
 import com.github.mubot.command.exceptions.SendMessagesException;
+import com.github.mubot.music.VoiceReadiness;
 
 import discord4j.common.util.Snowflake;
-import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.VoiceState;
 import discord4j.core.object.entity.Member;
 import discord4j.core.object.entity.channel.GuildChannel;
 import discord4j.core.object.entity.channel.VoiceChannel;
 import discord4j.rest.util.Permission;
 import discord4j.rest.util.PermissionSet;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public final class PermissionsHelper {
@@ -23,43 +25,41 @@ public final class PermissionsHelper {
 	 * Returns the voice channel the message sender is in or empty if they are not
 	 * in a voice channel
 	 * 
-	 * @param event the message event
+	 * @param context the context of the command
 	 * @return the voice channel of the message sender
 	 */
-	public static Mono<VoiceChannel> requireVoiceChannel(MessageCreateEvent event) {
-		return requireNotPrivateMessage(event).flatMap(Member::getVoiceState).map(VoiceState::getChannelId)
+	public static Mono<VoiceChannel> requireVoiceChannel(CommandContext context) {
+		return timePermissionCheck(requireNotPrivateMessage(context).then(context.getMemberVoiceState())
+				.map(VoiceState::getChannelId)
 				.switchIfEmpty(Mono.error(new CommandException("Voice command used without voice channel",
 						"You have to be in a voice channel to use this command")))
-				.flatMap(Mono::justOrEmpty).flatMap(event.getClient()::getChannelById).cast(VoiceChannel.class);
+				.flatMap(Mono::justOrEmpty).then(context.getMemberVoiceChannel()));
 	}
 
 	/**
+	 * Returns the voice channel the bot and message sender share. If the bot is
+	 * connecting to the channel of the sender right now, such as in "!join !play",
+	 * it waits for the connection instead of erring.
 	 * 
-	 * @param event the message event
-	 * @return the voice channel the bot and message sender share or empty if they
-	 *         do not share a voice channel
+	 * @param context the context of the command
+	 * @return the voice channel the bot and message sender share or an error if
+	 *         they do not share a voice channel
 	 */
-	private final static int MAX_RETRIES = 25000;
-
-	public static Mono<VoiceChannel> requireSameVoiceChannel(MessageCreateEvent event) {
+	public static Mono<VoiceChannel> requireSameVoiceChannel(CommandContext context) {
 		// id of the bot's voice channel id or empty
-		final Mono<Optional<Snowflake>> getBotVoiceChannelId = event.getClient().getSelf().flatMap(user -> {
-			if (event.getGuildId().isPresent())
-				return user.asMember(event.getGuildId().get());
-			else
-				return Mono.empty();
-		}).flatMap(Member::getVoiceState).map(VoiceState::getChannelId).defaultIfEmpty(Optional.empty());
+		final Mono<Optional<Snowflake>> getBotVoiceChannelId = context.getSelfVoiceState()
+				.map(VoiceState::getChannelId).defaultIfEmpty(Optional.empty());
 
 		// id of the user's voice channel id or empty
-		final Mono<Optional<Snowflake>> getUserVoiceChannelId = Mono.justOrEmpty(event.getMember())
-				.flatMap(Member::getVoiceState).map(VoiceState::getChannelId).defaultIfEmpty(Optional.empty());
+		final Mono<Optional<Snowflake>> getUserVoiceChannelId = context.getMemberVoiceState()
+				.map(VoiceState::getChannelId).defaultIfEmpty(Optional.empty());
 
-		return checkSameVoiceChannel(event, getBotVoiceChannelId, getUserVoiceChannelId);
+		return timePermissionCheck(checkSameVoiceChannel(context, getBotVoiceChannelId, getUserVoiceChannelId));
 	}
 
-	private static Mono<VoiceChannel> checkSameVoiceChannel(MessageCreateEvent event,
+	private static Mono<VoiceChannel> checkSameVoiceChannel(CommandContext context,
 			Mono<Optional<Snowflake>> getBotVoiceChannelId, Mono<Optional<Snowflake>> getUserVoiceChannelId) {
-		return requireNotPrivateMessage(event)
+		return requireNotPrivateMessage(context)
 				.then(Mono.zip(getBotVoiceChannelId, getUserVoiceChannelId).flatMap(tuple -> {
 					final Optional<Snowflake> botVoiceChannelId = tuple.getT1();
 					final Optional<Snowflake> userVoiceChannelId = tuple.getT2();
@@ -71,31 +71,29 @@ public final class PermissionsHelper {
 					}
 
 					// if the bot is not in a voice channel or If the user and the bot are not in
-					// the same voice channel, give it a chance to join before erring
+					// the same voice channel, wait for a join in progress before erring
 					else if (botVoiceChannelId.isEmpty()
 							|| !userVoiceChannelId.map(botVoiceChannelId.get()::equals).orElse(false)) {
-						return Mono.empty();
+						return VoiceReadiness.awaitConnected(context.getGuildId().get(), userVoiceChannelId.get())
+								.filter(connected -> connected)
+								.switchIfEmpty(Mono.error(new CommandException("User and bot not in same channel",
+										"You have to be in the same voice channel as the bot to use this command")));
 					}
 
-					return Mono.just(userVoiceChannelId.get());
-					// retries allow the bot to connect to channel before throwing error, such as
-					// "!join !play"
-				}).repeatWhenEmpty(MAX_RETRIES, Flux::repeat)).onErrorResume(IllegalStateException.class, error -> {
-					return Mono.error(new CommandException("User and bot not in same channel",
-							"You have to be in the same voice channel as the bot to use this command"));
-				}).flatMap(event.getClient()::getChannelById).cast(VoiceChannel.class);
+					return Mono.just(true);
+				})).then(context.getMemberVoiceChannel());
 	}
 
 	/**
 	 * Checks if the message was sent in a private message or not
 	 * 
-	 * @param event the MessageCreateEvent
+	 * @param context the context of the command
 	 * @return returns the Member if not a private message, or errors if it is
 	 */
-	public static Mono<Member> requireNotPrivateMessage(MessageCreateEvent event) {
-		return Mono.justOrEmpty(event.getMember())
+	public static Mono<Member> requireNotPrivateMessage(CommandContext context) {
+		return timePermissionCheck(Mono.justOrEmpty(context.getMember())
 				.switchIfEmpty(Mono.error(new CommandException("Voice command in private message",
-						"You can't use this command in a private message")));
+						"You can't use this command in a private message"))));
 	}
 
 	/**
@@ -108,9 +106,27 @@ public final class PermissionsHelper {
 
 	public static Mono<PermissionSet> requireBotChannelPermissions(GuildChannel channel,
 			Permission... requestedPermissions) {
-		return channel.getEffectivePermissions(channel.getClient().getSelfId()).flatMap(permissions -> {
+		return timePermissionCheck(
+				channel.getEffectivePermissions(channel.getClient().getSelfId()).flatMap(permissions -> {
+					return checkChannelPermissions(true, channel.getName(), permissions, requestedPermissions);
+				}));
+	}
+
+	/**
+	 * Same as {@link #requireBotChannelPermissions(GuildChannel, Permission...)}
+	 * but the permissions are looked up once per command
+	 * 
+	 * @param context              the context of the command
+	 * @param channel              the guild channel
+	 * @param requestedPermissions the permissions the bot will need
+	 * @return the permissions the bot has in this channel or an error if the bot
+	 *         does not have the requested permissions
+	 */
+	public static Mono<PermissionSet> requireBotChannelPermissions(CommandContext context, GuildChannel channel,
+			Permission... requestedPermissions) {
+		return timePermissionCheck(context.getSelfPermissions(channel).flatMap(permissions -> {
 			return checkChannelPermissions(true, channel.getName(), permissions, requestedPermissions);
-		});
+		}));
 	}
 
 	/**
@@ -124,9 +140,9 @@ public final class PermissionsHelper {
 
 	public static Mono<PermissionSet> requireMemberChannelPermissions(GuildChannel channel, Snowflake memberId,
 			Permission... requestedPermissions) {
-		return channel.getEffectivePermissions(memberId).flatMap(permissions -> {
+		return timePermissionCheck(channel.getEffectivePermissions(memberId).flatMap(permissions -> {
 			return checkChannelPermissions(false, channel.getName(), permissions, requestedPermissions);
-		});
+		}));
 	}
 
 	/**
@@ -159,35 +175,38 @@ public final class PermissionsHelper {
 		return Mono.just(permissions);
 	}
 
-	public static Mono<PermissionSet> requireBotGuildPermissions(MessageCreateEvent event,
+	public static Mono<PermissionSet> requireBotGuildPermissions(CommandContext context,
 			Permission... requestedPermissions) {
-		return event.getClient().getMemberById(event.getGuildId().get(), event.getClient().getSelfId())
-				.flatMap(member -> requireGuildPermissions(member, requestedPermissions));
+		return timePermissionCheck(context.getSelfGuildPermissions()
+				.flatMap(permissions -> checkGuildPermissions(true, permissions, requestedPermissions)));
 	}
 
-	public static Mono<PermissionSet> requireUserGuildPermissions(MessageCreateEvent event,
+	public static Mono<PermissionSet> requireUserGuildPermissions(CommandContext context,
 			Permission... requestedPermissions) {
-		return event.getMessage().getAuthorAsMember()
-				.flatMap(member -> requireGuildPermissions(member, requestedPermissions));
+		return timePermissionCheck(context.getMemberGuildPermissions()
+				.flatMap(permissions -> checkGuildPermissions(false, permissions, requestedPermissions)));
 	}
 
 	public static Mono<PermissionSet> requireGuildPermissions(Member m, Permission... requestedPermissions) {
-		return m.getBasePermissions().flatMap(memberPermissions -> {
-			for (Permission permission : requestedPermissions) {
-				if (!memberPermissions.contains(permission)) {
-					RuntimeException exception;
-					String exceptionMessage = getGuildPermissionErrorMessage(m.isBot(), permission);
-					if (permission.equals(Permission.SEND_MESSAGES)) {
-						exception = new SendMessagesException(exceptionMessage);
-					} else {
-						exception = new BotPermissionException(exceptionMessage);
-					}
-					return Mono.error(exception);
+		return timePermissionCheck(m.getBasePermissions().flatMap(
+				memberPermissions -> checkGuildPermissions(m.isBot(), memberPermissions, requestedPermissions)));
+	}
+
+	private static Mono<PermissionSet> checkGuildPermissions(boolean bot, PermissionSet memberPermissions,
+			Permission... requestedPermissions) {
+		for (Permission permission : requestedPermissions) {
+			if (!memberPermissions.contains(permission)) {
+				RuntimeException exception;
+				String exceptionMessage = getGuildPermissionErrorMessage(bot, permission);
+				if (permission.equals(Permission.SEND_MESSAGES)) {
+					exception = new SendMessagesException(exceptionMessage);
+				} else {
+					exception = new BotPermissionException(exceptionMessage);
 				}
+				return Mono.error(exception);
 			}
-			return Mono.just(memberPermissions);
-		});
-
+		}
+		return Mono.just(memberPermissions);
 	}
 
 	public static String getGuildPermissionErrorMessage(boolean bot, Permission permission) {
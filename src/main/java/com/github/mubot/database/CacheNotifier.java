@@ -0,0 +1,220 @@
+package com.github.mubot.database;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.retry.Retry;
+
+/**
+ * Keeps the caches of several bot processes sharing a database in sync. After
+ * writing prefixes or guilds, an instance sends a NOTIFY on the mubot_cache
+ * channel for every changed guild, and every instance LISTENs on it with a
+ * connection of its own to update or invalidate that guild in its caches.
+ * Notifications sent before it listens or while the connection is down are
+ * lost, so the caches are reloaded whenever it starts listening after they
+ * started loading. Set CACHE_NOTIFY=false to neither send nor listen, e.g. for
+ * a single instance.
+ */
+public final class CacheNotifier {
+
+	private static final Logger LOGGER = Loggers.getLogger(CacheNotifier.class);
+
+	private static final boolean ENABLED = Config.getBoolean("CACHE_NOTIFY", true);
+	private static final String CHANNEL = "mubot_cache";
+	private static final String NOTIFY_SQL = "SELECT pg_notify($1, payload) FROM unnest($2::text[]) AS payload";
+
+	private static final String PREFIXES = "prefixes";
+	private static final String GUILDS = "guilds";
+	private static final String PUT = "put";
+	private static final String REMOVE = "remove";
+
+	private static final String LAG = "mubot_cache_notify_lag_seconds";
+	private static final String NOTIFICATIONS = "mubot_cache_notifications_total";
+
+	// tells the notifications of this instance apart from those of its peers
+	private final String instance = UUID.randomUUID().toString();
+	private final DatabaseManager databaseManager;
+
+	private final LongAdder sent = new LongAdder();
+	private final LongAdder received = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder reconnects = new LongAdder();
+	private final LatencyHistogram lag = new LatencyHistogram();
+	// completes once listening for the first time
+	private final Sinks.Empty<Void> listening = Sinks.empty();
+
+	CacheNotifier(DatabaseManager databaseManager) {
+		this.databaseManager = databaseManager;
+		MetricsRegistry.register(this::collect);
+	}
+
+	/**
+	 * Listens for the changes of the other instances until the process exits,
+	 * reconnecting if the connection drops
+	 *
+	 * @param factory creates the connection to listen on, outside of the pool
+	 */
+	void listen(PostgresqlConnectionFactory factory) {
+		if (!ENABLED)
+			return;
+
+		final AtomicBoolean connected = new AtomicBoolean(false);
+		Mono.usingWhen(factory.create(), connection -> listen(connection, connected.getAndSet(true)),
+				PostgresqlConnection::close)
+				.retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1))
+						.doBeforeRetry(signal -> LOGGER.error("Lost the cache change listener, reconnecting: "
+								+ signal.failure().getMessage())))
+				.subscribe();
+	}
+
+	/**
+	 * @return completes once listening for the first time, or right away if
+	 *         disabled
+	 */
+	Mono<Void> whenListening() {
+		return ENABLED ? listening.asMono() : Mono.empty();
+	}
+
+	/**
+	 * @param reconnected true if changes may have been missed while reconnecting
+	 * @return fails once the connection is lost
+	 */
+	private Mono<Void> listen(PostgresqlConnection connection, boolean reconnected) {
+		return connection.createStatement("LISTEN " + CHANNEL).execute().flatMap(PostgresqlResult::getRowsUpdated)
+				.then(Mono.fromRunnable(() -> {
+					LOGGER.info("Listening for cache changes of other instances");
+					if (reconnected)
+						reconnects.increment();
+					// changes made before now were missed if the caches already started
+					// loading, they didn't if they start once listening
+					databaseManager.getPrefixCache().reload();
+					databaseManager.getGuildCache().reload();
+					listening.tryEmitEmpty();
+				})).thenMany(connection.getNotifications()).doOnNext(this::receive)
+				.then(Mono.error(new IllegalStateException("The connection was closed")));
+	}
+
+	/**
+	 * @param guilds the names of the guilds that were stored by their ids
+	 */
+	public Mono<Void> guildsStored(Map<Long, String> guilds) {
+		return send(() -> guilds.entrySet().stream()
+				.map(guild -> payload(GUILDS, PUT, guild.getKey(), guild.getValue())).collect(Collectors.toList()));
+	}
+
+	/**
+	 * @param guildIds the guilds that were deleted
+	 */
+	public Mono<Void> guildsRemoved(Collection<Long> guildIds) {
+		return send(() -> guildIds.stream().map(guildId -> payload(GUILDS, REMOVE, guildId, ""))
+				.collect(Collectors.toList()));
+	}
+
+	/**
+	 * @param guildId the guild that changed its prefix
+	 * @param prefix  the new prefix
+	 */
+	public Mono<Void> prefixStored(long guildId, String prefix) {
+		return send(() -> List.of(payload(PREFIXES, PUT, guildId, prefix)));
+	}
+
+	/**
+	 * Sends the notifications with one statement. The change was already written,
+	 * so a failure is only logged and the peers keep their cached value.
+	 *
+	 * @param changes creates the payloads once subscribed, so the lag starts when
+	 *                the change was written
+	 */
+	private Mono<Void> send(Supplier<List<String>> changes) {
+		if (!ENABLED)
+			return Mono.empty();
+
+		return Mono.defer(() -> {
+			final List<String> payloads = changes.get();
+			return payloads.isEmpty() ? Mono.empty() : send(payloads);
+		});
+	}
+
+	private Mono<Void> send(List<String> payloads) {
+		return databaseManager.getClient().sql(NOTIFY_SQL).bind("$1", CHANNEL)
+				.bind("$2", payloads.toArray(new String[0])).then().doOnSuccess(ignored -> sent.add(payloads.size()))
+				.onErrorResume(error -> {
+					failed.increment();
+					LOGGER.error("Could not notify other instances of " + payloads.size() + " changes: "
+							+ error.getMessage());
+					return Mono.empty();
+				});
+	}
+
+	/**
+	 * @return the instance, the time it was sent, the table, the operation, the
+	 *         guild id and the value, the value last as guild names have spaces
+	 */
+	private String payload(String table, String operation, long guildId, String value) {
+		return instance + " " + System.currentTimeMillis() + " " + table + " " + operation + " " + guildId + " "
+				+ value;
+	}
+
+	private void receive(Notification notification) {
+		final String[] parts = notification.getParameter() == null ? new String[0]
+				: notification.getParameter().split(" ", 6);
+		if (parts.length < 6) {
+			LOGGER.warn("Ignoring malformed cache change: {}", notification.getParameter());
+			return;
+		}
+		if (parts[0].equals(instance))
+			return;
+
+		try {
+			// peers' clocks may differ slightly, it is a lag across processes
+			lag.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - Long.parseLong(parts[1])));
+			final long guildId = Long.parseLong(parts[4]);
+			final boolean put = parts[3].equals(PUT);
+			if (parts[2].equals(PREFIXES) && put)
+				databaseManager.getPrefixCache().prefixChanged(guildId, parts[5]);
+			else if (parts[2].equals(GUILDS) && put)
+				databaseManager.getGuildCache().guildChanged(guildId, parts[5]);
+			else if (parts[2].equals(GUILDS))
+				databaseManager.getGuildCache().guildRemoved(guildId);
+			received.increment();
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Ignoring malformed cache change: {}", notification.getParameter());
+		}
+	}
+
+	private void collect(PrometheusWriter writer) {
+		writer.header(NOTIFICATIONS, "counter", "Number of cache changes sent to and received from other instances");
+		writer.sample(NOTIFICATIONS, sent.sum(), "direction", "sent");
+		writer.sample(NOTIFICATIONS, received.sum(), "direction", "received");
+		writer.header("mubot_cache_notify_failed_total", "counter",
+				"Number of batches of cache changes that could not be sent");
+		writer.sample("mubot_cache_notify_failed_total", failed.sum());
+		writer.header("mubot_cache_notify_reconnects_total", "counter",
+				"Number of times the cache change listener reconnected");
+		writer.sample("mubot_cache_notify_reconnects_total", reconnects.sum());
+		writer.header(LAG, "histogram", "Time from a change in another instance until it reached the caches");
+		lag.write(writer, LAG);
+	}
+
+}
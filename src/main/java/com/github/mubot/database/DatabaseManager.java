@@ -13,7 +13,7 @@ import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionConfiguration;
 import io.r2dbc.postgresql.PostgresqlConnectionFactory;
 import io.r2dbc.postgresql.client.SSLMode;
-import io.r2dbc.spi.ConnectionFactory;
+import reactor.core.publisher.Mono;
 
 public class DatabaseManager {
 	// for heroku DATABASE_URL is stored as
@@ -28,6 +28,11 @@ public class DatabaseManager {
 
 	private static PrefixCache prefixCache;
 	private static GuildCache guildCache;
+	private static GuildReconciler guildReconciler;
+	private static CacheNotifier cacheNotifier;
+	private static final Duration LISTEN_TIMEOUT = Duration.ofSeconds(10);
+	// the unpooled connections, null if created on a configured client
+	private PostgresqlConnectionFactory connectionFactory;
 
 	private DatabaseManager() {
 		try {
@@ -37,13 +42,14 @@ public class DatabaseManager {
 				MAX_CONNECTIONS = "10";
 			}
 
-			ConnectionFactory factory = new PostgresqlConnectionFactory(PostgresqlConnectionConfiguration.builder()
+			connectionFactory = new PostgresqlConnectionFactory(PostgresqlConnectionConfiguration.builder()
 					.host(dbUri.getHost()).port(dbUri.getPort()).username(dbUri.getUserInfo().split(":")[0])
 					.password(dbUri.getUserInfo().split(":")[1]).database(dbUri.getPath().replaceFirst("/", ""))
 					.enableSsl().sslMode(SSLMode.REQUIRE).build());
 
-			ConnectionPool poolConfig = new ConnectionPool(ConnectionPoolConfiguration.builder(factory).initialSize(1)
-					.maxIdleTime(Duration.ofSeconds(30)).maxSize(Integer.parseInt(MAX_CONNECTIONS)).build());
+			ConnectionPool poolConfig = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+					.initialSize(1).maxIdleTime(Duration.ofSeconds(30)).maxSize(Integer.parseInt(MAX_CONNECTIONS))
+					.build());
 
 			databaseClient = DatabaseClient.create(poolConfig);
 		} catch (URISyntaxException e) {
@@ -51,14 +57,46 @@ public class DatabaseManager {
 		}
 	}
 
+	private DatabaseManager(DatabaseClient databaseClient) {
+		this.databaseClient = databaseClient;
+	}
+
 	public static void create() {
 		if (instance == null) {
-			instance = new DatabaseManager();
-			prefixCache = new PrefixCache(instance);
-			guildCache = new GuildCache(instance);
+			init(new DatabaseManager());
 		}
 	}
 
+	/**
+	 * Creates the manager on an already configured client instead of connecting
+	 * to DATABASE_URL, e.g. to load the caches from a stubbed database
+	 * 
+	 * @param databaseClient the client to use
+	 */
+	public static void create(DatabaseClient databaseClient) {
+		if (instance == null) {
+			init(new DatabaseManager(databaseClient));
+		}
+	}
+
+	private static void init(DatabaseManager manager) {
+		instance = manager;
+		prefixCache = new PrefixCache(instance);
+		guildCache = new GuildCache(instance);
+		guildReconciler = new GuildReconciler(guildCache);
+		cacheNotifier = new CacheNotifier(instance);
+		Mono<Void> listening = Mono.empty();
+		if (manager.connectionFactory != null) {
+			cacheNotifier.listen(manager.connectionFactory);
+			// loading once listening misses no changes, if listening takes longer the
+			// caches are reloaded once it does
+			listening = cacheNotifier.whenListening().timeout(LISTEN_TIMEOUT, Mono.empty());
+		}
+		// the caches load in parallel in the background, prefixes read through to
+		// the database until they are loaded
+		listening.then(Mono.when(prefixCache.warmUp(), guildCache.warmUp())).subscribe();
+	}
+
 	public DatabaseClient getClient() {
 		return databaseClient;
 	}
@@ -71,6 +109,14 @@ public class DatabaseManager {
 		return guildCache;
 	}
 
+	public GuildReconciler getGuildReconciler() {
+		return guildReconciler;
+	}
+
+	public CacheNotifier getCacheNotifier() {
+		return cacheNotifier;
+	}
+
 	public static String getTableName() {
 		return DatabaseManager.instance.TABLE_NAME;
 	}
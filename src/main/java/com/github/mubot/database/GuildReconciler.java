@@ -0,0 +1,182 @@
+package com.github.mubot.database;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.database.cache.GuildCache;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import discord4j.core.object.entity.Guild;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.Sinks.EmitResult;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.concurrent.Queues;
+import reactor.util.retry.Retry;
+
+/**
+ * Stores the guilds the bot joins and leaves in batches. On connect the gateway
+ * sends a GuildCreateEvent for every guild, so instead of a statement per guild
+ * the changes of GUILD_RECONCILE_WINDOW_MS, up to GUILD_RECONCILE_BATCH guilds,
+ * are written with one multi-row upsert and one delete. Only the last change of
+ * a guild in a batch counts, and guilds that are already stored with their
+ * name are skipped. A guild that became unavailable during an outage is left
+ * alone, it is only deleted once the bot was removed from it. Batches wait
+ * while the database is slow, and if the reconciliation fails anyway it is
+ * logged and restarted.
+ */
+public final class GuildReconciler {
+
+	private static final Logger LOGGER = Loggers.getLogger(GuildReconciler.class);
+
+	private static final Duration WINDOW = Duration.ofMillis(Config.getInt("GUILD_RECONCILE_WINDOW_MS", 2000));
+	private static final int MAX_BATCH = Config.getInt("GUILD_RECONCILE_BATCH", 500);
+
+	private static final String ROWS = "mubot_guild_reconcile_rows_total";
+	private static final String BATCHES = "mubot_guild_reconcile_batches_total";
+	private static final String LATENCY = "mubot_guild_reconcile_seconds";
+
+	private final GuildCache guildCache;
+	// stays open when the reconciliation cancels it after failing, so it can be
+	// subscribed to again
+	private final Sinks.Many<Change> changes = Sinks.many().multicast().onBackpressureBuffer(Queues.SMALL_BUFFER_SIZE,
+			false);
+
+	private final LongAdder upserted = new LongAdder();
+	private final LongAdder deleted = new LongAdder();
+	private final LongAdder upsertBatches = new LongAdder();
+	private final LongAdder deleteBatches = new LongAdder();
+	private final LongAdder unavailable = new LongAdder();
+	private final LongAdder failed = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LatencyHistogram upsertLatency = new LatencyHistogram();
+	private final LatencyHistogram deleteLatency = new LatencyHistogram();
+
+	GuildReconciler(GuildCache guildCache) {
+		this.guildCache = guildCache;
+		// guilds are compared to the stored ones once those are loaded
+		// the timer of bufferTimeout flushes batches whether or not they are
+		// requested, so they wait in a buffer while the database is slow
+		changes.asFlux().bufferTimeout(MAX_BATCH, WINDOW).onBackpressureBuffer()
+				.concatMap(batch -> guildCache.whenLoaded().then(Mono.defer(() -> apply(batch))))
+				.retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofMinutes(1))
+						.doBeforeRetry(signal -> LOGGER.error("Guild reconciliation failed, restarting it: "
+								+ signal.failure().getMessage(), signal.failure())))
+				.subscribe();
+		MetricsRegistry.register(this::collect);
+	}
+
+	/**
+	 * @param guild a guild the bot joined or that became available
+	 */
+	public void guildCreated(Guild guild) {
+		emit(new Change(guild.getId().asLong(), guild.getName()));
+	}
+
+	/**
+	 * @param guildId     the guild the bot left or that became unavailable
+	 * @param unavailable true if the guild is only unavailable during an outage
+	 */
+	public void guildDeleted(long guildId, boolean unavailable) {
+		if (unavailable) {
+			this.unavailable.increment();
+			LOGGER.info("Guild {} is unavailable, keeping it", guildId);
+			return;
+		}
+		emit(new Change(guildId, null));
+	}
+
+	private synchronized void emit(Change change) {
+		final EmitResult result = changes.tryEmitNext(change);
+		if (result.isFailure()) {
+			dropped.increment();
+			LOGGER.warn("Could not reconcile guild {}: {}", change.guildId, result);
+		}
+	}
+
+	/**
+	 * Writes the last change of every guild in the batch
+	 */
+	private Mono<Void> apply(List<Change> batch) {
+		final Map<Long, String> last = new LinkedHashMap<>();
+		for (Change change : batch)
+			last.put(change.guildId, change.guildName);
+
+		final Map<Long, String> upserts = new LinkedHashMap<>();
+		final List<Long> deletes = new ArrayList<>();
+		last.forEach((guildId, guildName) -> {
+			if (guildName == null)
+				deletes.add(guildId);
+			else if (!guildCache.isStored(guildId, guildName))
+				upserts.put(guildId, guildName);
+		});
+
+		return timed(guildCache.putGuilds(upserts), upserts.size(), upserted, upsertBatches, upsertLatency)
+				.then(timed(guildCache.removeGuilds(deletes), deletes.size(), deleted, deleteBatches, deleteLatency));
+	}
+
+	/**
+	 * Counts a batch and its latency once it was written, a failed batch is logged
+	 * and left to the next time the guilds are sent
+	 */
+	private Mono<Void> timed(Mono<Void> statement, int rows, LongAdder rowCount, LongAdder batchCount,
+			LatencyHistogram latency) {
+		if (rows == 0)
+			return Mono.empty();
+
+		return Mono.defer(() -> {
+			final long start = System.nanoTime();
+			return statement.doOnSuccess(ignored -> {
+				latency.record(System.nanoTime() - start);
+				rowCount.add(rows);
+				batchCount.increment();
+			});
+		}).onErrorResume(error -> {
+			failed.increment();
+			LOGGER.error("Could not store a batch of " + rows + " guilds: " + error.getMessage(), error);
+			return Mono.empty();
+		});
+	}
+
+	private void collect(PrometheusWriter writer) {
+		writer.header(ROWS, "counter", "Number of guilds written by the batched reconciliation");
+		writer.sample(ROWS, upserted.sum(), "op", "upsert");
+		writer.sample(ROWS, deleted.sum(), "op", "delete");
+		writer.header(BATCHES, "counter", "Number of batched statements the reconciliation ran");
+		writer.sample(BATCHES, upsertBatches.sum(), "op", "upsert");
+		writer.sample(BATCHES, deleteBatches.sum(), "op", "delete");
+		writer.header(LATENCY, "histogram", "Time taken by a batched reconciliation statement");
+		upsertLatency.write(writer, LATENCY, "op", "upsert");
+		deleteLatency.write(writer, LATENCY, "op", "delete");
+		writer.header("mubot_guild_reconcile_failed_total", "counter", "Number of batches that could not be written");
+		writer.sample("mubot_guild_reconcile_failed_total", failed.sum());
+		writer.header("mubot_guild_reconcile_dropped_total", "counter",
+				"Number of guild changes that could not be queued for reconciliation");
+		writer.sample("mubot_guild_reconcile_dropped_total", dropped.sum());
+		writer.header("mubot_guild_unavailable_total", "counter",
+				"Number of guilds that became unavailable and were kept");
+		writer.sample("mubot_guild_unavailable_total", unavailable.sum());
+	}
+
+	/**
+	 * A guild that was created with its name, or deleted if the name is null
+	 */
+	private static final class Change {
+		private final long guildId;
+		private final String guildName;
+
+		private Change(long guildId, String guildName) {
+			this.guildId = guildId;
+			this.guildName = guildName;
+		}
+	}
+
+}
@@ -0,0 +1,268 @@
+package com.github.mubot.database.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the values of the guilds that were used recently instead of a whole
+ * table. It holds up to a maximum number of entries, split over segments by
+ * guild id that each evict their least recently used entry, and entries expire
+ * a while after they were stored. Misses are read through with a loader, and
+ * concurrent misses of the same guild share one load. A value stored while a
+ * load is running wins over the loaded one.
+ *
+ * @param <V> the type of the values
+ */
+public final class BoundedCache<V> {
+
+	// a power of two, segments are picked by the top 4 bits of the hashed key
+	private static final int SEGMENTS = 16;
+
+	private static final List<BoundedCache<?>> caches = new CopyOnWriteArrayList<>();
+
+	static {
+		MetricsRegistry.register(BoundedCache::collect);
+	}
+
+	private final String name;
+	private final long ttlNanos;
+	private final Segment<V>[] segments;
+	// guild id -> load running for the guild
+	private final Map<Long, Load> loading = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder failedLoads = new LongAdder();
+	private final LongAdder evicted = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+
+	/**
+	 * @param name       the name of the cache in the metrics
+	 * @param maxEntries the number of entries to keep at most
+	 * @param ttl        how long an entry is kept after it was stored, zero to
+	 *                   keep entries until they are evicted
+	 */
+	@SuppressWarnings("unchecked")
+	public BoundedCache(String name, int maxEntries, Duration ttl) {
+		this.name = name;
+		this.ttlNanos = ttl.isZero() ? Long.MAX_VALUE : ttl.toNanos();
+		this.segments = new Segment[SEGMENTS];
+		final int segmentEntries = Math.max(1, (maxEntries + SEGMENTS - 1) / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment<>(segmentEntries, evicted);
+		caches.add(this);
+	}
+
+	/**
+	 * @param key the guild id
+	 * @return the cached value, null if it isn't cached or expired
+	 */
+	public V getIfPresent(long key) {
+		final Segment<V> segment = segment(key);
+		synchronized (segment) {
+			final Cached<V> entry = segment.get(key);
+			if (entry == null) {
+				misses.increment();
+				return null;
+			}
+			if (System.nanoTime() - entry.storedAt > ttlNanos) {
+				segment.remove(key);
+				expired.increment();
+				misses.increment();
+				return null;
+			}
+			hits.increment();
+			return entry.value;
+		}
+	}
+
+	/**
+	 * Gets a value, loading and storing it if it isn't cached. Misses of a guild
+	 * that is already being loaded wait for that load.
+	 *
+	 * @param key    the guild id
+	 * @param loader reads the value of a guild, empty if it has none
+	 * @return the value, empty if the loader was empty
+	 */
+	public Mono<V> get(long key, LongFunction<Mono<V>> loader) {
+		final V cached = getIfPresent(key);
+		if (cached != null)
+			return Mono.just(cached);
+
+		return Mono.defer(() -> {
+			final Load created = new Load(key, loader);
+			final Load running = loading.putIfAbsent(key, created);
+			if (running != null) {
+				coalesced.increment();
+				return running.result;
+			}
+			loads.increment();
+			return created.result;
+		});
+	}
+
+	/**
+	 * Stores a value, a load of the guild that is still running won't replace it
+	 */
+	public void put(long key, V value) {
+		final Segment<V> segment = segment(key);
+		synchronized (segment) {
+			loading.remove(key);
+			segment.put(key, new Cached<>(value, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * Stores a loaded value if the load is still the one running for the guild,
+	 * so a load that was overridden doesn't replace what was stored or the load
+	 * that was started after it
+	 */
+	private void put(long key, V value, Load load) {
+		final Segment<V> segment = segment(key);
+		synchronized (segment) {
+			if (loading.remove(key, load))
+				segment.put(key, new Cached<>(value, System.nanoTime()));
+		}
+	}
+
+	/**
+	 * @return the value the guild had, null if it wasn't cached
+	 */
+	public V invalidate(long key) {
+		final Segment<V> segment = segment(key);
+		synchronized (segment) {
+			loading.remove(key);
+			final Cached<V> entry = segment.remove(key);
+			return entry == null ? null : entry.value;
+		}
+	}
+
+	/**
+	 * Drops every entry, running loads won't store their value
+	 */
+	public void invalidateAll() {
+		loading.clear();
+		for (Segment<V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @param value the value to look for
+	 * @return true if a cached guild has this value
+	 */
+	public boolean containsValue(V value) {
+		for (Segment<V> segment : segments) {
+			synchronized (segment) {
+				for (Cached<V> entry : segment.values())
+					if (entry.value.equals(value))
+						return true;
+			}
+		}
+		return false;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private Segment<V> segment(long key) {
+		return segments[(int) (key * 0x9E3779B97F4A7C15L >>> 60)];
+	}
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header("mubot_cache_requests_total", "counter", "Number of lookups of the bounded cache");
+		for (BoundedCache<?> cache : caches) {
+			writer.sample("mubot_cache_requests_total", cache.hits.sum(), "cache", cache.name, "result", "hit");
+			writer.sample("mubot_cache_requests_total", cache.misses.sum(), "cache", cache.name, "result", "miss");
+		}
+		writer.header("mubot_cache_loads_total", "counter", "Number of misses read through to the database");
+		for (BoundedCache<?> cache : caches) {
+			writer.sample("mubot_cache_loads_total", cache.loads.sum(), "cache", cache.name, "result", "loaded");
+			writer.sample("mubot_cache_loads_total", cache.coalesced.sum(), "cache", cache.name, "result",
+					"coalesced");
+			writer.sample("mubot_cache_loads_total", cache.failedLoads.sum(), "cache", cache.name, "result",
+					"failed");
+		}
+		writer.header("mubot_cache_evictions_total", "counter", "Number of entries dropped from the bounded cache");
+		for (BoundedCache<?> cache : caches) {
+			writer.sample("mubot_cache_evictions_total", cache.evicted.sum(), "cache", cache.name, "cause", "size");
+			writer.sample("mubot_cache_evictions_total", cache.expired.sum(), "cache", cache.name, "cause",
+					"expired");
+		}
+		writer.header("mubot_cache_entries", "gauge", "Number of entries in the bounded cache");
+		for (BoundedCache<?> cache : caches)
+			writer.sample("mubot_cache_entries", cache.size(), "cache", cache.name);
+	}
+
+	/**
+	 * A load of a guild, the first subscriber runs it and the others share its
+	 * result. It only stores the value if it is still the load of the guild once
+	 * done.
+	 */
+	private final class Load {
+		private final Mono<V> result;
+
+		private Load(long key, LongFunction<Mono<V>> loader) {
+			result = Mono.defer(() -> loader.apply(key)).doOnNext(value -> put(key, value, this))
+					.doOnError(error -> failedLoads.increment()).doFinally(signal -> loading.remove(key, this))
+					.cache();
+		}
+	}
+
+	private static final class Cached<V> {
+		private final V value;
+		private final long storedAt;
+
+		private Cached(V value, long storedAt) {
+			this.value = value;
+			this.storedAt = storedAt;
+		}
+	}
+
+	/**
+	 * Entries in least recently used order, guarded by the segment
+	 */
+	private static final class Segment<V> extends LinkedHashMap<Long, Cached<V>> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxEntries;
+		private final transient LongAdder evicted;
+
+		private Segment(int maxEntries, LongAdder evicted) {
+			super(16, 0.75f, true);
+			this.maxEntries = maxEntries;
+			this.evicted = evicted;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, Cached<V>> eldest) {
+			if (size() <= maxEntries)
+				return false;
+			evicted.increment();
+			return true;
+		}
+	}
+
+}
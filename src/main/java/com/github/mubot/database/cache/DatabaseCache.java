@@ -1,21 +1,199 @@
 package com.github.mubot.database.cache;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.github.mubot.command.util.Pair;
 import com.github.mubot.database.DatabaseManager;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.retry.Retry;
 
+/**
+ * A cache of a table that is loaded in the background. Until it is ready,
+ * lookups that miss read through to the database. Rows are streamed
+ * CACHE_FETCH_SIZE at a time, and a failed load is retried
+ * CACHE_WARM_UP_RETRIES times. With CACHE_MODE=bounded, or CACHE_MODE_&lt;TABLE&gt;
+ * for one table, nothing is loaded and the cache only keeps the
+ * CACHE_MAX_ENTRIES most recently used rows for CACHE_TTL_S seconds in a
+ * {@link BoundedCache}, reading the others through. When changes of other
+ * instances may have been missed, a loaded cache is emptied and loaded again,
+ * reading through until it is, and a bounded cache forgets its rows.
+ */
 public abstract class DatabaseCache {
 
+	private static final Logger LOGGER = Loggers.getLogger(DatabaseCache.class);
+
+	protected static final int FETCH_SIZE = Config.getInt("CACHE_FETCH_SIZE", 1000);
+	private static final int RETRIES = Config.getInt("CACHE_WARM_UP_RETRIES", 5);
+	private static final String MODE = Config.getString("CACHE_MODE", "preload");
+	private static final int MAX_ENTRIES = Config.getInt("CACHE_MAX_ENTRIES", 10000);
+	private static final Duration TTL = Duration.ofSeconds(Config.getInt("CACHE_TTL_S", 3600));
+
+	private static final List<DatabaseCache> caches = new CopyOnWriteArrayList<>();
+
+	static {
+		MetricsRegistry.register(DatabaseCache::collect);
+	}
+
 	protected DatabaseManager databaseManager;
 	protected AtomicInteger counter;
+	private final String name;
+	// null if the whole table is loaded
+	protected final BoundedCache<String> recent;
+	private volatile boolean ready = false;
+	// the number of loads started, rows of a load that was replaced by a reload
+	// are dropped, guarded by this
+	private int loads = 0;
+	private volatile long warmUpNanos = 0;
+	// completes once loading finished or gave up
+	private final Sinks.Empty<Void> loaded = Sinks.empty();
 
-	public DatabaseCache(DatabaseManager databaseManager) {
+	public DatabaseCache(DatabaseManager databaseManager, String name) {
 		this.databaseManager = databaseManager;
+		this.name = name;
+		final String mode = Config.getString("CACHE_MODE_" + name.toUpperCase(Locale.ROOT), MODE);
+		this.recent = "bounded".equalsIgnoreCase(mode) ? new BoundedCache<>(name, MAX_ENTRIES, TTL) : null;
 		counter = new AtomicInteger(0);
-		buildCache().block();
+		caches.add(this);
+	}
+
+	/**
+	 * Loads the cache, retrying if the database fails
+	 *
+	 * @return completes once the cache is ready or gave up loading
+	 */
+	public Mono<Void> warmUp() {
+		if (isBounded())
+			return Mono.fromRunnable(() -> {
+				ready = true;
+				LOGGER.info("Reading {} through a cache of the {} most recently used rows", name, MAX_ENTRIES);
+			}).then().doFinally(signal -> loaded.tryEmitEmpty());
+
+		return Mono.defer(() -> {
+			final int load;
+			synchronized (this) {
+				load = ++loads;
+			}
+			return load(load);
+		}).doFinally(signal -> loaded.tryEmitEmpty());
+	}
+
+	/**
+	 * Empties the cache and loads it again in the background, e.g. after changes
+	 * of other instances may have been missed. Lookups read through until it is
+	 * loaded, and a load that is still running is replaced. Nothing happens if the
+	 * warm-up didn't start yet, as it will read the current rows. A bounded cache
+	 * forgets its rows instead.
+	 */
+	public void reload() {
+		if (isBounded()) {
+			recent.invalidateAll();
+			return;
+		}
+
+		final int load;
+		synchronized (this) {
+			if (loads == 0)
+				return;
+			load = ++loads;
+			ready = false;
+			clear();
+		}
+		LOGGER.info("Reloading {}, reading through until it is loaded", name);
+		load(load).subscribe();
 	}
 
-	public abstract Mono<Void> buildCache();
+	/**
+	 * @param load the number of the load, its rows are dropped once another load
+	 *             started
+	 */
+	private Mono<Void> load(int load) {
+		final long start = System.nanoTime();
+		return Mono.defer(() -> {
+			counter.set(0);
+			return readAll().doOnNext(row -> {
+				synchronized (this) {
+					if (load != loads)
+						return;
+					counter.getAndIncrement();
+					loaded(row.getKey(), row.getValue());
+				}
+			}).then();
+		}).retryWhen(Retry.backoff(RETRIES, Duration.ofSeconds(1))).doOnSuccess(ignored -> {
+			synchronized (this) {
+				if (load != loads)
+					return;
+				ready = true;
+			}
+			warmUpNanos = System.nanoTime() - start;
+			LOGGER.info("Loaded {} rows of {} in {} ms", counter.get(), name,
+					TimeUnit.NANOSECONDS.toMillis(warmUpNanos));
+		}).onErrorResume(error -> {
+			LOGGER.error("Could not load " + name + ", reading through to the database: " + error.getMessage(),
+					error);
+			return Mono.empty();
+		});
+	}
+
+	/**
+	 * @return completes once loading finished, even if it failed
+	 */
+	public Mono<Void> whenLoaded() {
+		return loaded.asMono();
+	}
+
+	/**
+	 * @return true if only recently used rows are kept
+	 */
+	public boolean isBounded() {
+		return recent != null;
+	}
+
+	/**
+	 * @return true once every row was loaded, or right away if bounded
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * @return every row of the table as its guild id and value, streamed
+	 *         FETCH_SIZE at a time
+	 */
+	protected abstract Flux<Pair<Long, String>> readAll();
+
+	/**
+	 * Caches a loaded row, rows read through or stored while loading are newer
+	 * and are kept
+	 */
+	protected abstract void loaded(long guildId, String value);
+
+	/**
+	 * Empties the loaded cache before it is loaded again
+	 */
+	protected abstract void clear();
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header("mubot_cache_ready", "gauge", "1 once the cache of the table was loaded");
+		for (DatabaseCache cache : caches)
+			writer.sample("mubot_cache_ready", cache.ready ? 1 : 0, "cache", cache.name);
+		writer.header("mubot_cache_warm_up_seconds", "gauge", "Time taken to load the cache of the table");
+		for (DatabaseCache cache : caches)
+			writer.sample("mubot_cache_warm_up_seconds", cache.warmUpNanos / 1e9, "cache", cache.name);
+		writer.header("mubot_cache_warm_up_rows", "gauge", "Number of rows loaded into the cache of the table");
+		for (DatabaseCache cache : caches)
+			writer.sample("mubot_cache_warm_up_rows", cache.counter.get(), "cache", cache.name);
+	}
 }
@@ -1,82 +1,116 @@
 package com.github.mubot.database.cache;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.Map;
 import com.github.mubot.command.util.Pair;
 import com.github.mubot.database.DatabaseManager;
 
-import discord4j.core.object.entity.Guild;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
 public class GuildCache extends DatabaseCache {
 	private static final Logger LOGGER = Loggers.getLogger(DatabaseCache.class);
-	private static final ConcurrentHashMap<Long, String> GUILD_CACHE = new ConcurrentHashMap<>();
+	private static final LongStringMap GUILD_CACHE = new LongStringMap();
 	private final static String TABLE_NAME = "guilds";
 
 	private static final String GET_ALL_GUILDS_SQL = "SELECT guild_id, guild_name FROM " + TABLE_NAME;
-	private static final String INSERT_GUILD_SQL = "INSERT INTO " + TABLE_NAME
-			+ " (guild_id, guild_name) VALUES ($1, $2) ON CONFLICT (guild_id) DO UPDATE SET guild_name = $2";
-	private static final String DELETE_GUILD_SQL = "DELETE FROM " + TABLE_NAME + " WHERE guild_id = $1";
-	private static final String UPDATE_GUILD_NAME_SQL = "UPDATE " + TABLE_NAME + " SET guild_name = $2 WHERE guild_id = $1";
+	private static final String UPSERT_GUILDS_SQL = "INSERT INTO " + TABLE_NAME
+			+ " (guild_id, guild_name) SELECT * FROM unnest($1::bigint[], $2::text[])"
+			+ " ON CONFLICT (guild_id) DO UPDATE SET guild_name = EXCLUDED.guild_name"
+			+ " WHERE " + TABLE_NAME + ".guild_name IS DISTINCT FROM EXCLUDED.guild_name";
+	private static final String DELETE_GUILDS_SQL = "DELETE FROM " + TABLE_NAME + " WHERE guild_id = ANY($1::bigint[])";
 
 	public GuildCache(DatabaseManager databaseManager) {
-		super(databaseManager);
+		super(databaseManager, TABLE_NAME);
 	}
 
 	@Override
-	public Mono<Void> buildCache() {
-		return this.databaseManager.getClient().sql(GET_ALL_GUILDS_SQL).map((row,
-				rowMd) -> new Pair<Long, String>(row.get("guild_id", Long.class), row.get("guild_name", String.class)))
-				.all().doOnTerminate(() -> {
-					LOGGER.info("GUILD_CACHE count: " + counter.getAcquire());
-				}).onErrorResume(error -> Mono.empty()).map(pair -> {
-					long id = pair.getKey();
-					String name = pair.getValue();
-					// LOGGER.info(String.format("put %s in %d", prefix, id));
-					counter.getAndIncrement();
-					GUILD_CACHE.put(id, name);
-					return pair;
-				}).then();
+	protected Flux<Pair<Long, String>> readAll() {
+		return this.databaseManager.getClient().sql(GET_ALL_GUILDS_SQL)
+				.filter(statement -> statement.fetchSize(FETCH_SIZE))
+				.map((row, rowMd) -> new Pair<Long, String>(row.get("guild_id", Long.class),
+						row.get("guild_name", String.class)))
+				.all();
+	}
 
+	@Override
+	protected void loaded(long guildId, String guildName) {
+		// guilds stored while loading are newer
+		GUILD_CACHE.putIfAbsent(guildId, guildName);
+	}
+
+	@Override
+	protected void clear() {
+		GUILD_CACHE.clear();
 	}
 
-	public Mono<Void> offerGuild(Guild guild) {
-		String cachedName = GUILD_CACHE.get(guild.getId().asLong());
-		if (cachedName == null) {
-			return addGuild(guild.getId().asLong(), guild.getName());
-		} else if (!cachedName.equals(guild.getName())) {
-			return updateGuild(guild.getId().asLong(), guild.getName());
-		}
-		return Mono.empty();
+	/**
+	 * @param guildId   the id of the guild
+	 * @param guildName the current name of the guild
+	 * @return true if the guild is stored with this name, false if it isn't or
+	 *         the cache is bounded and didn't store it recently
+	 */
+	public boolean isStored(long guildId, String guildName) {
+		return guildName.equals(isBounded() ? recent.getIfPresent(guildId) : GUILD_CACHE.get(guildId));
 	}
 
-	private Mono<Void> addGuild(long guildId, String guildName) {
-		return databaseManager.getClient().sql(INSERT_GUILD_SQL).bind("$1", guildId).bind("$2", guildName).fetch()
-				.rowsUpdated().map(result -> {
-					LOGGER.info(String.format("Adding guild %s with id %d", guildName, guildId));
-					GUILD_CACHE.put(guildId, guildName);
-					return result;
-				}).then();
+	/**
+	 * Inserts or renames guilds with a single statement, rows that already have
+	 * the name are left as they are
+	 * 
+	 * @param guilds the names of the guilds by their ids
+	 */
+	public Mono<Void> putGuilds(Map<Long, String> guilds) {
+		if (guilds.isEmpty())
+			return Mono.empty();
+
+		final Long[] ids = guilds.keySet().toArray(new Long[0]);
+		final String[] names = guilds.values().toArray(new String[0]);
+		return databaseManager.getClient().sql(UPSERT_GUILDS_SQL).bind("$1", ids).bind("$2", names).fetch()
+				.rowsUpdated().doOnNext(result -> {
+					LOGGER.info(String.format("Stored %d guilds", guilds.size()));
+					guilds.forEach(isBounded() ? recent::put : GUILD_CACHE::put);
+				}).then(databaseManager.getCacheNotifier().guildsStored(guilds));
+	}
+
+	/**
+	 * Deletes guilds and forgets their prefixes with a single statement
+	 * 
+	 * @param guildIds the ids of the guilds the bot was removed from
+	 */
+	public Mono<Void> removeGuilds(Collection<Long> guildIds) {
+		if (guildIds.isEmpty())
+			return Mono.empty();
+
+		return databaseManager.getClient().sql(DELETE_GUILDS_SQL).bind("$1", guildIds.toArray(new Long[0])).fetch()
+				.rowsUpdated().doOnNext(result -> {
+					LOGGER.info(String.format("Removed %d guilds", guildIds.size()));
+					guildIds.forEach(this::guildRemoved);
+				}).then(databaseManager.getCacheNotifier().guildsRemoved(guildIds));
 	}
 
-	private Mono<Void> updateGuild(long guildId, String guildName) {
-		return databaseManager.getClient().sql(UPDATE_GUILD_NAME_SQL).bind("$1", guildId).bind("$2", guildName).fetch()
-				.rowsUpdated().map(result -> {
-					LOGGER.info(String.format("Updating guild with id %d with new name %s", guildId, guildName));
-					GUILD_CACHE.put(guildId, guildName);
-					return result;
-				}).then();
+	/**
+	 * Applies a guild name another instance stored, a bounded cache forgets the
+	 * guild instead
+	 */
+	public void guildChanged(long guildId, String guildName) {
+		if (isBounded())
+			recent.invalidate(guildId);
+		else
+			GUILD_CACHE.put(guildId, guildName);
 	}
 
-	public Mono<? extends Void> removeGuild(long guildId) {
-		return databaseManager.getClient().sql(DELETE_GUILD_SQL).bind("$1", guildId).fetch().rowsUpdated()
-				.map(result -> {
-					LOGGER.info(String.format("Removed guild id %d", guildId));
-					PrefixCache.removePrefix(guildId);
-					GUILD_CACHE.remove(guildId);
-					return result;
-				}).then();
+	/**
+	 * Forgets a deleted guild and its prefix
+	 */
+	public void guildRemoved(long guildId) {
+		databaseManager.getPrefixCache().removePrefix(guildId);
+		if (isBounded())
+			recent.invalidate(guildId);
+		else
+			GUILD_CACHE.remove(guildId);
 	}
 
 }
@@ -0,0 +1,345 @@
+package com.github.mubot.database.cache;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A concurrent map from ids like guild ids to strings, using 40 to 70 bytes per
+ * entry instead of the 80 or so of a ConcurrentHashMap&lt;Long, String&gt;.
+ * Keys and the index of their value are kept in two primitive arrays with open
+ * addressing, and equal values share one entry of a table of values counting
+ * their references, so a prefix used by many guilds is stored once. An index
+ * is reused for another value once no key uses it, so it is stored together
+ * with the generation of the index, which changes every time the index is
+ * reused. Lookups don't lock, they read the value and check that neither the
+ * key nor the generation of its index changed meanwhile, and may miss a change
+ * that is being made. Changes lock the map. Only positive keys, like
+ * snowflakes, are stored.
+ */
+public final class LongStringMap {
+
+	private static final long EMPTY = 0;
+	private static final long REMOVED = -1;
+	private static final long NO_VALUE = -1;
+	private static final int MIN_CAPACITY = 16;
+	// tables grow once this much of their slots are used, removed keys included
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle ENTRIES = MethodHandles.arrayElementVarHandle(long[].class);
+	private static final VarHandle VALUES = MethodHandles.arrayElementVarHandle(String[].class);
+	private static final VarHandle GENERATIONS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private volatile Table table = new Table(MIN_CAPACITY);
+	// keys and removed keys in the table, guarded by this
+	private int size = 0;
+	private int used = 0;
+
+	// the values and the generation of their index by their index, read without
+	// locking once an index is published in the table. Both grow together, the
+	// generations first
+	private volatile int[] generations = new int[MIN_CAPACITY];
+	private volatile String[] values = new String[MIN_CAPACITY];
+	// the rest of the value table is guarded by this: how many keys use each
+	// value, the indexes of unused values, and an open addressing index of the
+	// values holding their index + 1, 0 if empty or -1 if removed
+	private int[] references = new int[MIN_CAPACITY];
+	private int[] freeIndexes = new int[MIN_CAPACITY];
+	private int freeCount = 0;
+	private int nextIndex = 0;
+	private int[] lookup = new int[MIN_CAPACITY];
+	private int lookupUsed = 0;
+
+	/**
+	 * @param key the key to get the value of
+	 * @return the value of the key, null if it has none
+	 */
+	public String get(long key) {
+		if (key <= 0)
+			return null;
+
+		final Table current = table;
+		final long[] keys = current.keys;
+		final long[] entries = current.entries;
+		final int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final long found = (long) KEYS.getAcquire(keys, i);
+			if (found == EMPTY)
+				return null;
+			if (found != key)
+				continue;
+
+			final long entry = (long) ENTRIES.getAcquire(entries, i);
+			if (entry == NO_VALUE)
+				return null;
+			final int index = index(entry);
+			final String value = (String) VALUES.getAcquire(values, index);
+			// the key may have been removed and its slot reused meanwhile, or its value
+			// removed and the index reused for another value
+			if ((int) GENERATIONS.getAcquire(generations, index) != generation(entry)
+					|| (long) KEYS.getAcquire(keys, i) != key || (long) ENTRIES.getAcquire(entries, i) != entry)
+				return get(key);
+			return value;
+		}
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * @param value the value to look for
+	 * @return true if any key has this value
+	 */
+	public synchronized boolean containsValue(String value) {
+		return findValue(value) >= 0;
+	}
+
+	/**
+	 * @return the previous value of the key, null if it had none
+	 */
+	public synchronized String put(long key, String value) {
+		return put(key, value, false);
+	}
+
+	/**
+	 * @return the value the key already had, null if it had none and the value
+	 *         was put
+	 */
+	public synchronized String putIfAbsent(long key, String value) {
+		return put(key, value, true);
+	}
+
+	/**
+	 * @return the value the key had, null if it had none
+	 */
+	public synchronized String remove(long key) {
+		if (key <= 0)
+			return null;
+
+		final long[] keys = table.keys;
+		final long[] entries = table.entries;
+		final int mask = keys.length - 1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final long found = keys[i];
+			if (found == EMPTY)
+				return null;
+			if (found == key) {
+				final long entry = entries[i];
+				ENTRIES.setRelease(entries, i, NO_VALUE);
+				KEYS.setRelease(keys, i, REMOVED);
+				size--;
+				return release(index(entry));
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Removes every key. The indexes of values start over but keep their
+	 * generations, so a lookup that read an index before still notices it was
+	 * reused.
+	 */
+	public synchronized void clear() {
+		table = new Table(MIN_CAPACITY);
+		size = 0;
+		used = 0;
+		Arrays.fill(values, 0, nextIndex, null);
+		Arrays.fill(references, 0, nextIndex, 0);
+		freeCount = 0;
+		nextIndex = 0;
+		lookup = new int[MIN_CAPACITY];
+		lookupUsed = 0;
+	}
+
+	private String put(long key, String value, boolean onlyIfAbsent) {
+		Objects.requireNonNull(value);
+		if (key <= 0)
+			return null;
+
+		final long[] keys = table.keys;
+		final long[] entries = table.entries;
+		final int mask = keys.length - 1;
+		int slot = -1;
+		for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+			final long found = keys[i];
+			if (found == key) {
+				final int previous = index(entries[i]);
+				if (onlyIfAbsent)
+					return values[previous];
+				ENTRIES.setRelease(entries, i, intern(value));
+				return release(previous);
+			}
+			if (found == REMOVED && slot < 0)
+				slot = i;
+			if (found == EMPTY) {
+				if (slot < 0) {
+					slot = i;
+					used++;
+				}
+				break;
+			}
+		}
+
+		// the value is published before the key, so a reader finding the key finds
+		// its value
+		ENTRIES.setRelease(entries, slot, intern(value));
+		KEYS.setRelease(keys, slot, key);
+		size++;
+		if (used > keys.length * LOAD_FACTOR)
+			rehash();
+		return null;
+	}
+
+	/**
+	 * Copies the keys into a new table without the removed keys, twice as large if
+	 * they fill more than half of the load, and publishes it to readers
+	 */
+	private void rehash() {
+		final Table previous = table;
+		final Table next = new Table(grownCapacity(previous.keys.length, size));
+		final int mask = next.keys.length - 1;
+		for (int i = 0; i < previous.keys.length; i++) {
+			final long key = previous.keys[i];
+			if (key == EMPTY || key == REMOVED)
+				continue;
+			int slot = hash(key) & mask;
+			while (next.keys[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			next.keys[slot] = key;
+			next.entries[slot] = previous.entries[i];
+		}
+		used = size;
+		table = next;
+	}
+
+	/**
+	 * @return the index of the value and its generation, adding it to the value
+	 *         table if no key uses it yet
+	 */
+	private long intern(String value) {
+		final int found = findValue(value);
+		if (found >= 0) {
+			references[found]++;
+			return entry(found, generations[found]);
+		}
+
+		final int index = freeCount > 0 ? freeIndexes[--freeCount] : nextIndex++;
+		if (index == values.length) {
+			references = Arrays.copyOf(references, index * 2);
+			generations = Arrays.copyOf(generations, index * 2);
+			values = Arrays.copyOf(values, index * 2);
+		}
+		// the new generation is published with the value, a reader that finds the
+		// value finds the generation it belongs to
+		final int generation = generations[index] + 1;
+		generations[index] = generation;
+		VALUES.setRelease(values, index, value);
+		references[index] = 1;
+
+		final int mask = lookup.length - 1;
+		int slot = spread(value.hashCode()) & mask;
+		while (lookup[slot] > 0)
+			slot = (slot + 1) & mask;
+		if (lookup[slot] == 0)
+			lookupUsed++;
+		lookup[slot] = index + 1;
+		if (lookupUsed > lookup.length * LOAD_FACTOR)
+			rebuildLookup();
+		return entry(index, generation);
+	}
+
+	/**
+	 * Drops a reference to a value, freeing its index once no key uses it
+	 *
+	 * @return the value
+	 */
+	private String release(int index) {
+		final String value = values[index];
+		if (--references[index] > 0)
+			return value;
+
+		final int mask = lookup.length - 1;
+		int slot = spread(value.hashCode()) & mask;
+		while (lookup[slot] != index + 1)
+			slot = (slot + 1) & mask;
+		lookup[slot] = -1;
+		values[index] = null;
+		if (freeCount == freeIndexes.length)
+			freeIndexes = Arrays.copyOf(freeIndexes, freeCount * 2);
+		freeIndexes[freeCount++] = index;
+		return value;
+	}
+
+	private int findValue(String value) {
+		final int mask = lookup.length - 1;
+		for (int slot = spread(value.hashCode()) & mask;; slot = (slot + 1) & mask) {
+			final int entry = lookup[slot];
+			if (entry == 0)
+				return -1;
+			if (entry > 0 && values[entry - 1].equals(value))
+				return entry - 1;
+		}
+	}
+
+	private void rebuildLookup() {
+		final int[] rebuilt = new int[grownCapacity(lookup.length, nextIndex - freeCount)];
+		final int mask = rebuilt.length - 1;
+		for (int index = 0; index < nextIndex; index++) {
+			if (values[index] == null)
+				continue;
+			int slot = spread(values[index].hashCode()) & mask;
+			while (rebuilt[slot] != 0)
+				slot = (slot + 1) & mask;
+			rebuilt[slot] = index + 1;
+		}
+		lookup = rebuilt;
+		lookupUsed = nextIndex - freeCount;
+	}
+
+	/**
+	 * @return the capacity doubled if the entries fill more than half of the load,
+	 *         so a table of removed keys is only cleaned up
+	 */
+	private static int grownCapacity(int capacity, int entries) {
+		return entries > capacity * LOAD_FACTOR / 2 && capacity < 1 << 30 ? capacity * 2 : capacity;
+	}
+
+	private static long entry(int index, int generation) {
+		return (long) generation << 32 | index;
+	}
+
+	private static int index(long entry) {
+		return (int) entry;
+	}
+
+	private static int generation(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	private static int hash(long key) {
+		final long mixed = key * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ (mixed >>> 32));
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static final class Table {
+		private final long[] keys;
+		// the index of the value of every key and its generation
+		private final long[] entries;
+
+		private Table(int capacity) {
+			keys = new long[capacity];
+			entries = new long[capacity];
+		}
+	}
+
+}
@@ -1,9 +1,10 @@
 package com.github.mubot.database.cache;
 
-import java.util.concurrent.ConcurrentHashMap;
+import com.github.mubot.command.help.HelpCache;
 import com.github.mubot.command.util.Pair;
 import com.github.mubot.database.DatabaseManager;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
@@ -12,53 +13,133 @@ public class PrefixCache extends DatabaseCache {
 	private static final String DEFAULT_COMMAND_PREFIX = "!";
 	private static final Logger LOGGER = Loggers.getLogger(PrefixCache.class);
 
-	private static final ConcurrentHashMap<Long, String> PREFIX_CACHE = new ConcurrentHashMap<Long, String>();
+	// only guilds with a custom prefix, and while loading guilds read through
+	// without one as blank
+	private static final LongStringMap PREFIX_CACHE = new LongStringMap();
 	private final static String TABLE_NAME = "prefixes";
 
 	private static final String GET_ALL_PREFIX_SQL = "SELECT guild_id, prefix FROM " + TABLE_NAME;
+	private static final String GET_PREFIX_SQL = "SELECT prefix FROM " + TABLE_NAME + " WHERE guild_id = $1";
 	private static final String INSERT_PREFIX_SQL = "INSERT INTO " + TABLE_NAME
 			+ " (guild_id, prefix) VALUES ($1, $2) ON CONFLICT (guild_id) DO UPDATE SET prefix = $2";
 
 	public PrefixCache(DatabaseManager databaseManager) {
-		super(databaseManager);
+		super(databaseManager, TABLE_NAME);
 	}
 
 	@Override
-	public Mono<Void> buildCache() {
-		return this.databaseManager.getClient().sql(GET_ALL_PREFIX_SQL).map((row,
-				rowMd) -> new Pair<Long, String>(row.get("guild_id", Long.class), row.get("prefix", String.class)))
-				.all().doOnTerminate(() -> {
-					LOGGER.info("PREFIX_CACHE count: " + counter.getAcquire());
-				}).onErrorResume(error -> Mono.empty()).map(pair -> {
-					long id = pair.getKey();
-					String prefix = pair.getValue();
-					// LOGGER.info(String.format("put %s in %d", prefix, id));
-					counter.getAndIncrement();
-					PREFIX_CACHE.put(id, prefix);
-					return pair;
-				}).then();
+	protected Flux<Pair<Long, String>> readAll() {
+		return this.databaseManager.getClient().sql(GET_ALL_PREFIX_SQL)
+				.filter(statement -> statement.fetchSize(FETCH_SIZE))
+				.map((row, rowMd) -> new Pair<Long, String>(row.get("guild_id", Long.class),
+						row.get("prefix", String.class)))
+				.all();
+	}
 
+	@Override
+	protected void loaded(long guildId, String prefix) {
+		// prefixes read through or set while loading are newer
+		if (!DEFAULT_COMMAND_PREFIX.equals(prefix))
+			PREFIX_CACHE.putIfAbsent(guildId, prefix);
+	}
+
+	@Override
+	protected void clear() {
+		PREFIX_CACHE.clear();
 	}
 
+	/**
+	 * @param id the id of the guild
+	 * @return the prefix of the guild, the default one if the cache is bounded
+	 *         and the guild wasn't used recently
+	 */
 	public String getPrefix(long id) {
-		String prefix = PREFIX_CACHE.get(id);
-		if (prefix == null || prefix.isBlank()) {
-			return DEFAULT_COMMAND_PREFIX;
-		}
+		return orDefault(isBounded() ? recent.getIfPresent(id) : PREFIX_CACHE.get(id));
+	}
+
+	/**
+	 * Gets the prefix of a guild, reading it from the database if the cache is
+	 * still loading and didn't see the guild yet, or if it is bounded and doesn't
+	 * hold the guild
+	 * 
+	 * @param id the id of the guild
+	 * @return the prefix of the guild
+	 */
+	public Mono<String> fetchPrefix(long id) {
+		final Mono<String> prefix;
+		if (isBounded())
+			prefix = recent.get(id, this::readPrefix);
+		else if (isReady() || PREFIX_CACHE.containsKey(id))
+			return Mono.just(getPrefix(id));
+		else
+			prefix = readPrefix(id).doOnNext(read -> PREFIX_CACHE.putIfAbsent(id, read));
+
+		return prefix.map(PrefixCache::orDefault).onErrorResume(error -> {
+			LOGGER.error("Could not read the prefix of " + id + ": " + error.getMessage());
+			return Mono.just(getPrefix(id));
+		});
+	}
 
-		return prefix;
+	/**
+	 * @return the prefix of the guild in the database, blank if it has none
+	 */
+	private Mono<String> readPrefix(long id) {
+		return databaseManager.getClient().sql(GET_PREFIX_SQL).bind("$1", id)
+				.map((row, rowMd) -> row.get("prefix", String.class)).one()
+				// guilds without a prefix are remembered as blank, the default
+				.defaultIfEmpty("");
 	}
 
 	public Mono<Void> addPrefix(long id, String prefix) {
 		return databaseManager.getClient().sql(INSERT_PREFIX_SQL).bind("$1", id).bind("$2", prefix).fetch()
 				.rowsUpdated().map(result -> {
 					LOGGER.info(String.format("Adding prefix %s for server %d", prefix, id));
-					PREFIX_CACHE.put(id, prefix);
+					if (isBounded()) {
+						final String oldPrefix = recent.invalidate(id);
+						recent.put(id, prefix);
+						releasePrefix(oldPrefix);
+					} else {
+						cachePrefix(id, prefix);
+					}
 					return result;
-				}).then();
+				}).then(databaseManager.getCacheNotifier().prefixStored(id, prefix));
+	}
+
+	/**
+	 * Applies a prefix another instance stored, a bounded cache reads it again the
+	 * next time the guild is used
+	 */
+	public void prefixChanged(long id, String prefix) {
+		if (isBounded())
+			releasePrefix(recent.invalidate(id));
+		else
+			cachePrefix(id, prefix);
+	}
+
+	private void cachePrefix(long id, String prefix) {
+		// the default prefix isn't kept, except while loading so the old row isn't
+		// loaded over it
+		releasePrefix(DEFAULT_COMMAND_PREFIX.equals(prefix) && isReady() ? PREFIX_CACHE.remove(id)
+				: PREFIX_CACHE.put(id, prefix));
+	}
+
+	public void removePrefix(long guildId) {
+		releasePrefix(isBounded() ? recent.invalidate(guildId) : PREFIX_CACHE.remove(guildId));
+	}
+
+	/**
+	 * Drops the cached help of a prefix a guild stopped using if no other guild
+	 * uses it, so the help cache only holds prefixes that are in use. A bounded
+	 * cache only knows the recently used guilds, the help of a prefix still used
+	 * by others is rendered again when they need it.
+	 */
+	private void releasePrefix(String oldPrefix) {
+		if (oldPrefix != null && !oldPrefix.isBlank() && !oldPrefix.equals(DEFAULT_COMMAND_PREFIX)
+				&& !(isBounded() ? recent.containsValue(oldPrefix) : PREFIX_CACHE.containsValue(oldPrefix)))
+			HelpCache.invalidate(oldPrefix);
 	}
 
-	public static void removePrefix(long guildId) {
-		PREFIX_CACHE.remove(guildId);
+	private static String orDefault(String prefix) {
+		return prefix == null || prefix.isBlank() ? DEFAULT_COMMAND_PREFIX : prefix;
 	}
 }
@@ -1,25 +1,35 @@
 package com.github.mubot.eventlistener;
 
 import static com.github.mubot.command.util.CommandUtil.sendReply;
-import static com.github.mubot.command.util.CommandUtil.getEscapedGuildPrefixFromEvent;
-import static com.github.mubot.command.util.CommandUtil.getRawGuildPrefixFromEvent;
+import static com.github.mubot.command.util.CommandUtil.fetchRawGuildPrefixFromEvent;
 
-import java.util.Arrays;
-import java.util.function.Predicate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 import com.github.mubot.command.Command;
+import com.github.mubot.command.CommandContext;
 import com.github.mubot.command.CommandExecutor;
 import com.github.mubot.command.CommandResponse;
 import com.github.mubot.command.CommandsHelper;
 import com.github.mubot.command.exceptions.CommandException;
+import com.github.mubot.command.scheduler.CommandLanes;
+import com.github.mubot.command.scheduler.CommandScheduler;
+import com.github.mubot.command.util.CommandTokenizer;
 import com.github.mubot.command.util.EmojiHelper;
+import com.github.mubot.command.util.Pair;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.CommandMetrics;
+import com.github.mubot.metrics.CommandTimer;
+
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.User;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.function.TupleUtils;
 import reactor.util.Logger;
 import reactor.util.Loggers;
+import reactor.util.context.Context;
 
 public class CommandListener implements EventListener<MessageCreateEvent> {
 
@@ -27,6 +37,9 @@ public class CommandListener implements EventListener<MessageCreateEvent> {
 
 	private static final int MAX_COMMANDS_PER_MESSAGE = 5;
 	private static final CommandExecutor commandExecutor = new CommandExecutor();
+	private static final boolean ORDERED_LANES = Config.getBoolean("COMMAND_ORDERED_LANES", true);
+	private static final CommandScheduler commandScheduler = CommandScheduler.getInstance();
+	private static final CommandLanes commandLanes = CommandLanes.getInstance();
 
 	@Override
 	public Class<MessageCreateEvent> getEventType() {
@@ -44,42 +57,81 @@ public class CommandListener implements EventListener<MessageCreateEvent> {
 
 	/**
 	 * Called when a message is created that is not from a bot. This checks the
-	 * message for any commands and executes those commands
+	 * message for any commands and schedules those commands to be executed. With
+	 * ordered lanes the commands run one after another, after the commands of
+	 * earlier messages in the same guild.
 	 * 
 	 * @param event the MessageCreateEvent
 	 * @return Mono<Void>
 	 */
 	private Mono<Void> receiveMessage(MessageCreateEvent event) {
-		return parseComamnds(event).flatMap(commandString -> Mono
-				.justOrEmpty(CommandsHelper.get(commandString.split(" ")[0].toLowerCase()))
-				.flatMap(command -> Mono.just(commandString.trim().split(" "))
-						.flatMap(splitCommand -> Mono.just(Arrays.copyOfRange(splitCommand, 1, splitCommand.length)))
-						.flatMap(commandArgs -> executeCommand(event, command, commandArgs)))
+		return fetchRawGuildPrefixFromEvent(event).flatMap(prefix -> receiveMessage(event, prefix));
+	}
+
+	private Mono<Void> receiveMessage(MessageCreateEvent event, String prefix) {
+		final List<Pair<Command, CharSequence>> commands = parseCommands(event.getMessage().getContent(), prefix);
+		if (commands.isEmpty())
+			return Mono.empty();
+
+		if (!ORDERED_LANES)
+			return Flux.fromIterable(commands).flatMap(command -> scheduleCommand(event, command)).then();
+
+		// private messages have no guild, they are ordered per channel instead
+		final long laneId = event.getGuildId().orElse(event.getMessage().getChannelId()).asLong();
+		return commandLanes.submit(laneId,
+				Flux.fromIterable(commands).concatMap(command -> scheduleCommand(event, command)).then(),
+				Mono.defer(() -> {
+					final CommandContext context = new CommandContext(event);
+					return commandScheduler.reject(event).onErrorResume(CommandException.class,
+							error -> onCommandException(context, error));
+				}));
+	}
+
+	private Mono<Void> scheduleCommand(MessageCreateEvent event, Pair<Command, CharSequence> command) {
+		// every command resolves the guild, channels and permissions it needs once
+		final CommandContext context = new CommandContext(event);
+		return commandScheduler.schedule(event, executeCommand(context, command.getKey(), command.getValue()))
 				.onErrorResume(CommandException.class, error -> {
-					return onCommandException(event, error);
-				})).then();
+					return onCommandException(context, error);
+				});
 	}
 
-	private Flux<String> parseComamnds(MessageCreateEvent event) {
-		return Mono.justOrEmpty(event.getMessage().getContent())
-				.map(content -> content.split(" (?=" + getEscapedGuildPrefixFromEvent(event) + ")"))
-				.flatMapMany(Flux::fromArray).map(content -> {
-					if (content.startsWith(getRawGuildPrefixFromEvent(event)))
-						return content.replaceAll(getEscapedGuildPrefixFromEvent(event), "");
-					else
-						return "";
-				}).filter(Predicate.not(String::isBlank)).take(MAX_COMMANDS_PER_MESSAGE);
+	/**
+	 * Reads up to MAX_COMMANDS_PER_MESSAGE commands from the message content
+	 * 
+	 * @param content the content of the message
+	 * @param prefix  the command prefix of the guild
+	 * @return the commands found in the message paired with their arguments
+	 */
+	public static List<Pair<Command, CharSequence>> parseCommands(String content, String prefix) {
+		if (!CommandTokenizer.mayContainCommand(content, prefix))
+			return Collections.emptyList();
+
+		final List<Pair<Command, CharSequence>> commands = new ArrayList<>(1);
+		final CommandTokenizer tokenizer = new CommandTokenizer(content, prefix);
+		for (int i = 0; i < MAX_COMMANDS_PER_MESSAGE; i++) {
+			final long start = System.nanoTime();
+			if (!tokenizer.next())
+				break;
+
+			final Optional<Command> command = CommandsHelper.get(tokenizer.getTrigger());
+			if (command.isPresent()) {
+				commands.add(new Pair<Command, CharSequence>(command.get(), tokenizer.getArguments()));
+				CommandMetrics.recordParse(command.get().getPrimaryTrigger(), System.nanoTime() - start);
+			}
+		}
+		return commands;
 	}
 
-	private Mono<Void> onCommandException(MessageCreateEvent event, CommandException error) {
+	private Mono<Void> onCommandException(CommandContext context, CommandException error) {
 		long guildId = 0;
-		if (event.getGuildId().isPresent())
-			guildId = event.getGuildId().get().asLong();
-		LOGGER.error("GuildId: " + guildId + ", EventMessage: " + event.getMessage().getContent() + ", ErrorMessage: "
-				+ error.getMessage());
+		if (context.getGuildId().isPresent())
+			guildId = context.getGuildId().get().asLong();
+		LOGGER.error("GuildId: " + guildId + ", EventMessage: " + context.getMessage().getContent()
+				+ ", ErrorMessage: " + error.getMessage());
 
 		// Send command errors back as a reply to the user who used the command
-		return sendReply(event,
+		return sendReply(context,
 				CommandResponse.createFlat(
 						EmojiHelper.NO_ENTRY + " " + error.getUserFriendlyMessage() + " " + EmojiHelper.NO_ENTRY))
 								.then();
@@ -87,18 +139,21 @@ public class CommandListener implements EventListener<MessageCreateEvent> {
 	}
 
 	/**
-	 * Processes the given command and returns the response if any
+	 * Processes the given command and sends its response if any, recording how
+	 * long each stage took
 	 * 
-	 * @param event   the message event
+	 * @param context the context of the command
 	 * @param command the command to process
-	 * @param args    the parameters of the command
+	 * @param args    the unparsed arguments of the command
 	 * @return the response to the command
 	 */
-	private Mono<Void> executeCommand(MessageCreateEvent event, Command command, String[] args) {
-		return commandExecutor.executeCommand(event, command, args).flatMap(response -> {
-			return sendReply(event, response);
-		}).defaultIfEmpty(CommandResponse.emptyFlat()).elapsed().doOnNext(TupleUtils.consumer(
-				(elapsed, response) -> LOGGER.info("{} took {} ms to complete", command.getPrimaryTrigger(), elapsed)))
-				.then();
+	private Mono<Void> executeCommand(CommandContext context, Command command, CharSequence args) {
+		return Mono.defer(() -> {
+			final CommandTimer timer = CommandMetrics.startTimer(command.getPrimaryTrigger());
+			return commandExecutor.executeCommand(context, command, args)
+					.contextWrite(Context.of(CommandTimer.class, timer)).doOnSuccess(response -> timer.executed())
+					.doOnError(timer::failed).flatMap(response -> timer.timeReply(sendReply(context, response)))
+					.doFinally(signal -> timer.lookups(context.getLookupCount())).then();
+		});
 	}
 }
\ No newline at end of file
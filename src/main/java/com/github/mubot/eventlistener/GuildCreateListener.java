@@ -18,10 +18,9 @@ public class GuildCreateListener implements EventListener<GuildCreateEvent> {
 
 	@Override
 	public Mono<Void> consume(GuildCreateEvent e) {
-		return Mono.just(e).flatMap(event -> {
-			LOGGER.info("GuildCreateEvent consumed: " + event.getGuild().getId().asLong() + ", "
-					+ event.getGuild().getName());
-			return DatabaseManager.getInstance().getGuildCache().offerGuild(event.getGuild());
+		return Mono.fromRunnable(() -> {
+			LOGGER.info("GuildCreateEvent consumed: " + e.getGuild().getId().asLong() + ", " + e.getGuild().getName());
+			DatabaseManager.getInstance().getGuildReconciler().guildCreated(e.getGuild());
 		});
 	}
 
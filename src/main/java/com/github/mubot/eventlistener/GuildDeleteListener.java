@@ -18,9 +18,10 @@ public class GuildDeleteListener implements EventListener<GuildDeleteEvent> {
 
 	@Override
 	public Mono<Void> consume(GuildDeleteEvent e) {
-		return Mono.just(e).flatMap(event -> {
-			LOGGER.info("GuildDeleteEvent consumed: " + event.getGuildId().asLong());
-			return DatabaseManager.getInstance().getGuildCache().removeGuild(event.getGuildId().asLong());
+		return Mono.fromRunnable(() -> {
+			LOGGER.info("GuildDeleteEvent consumed: " + e.getGuildId().asLong()
+					+ (e.isUnavailable() ? ", unavailable" : ""));
+			DatabaseManager.getInstance().getGuildReconciler().guildDeleted(e.getGuildId().asLong(), e.isUnavailable());
 		});
 	}
 
@@ -1,10 +1,19 @@
 package com.github.mubot.eventlistener;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import com.github.mubot.music.GuildMusicManager;
+import com.github.mubot.music.PlaybackCheckpoint;
+import com.github.mubot.music.PlaybackCheckpoint.GuildState;
+import com.github.mubot.music.VoiceReadiness;
 
+import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.lifecycle.ReadyEvent;
 import discord4j.core.object.VoiceState;
 import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.channel.VoiceChannel;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.function.TupleUtils;
@@ -22,26 +31,47 @@ public class ReadyListener implements EventListener<ReadyEvent> {
 
 	@Override
 	public Mono<Void> consume(ReadyEvent e) {
-		return Mono.just(e).flatMapMany(ReadyListener::processReadyEvent).then();
+		final List<Long> guildIds = e.getGuilds().stream().map(guild -> guild.getId().asLong())
+				.collect(Collectors.toList());
+		return Mono.just(e).flatMapMany(event -> processReadyEvent(event, guildIds)).then()
+				.doFinally(signal -> PlaybackCheckpoint.restoreFinished(guildIds));
 	}
 
 	/**
 	 * Called once initial handshakes with gateway are completed. Will reconnect any
-	 * voice channels the bot is still connected to and create a TrackScheduler
+	 * voice channels the bot is still connected to or was connected to before a
+	 * restart, create a TrackScheduler and resume the playback saved in the
+	 * checkpoint. The guilds of the shard are saved again once this is done
 	 * 
-	 * @param event the {@link ReadyEvent}
+	 * @param event    the {@link ReadyEvent}
+	 * @param guildIds the guilds of the shard that is ready
 	 * @return
 	 */
-	private static Flux<Object> processReadyEvent(ReadyEvent event) {
+	private static Flux<Object> processReadyEvent(ReadyEvent event, List<Long> guildIds) {
 		LOGGER.info("Ready Event consumed.");
-		return Flux.fromIterable(event.getGuilds()).flatMap(guild -> {
-			return event.getSelf().asMember(guild.getId()).flatMap(Member::getVoiceState)
-					.flatMap(VoiceState::getChannel).flatMap(channel -> {
-						return GuildMusicManager.getOrCreate(channel.getGuildId()).flatMap(
-								guildMusic -> channel.join(spec -> spec.setProvider(guildMusic.getAudioProvider())));
-					}).elapsed().doOnNext(TupleUtils.consumer((elapsed, response) -> LOGGER
-							.info("ReadyEvent channel reconnect took {} ms to be processed", elapsed)))
-					.then();
-		});
+		return PlaybackCheckpoint.restore(guildIds).defaultIfEmpty(Collections.emptyMap())
+				.flatMapMany(checkpoint -> Flux.fromIterable(event.getGuilds()).flatMap(guild -> {
+					final GuildState state = checkpoint.get(guild.getId().asLong());
+					final Mono<VoiceChannel> savedChannel = state == null || state.getChannelId() == 0 ? Mono.empty()
+							: event.getClient().getChannelById(Snowflake.of(state.getChannelId()))
+									.ofType(VoiceChannel.class);
+
+					return event.getSelf().asMember(guild.getId()).flatMap(Member::getVoiceState)
+							.flatMap(VoiceState::getChannel).switchIfEmpty(savedChannel).flatMap(channel -> {
+								return GuildMusicManager.getOrCreate(channel.getGuildId())
+										.flatMap(guildMusic -> channel
+												.join(spec -> spec.setProvider(guildMusic.getAudioProvider()))
+												.doOnSuccess(connection -> {
+													VoiceReadiness.connected(channel.getGuildId(), channel.getId());
+													if (state != null) {
+														state.restore(guildMusic.getTrackScheduler());
+														LOGGER.info("{Guild ID: {}} Restored playback with {} queued",
+																guild.getId().asLong(), state.getQueueSize());
+													}
+												}));
+							}).elapsed().doOnNext(TupleUtils.consumer((elapsed, response) -> LOGGER
+									.info("ReadyEvent channel reconnect took {} ms to be processed", elapsed)))
+							.then();
+				}));
 	}
 }
@@ -1,6 +1,7 @@
 package com.github.mubot.eventlistener;
 
 import com.github.mubot.music.GuildMusicManager;
+import com.github.mubot.music.VoiceReadiness;
 
 import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.VoiceStateUpdateEvent;
@@ -31,12 +32,14 @@ public class VoiceStateUpdateListener implements EventListener<VoiceStateUpdateE
 		final Snowflake guildId = event.getCurrent().getGuildId();
 		if (event.isLeaveEvent()) {
 			LOGGER.info("{Guild ID: {}} Voice channel left", guildId.asLong());
+			VoiceReadiness.disconnected(guildId);
 			GuildMusicManager.destroy(guildId);
 		} else if (event.isJoinEvent()) {
 			LOGGER.info("{Guild ID: {}} Voice channel joined", guildId.asLong());
+			event.getCurrent().getChannelId().ifPresent(channelId -> VoiceReadiness.connected(guildId, channelId));
 		} else if (event.isMoveEvent()) {
 			LOGGER.info("{Guild ID: {}} Voice channel moved", guildId.asLong());
-
+			event.getCurrent().getChannelId().ifPresent(channelId -> VoiceReadiness.connected(guildId, channelId));
 		}
 
 		return Mono.empty();
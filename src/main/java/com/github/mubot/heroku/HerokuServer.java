@@ -2,6 +2,8 @@ package com.github.mubot.heroku;
 
 import java.io.IOException;
 
+import com.github.mubot.metrics.MetricsEndpoint;
+
 import reactor.core.publisher.Mono;
 import reactor.netty.http.server.HttpServer;
 import reactor.netty.http.server.HttpServerRoutes;
@@ -38,6 +40,7 @@ public class HerokuServer {
 	private void routes(HttpServerRoutes routes) {
 		routeIndex(routes);
 		routeInvite(routes);
+		routeMetrics(routes);
 	}
 
 	private void routeIndex(HttpServerRoutes routes) {
@@ -54,4 +57,8 @@ public class HerokuServer {
 						.header(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(inviteHtml.length()))
 						.sendString(Mono.just(inviteHtml)));
 	}
+
+	private void routeMetrics(HttpServerRoutes routes) {
+		MetricsEndpoint.route(routes);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.github.mubot.main;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Reads optional settings from environment variables, falling back to a
+ * default value if the variable isn't set or can't be parsed
+ */
+public final class Config {
+
+	private static final Logger LOGGER = Loggers.getLogger(Config.class);
+
+	private Config() {
+	}
+
+	public static String getString(String name, String defaultValue) {
+		String value = System.getenv(name);
+		return value == null || value.isBlank() ? defaultValue : value.trim();
+	}
+
+	public static int getInt(String name, int defaultValue) {
+		String value = getString(name, null);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value \"{}\" for {}, using default {}", value, name, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public static double getDouble(String name, double defaultValue) {
+		String value = getString(name, null);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			LOGGER.warn("Invalid value \"{}\" for {}, using default {}", value, name, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	public static boolean getBoolean(String name, boolean defaultValue) {
+		String value = getString(name, null);
+		return value == null ? defaultValue : Boolean.parseBoolean(value);
+	}
+
+}
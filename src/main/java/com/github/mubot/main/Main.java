@@ -1,7 +1,10 @@
 package com.github.mubot.main;
 
+import com.github.mubot.music.node.AudioNode;
+
 import discord4j.core.DiscordClientBuilder;
 import discord4j.core.GatewayDiscordClient;
+import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -10,6 +13,13 @@ public class Main {
 	private static final Logger LOGGER = Loggers.getLogger(Main.class);
 
 	public static void main(String[] args) {
+		if (Config.getBoolean("AUDIO_NODE", false)) {
+			// run as an audio node for other bot processes instead of logging in
+			AudioNode.start(Config.getInt("AUDIO_NODE_PORT", 8090));
+			Mono.never().block();
+			return;
+		}
+
 		String discordApiToken = System.getenv("token");
 		try {
 			if (discordApiToken == null)
@@ -12,6 +12,10 @@ import com.github.mubot.eventlistener.MuteOnJoinListener;
 import com.github.mubot.eventlistener.ReadyListener;
 import com.github.mubot.eventlistener.VoiceStateUpdateListener;
 import com.github.mubot.heroku.HerokuServer;
+import com.github.mubot.music.AudioLoadGovernor;
+import com.github.mubot.music.IdleReaper;
+import com.github.mubot.music.PlaybackCheckpoint;
+import com.github.mubot.music.node.AudioNodes;
 
 import discord4j.core.GatewayDiscordClient;
 import discord4j.core.event.domain.Event;
@@ -22,20 +26,22 @@ public class MuBot {
 
 	private static final Logger LOGGER = Loggers.getLogger(MuBot.class);
 
+	private static final int DEFAULT_SERVER_PORT = 8080;
+
 	private GatewayDiscordClient client;
 
 	public MuBot(GatewayDiscordClient client) {
 		this.client = client;
 		// we should only find this when running on Heroku
 		String port = System.getenv("PORT");
-		if (port != null) {
-			// bind PORT for Heroku integration
-			try {
-				HerokuServer.create(Integer.parseInt(port));
-			} catch (NumberFormatException | IOException e) {
-				LOGGER.error(e.getMessage(), e);
-			}
-		} else {
+		// bind PORT for Heroku integration, otherwise serve /metrics on SERVER_PORT
+		try {
+			HerokuServer.create(Config.getInt("PORT", Config.getInt("SERVER_PORT", DEFAULT_SERVER_PORT)));
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Could not start server: " + e.getMessage(), e);
+		}
+
+		if (port == null) {
 			LOGGER.info("Not running on Heroku");
 			// only log messages on the local client
 			// MessageLogger.create(client);
@@ -43,6 +49,10 @@ public class MuBot {
 		}
 
 		DatabaseManager.create();
+		PlaybackCheckpoint.start();
+		IdleReaper.start(client);
+		AudioNodes.start();
+		AudioLoadGovernor.start();
 		if (client.getEventDispatcher() != null) {
 			registerListener(new ReadyListener());
 			registerListener(new VoiceStateUpdateListener());
@@ -0,0 +1,125 @@
+package com.github.mubot.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.command.exceptions.CommandException;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Latency, error and throughput metrics of every command, by primary trigger.
+ * The latency of a command is broken into the stages parse, permissions,
+ * execute and reply. Only triggers of known commands are recorded so the
+ * number of label values can't grow with what users type.
+ */
+public final class CommandMetrics implements MetricsCollector {
+
+	private static final String STAGE_SECONDS = "mubot_command_stage_seconds";
+	private static final String COMMANDS_TOTAL = "mubot_commands_total";
+	private static final String ERRORS_TOTAL = "mubot_command_errors_total";
+	private static final String LOOKUPS_TOTAL = "mubot_command_lookups_total";
+
+	private static final CommandMetrics instance = new CommandMetrics();
+
+	private final Map<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+	private CommandMetrics() {
+	}
+
+	public static CommandMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Records the time it took to read a command from the message content
+	 *
+	 * @param trigger the primary trigger of the command
+	 * @param nanos   the time spent parsing in nanoseconds
+	 */
+	public static void recordParse(String trigger, long nanos) {
+		instance.getStats(trigger).parse.record(nanos);
+	}
+
+	/**
+	 * Starts timing an execution of a command
+	 *
+	 * @param trigger the primary trigger of the command
+	 * @return the timer of this execution
+	 */
+	public static CommandTimer startTimer(String trigger) {
+		return new CommandTimer(instance.getStats(trigger));
+	}
+
+	/**
+	 * Adds the time spent subscribed to the given permission check to the
+	 * permission stage of the command being executed, if any. Nested and
+	 * concurrent checks of the same command are only counted once.
+	 *
+	 * @param check the permission check
+	 * @return the timed permission check
+	 */
+	public static <T> Mono<T> timePermissionCheck(Mono<T> check) {
+		return Mono.deferContextual(context -> context.<CommandTimer>getOrEmpty(CommandTimer.class)
+				.map(timer -> timer.timePermissions(check)).orElse(check));
+	}
+
+	CommandStats getStats(String trigger) {
+		return stats.computeIfAbsent(trigger, CommandStats::new);
+	}
+
+	@Override
+	public void collect(PrometheusWriter writer) {
+		writer.header(STAGE_SECONDS, "histogram", "Latency of each stage of a command");
+		for (CommandStats command : stats.values()) {
+			command.parse.write(writer, STAGE_SECONDS, "command", command.trigger, "stage", "parse");
+			command.permissions.write(writer, STAGE_SECONDS, "command", command.trigger, "stage", "permissions");
+			command.execute.write(writer, STAGE_SECONDS, "command", command.trigger, "stage", "execute");
+			command.reply.write(writer, STAGE_SECONDS, "command", command.trigger, "stage", "reply");
+		}
+
+		writer.header(COMMANDS_TOTAL, "counter", "Number of commands executed");
+		for (CommandStats command : stats.values()) {
+			writer.sample(COMMANDS_TOTAL, command.executions.sum(), "command", command.trigger);
+		}
+
+		writer.header(ERRORS_TOTAL, "counter",
+				"Number of commands that failed, either with an error shown to the user or an internal error");
+		for (CommandStats command : stats.values()) {
+			writer.sample(ERRORS_TOTAL, command.userErrors.sum(), "command", command.trigger, "type", "user");
+			writer.sample(ERRORS_TOTAL, command.internalErrors.sum(), "command", command.trigger, "type",
+					"internal");
+		}
+
+		writer.header(LOOKUPS_TOTAL, "counter",
+				"Number of guild, channel, voice state and permission lookups made by commands");
+		for (CommandStats command : stats.values()) {
+			writer.sample(LOOKUPS_TOTAL, command.lookups.sum(), "command", command.trigger);
+		}
+	}
+
+	static final class CommandStats {
+		private final String trigger;
+		final LatencyHistogram parse = new LatencyHistogram();
+		final LatencyHistogram permissions = new LatencyHistogram();
+		final LatencyHistogram execute = new LatencyHistogram();
+		final LatencyHistogram reply = new LatencyHistogram();
+		final LongAdder executions = new LongAdder();
+		final LongAdder userErrors = new LongAdder();
+		final LongAdder internalErrors = new LongAdder();
+		final LongAdder lookups = new LongAdder();
+
+		private CommandStats(String trigger) {
+			this.trigger = trigger;
+		}
+
+		void error(Throwable error) {
+			if (error instanceof CommandException)
+				userErrors.increment();
+			else
+				internalErrors.increment();
+		}
+	}
+
+}
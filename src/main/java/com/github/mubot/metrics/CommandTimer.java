@@ -0,0 +1,88 @@
+package com.github.mubot.metrics;
+
+import com.github.mubot.metrics.CommandMetrics.CommandStats;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Times a single execution of a command. The timer is put in the subscriber
+ * context of the execution so permission checks can add their time to it, the
+ * time spent checking permissions is not counted as part of the execute stage.
+ */
+public final class CommandTimer {
+
+	private final CommandStats stats;
+	private final long start;
+
+	// guarded by this
+	private int permissionChecks = 0;
+	private long permissionStart;
+	private long permissionNanos = 0;
+
+	CommandTimer(CommandStats stats) {
+		this.stats = stats;
+		this.start = System.nanoTime();
+	}
+
+	<T> Mono<T> timePermissions(Mono<T> check) {
+		return check.doOnSubscribe(subscription -> enterPermissions()).doFinally(signal -> exitPermissions());
+	}
+
+	private synchronized void enterPermissions() {
+		if (permissionChecks++ == 0)
+			permissionStart = System.nanoTime();
+	}
+
+	private synchronized void exitPermissions() {
+		if (--permissionChecks == 0)
+			permissionNanos += System.nanoTime() - permissionStart;
+	}
+
+	/**
+	 * Called when the command has created its response
+	 */
+	public void executed() {
+		final long permissions;
+		synchronized (this) {
+			permissions = permissionNanos;
+		}
+		stats.executions.increment();
+		stats.permissions.record(permissions);
+		stats.execute.record(System.nanoTime() - start - permissions);
+	}
+
+	/**
+	 * Called when the command failed to create its response
+	 *
+	 * @param error the error the command failed with
+	 */
+	public void failed(Throwable error) {
+		stats.executions.increment();
+		stats.error(error);
+	}
+
+	/**
+	 * Called once the command and its reply are done
+	 *
+	 * @param count the number of lookups the command made, see
+	 *              {@link com.github.mubot.command.CommandContext}
+	 */
+	public void lookups(int count) {
+		stats.lookups.add(count);
+	}
+
+	/**
+	 * Times sending the reply of the command
+	 *
+	 * @param reply the reply to send
+	 * @return the timed reply
+	 */
+	public <T> Mono<T> timeReply(Mono<T> reply) {
+		return Mono.defer(() -> {
+			final long replyStart = System.nanoTime();
+			return reply.doOnSuccess(ignored -> stats.reply.record(System.nanoTime() - replyStart))
+					.doOnError(stats::error);
+		});
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.github.mubot.metrics;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets. Recording a value is a binary search
+ * over the bucket bounds and two uncontended adds, so it is cheap enough to be
+ * called for every command.
+ */
+public final class LatencyHistogram {
+
+	// upper bounds of the buckets in seconds, from 1 microsecond to 1 minute
+	private static final double[] BOUNDS = { 0.000001, 0.00001, 0.0001, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+			0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60 };
+	private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+	private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+
+	static {
+		for (int i = 0; i < BOUNDS.length; i++) {
+			BOUNDS_NANOS[i] = Math.round(BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+			BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS[i]).stripTrailingZeros().toPlainString();
+		}
+	}
+
+	// the last bucket counts everything above the largest bound
+	private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+	private final LongAdder sumNanos = new LongAdder();
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * @param nanos the latency to record in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		int index = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+		if (index < 0)
+			index = -index - 1;
+		buckets[index].increment();
+		sumNanos.add(nanos);
+	}
+
+	/**
+	 * Writes the buckets, sum and count of this histogram. The type header of the
+	 * metric has to be written by the caller.
+	 *
+	 * @param writer the writer to write to
+	 * @param name   the name of the metric
+	 * @param labels the label names and values of this histogram, alternating
+	 */
+	public void write(PrometheusWriter writer, String name, String... labels) {
+		final String[] bucketLabels = Arrays.copyOf(labels, labels.length + 2);
+		bucketLabels[labels.length] = "le";
+
+		long cumulative = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			cumulative += buckets[i].sum();
+			bucketLabels[labels.length + 1] = BOUND_LABELS[i];
+			writer.sample(name + "_bucket", cumulative, bucketLabels);
+		}
+		cumulative += buckets[BOUNDS.length].sum();
+		bucketLabels[labels.length + 1] = "+Inf";
+		writer.sample(name + "_bucket", cumulative, bucketLabels);
+
+		writer.sample(name + "_sum", sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1), labels);
+		writer.sample(name + "_count", cumulative, labels);
+	}
+
+}
@@ -0,0 +1,14 @@
+package com.github.mubot.metrics;
+
+/**
+ * Something that writes its metrics when the metrics endpoint is scraped
+ */
+@FunctionalInterface
+public interface MetricsCollector {
+
+	/**
+	 * @param writer the writer to write the metrics to
+	 */
+	void collect(PrometheusWriter writer);
+
+}
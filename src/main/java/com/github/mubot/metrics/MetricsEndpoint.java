@@ -0,0 +1,66 @@
+package com.github.mubot.metrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import com.github.mubot.main.Config;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.server.HttpServerRoutes;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Serves the registered metrics on /metrics of a server. They are only served to
+ * requests with "Authorization: Bearer &lt;METRICS_TOKEN&gt;", and not at all
+ * without a token, since the servers may listen on public addresses.
+ */
+public final class MetricsEndpoint {
+
+	private static final Logger LOGGER = Loggers.getLogger(MetricsEndpoint.class);
+
+	private static final byte[] METRICS_TOKEN = Config.getString("METRICS_TOKEN", "")
+			.getBytes(StandardCharsets.UTF_8);
+
+	private MetricsEndpoint() {
+	}
+
+	/**
+	 * Adds /metrics to the routes of a server if METRICS_TOKEN is set
+	 *
+	 * @param routes the routes of the server
+	 */
+	public static void route(HttpServerRoutes routes) {
+		if (METRICS_TOKEN.length == 0) {
+			LOGGER.info("METRICS_TOKEN is not set, not serving /metrics");
+			return;
+		}
+
+		routes.get("/metrics", (request, response) -> {
+			if (!isAuthorized(request.requestHeaders().get(HttpHeaderNames.AUTHORIZATION)))
+				return response.status(HttpResponseStatus.UNAUTHORIZED).header(HttpHeaderNames.WWW_AUTHENTICATE,
+						"Bearer").send();
+
+			final byte[] metrics = MetricsRegistry.scrape().getBytes(StandardCharsets.UTF_8);
+			return response.status(HttpResponseStatus.OK)
+					.header(HttpHeaderNames.CONTENT_TYPE, "text/plain; version=0.0.4; charset=utf-8")
+					.header(HttpHeaderNames.CONTENT_LENGTH, Integer.toString(metrics.length))
+					.sendByteArray(Mono.just(metrics));
+		});
+	}
+
+	/**
+	 * @param authorization the Authorization header of the request, may be null
+	 * @return true if it holds the metrics token, compared in constant time
+	 */
+	static boolean isAuthorized(String authorization) {
+		final String scheme = "Bearer ";
+		if (authorization == null || !authorization.regionMatches(true, 0, scheme, 0, scheme.length()))
+			return false;
+		return MessageDigest.isEqual(METRICS_TOKEN,
+				authorization.substring(scheme.length()).trim().getBytes(StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,57 @@
+package com.github.mubot.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Holds everything that exposes metrics on the /metrics endpoint
+ */
+public final class MetricsRegistry {
+
+	private static final Logger LOGGER = Loggers.getLogger(MetricsRegistry.class);
+
+	private static final List<MetricsCollector> collectors = new CopyOnWriteArrayList<>();
+
+	static {
+		register(CommandMetrics.getInstance());
+	}
+
+	private MetricsRegistry() {
+	}
+
+	public static void register(MetricsCollector collector) {
+		collectors.add(collector);
+	}
+
+	/**
+	 * Registers a metric whose value is read when the metrics are scraped
+	 *
+	 * @param name  the name of the metric
+	 * @param type  counter or gauge
+	 * @param help  the description of the metric
+	 * @param value supplies the current value
+	 */
+	public static void register(String name, String type, String help, DoubleSupplier value) {
+		register(writer -> writer.header(name, type, help).sample(name, value.getAsDouble()));
+	}
+
+	/**
+	 * @return every registered metric in the Prometheus text format
+	 */
+	public static String scrape() {
+		final PrometheusWriter writer = new PrometheusWriter();
+		for (MetricsCollector collector : collectors) {
+			try {
+				collector.collect(writer);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error collecting metrics", e);
+			}
+		}
+		return writer.toString();
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.github.mubot.metrics;
+
+/**
+ * Writes metrics in the Prometheus text exposition format
+ */
+public final class PrometheusWriter {
+
+	private final StringBuilder sb = new StringBuilder(4096);
+
+	/**
+	 * Writes the HELP and TYPE lines of a metric, must be called once before the
+	 * samples of that metric
+	 *
+	 * @param name the name of the metric
+	 * @param type counter, gauge or histogram
+	 * @param help the description of the metric
+	 */
+	public PrometheusWriter header(String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		return this;
+	}
+
+	/**
+	 * Writes a single sample
+	 *
+	 * @param name   the name of the sample
+	 * @param value  the value of the sample
+	 * @param labels the label names and values of the sample, alternating
+	 */
+	public PrometheusWriter sample(String name, double value, String... labels) {
+		sb.append(name);
+		if (labels.length > 0) {
+			sb.append('{');
+			for (int i = 0; i + 1 < labels.length; i += 2) {
+				if (i > 0)
+					sb.append(',');
+				sb.append(labels[i]).append("=\"");
+				escapeLabelValue(labels[i + 1]);
+				sb.append('"');
+			}
+			sb.append('}');
+		}
+		sb.append(' ').append(formatValue(value)).append('\n');
+		return this;
+	}
+
+	private void escapeLabelValue(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"')
+				sb.append('\\').append(c);
+			else if (c == '\n')
+				sb.append("\\n");
+			else
+				sb.append(c);
+		}
+	}
+
+	private static String formatValue(double value) {
+		if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15)
+			return Long.toString((long) value);
+		return Double.toString(value);
+	}
+
+	@Override
+	public String toString() {
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.github.mubot.music;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+import com.github.mubot.music.node.AudioNodes;
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration;
+import com.sedmelluq.discord.lavaplayer.player.AudioConfiguration.ResamplingQuality;
+
+import discord4j.common.util.Snowflake;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Keeps the audio of all guilds within what the process can produce in time.
+ * It is driven by underruns only: LavaPlayer decodes, filters and encodes on
+ * its own threads ahead of time, so providing a frame just takes it from a
+ * buffer and how long that took says nothing about the load, but a frame that
+ * isn't ready while a track is playing means the encoding fell behind. Every
+ * AUDIO_GOVERNOR_INTERVAL_MS, a window with more than AUDIO_MAX_UNDERRUN_RATIO
+ * of frames missing lowers the Opus encoding and resampling quality of the
+ * shared player manager and of the audio nodes one level, for the tracks that
+ * start after it. AUDIO_RECOVER_WINDOWS calm windows in a row raise it again.
+ * While still under pressure at the lowest level, the bot is over budget and
+ * doesn't join new guilds.
+ */
+public final class AudioLoadGovernor {
+
+	private static final Logger LOGGER = Loggers.getLogger(AudioLoadGovernor.class);
+
+	private static final long INTERVAL = Config.getInt("AUDIO_GOVERNOR_INTERVAL_MS", 5000);
+	private static final double MAX_UNDERRUN_RATIO = Config.getDouble("AUDIO_MAX_UNDERRUN_RATIO", 0.02);
+	private static final int RECOVER_WINDOWS = Config.getInt("AUDIO_RECOVER_WINDOWS", 6);
+	// windows with fewer frames than this say nothing about the load
+	private static final long MIN_FRAMES = 50;
+
+	// the Opus quality of every level, the first level uses the configured
+	// resampling quality and the others the lowest
+	private static final int[] OPUS_QUALITIES = { AudioConfiguration.OPUS_QUALITY_MAX, 7, 4, 1 };
+	private static final ResamplingQuality RESAMPLING_QUALITY = ResamplingQuality
+			.valueOf(Config.getString("AUDIO_RESAMPLING_QUALITY", "LOW").toUpperCase(Locale.ROOT));
+
+	private static final String PROVIDE = "mubot_audio_frame_provide_seconds";
+
+	private static final LatencyHistogram provideTimes = new LatencyHistogram();
+	private static final LongAdder frames = new LongAdder();
+	private static final LongAdder underruns = new LongAdder();
+	private static final LongAdder totalUnderruns = new LongAdder();
+	private static final LongAdder refusedJoins = new LongAdder();
+
+	// only changed by the periodic check
+	private static volatile int level = 0;
+	private static volatile boolean overBudget = false;
+	private static int calmWindows = 0;
+
+	static {
+		MetricsRegistry.register(AudioLoadGovernor::collect);
+	}
+
+	private AudioLoadGovernor() {
+	}
+
+	/**
+	 * Sets the full quality and starts checking the load
+	 */
+	public static void start() {
+		apply(0);
+		Schedulers.parallel().schedulePeriodically(() -> {
+			try {
+				check();
+			} catch (RuntimeException e) {
+				LOGGER.error("Error checking the audio load: " + e.getMessage(), e);
+			}
+		}, INTERVAL, INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Called by an audio provider for every frame it was asked for while a track
+	 * was playing
+	 *
+	 * @param nanos    how long taking the frame from the player took
+	 * @param provided false if the frame wasn't ready in time
+	 */
+	static void frameRequested(long nanos, boolean provided) {
+		provideTimes.record(nanos);
+		frames.increment();
+		if (!provided) {
+			underruns.increment();
+			totalUnderruns.increment();
+		}
+	}
+
+	/**
+	 * @param guildId the guild to join
+	 * @return false if the audio is over budget and the bot isn't already playing
+	 *         in the guild
+	 */
+	public static boolean canJoin(Snowflake guildId) {
+		if (!overBudget || GuildMusicManager.getGuildMusic(guildId).isPresent())
+			return true;
+		refusedJoins.increment();
+		return false;
+	}
+
+	private static void check() {
+		final long count = frames.sumThenReset();
+		final long missed = underruns.sumThenReset();
+		if (count < MIN_FRAMES) {
+			overBudget = false;
+			return;
+		}
+
+		if ((double) missed / count <= MAX_UNDERRUN_RATIO) {
+			overBudget = false;
+			if (level > 0 && ++calmWindows >= RECOVER_WINDOWS) {
+				calmWindows = 0;
+				apply(level - 1);
+				LOGGER.info("Audio load eased, raised quality to level {}", level);
+			}
+			return;
+		}
+
+		calmWindows = 0;
+		if (level < OPUS_QUALITIES.length - 1) {
+			apply(level + 1);
+			LOGGER.warn("Audio under pressure ({} of {} frames late), lowered quality to level {}", missed, count,
+					level);
+		} else if (!overBudget) {
+			overBudget = true;
+			LOGGER.warn("Audio over budget at the lowest quality, not joining new guilds");
+		}
+	}
+
+	private static void apply(int newLevel) {
+		setLevel(newLevel);
+		AudioNodes.setQualityLevel(newLevel);
+	}
+
+	/**
+	 * Sets the quality of the tracks that start after, audio nodes set the lowest
+	 * quality any of the bots they serve asks for
+	 *
+	 * @param newLevel how far to lower the quality, 0 is full quality
+	 */
+	public static void setLevel(int newLevel) {
+		level = Math.max(0, Math.min(newLevel, OPUS_QUALITIES.length - 1));
+		final AudioConfiguration configuration = GuildMusicManager.getPlayerManager().getConfiguration();
+		configuration.setOpusEncodingQuality(OPUS_QUALITIES[level]);
+		configuration.setResamplingQuality(level == 0 ? RESAMPLING_QUALITY : ResamplingQuality.LOW);
+	}
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header("mubot_audio_quality_level", "gauge", "How far the audio quality was lowered, 0 is full quality");
+		writer.sample("mubot_audio_quality_level", level);
+		writer.header("mubot_audio_opus_quality", "gauge", "Opus encoding quality of new tracks from 0 to 10");
+		writer.sample("mubot_audio_opus_quality", OPUS_QUALITIES[level]);
+		writer.header("mubot_audio_over_budget", "gauge", "1 if the audio is over budget and new joins are refused");
+		writer.sample("mubot_audio_over_budget", overBudget ? 1 : 0);
+		writer.header("mubot_audio_underruns_total", "counter",
+				"Number of frames that weren't ready in time while a track was playing");
+		writer.sample("mubot_audio_underruns_total", totalUnderruns.sum());
+		writer.header("mubot_audio_joins_refused_total", "counter", "Number of joins refused while over budget");
+		writer.sample("mubot_audio_joins_refused_total", refusedJoins.sum());
+		writer.header(PROVIDE, "histogram", "Time taken to take a frame from the player for Discord");
+		provideTimes.write(writer, PROVIDE);
+	}
+
+}
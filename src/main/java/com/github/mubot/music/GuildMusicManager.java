@@ -1,9 +1,18 @@
 package com.github.mubot.music;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.github.mubot.command.util.Pair;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+import com.github.mubot.music.node.AudioNodes;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
@@ -13,7 +22,6 @@ import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBu
 import discord4j.common.util.Snowflake;
 import discord4j.core.event.domain.message.MessageCreateEvent;
 import discord4j.core.object.entity.channel.VoiceChannel;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 /**
@@ -27,6 +35,12 @@ public class GuildMusicManager {
 
 	public static final int DEFAULT_VOLUME = 15;
 
+	private static final String QUEUE_BYTES = "mubot_queue_heap_bytes";
+	private static final String TOTAL_QUEUE_BYTES = "mubot_queue_heap_total_bytes";
+	// guilds with the largest queues that are exported with their id, a series
+	// per guild would grow with every guild
+	private static final int TOP_GUILDS = Config.getInt("METRICS_TOP_GUILDS", 10);
+
 	/**
 	 * Maps a GuildMusic object for each new guild joined. Key is guild id snowflake
 	 */
@@ -38,27 +52,34 @@ public class GuildMusicManager {
 		// This is an optimization strategy that Discord4J can utilize. It is not
 		// important to understand
 		playerManager.getConfiguration().setFrameBufferFactory(NonAllocatingAudioFrameBuffer::new);
+		// The loudness of tracks is measured by a filter that is set when they start
+		// and removed once measured, so passthrough resumes for the rest of the track
+		if (LoudnessNormalizer.ENABLED)
+			playerManager.getConfiguration().setFilterHotSwapEnabled(true);
 
 		// Allow playerManager to parse remote sources like YouTube links
 		AudioSourceManagers.registerRemoteSources(playerManager);
+
+		MetricsRegistry.register(GuildMusicManager::collect);
 	}
 
 	public static Mono<GuildMusic> getOrCreate(Snowflake guildId) {
 		return Mono.justOrEmpty(getGuildMusic(guildId)).switchIfEmpty(Mono.defer(() -> {
-			final AudioPlayer player = playerManager.createPlayer();
-			final LavaPlayerAudioProvider audioProvider = new LavaPlayerAudioProvider(player);
-			final TrackScheduler scheduler = new TrackScheduler(player);
+			final AudioPlayer player = AudioNodes.createPlayer(playerManager);
+			final TrackScheduler scheduler = new TrackScheduler(player, playerManager);
+			final LavaPlayerAudioProvider audioProvider = new LavaPlayerAudioProvider(scheduler);
 			final GuildMusic guildMusic = new GuildMusic(guildId, scheduler, audioProvider);
 
-			player.setVolume(DEFAULT_VOLUME);
+			player.setVolume(LoudnessNormalizer.getDefaultVolume());
 			guildMusicMap.put(guildId, guildMusic);
+			IdleReaper.watch(guildId);
 
 			return Mono.just(guildMusic);
 		}));
 	}
 
 	public static void loadItemOrdered(String identifier, TrackScheduler scheduler, MessageCreateEvent event) {
-		playerManager.loadItemOrdered(event.getGuildId().get(), identifier,
+		TrackLoadCache.loadItemOrdered(playerManager, event.getGuildId().get(), identifier,
 				new TrackLoadResultHandler(scheduler, event));
 	}
 
@@ -66,29 +87,78 @@ public class GuildMusicManager {
 		return playerManager;
 	}
 
-	private static Optional<GuildMusic> getGuildMusic(Snowflake guildId) {
+	/**
+	 * @return the music of every guild the bot is in a voice channel of
+	 */
+	public static Collection<GuildMusic> getAll() {
+		return Collections.unmodifiableCollection(guildMusicMap.values());
+	}
+
+	static Optional<GuildMusic> getGuildMusic(Snowflake guildId) {
 		return Optional.ofNullable(guildMusicMap.get(guildId));
 	}
 
+	/**
+	 * Exports the queue heap of all guilds, and of the METRICS_TOP_GUILDS guilds
+	 * with the largest queues by their id, and with METRICS_PER_GUILD=true the
+	 * frames of every guild
+	 */
+	private static void collect(PrometheusWriter writer) {
+		long total = 0;
+		// the heap and id of the largest queues, the smallest of them first
+		final PriorityQueue<Pair<Long, Long>> largest = new PriorityQueue<>(Comparator.comparing(Pair::getKey));
+		for (GuildMusic guildMusic : guildMusicMap.values()) {
+			final long bytes = guildMusic.getTrackScheduler().getQueueHeapSize();
+			total += bytes;
+			if (bytes == 0 || TOP_GUILDS <= 0)
+				continue;
+			largest.add(new Pair<Long, Long>(bytes, guildMusic.getGuildId()));
+			if (largest.size() > TOP_GUILDS)
+				largest.poll();
+		}
+		writer.header(TOTAL_QUEUE_BYTES, "gauge", "Estimated heap used by the queued tracks of all guilds in bytes");
+		writer.sample(TOTAL_QUEUE_BYTES, total);
+		writer.header(QUEUE_BYTES, "gauge",
+				"Estimated heap used by the queued tracks of the guilds with the largest queues in bytes");
+		for (Pair<Long, Long> queue : largest)
+			writer.sample(QUEUE_BYTES, queue.getKey(), "guild", Long.toString(queue.getValue()));
+
+		if (!TrackScheduler.PER_GUILD_FRAMES)
+			return;
+		writer.header(TrackScheduler.FRAMES, "counter", TrackScheduler.FRAMES_HELP);
+		for (GuildMusic guildMusic : guildMusicMap.values()) {
+			final TrackScheduler scheduler = guildMusic.getTrackScheduler();
+			final String guild = Long.toString(guildMusic.getGuildId());
+			writer.sample(TrackScheduler.FRAMES, scheduler.getEligibleFrames(), "guild", guild, "mode",
+					"passthrough_eligible");
+			writer.sample(TrackScheduler.FRAMES, scheduler.getTranscodedFrames(), "guild", guild, "mode",
+					"transcode");
+		}
+	}
+
 	public static void destroy(Snowflake guildId) {
 		final GuildMusic guildMusic = guildMusicMap.remove(guildId);
-		if (guildMusic != null)
+		if (guildMusic != null) {
+			IdleReaper.unwatch(guildId);
 			guildMusic.destroy();
+		}
 	}
 
 	/**
-	 * Gets the {@link TrackScheduler} that was mapped when the bot joined a voice
-	 * channel of the guild the message was sent in.
+	 * Gets the {@link TrackScheduler} that was mapped when the bot joined the voice
+	 * channel. If the bot is still joining the channel it waits for it to connect.
 	 * 
-	 * @param event The message event
+	 * @param channel the voice channel of the bot
 	 * @return The {@link TrackScheduler} that is mapped to the voice channel of the
-	 *         bot in the guild the message was sent from.
+	 *         bot in the guild of the channel, empty if the bot isn't in the guild's
+	 *         voice channel
 	 */
-	private static final int RETRY_AMOUNT = 100;
-
 	public static Mono<TrackScheduler> getScheduler(VoiceChannel channel) {
-		return Mono.justOrEmpty(getGuildMusic(channel.getGuildId())).repeatWhenEmpty(RETRY_AMOUNT, Flux::repeat)
-				.flatMap(guildMusic -> Mono.just(guildMusic.getTrackScheduler()));
+		final Snowflake guildId = channel.getGuildId();
+		return Mono.justOrEmpty(getGuildMusic(guildId))
+				.switchIfEmpty(VoiceReadiness.awaitConnected(guildId, channel.getId())
+						.flatMap(connected -> Mono.justOrEmpty(getGuildMusic(guildId))))
+				.map(GuildMusic::getTrackScheduler);
 	}
 
 }
@@ -0,0 +1,266 @@
+package com.github.mubot.music;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.object.VoiceState;
+import discord4j.core.object.entity.channel.VoiceChannel;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Disconnects the bot and destroys the player of guilds nobody is listening to:
+ * when the bot is alone in its channel for IDLE_EMPTY_TIMEOUT_S, paused for
+ * IDLE_PAUSED_TIMEOUT_S or has nothing playing or queued for IDLE_TIMEOUT_S.
+ * Every guild with music has a single check pending in one hashed timing wheel
+ * that advances every IDLE_REAPER_TICK_MS, so scheduling and cancelling a
+ * check is O(1) and one timer serves all guilds.
+ */
+public final class IdleReaper {
+
+	private static final Logger LOGGER = Loggers.getLogger(IdleReaper.class);
+
+	private static final long TICK = Config.getInt("IDLE_REAPER_TICK_MS", 5000);
+	private static final int SLOTS = 64;
+	private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(Config.getInt("IDLE_CHECK_INTERVAL_S", 60));
+
+	private static final String RECLAIMED = "mubot_idle_reaper_reclaimed_total";
+
+	/**
+	 * What a guild is doing, the states other than ACTIVE get reaped once they
+	 * last for their timeout
+	 */
+	private enum State {
+		ACTIVE("active", 0),
+		EMPTY("empty", Config.getInt("IDLE_EMPTY_TIMEOUT_S", 300)),
+		PAUSED("paused", Config.getInt("IDLE_PAUSED_TIMEOUT_S", 1800)),
+		IDLE("idle", Config.getInt("IDLE_TIMEOUT_S", 900));
+
+		private final String reason;
+		private final long timeout;
+		private final LongAdder reclaimed = new LongAdder();
+
+		State(String reason, int timeoutSeconds) {
+			this.reason = reason;
+			this.timeout = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+		}
+	}
+
+	// the wheel, the pending check of every guild and the current tick, guarded by
+	// the class
+	private static final List<ArrayDeque<Check>> wheel = new ArrayList<>(SLOTS);
+	private static final Map<Snowflake, Check> checks = new HashMap<>();
+	private static long tick = 0;
+
+	private static volatile GatewayDiscordClient client;
+
+	static {
+		for (int i = 0; i < SLOTS; i++)
+			wheel.add(new ArrayDeque<>());
+		MetricsRegistry.register(IdleReaper::collect);
+	}
+
+	private IdleReaper() {
+	}
+
+	/**
+	 * Starts advancing the wheel
+	 *
+	 * @param gateway the client used to look at voice channels and disconnect
+	 */
+	public static void start(GatewayDiscordClient gateway) {
+		client = gateway;
+		Schedulers.parallel().schedulePeriodically(() -> {
+			try {
+				advance();
+			} catch (RuntimeException e) {
+				LOGGER.error("Error checking for idle guilds: " + e.getMessage(), e);
+			}
+		}, TICK, TICK, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts checking a guild that started using music
+	 *
+	 * @param guildId the guild to check
+	 */
+	public static synchronized void watch(Snowflake guildId) {
+		final Check check = new Check(guildId);
+		final Check replaced = checks.put(guildId, check);
+		if (replaced != null)
+			replaced.cancelled = true;
+		schedule(check, CHECK_INTERVAL);
+	}
+
+	/**
+	 * Stops checking a guild whose music was destroyed
+	 *
+	 * @param guildId the guild to stop checking
+	 */
+	public static synchronized void unwatch(Snowflake guildId) {
+		final Check check = checks.remove(guildId);
+		if (check != null)
+			check.cancelled = true;
+	}
+
+	private static void schedule(Check check, long delay) {
+		final long ticks = Math.max(1, (delay + TICK - 1) / TICK);
+		check.rounds = (ticks - 1) / SLOTS;
+		wheel.get((int) ((tick + ticks) % SLOTS)).add(check);
+	}
+
+	/**
+	 * Moves the wheel one tick and checks the guilds that are due
+	 */
+	private static void advance() {
+		final List<Check> due = new ArrayList<>();
+		synchronized (IdleReaper.class) {
+			tick++;
+			final Iterator<Check> slot = wheel.get((int) (tick % SLOTS)).iterator();
+			while (slot.hasNext()) {
+				final Check check = slot.next();
+				if (check.cancelled) {
+					slot.remove();
+				} else if (check.rounds > 0) {
+					check.rounds--;
+				} else {
+					slot.remove();
+					due.add(check);
+				}
+			}
+		}
+
+		for (Check check : due) {
+			getState(check.guildId).switchIfEmpty(Mono.fromRunnable(() -> remove(check)))
+					.subscribe(state -> update(check, state), error -> {
+						LOGGER.error("{Guild ID: {}} Could not check if idle: {}", check.guildId.asLong(),
+								error.getMessage());
+						reschedule(check, CHECK_INTERVAL);
+					});
+		}
+	}
+
+	private static Mono<State> getState(Snowflake guildId) {
+		final Optional<GuildMusic> guildMusic = GuildMusicManager.getGuildMusic(guildId);
+		if (guildMusic.isEmpty())
+			return Mono.empty();
+
+		final TrackScheduler scheduler = guildMusic.get().getTrackScheduler();
+		final Optional<Snowflake> channelId = VoiceReadiness.getConnectedChannel(guildId);
+		final Mono<Boolean> listened = channelId.isEmpty() || client == null ? Mono.just(channelId.isPresent())
+				: client.getChannelById(channelId.get()).ofType(VoiceChannel.class)
+						.flatMapMany(VoiceChannel::getVoiceStates).flatMap(VoiceState::getUser)
+						.filter(user -> !user.isBot()).hasElements();
+
+		return listened.map(listening -> {
+			if (!listening)
+				return State.EMPTY;
+			if (scheduler.getNowPlaying() != null)
+				return scheduler.isPaused() ? State.PAUSED : State.ACTIVE;
+			return scheduler.getQueue().isEmpty() ? State.IDLE : State.ACTIVE;
+		});
+	}
+
+	/**
+	 * Reaps the guild if it has been in the state for its timeout, otherwise checks
+	 * it again later
+	 */
+	private static void update(Check check, State state) {
+		synchronized (IdleReaper.class) {
+			if (check.cancelled)
+				return;
+
+			final long now = System.nanoTime();
+			if (state != check.state) {
+				check.state = state;
+				check.since = now;
+			}
+			if (state == State.ACTIVE) {
+				schedule(check, CHECK_INTERVAL);
+				return;
+			}
+
+			final long remaining = state.timeout - TimeUnit.NANOSECONDS.toMillis(now - check.since);
+			if (remaining > 0) {
+				schedule(check, Math.min(remaining, CHECK_INTERVAL));
+				return;
+			}
+			remove(check);
+		}
+		reap(check.guildId, state);
+	}
+
+	/**
+	 * Stops the check of a guild that has no music anymore
+	 */
+	private static synchronized void remove(Check check) {
+		checks.remove(check.guildId, check);
+		check.cancelled = true;
+	}
+
+	private static synchronized void reschedule(Check check, long delay) {
+		if (!check.cancelled)
+			schedule(check, delay);
+	}
+
+	private static void reap(Snowflake guildId, State state) {
+		LOGGER.info("{Guild ID: {}} Leaving voice channel, {} for {}s", guildId.asLong(), state.reason,
+				TimeUnit.MILLISECONDS.toSeconds(state.timeout));
+		state.reclaimed.increment();
+
+		final Mono<Void> disconnect = client == null ? Mono.empty()
+				: client.getVoiceConnectionRegistry().disconnect(guildId);
+		disconnect.doFinally(signal -> {
+			VoiceReadiness.disconnected(guildId);
+			GuildMusicManager.destroy(guildId);
+		}).subscribe(null, error -> LOGGER.error("{Guild ID: {}} Could not disconnect: {}", guildId.asLong(),
+				error.getMessage()));
+	}
+
+	private static synchronized int getWatchedCount() {
+		return checks.size();
+	}
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header(RECLAIMED, "counter", "Number of idle guilds whose voice connection and player were reclaimed");
+		for (State state : State.values()) {
+			if (state != State.ACTIVE)
+				writer.sample(RECLAIMED, state.reclaimed.sum(), "reason", state.reason);
+		}
+		writer.header("mubot_idle_reaper_watched", "gauge", "Number of guilds checked for being idle");
+		writer.sample("mubot_idle_reaper_watched", getWatchedCount());
+	}
+
+	/**
+	 * The pending check of a guild and what the guild was doing the last time it
+	 * was checked
+	 */
+	private static final class Check {
+		private final Snowflake guildId;
+		// full turns of the wheel left before the check is due
+		private long rounds;
+		private boolean cancelled = false;
+		private State state = State.ACTIVE;
+		private long since = System.nanoTime();
+
+		private Check(Snowflake guildId) {
+			this.guildId = guildId;
+		}
+	}
+
+}
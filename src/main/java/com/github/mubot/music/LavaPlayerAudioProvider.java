@@ -4,33 +4,50 @@ import java.nio.ByteBuffer;
 
 import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 
 import discord4j.voice.AudioProvider;
 
 public final class LavaPlayerAudioProvider extends AudioProvider {
 
-	private final AudioPlayer player;
+	private final TrackScheduler scheduler;
 	private final MutableAudioFrame frame = new MutableAudioFrame();
+	// the track of the last provided frame, a track that hasn't provided a frame
+	// yet is still loading rather than late
+	private AudioTrack lastTrack;
 
-	public LavaPlayerAudioProvider(final AudioPlayer player) {
+	public LavaPlayerAudioProvider(final TrackScheduler scheduler) {
 		// Allocate a ByteBuffer for Discord4J's AudioProvider to hold audio data for
 		// Discord
 		super(ByteBuffer.allocate(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize()));
 		// Set LavaPlayer's MutableAudioFrame to use the same buffer as the one we just
 		// allocated
 		frame.setBuffer(getBuffer());
-		this.player = player;
+		this.scheduler = scheduler;
 	}
 
 	@Override
 	public boolean provide() {
+		final long start = System.nanoTime();
+		scheduler.preloadIfEnding();
 		// AudioPlayer writes audio data to its AudioFrame
-		final boolean didProvide = player.provide(frame);
+		final AudioPlayer player = scheduler.getPlayer();
+		boolean didProvide = player.provide(frame);
+		// If the track ended while providing and the scheduler switched to the
+		// preloaded track, take this frame from it instead of sending silence
+		if (!didProvide && scheduler.getPlayer() != player)
+			didProvide = scheduler.getPlayer().provide(frame);
 		// If audio was provided, flip from write-mode to read-mode
+		final AudioPlayer current = scheduler.getPlayer();
 		if (didProvide) {
 			getBuffer().flip();
+			scheduler.frameProvided();
+			lastTrack = current.getPlayingTrack();
+			AudioLoadGovernor.frameRequested(System.nanoTime() - start, true);
+		} else if (lastTrack != null && current.getPlayingTrack() == lastTrack && !current.isPaused()) {
+			AudioLoadGovernor.frameRequested(System.nanoTime() - start, false);
 		}
 		return didProvide;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,207 @@
+package com.github.mubot.music;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.music.node.RemoteAudioPlayer;
+import com.sedmelluq.discord.lavaplayer.filter.AudioFilter;
+import com.sedmelluq.discord.lavaplayer.filter.PcmFilterFactory;
+import com.sedmelluq.discord.lavaplayer.filter.UniversalPcmAudioFilter;
+import com.sedmelluq.discord.lavaplayer.format.AudioDataFormat;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+/**
+ * Keeps Opus passthrough while evening out the loudness of tracks. Any volume
+ * other than 100, or a filter, makes LavaPlayer decode and encode the Opus
+ * frames of sources like YouTube, so with VOLUME_PASSTHROUGH=true players play
+ * at volume 100 instead of the default volume. The first time a track plays,
+ * its loudness is measured over its first LOUDNESS_MEASURE_S seconds, which
+ * transcodes it for that long, and the volume that brings it down to
+ * LOUDNESS_TARGET_DB is cached by its identifier. Tracks less than
+ * LOUDNESS_TOLERANCE_DB louder than the target keep volume 100 and stay
+ * passthrough, tracks are never made louder.
+ */
+public final class LoudnessNormalizer {
+
+	public static final boolean ENABLED = Config.getBoolean("VOLUME_PASSTHROUGH", false);
+
+	private static final double TARGET_DB = Config.getDouble("LOUDNESS_TARGET_DB", -16);
+	private static final double TOLERANCE_DB = Config.getDouble("LOUDNESS_TOLERANCE_DB", 3);
+	private static final int MEASURE_SECONDS = Config.getInt("LOUDNESS_MEASURE_S", 30);
+	private static final int MAX_ENTRIES = Config.getInt("LOUDNESS_CACHE_MAX_ENTRIES", 10000);
+
+	private static final int PASSTHROUGH_VOLUME = 100;
+
+	// track identifier -> volume, in least recently used order, guarded by the
+	// class
+	private static final Map<String, Integer> volumes = new LinkedHashMap<>(256, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+
+	private LoudnessNormalizer() {
+	}
+
+	/**
+	 * @return the volume of players nobody set the volume of
+	 */
+	public static int getDefaultVolume() {
+		return ENABLED ? PASSTHROUGH_VOLUME : GuildMusicManager.DEFAULT_VOLUME;
+	}
+
+	/**
+	 * @param track the track to play
+	 * @return the normalized volume of the track, null if it wasn't measured yet
+	 */
+	static synchronized Integer getVolume(AudioTrack track) {
+		return volumes.get(track.getIdentifier());
+	}
+
+	/**
+	 * @param player the player to measure on
+	 * @return false if the player can't run filters, like players on audio nodes
+	 */
+	static boolean canMeasure(AudioPlayer player) {
+		return !(player instanceof RemoteAudioPlayer);
+	}
+
+	/**
+	 * Creates a filter that measures the loudness of the track and caches its
+	 * normalized volume
+	 *
+	 * @param track      the track to measure, other tracks pass the filter
+	 *                   unmeasured
+	 * @param onMeasured called once with the normalized volume on the thread
+	 *                   decoding the track
+	 * @return the factory to set on the player of the track
+	 */
+	static PcmFilterFactory measure(AudioTrack track, IntConsumer onMeasured) {
+		return (playing, format, output) -> playing != track ? Collections.emptyList()
+				: List.<AudioFilter>of(new Meter(track.getIdentifier(), format, output, onMeasured));
+	}
+
+	private static synchronized void store(String identifier, int volume) {
+		volumes.put(identifier, volume);
+	}
+
+	/**
+	 * @param rms the root mean square of the samples, from 0 to 1
+	 * @return the volume that brings the track down to the target loudness
+	 */
+	private static int normalizedVolume(double rms) {
+		if (rms <= 0)
+			return PASSTHROUGH_VOLUME;
+		final double gainDb = TARGET_DB - 20 * Math.log10(rms);
+		if (gainDb >= -TOLERANCE_DB)
+			return PASSTHROUGH_VOLUME;
+		return (int) Math.max(1, Math.round(PASSTHROUGH_VOLUME * Math.pow(10, gainDb / 20)));
+	}
+
+	/**
+	 * Passes the samples on unchanged while summing their squares, until enough
+	 * were seen or the track ends
+	 */
+	private static final class Meter implements UniversalPcmAudioFilter {
+
+		private final String identifier;
+		private final UniversalPcmAudioFilter output;
+		private final IntConsumer onMeasured;
+		private final long measureSamples;
+		private final long minSamples;
+
+		private double sumOfSquares = 0;
+		private long samples = 0;
+		private boolean done = false;
+
+		private Meter(String identifier, AudioDataFormat format, UniversalPcmAudioFilter output,
+				IntConsumer onMeasured) {
+			this.identifier = identifier;
+			this.output = output;
+			this.onMeasured = onMeasured;
+			this.minSamples = (long) format.sampleRate * format.channelCount;
+			this.measureSamples = minSamples * MEASURE_SECONDS;
+		}
+
+		@Override
+		public void process(float[][] input, int offset, int length) throws InterruptedException {
+			if (!done) {
+				for (float[] channel : input) {
+					for (int i = offset; i < offset + length; i++)
+						sumOfSquares += channel[i] * channel[i];
+				}
+				added((long) input.length * length);
+			}
+			output.process(input, offset, length);
+		}
+
+		@Override
+		public void process(short[] input, int offset, int length) throws InterruptedException {
+			if (!done) {
+				for (int i = offset; i < offset + length; i++)
+					sumOfSquares += square(input[i]);
+				added(length);
+			}
+			output.process(input, offset, length);
+		}
+
+		@Override
+		public void process(short[][] input, int offset, int length) throws InterruptedException {
+			if (!done) {
+				for (short[] channel : input) {
+					for (int i = offset; i < offset + length; i++)
+						sumOfSquares += square(channel[i]);
+				}
+				added((long) input.length * length);
+			}
+			output.process(input, offset, length);
+		}
+
+		@Override
+		public void seekPerformed(long requestedTime, long providedTime) {
+			output.seekPerformed(requestedTime, providedTime);
+		}
+
+		@Override
+		public void flush() throws InterruptedException {
+			output.flush();
+		}
+
+		/**
+		 * Stores what was measured of a track that ended early, if it was long enough
+		 */
+		@Override
+		public void close() {
+			if (!done && samples >= minSamples)
+				finish();
+			output.close();
+		}
+
+		private static double square(short sample) {
+			final double value = sample / 32768.0;
+			return value * value;
+		}
+
+		private void added(long count) {
+			samples += count;
+			if (samples >= measureSamples)
+				finish();
+		}
+
+		private void finish() {
+			done = true;
+			final int volume = normalizedVolume(Math.sqrt(sumOfSquares / samples));
+			store(identifier, volume);
+			onMeasured.accept(volume);
+		}
+	}
+
+}
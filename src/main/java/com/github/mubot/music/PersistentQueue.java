@@ -0,0 +1,357 @@
+package com.github.mubot.music;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * An immutable list backed by a persistent AVL tree where every node knows the
+ * size of its subtree. Changing the queue copies only the path to the changed
+ * position and shares the rest of the tree with the old version, so getting,
+ * inserting and removing at an index and dropping the first n elements are
+ * O(log n), and handing the current version to a reader is O(1) without
+ * copying. Nodes also keep the total {@link Weighted weight} of their subtree,
+ * so the weight of the queue is known after any change without visiting the
+ * elements that were added or dropped.
+ *
+ * @param <E> the type of the elements
+ */
+public final class PersistentQueue<E> extends AbstractList<E> {
+
+	private static final PersistentQueue<?> EMPTY = new PersistentQueue<>(null);
+
+	private final Node<E> root;
+
+	private PersistentQueue(Node<E> root) {
+		this.root = root;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentQueue<E> empty() {
+		return (PersistentQueue<E>) EMPTY;
+	}
+
+	/**
+	 * @param elements the elements in queue order
+	 * @return a queue of the elements, built in O(n)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentQueue<E> of(Collection<? extends E> elements) {
+		return of((E[]) elements.toArray());
+	}
+
+	private static <E> PersistentQueue<E> of(E[] elements) {
+		return elements.length == 0 ? empty() : new PersistentQueue<>(build(elements, 0, elements.length));
+	}
+
+	@Override
+	public E get(int index) {
+		checkIndex(index, size());
+		Node<E> node = root;
+		while (true) {
+			final int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index == leftSize) {
+				return node.value;
+			} else {
+				index -= leftSize + 1;
+				node = node.right;
+			}
+		}
+	}
+
+	@Override
+	public int size() {
+		return size(root);
+	}
+
+	/**
+	 * @return the total weight of the elements, 0 for elements that aren't
+	 *         {@link Weighted}
+	 */
+	public long getWeight() {
+		return weight(root);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * @return the first element or null if the queue is empty
+	 */
+	public E peek() {
+		return root == null ? null : first(root);
+	}
+
+	/**
+	 * @param element the element to add to the end
+	 * @return a queue with the element added to the end
+	 */
+	public PersistentQueue<E> append(E element) {
+		return insert(size(), element);
+	}
+
+	/**
+	 * @param elements the elements to add to the end, in order
+	 * @return a queue with the elements added to the end, built in O(k + log n)
+	 *         for k elements
+	 */
+	@SuppressWarnings("unchecked")
+	public PersistentQueue<E> appendAll(Collection<? extends E> elements) {
+		final E[] added = (E[]) elements.toArray();
+		if (added.length == 0)
+			return this;
+		if (root == null)
+			return of(added);
+		return new PersistentQueue<>(join(root, added[0], build(added, 1, added.length)));
+	}
+
+	/**
+	 * @param index   the position the element will have
+	 * @param element the element to insert
+	 * @return a queue with the element inserted before the element at index
+	 */
+	public PersistentQueue<E> insert(int index, E element) {
+		checkIndex(index, size() + 1);
+		return new PersistentQueue<>(insert(root, index, element));
+	}
+
+	/**
+	 * @param index the position of the element to remove
+	 * @return a queue without the element at index
+	 */
+	public PersistentQueue<E> removeAt(int index) {
+		checkIndex(index, size());
+		return new PersistentQueue<>(remove(root, index));
+	}
+
+	/**
+	 * @return a queue without the first element, this queue if it is empty
+	 */
+	public PersistentQueue<E> removeFirst() {
+		return root == null ? this : removeAt(0);
+	}
+
+	/**
+	 * @param count how many elements to drop
+	 * @return a queue without the first count elements
+	 */
+	public PersistentQueue<E> drop(int count) {
+		if (count <= 0)
+			return this;
+		if (count >= size())
+			return empty();
+		return new PersistentQueue<>(drop(root, count));
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return a queue of the same elements in random order, built in O(n)
+	 */
+	@SuppressWarnings("unchecked")
+	public PersistentQueue<E> shuffle(Random random) {
+		final E[] elements = (E[]) toArray();
+		for (int i = elements.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final E swap = elements[i];
+			elements[i] = elements[j];
+			elements[j] = swap;
+		}
+		return of(elements);
+	}
+
+	@Override
+	public Object[] toArray() {
+		final Object[] elements = new Object[size()];
+		int i = 0;
+		for (E element : this)
+			elements[i++] = element;
+		return elements;
+	}
+
+	/**
+	 * Iterates in order in O(n) overall instead of looking up every index
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			// the nodes whose value and right subtree are still to be visited
+			private final ArrayDeque<Node<E>> path = new ArrayDeque<>();
+
+			{
+				pushLeft(root);
+			}
+
+			private void pushLeft(Node<E> node) {
+				for (; node != null; node = node.left)
+					path.push(node);
+			}
+
+			@Override
+			public boolean hasNext() {
+				return !path.isEmpty();
+			}
+
+			@Override
+			public E next() {
+				if (path.isEmpty())
+					throw new NoSuchElementException();
+				final Node<E> node = path.pop();
+				pushLeft(node.right);
+				return node.value;
+			}
+		};
+	}
+
+	/**
+	 * @return true if the heights of the subtrees of every node differ by at most
+	 *         one and every node knows its size, height and weight, for tests
+	 */
+	boolean isBalanced() {
+		return isBalanced(root);
+	}
+
+	private static boolean isBalanced(Node<?> node) {
+		if (node == null)
+			return true;
+		return Math.abs(height(node.left) - height(node.right)) <= 1
+				&& node.size == size(node.left) + size(node.right) + 1
+				&& node.weight == weight(node.left) + weight(node.right) + valueWeight(node.value)
+				&& node.height == Math.max(height(node.left), height(node.right)) + 1 && isBalanced(node.left)
+				&& isBalanced(node.right);
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	private static <E> Node<E> build(E[] elements, int from, int to) {
+		if (from >= to)
+			return null;
+		final int mid = (from + to) >>> 1;
+		return new Node<>(build(elements, from, mid), elements[mid], build(elements, mid + 1, to));
+	}
+
+	private static <E> Node<E> insert(Node<E> node, int index, E element) {
+		if (node == null)
+			return new Node<>(null, element, null);
+
+		final int leftSize = size(node.left);
+		if (index <= leftSize)
+			return balance(insert(node.left, index, element), node.value, node.right);
+		return balance(node.left, node.value, insert(node.right, index - leftSize - 1, element));
+	}
+
+	private static <E> Node<E> remove(Node<E> node, int index) {
+		final int leftSize = size(node.left);
+		if (index < leftSize)
+			return balance(remove(node.left, index), node.value, node.right);
+		if (index > leftSize)
+			return balance(node.left, node.value, remove(node.right, index - leftSize - 1));
+
+		if (node.right == null)
+			return node.left;
+		return balance(node.left, first(node.right), remove(node.right, 0));
+	}
+
+	/**
+	 * Drops the first count elements of the subtree, joining the kept parts on
+	 * the way up
+	 */
+	private static <E> Node<E> drop(Node<E> node, int count) {
+		if (node == null || count <= 0)
+			return node;
+
+		final int leftSize = size(node.left);
+		if (count <= leftSize)
+			return join(drop(node.left, count), node.value, node.right);
+		return drop(node.right, count - leftSize - 1);
+	}
+
+	/**
+	 * Joins two trees of any height with an element between them
+	 */
+	private static <E> Node<E> join(Node<E> left, E value, Node<E> right) {
+		if (height(left) > height(right) + 1)
+			return balance(left.left, left.value, join(left.right, value, right));
+		if (height(right) > height(left) + 1)
+			return balance(join(left, value, right.left), right.value, right.right);
+		return new Node<>(left, value, right);
+	}
+
+	/**
+	 * Creates a node from subtrees whose heights differ by at most two, rotating
+	 * if they differ by two
+	 */
+	private static <E> Node<E> balance(Node<E> left, E value, Node<E> right) {
+		final int difference = height(left) - height(right);
+		if (difference > 1) {
+			if (height(left.left) >= height(left.right))
+				return new Node<>(left.left, left.value, new Node<>(left.right, value, right));
+			return new Node<>(new Node<>(left.left, left.value, left.right.left), left.right.value,
+					new Node<>(left.right.right, value, right));
+		}
+		if (difference < -1) {
+			if (height(right.right) >= height(right.left))
+				return new Node<>(new Node<>(left, value, right.left), right.value, right.right);
+			return new Node<>(new Node<>(left, value, right.left.left), right.left.value,
+					new Node<>(right.left.right, right.value, right.right));
+		}
+		return new Node<>(left, value, right);
+	}
+
+	private static <E> E first(Node<E> node) {
+		while (node.left != null)
+			node = node.left;
+		return node.value;
+	}
+
+	private static int size(Node<?> node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static int height(Node<?> node) {
+		return node == null ? 0 : node.height;
+	}
+
+	private static long weight(Node<?> node) {
+		return node == null ? 0 : node.weight;
+	}
+
+	private static long valueWeight(Object value) {
+		return value instanceof Weighted ? ((Weighted) value).getWeight() : 0;
+	}
+
+	/**
+	 * An element that knows how much it weighs, e.g. the heap it uses
+	 */
+	public interface Weighted {
+		long getWeight();
+	}
+
+	private static final class Node<E> {
+		private final Node<E> left;
+		private final E value;
+		private final Node<E> right;
+		private final int size;
+		private final int height;
+		private final long weight;
+
+		private Node(Node<E> left, E value, Node<E> right) {
+			this.left = left;
+			this.value = value;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.weight = weight(left) + weight(right) + valueWeight(value);
+		}
+	}
+
+}
@@ -0,0 +1,416 @@
+package com.github.mubot.music;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mubot.command.util.Pair;
+import com.github.mubot.database.DatabaseManager;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Saves the playback of every guild, the current track and its position, the
+ * queue, volume, repeat and pause, so it can resume after a restart. The
+ * playback of a guild is written as a compact binary row of encoded tracks in
+ * the database, since the file system of a dyno doesn't survive a restart.
+ * Every instance keeps its own rows under CHECKPOINT_ID, which defaults to the
+ * name of the dyno, so instances sharing a database don't overwrite each
+ * other. Every CHECKPOINT_INTERVAL_S seconds and on shutdown the rows of guilds
+ * whose queue, track or settings changed are rewritten, the other guilds only
+ * get their position updated with one statement, so a long queue that is
+ * playing isn't written again every time. The guilds of a shard are restored
+ * once by its first ReadyEvent if their row isn't older than
+ * CHECKPOINT_MAX_AGE_S seconds, and a guild isn't saved while it is being
+ * restored, so the empty playback of a bot that is still starting doesn't
+ * replace its row.
+ */
+public final class PlaybackCheckpoint {
+
+	private static final Logger LOGGER = Loggers.getLogger(PlaybackCheckpoint.class);
+
+	private static final int MAGIC = 0x4D554350;
+	// 2 stores the volume a user set or -1 instead of the volume of the player, 3
+	// stores a row per guild with the position in a column of its own
+	private static final byte VERSION = 3;
+
+	private static final byte REPEAT = 1;
+	private static final byte PAUSED = 2;
+	private static final byte HAS_CURRENT = 4;
+
+	private static final int INTERVAL = Config.getInt("CHECKPOINT_INTERVAL_S", 60);
+	private static final long MAX_AGE = TimeUnit.SECONDS.toMillis(Config.getInt("CHECKPOINT_MAX_AGE_S", 900));
+
+	private static final String ID = Config.getString("CHECKPOINT_ID", Config.getString("DYNO", "default"));
+
+	private static final String TABLE_NAME = "guild_playback_checkpoints";
+	private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS " + TABLE_NAME
+			+ " (id TEXT NOT NULL, guild_id BIGINT NOT NULL, saved_at BIGINT NOT NULL, position BIGINT NOT NULL,"
+			+ " data BYTEA NOT NULL, PRIMARY KEY (id, guild_id))";
+	private static final String SAVE_SQL = "INSERT INTO " + TABLE_NAME
+			+ " (id, guild_id, saved_at, position, data) VALUES ($1, $2, $3, $4, $5) ON CONFLICT (id, guild_id)"
+			+ " DO UPDATE SET saved_at = $3, position = $4, data = $5";
+	private static final String SAVE_POSITIONS_SQL = "UPDATE " + TABLE_NAME + " SET saved_at = $2,"
+			+ " position = saved.position FROM unnest($3::bigint[], $4::bigint[]) AS saved (guild_id, position)"
+			+ " WHERE " + TABLE_NAME + ".id = $1 AND " + TABLE_NAME + ".guild_id = saved.guild_id";
+	// guilds that stopped playing, and guilds of shards that were never restored
+	private static final String DELETE_SQL = "DELETE FROM " + TABLE_NAME
+			+ " WHERE id = $1 AND (guild_id = ANY($2::bigint[]) OR saved_at < $3)";
+	private static final String LOAD_SQL = "SELECT guild_id, position, data FROM " + TABLE_NAME
+			+ " WHERE id = $1 AND guild_id = ANY($2::bigint[]) AND saved_at >= $3";
+
+	// guilds whose playback was restored or had nothing to restore
+	private static final Set<Long> restored = ConcurrentHashMap.newKeySet();
+	// guilds being restored, which aren't saved until they are
+	private static final Set<Long> restoring = ConcurrentHashMap.newKeySet();
+	private static volatile boolean tableCreated = false;
+	// the playback of every guild as it was last saved, to only rewrite the rows
+	// of guilds that changed
+	private static final Map<Long, Saved> saved = new ConcurrentHashMap<>();
+	private static volatile long lastSavedAt = 0;
+
+	private PlaybackCheckpoint() {
+	}
+
+	/**
+	 * Starts saving checkpoints in the background and on shutdown
+	 */
+	public static void start() {
+		MetricsRegistry.register("mubot_checkpoint_bytes", "gauge",
+				"Size of the playback checkpoints of all guilds as last saved",
+				() -> saved.values().stream().mapToLong(guild -> guild.bytes).sum());
+		MetricsRegistry.register("mubot_checkpoint_last_saved_seconds", "gauge",
+				"Unix time the last playback checkpoint was saved", () -> lastSavedAt / 1000d);
+
+		Schedulers.boundedElastic().schedulePeriodically(
+				() -> save().subscribe(null, error -> LOGGER.error("Could not save checkpoint: " + error.getMessage())),
+				INTERVAL, INTERVAL, TimeUnit.SECONDS);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				save().block(Duration.ofSeconds(10));
+			} catch (RuntimeException e) {
+				LOGGER.error("Could not save checkpoint on shutdown: " + e.getMessage());
+			}
+		}, "checkpoint-shutdown"));
+	}
+
+	/**
+	 * Saves the playback of every guild that isn't being restored. Only guilds
+	 * whose queue, track or settings changed since they were last saved are
+	 * encoded and written, the position of the others is updated with a single
+	 * statement.
+	 *
+	 * @return completes when the checkpoint is saved
+	 */
+	public static Mono<Void> save() {
+		return Mono.defer(() -> {
+			final DatabaseManager database = DatabaseManager.getInstance();
+			if (database == null)
+				return Mono.empty();
+
+			final long now = System.currentTimeMillis();
+			final AudioPlayerManager playerManager = GuildMusicManager.getPlayerManager();
+			final List<Saved> changed = new ArrayList<>();
+			final List<Long> unchangedIds = new ArrayList<>();
+			final List<Long> positions = new ArrayList<>();
+			final Set<Long> present = new HashSet<>();
+			for (GuildMusic guildMusic : GuildMusicManager.getAll()) {
+				final long guildId = guildMusic.getGuildId();
+				if (restoring.contains(guildId))
+					continue;
+				present.add(guildId);
+				final Saved current = Saved.of(guildMusic);
+				final Saved last = saved.get(guildId);
+				if (current.sameAs(last)) {
+					unchangedIds.add(guildId);
+					positions.add(current.position);
+				} else {
+					changed.add(current.encode(playerManager));
+				}
+			}
+			final List<Long> removed = new ArrayList<>();
+			for (Long guildId : saved.keySet()) {
+				if (!present.contains(guildId) && !restoring.contains(guildId))
+					removed.add(guildId);
+			}
+
+			final Mono<Void> createTable = tableCreated ? Mono.empty()
+					: database.getClient().sql(CREATE_TABLE_SQL).then().doOnSuccess(ignored -> tableCreated = true);
+			final Mono<Void> saveChanged = Flux.fromIterable(changed)
+					.concatMap(guild -> database.getClient().sql(SAVE_SQL).bind("$1", ID).bind("$2", guild.guildId)
+							.bind("$3", now).bind("$4", guild.position).bind("$5", ByteBuffer.wrap(guild.data)).then()
+							.doOnSuccess(ignored -> saved.put(guild.guildId, guild.withoutData())))
+					.then();
+			final Mono<Void> savePositions = unchangedIds.isEmpty() ? Mono.empty()
+					: database.getClient().sql(SAVE_POSITIONS_SQL).bind("$1", ID).bind("$2", now)
+							.bind("$3", unchangedIds.toArray(new Long[0])).bind("$4", positions.toArray(new Long[0]))
+							.then();
+			final Mono<Void> delete = database.getClient().sql(DELETE_SQL).bind("$1", ID)
+					.bind("$2", removed.toArray(new Long[0])).bind("$3", now - MAX_AGE).then()
+					.doOnSuccess(ignored -> removed.forEach(saved::remove));
+			return createTable.then(saveChanged).then(savePositions).then(delete).doOnSuccess(ignored -> {
+				lastSavedAt = now;
+				if (!changed.isEmpty())
+					LOGGER.info("Saved the playback checkpoints of {} guilds, {} bytes", changed.size(),
+							changed.stream().mapToLong(guild -> guild.bytes).sum());
+			});
+		});
+	}
+
+	/**
+	 * Loads the checkpoints of the guilds of a shard, each guild only gets its
+	 * checkpoint once in the life of the bot so a later ReadyEvent doesn't
+	 * replace the playback. The guilds aren't saved until
+	 * {@link #restoreFinished(Collection)} is called.
+	 *
+	 * @param guildIds the guilds of the shard that is ready
+	 * @return the saved playback by guild id, empty if there is none, it was
+	 *         already restored or it is too old
+	 */
+	public static Mono<Map<Long, GuildState>> restore(Collection<Long> guildIds) {
+		return Mono.defer(() -> {
+			final DatabaseManager database = DatabaseManager.getInstance();
+			final List<Long> toRestore = new ArrayList<>();
+			for (Long guildId : guildIds) {
+				if (restored.add(guildId))
+					toRestore.add(guildId);
+			}
+			if (database == null || toRestore.isEmpty())
+				return Mono.empty();
+
+			restoring.addAll(toRestore);
+			return database.getClient().sql(LOAD_SQL).bind("$1", ID).bind("$2", toRestore.toArray(new Long[0]))
+					.bind("$3", System.currentTimeMillis() - MAX_AGE)
+					.map((row, rowMd) -> new Pair<Long, GuildState>(row.get("guild_id", Long.class),
+							read(toBytes(row.get("data", ByteBuffer.class)), row.get("position", Long.class))))
+					.all().filter(guild -> guild.getValue() != null)
+					.collectMap(Pair::getKey, Pair::getValue).onErrorResume(error -> {
+						LOGGER.error("Could not load checkpoint: " + error.getMessage());
+						return Mono.empty();
+					});
+		});
+	}
+
+	/**
+	 * Allows saving the guilds again, called once the playback returned by
+	 * {@link #restore(Collection)} was resumed or couldn't be
+	 *
+	 * @param guildIds the guilds of the shard that is ready
+	 */
+	public static void restoreFinished(Collection<Long> guildIds) {
+		restoring.removeAll(guildIds);
+	}
+
+	private static byte[] toBytes(ByteBuffer data) {
+		final byte[] bytes = new byte[data.remaining()];
+		data.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * @param playerManager the manager to encode the current track with
+	 * @param guild         the playback of the guild, without its position
+	 * @return the playback of the guild
+	 */
+	static byte[] write(AudioPlayerManager playerManager, Saved guild) {
+		final QueuedTrack current = guild.playing != null ? QueuedTrack.encode(playerManager, guild.playing) : null;
+		final boolean hasCurrent = current != null && current.isEncoded();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeInt(MAGIC);
+			output.writeByte(VERSION);
+			output.writeLong(guild.channelId);
+			output.writeShort(guild.volume);
+			output.writeByte(guild.flags | (hasCurrent ? HAS_CURRENT : 0));
+			if (hasCurrent)
+				current.write(output);
+
+			int encoded = 0;
+			for (QueuedTrack track : guild.queue) {
+				if (track.isEncoded())
+					encoded++;
+			}
+			output.writeInt(encoded);
+			for (QueuedTrack track : guild.queue) {
+				if (track.isEncoded())
+					track.write(output);
+			}
+		} catch (IOException e) {
+			// writing to memory doesn't fail
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param data     the playback written by
+	 *                 {@link #write(AudioPlayerManager, Saved)}
+	 * @param position the position of the current track in milliseconds
+	 * @return the saved playback of the guild, null if it can't be read
+	 */
+	static GuildState read(byte[] data, long position) {
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+				LOGGER.warn("Unknown playback checkpoint format, not restoring it");
+				return null;
+			}
+
+			final long channelId = input.readLong();
+			final int volume = input.readShort();
+			final byte flags = input.readByte();
+			final QueuedTrack current = (flags & HAS_CURRENT) != 0 ? QueuedTrack.read(input) : null;
+
+			final int queueSize = readCount(input);
+			final List<QueuedTrack> queue = new ArrayList<>(queueSize);
+			for (int i = 0; i < queueSize; i++)
+				queue.add(QueuedTrack.read(input));
+
+			return new GuildState(channelId, volume, (flags & REPEAT) != 0, (flags & PAUSED) != 0, current,
+					current != null ? position : 0, queue);
+		} catch (IOException e) {
+			LOGGER.error("Corrupt playback checkpoint, not restoring it: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the number of tracks that follow, each takes more than a byte so
+	 * there can't be more than there are bytes left
+	 */
+	private static int readCount(DataInputStream input) throws IOException {
+		final int count = input.readInt();
+		if (count < 0 || count > input.available())
+			throw new IOException("Invalid count " + count);
+		return count;
+	}
+
+	/**
+	 * The playback of a guild when it was last saved. The queue and the track are
+	 * compared by identity, every change to the queue replaces it and every track
+	 * that starts is a new instance.
+	 */
+	static final class Saved {
+
+		private final long guildId;
+		private final long channelId;
+		private final int volume;
+		private final int flags;
+		private final AudioTrack playing;
+		private final long position;
+		private final List<QueuedTrack> queue;
+		// the encoded playback, only kept until it is written
+		private final byte[] data;
+		private final int bytes;
+
+		private Saved(long guildId, long channelId, int volume, int flags, AudioTrack playing, long position,
+				List<QueuedTrack> queue, byte[] data, int bytes) {
+			this.guildId = guildId;
+			this.channelId = channelId;
+			this.volume = volume;
+			this.flags = flags;
+			this.playing = playing;
+			this.position = position;
+			this.queue = queue;
+			this.data = data;
+			this.bytes = bytes;
+		}
+
+		static Saved of(GuildMusic guildMusic) {
+			final TrackScheduler scheduler = guildMusic.getTrackScheduler();
+			final AudioPlayer player = scheduler.getPlayer();
+			final AudioTrack playing = player.getPlayingTrack();
+			return new Saved(guildMusic.getGuildId(),
+					VoiceReadiness.getConnectedChannel(Snowflake.of(guildMusic.getGuildId())).map(Snowflake::asLong)
+							.orElse(0L),
+					scheduler.getVolumeOverride(),
+					(scheduler.repeatEnabled() ? REPEAT : 0) | (player.isPaused() ? PAUSED : 0), playing,
+					playing != null ? playing.getPosition() : 0, scheduler.getQueue(), null, 0);
+		}
+
+		/**
+		 * @return true if only the position changed since the last save
+		 */
+		boolean sameAs(Saved last) {
+			return last != null && channelId == last.channelId && volume == last.volume && flags == last.flags
+					&& playing == last.playing && queue == last.queue;
+		}
+
+		Saved encode(AudioPlayerManager playerManager) {
+			final byte[] encoded = write(playerManager, this);
+			return new Saved(guildId, channelId, volume, flags, playing, position, queue, encoded, encoded.length);
+		}
+
+		Saved withoutData() {
+			return new Saved(guildId, channelId, volume, flags, playing, position, queue, null, bytes);
+		}
+	}
+
+	/**
+	 * The saved playback of a guild
+	 */
+	public static final class GuildState {
+
+		private final long channelId;
+		private final int volume;
+		private final boolean repeat;
+		private final boolean paused;
+		private final QueuedTrack current;
+		private final long position;
+		private final List<QueuedTrack> queue;
+
+		private GuildState(long channelId, int volume, boolean repeat, boolean paused, QueuedTrack current,
+				long position, List<QueuedTrack> queue) {
+			this.channelId = channelId;
+			this.volume = volume;
+			this.repeat = repeat;
+			this.paused = paused;
+			this.current = current;
+			this.position = position;
+			this.queue = queue;
+		}
+
+		/**
+		 * @return the voice channel the bot was in, 0 if it isn't known
+		 */
+		public long getChannelId() {
+			return channelId;
+		}
+
+		/**
+		 * Resumes the saved playback on the scheduler of the guild
+		 *
+		 * @param scheduler the scheduler of the guild
+		 */
+		public void restore(TrackScheduler scheduler) {
+			final AudioTrack track = current != null ? current.decode(GuildMusicManager.getPlayerManager()) : null;
+			scheduler.restore(track, position, queue, volume, repeat, paused);
+		}
+
+		public int getQueueSize() {
+			return queue.size();
+		}
+	}
+
+}
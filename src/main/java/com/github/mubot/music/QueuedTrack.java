@@ -0,0 +1,179 @@
+package com.github.mubot.music;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A track waiting in the queue. Instead of the live AudioTrack with its
+ * executor and source manager state, it keeps the track encoded by the player
+ * manager together with the info needed to show the queue, and the AudioTrack
+ * is only decoded again when the track is about to play. Titles and authors are
+ * interned since playlists repeat the same authors over and over.
+ */
+public final class QueuedTrack implements PersistentQueue.Weighted {
+
+	private static final Logger LOGGER = Loggers.getLogger(QueuedTrack.class);
+
+	// object header and fields of a queued track and the tree node holding it
+	private static final int ENTRY_BYTES = 40 + 40;
+	// object header and length of the encoded track array
+	private static final int ARRAY_BYTES = 16;
+	// encoded tracks are a few hundred bytes, anything longer is corrupt
+	static final int MAX_ENCODED_BYTES = 64 * 1024;
+
+	private final byte[] encoded;
+	// only set if the track couldn't be encoded
+	private final AudioTrack track;
+	private final String title;
+	private final String author;
+	private final long duration;
+
+	private QueuedTrack(byte[] encoded, String title, String author, long duration) {
+		this.encoded = encoded;
+		this.track = null;
+		this.title = title.intern();
+		this.author = author.intern();
+		this.duration = duration;
+	}
+
+	private QueuedTrack(byte[] encoded, AudioTrack track) {
+		this.encoded = encoded;
+		this.track = encoded == null ? track : null;
+		this.title = track.getInfo().title.intern();
+		this.author = track.getInfo().author.intern();
+		this.duration = track.getInfo().length;
+	}
+
+	/**
+	 * @param playerManager the player manager that loaded the track
+	 * @param track         the track to queue
+	 * @return the compact form of the track, holding on to the track itself only
+	 *         if it can't be encoded
+	 */
+	public static QueuedTrack encode(AudioPlayerManager playerManager, AudioTrack track) {
+		return new QueuedTrack(encodeTrack(playerManager, track), track);
+	}
+
+	/**
+	 * @param playerManager the player manager that loaded the track
+	 * @param track         the track to encode
+	 * @return the encoded track, or null if it couldn't be encoded
+	 */
+	public static byte[] encodeTrack(AudioPlayerManager playerManager, AudioTrack track) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			playerManager.encodeTrack(new MessageOutput(bytes), track);
+			return bytes.toByteArray();
+		} catch (IOException | RuntimeException e) {
+			LOGGER.warn("Could not encode track " + track.getIdentifier() + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @param playerManager the player manager that encoded the track
+	 * @param encoded       the encoded track
+	 * @return a new AudioTrack ready to play, or null if it couldn't be decoded
+	 */
+	public static AudioTrack decodeTrack(AudioPlayerManager playerManager, byte[] encoded) {
+		try {
+			final DecodedTrackHolder holder = playerManager
+					.decodeTrack(new MessageInput(new ByteArrayInputStream(encoded)));
+			return holder != null ? holder.decodedTrack : null;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Could not decode track: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the encoded track and its info, only encoded tracks can be written
+	 *
+	 * @param output the output to write to
+	 * @throws IOException if writing fails
+	 */
+	public void write(DataOutput output) throws IOException {
+		output.writeInt(encoded.length);
+		output.write(encoded);
+		output.writeUTF(title);
+		output.writeUTF(author);
+		output.writeLong(duration);
+	}
+
+	/**
+	 * @param input the input to read from
+	 * @return a track written by {@link #write(DataOutput)}
+	 * @throws IOException if reading fails or the encoded track is too long
+	 */
+	public static QueuedTrack read(DataInput input) throws IOException {
+		final int length = input.readInt();
+		if (length < 0 || length > MAX_ENCODED_BYTES)
+			throw new IOException("Invalid encoded track length " + length);
+		final byte[] encoded = new byte[length];
+		input.readFully(encoded);
+		return new QueuedTrack(encoded, input.readUTF(), input.readUTF(), input.readLong());
+	}
+
+	/**
+	 * @param playerManager the player manager that encoded the track
+	 * @return a new AudioTrack ready to play, or null if it couldn't be decoded
+	 */
+	public AudioTrack decode(AudioPlayerManager playerManager) {
+		if (encoded == null)
+			return track;
+		return decodeTrack(playerManager, encoded);
+	}
+
+	/**
+	 * @return false if the track couldn't be encoded and the live track is kept
+	 *         instead
+	 */
+	public boolean isEncoded() {
+		return encoded != null;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public String getAuthor() {
+		return author;
+	}
+
+	/**
+	 * @return the duration of the track in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	/**
+	 * @return an estimate of the heap used by this track in the queue in bytes.
+	 *         The interned title and author are shared and not counted, neither is
+	 *         a track that couldn't be encoded.
+	 */
+	public int getHeapSize() {
+		return ENTRY_BYTES + (encoded != null ? ARRAY_BYTES + (encoded.length + 7 & ~7) : 0);
+	}
+
+	/**
+	 * @return the heap size, which the queue sums up for every subtree
+	 */
+	@Override
+	public long getWeight() {
+		return getHeapSize();
+	}
+
+}
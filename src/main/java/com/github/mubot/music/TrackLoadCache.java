@@ -0,0 +1,334 @@
+package com.github.mubot.music;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Caches what LavaPlayer resolved links and searches to, so popular songs and
+ * searches used by many guilds aren't resolved again every time. Tracks are
+ * kept encoded and the cache is bounded by the number of entries and their
+ * size, evicting the least recently used. Results expire after
+ * TRACK_CACHE_TTL_MS, YouTube and SoundCloud searches that found nothing after
+ * TRACK_CACHE_NEGATIVE_TTL_MS. Links that found nothing and failed loads are
+ * never cached, as they may resolve once the source is reachable again.
+ */
+public final class TrackLoadCache {
+
+	private static final Logger LOGGER = Loggers.getLogger(TrackLoadCache.class);
+
+	private static final int MAX_ENTRIES = Config.getInt("TRACK_CACHE_MAX_ENTRIES", 5000);
+	private static final long MAX_BYTES = Config.getInt("TRACK_CACHE_MAX_BYTES", 32 * 1024 * 1024);
+	private static final long TTL = TimeUnit.MILLISECONDS
+			.toNanos(Config.getInt("TRACK_CACHE_TTL_MS", (int) TimeUnit.HOURS.toMillis(1)));
+	private static final long NEGATIVE_TTL = TimeUnit.MILLISECONDS
+			.toNanos(Config.getInt("TRACK_CACHE_NEGATIVE_TTL_MS", (int) TimeUnit.MINUTES.toMillis(1)));
+
+	private static final String[] SEARCH_PREFIXES = { "ytsearch:", "scsearch:" };
+
+	private static final TrackLoadCache CACHE = new TrackLoadCache(MAX_ENTRIES, MAX_BYTES, TTL, NEGATIVE_TTL);
+
+	static {
+		MetricsRegistry.register(CACHE::collect);
+	}
+
+	private final int maxEntries;
+	private final long maxBytes;
+	private final long ttl;
+	private final long negativeTtl;
+
+	// normalized identifier -> result, in least recently used order, guarded by
+	// this
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+	private long bytes = 0;
+
+	// ordering key -> loads that went to LavaPlayer and haven't finished yet
+	private final Map<Object, Integer> loading = new ConcurrentHashMap<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder sizeEvictions = new LongAdder();
+	private final LongAdder expiredEvictions = new LongAdder();
+
+	/**
+	 * @param maxEntries  the number of results to keep at most
+	 * @param maxBytes    the estimated heap the results may use at most
+	 * @param ttl         how long results are kept in nanoseconds
+	 * @param negativeTtl how long searches without matches are kept in
+	 *                    nanoseconds
+	 */
+	TrackLoadCache(int maxEntries, long maxBytes, long ttl, long negativeTtl) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.ttl = ttl;
+		this.negativeTtl = negativeTtl;
+	}
+
+	/**
+	 * Loads an item like {@link AudioPlayerManager#loadItemOrdered}, answering
+	 * from the cache if the item was resolved recently. A hit calls the handler
+	 * right away on the calling thread, unless a load with the same ordering key
+	 * is still running, in which case the item is loaded in order behind it.
+	 *
+	 * @param playerManager the player manager that loads and encodes tracks
+	 * @param orderingKey   loads with the same key are handled in order
+	 * @param identifier    the link or search to load
+	 * @param handler       the handler of the result
+	 */
+	public static void loadItemOrdered(AudioPlayerManager playerManager, Object orderingKey, String identifier,
+			AudioLoadResultHandler handler) {
+		CACHE.load(playerManager, orderingKey, identifier, handler);
+	}
+
+	void load(AudioPlayerManager playerManager, Object orderingKey, String identifier,
+			AudioLoadResultHandler handler) {
+		final String key = normalize(identifier);
+		if (!loading.containsKey(orderingKey)) {
+			final Entry entry = get(key);
+			if (entry != null && entry.replay(playerManager, handler)) {
+				hits.increment();
+				return;
+			}
+		}
+
+		misses.increment();
+		loading.merge(orderingKey, 1, Integer::sum);
+		playerManager.loadItemOrdered(orderingKey, identifier,
+				new CachingHandler(playerManager, orderingKey, key, handler));
+	}
+
+	/**
+	 * Trims the identifier, lower cases the scheme and host of links and the
+	 * terms of searches, and collapses whitespace in searches
+	 */
+	static String normalize(String identifier) {
+		final String trimmed = identifier.trim();
+		final String searchPrefix = searchPrefix(trimmed);
+		if (searchPrefix != null)
+			return searchPrefix + trimmed.substring(searchPrefix.length()).trim().replaceAll("\\s+", " ")
+					.toLowerCase(Locale.ROOT);
+
+		final int schemeEnd = trimmed.indexOf("://");
+		final int hostStart = schemeEnd < 0 ? 0 : schemeEnd + 3;
+		int hostEnd = trimmed.indexOf('/', hostStart);
+		if (hostEnd < 0)
+			hostEnd = trimmed.length();
+		return trimmed.substring(0, hostEnd).toLowerCase(Locale.ROOT) + trimmed.substring(hostEnd);
+	}
+
+	/**
+	 * @return the search prefix the identifier starts with in lower case, null if
+	 *         it isn't a search
+	 */
+	private static String searchPrefix(String identifier) {
+		for (String prefix : SEARCH_PREFIXES) {
+			if (identifier.regionMatches(true, 0, prefix, 0, prefix.length()))
+				return prefix;
+		}
+		return null;
+	}
+
+	private synchronized Entry get(String key) {
+		final Entry entry = entries.get(key);
+		if (entry == null)
+			return null;
+		if (System.nanoTime() - entry.expires >= 0) {
+			remove(key);
+			expiredEvictions.increment();
+			return null;
+		}
+		return entry;
+	}
+
+	private synchronized void put(String key, Entry entry) {
+		if (entry.heapSize > maxBytes / 8)
+			return;
+
+		remove(key);
+		entries.put(key, entry);
+		bytes += entry.heapSize;
+
+		final Iterator<Entry> eldest = entries.values().iterator();
+		while (entries.size() > maxEntries || bytes > maxBytes) {
+			bytes -= eldest.next().heapSize;
+			eldest.remove();
+			sizeEvictions.increment();
+		}
+	}
+
+	private void remove(String key) {
+		final Entry removed = entries.remove(key);
+		if (removed != null)
+			bytes -= removed.heapSize;
+	}
+
+	synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	synchronized long getBytes() {
+		return bytes;
+	}
+
+	private void collect(PrometheusWriter writer) {
+		writer.header("mubot_track_cache_hits_total", "counter", "Number of loads answered from the track cache");
+		writer.sample("mubot_track_cache_hits_total", hits.sum());
+		writer.header("mubot_track_cache_misses_total", "counter", "Number of loads that went to LavaPlayer");
+		writer.sample("mubot_track_cache_misses_total", misses.sum());
+		writer.header("mubot_track_cache_evictions_total", "counter",
+				"Number of results dropped from the track cache");
+		writer.sample("mubot_track_cache_evictions_total", sizeEvictions.sum(), "reason", "size");
+		writer.sample("mubot_track_cache_evictions_total", expiredEvictions.sum(), "reason", "expired");
+		writer.header("mubot_track_cache_entries", "gauge", "Number of results in the track cache");
+		writer.sample("mubot_track_cache_entries", getEntryCount());
+		writer.header("mubot_track_cache_bytes", "gauge", "Estimated heap used by the track cache in bytes");
+		writer.sample("mubot_track_cache_bytes", getBytes());
+	}
+
+	/**
+	 * A cached result, a single track, a playlist or no matches
+	 */
+	private static final class Entry {
+		// object header and fields of an entry and its map entry
+		private static final int ENTRY_BYTES = 48 + 40;
+
+		// null for no matches, a single track for a track
+		private final QueuedTrack[] tracks;
+		// only set for playlists
+		private final String playlistName;
+		private final int selectedIndex;
+		private final boolean searchResult;
+		private final long expires;
+		private final long heapSize;
+
+		private Entry(QueuedTrack[] tracks, String playlistName, int selectedIndex, boolean searchResult,
+				long ttl) {
+			this.tracks = tracks;
+			this.playlistName = playlistName;
+			this.selectedIndex = selectedIndex;
+			this.searchResult = searchResult;
+			this.expires = System.nanoTime() + ttl;
+
+			long size = ENTRY_BYTES;
+			if (tracks != null) {
+				for (QueuedTrack track : tracks)
+					size += track.getHeapSize();
+			}
+			this.heapSize = size;
+		}
+
+		/**
+		 * Calls the handler with the cached result
+		 *
+		 * @return false if a track couldn't be decoded and the item has to be loaded
+		 */
+		private boolean replay(AudioPlayerManager playerManager, AudioLoadResultHandler handler) {
+			if (tracks == null) {
+				handler.noMatches();
+				return true;
+			}
+
+			final List<AudioTrack> decoded = new ArrayList<>(tracks.length);
+			for (QueuedTrack track : tracks) {
+				final AudioTrack audioTrack = track.decode(playerManager);
+				if (audioTrack == null)
+					return false;
+				decoded.add(audioTrack);
+			}
+
+			if (playlistName == null)
+				handler.trackLoaded(decoded.get(0));
+			else
+				handler.playlistLoaded(new BasicAudioPlaylist(playlistName, decoded,
+						selectedIndex < 0 ? null : decoded.get(selectedIndex), searchResult));
+			return true;
+		}
+	}
+
+	/**
+	 * Caches the result of a load before passing it on to the handler
+	 */
+	private final class CachingHandler implements AudioLoadResultHandler {
+
+		private final AudioPlayerManager playerManager;
+		private final Object orderingKey;
+		private final String key;
+		private final AudioLoadResultHandler handler;
+
+		private CachingHandler(AudioPlayerManager playerManager, Object orderingKey, String key,
+				AudioLoadResultHandler handler) {
+			this.playerManager = playerManager;
+			this.orderingKey = orderingKey;
+			this.key = key;
+			this.handler = handler;
+		}
+
+		@Override
+		public void trackLoaded(AudioTrack track) {
+			loaded();
+			cache(new AudioTrack[] { track }, null, -1, false);
+			handler.trackLoaded(track);
+		}
+
+		@Override
+		public void playlistLoaded(AudioPlaylist playlist) {
+			loaded();
+			final List<AudioTrack> tracks = playlist.getTracks();
+			final AudioTrack selected = playlist.getSelectedTrack();
+			cache(tracks.toArray(new AudioTrack[0]), playlist.getName() != null ? playlist.getName() : "",
+					selected != null ? tracks.indexOf(selected) : -1, playlist.isSearchResult());
+			handler.playlistLoaded(playlist);
+		}
+
+		@Override
+		public void noMatches() {
+			loaded();
+			// a search for something that doesn't exist stays that way for a while
+			if (searchPrefix(key) != null)
+				put(key, new Entry(null, null, -1, false, negativeTtl));
+			handler.noMatches();
+		}
+
+		@Override
+		public void loadFailed(FriendlyException exception) {
+			loaded();
+			handler.loadFailed(exception);
+		}
+
+		private void loaded() {
+			loading.computeIfPresent(orderingKey, (ignored, count) -> count > 1 ? count - 1 : null);
+		}
+
+		private void cache(AudioTrack[] tracks, String playlistName, int selectedIndex, boolean searchResult) {
+			final QueuedTrack[] encoded = new QueuedTrack[tracks.length];
+			for (int i = 0; i < tracks.length; i++) {
+				encoded[i] = QueuedTrack.encode(playerManager, tracks[i]);
+				if (!encoded[i].isEncoded()) {
+					LOGGER.debug("Not caching {}, a track couldn't be encoded", key);
+					return;
+				}
+			}
+			put(key, new Entry(encoded, playlistName, selectedIndex, searchResult, ttl));
+		}
+	}
+
+}
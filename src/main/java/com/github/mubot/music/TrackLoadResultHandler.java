@@ -9,7 +9,6 @@ import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
 import discord4j.core.event.domain.message.MessageCreateEvent;
-import reactor.core.publisher.Mono;
 import reactor.util.Logger;
 import reactor.util.Loggers;
 
@@ -37,15 +36,9 @@ public class TrackLoadResultHandler implements AudioLoadResultHandler {
 	public void playlistLoaded(final AudioPlaylist playlist) {
 		// LavaPlayer found multiple AudioTracks from some playlist
 		LOGGER.info("Playlist loaded");
-		Mono.just(playlist).map(AudioPlaylist::getTracks);
-		CommandUtil
-				.sendReply(event, CommandResponse.createFlat(EmojiHelper.CHECK_MARK + " Playlist with "
-						+ EmojiHelper.numToEmoji(playlist.getTracks().size()) + " songs added to queue " + EmojiHelper.CHECK_MARK))
-				.subscribe();
-
-		for (AudioTrack track : playlist.getTracks()) {
-			scheduler.queue(track);
-		}
+		String queueResponse = scheduler.queueAll(playlist.getTracks());
+		if (!queueResponse.isEmpty())
+			CommandUtil.sendReply(event, CommandResponse.createFlat(queueResponse)).subscribe();
 	}
 
 	@Override
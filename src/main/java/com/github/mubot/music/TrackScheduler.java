@@ -1,16 +1,20 @@
 package com.github.mubot.music;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.github.mubot.command.util.CommandUtil;
 import com.github.mubot.command.util.EmojiHelper;
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+import com.github.mubot.music.node.AudioNodes;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
@@ -23,18 +27,69 @@ public final class TrackScheduler extends AudioEventAdapter {
 
 	private static final Logger LOGGER = Loggers.getLogger(TrackScheduler.class);
 
-	// Queue of songs for this scheduler
-	private BlockingQueue<AudioTrack> queue = new LinkedBlockingQueue<AudioTrack>();
-	private final AudioPlayer player;
+	// how long before the end of a track the next one starts loading
+	private static final long PRELOAD_MS = Config.getInt("TRACK_PRELOAD_MS", 5000);
+
+	private static final String GAP = "mubot_track_gap_seconds";
+	private static final LatencyHistogram preloadedGaps = new LatencyHistogram();
+	private static final LatencyHistogram coldGaps = new LatencyHistogram();
+	// frames of all guilds, or with METRICS_PER_GUILD=true of every guild, which
+	// adds series with every guild that plays music
+	static final String FRAMES = "mubot_audio_frames_total";
+	static final String FRAMES_HELP = "Number of frames sent, by if they were played at full volume without "
+			+ "filters so LavaPlayer may pass them through, or had to be transcoded";
+	static final boolean PER_GUILD_FRAMES = Config.getBoolean("METRICS_PER_GUILD", false);
+	private static final LongAdder eligibleFrames = new LongAdder();
+	private static final LongAdder transcodedFrames = new LongAdder();
+
+	static {
+		MetricsRegistry.register(TrackScheduler::collect);
+	}
+
+	// Queue of songs for this scheduler. Every change replaces it with a new
+	// version while holding the lock of this scheduler, readers use whatever
+	// version is current without locking
+	private volatile PersistentQueue<QueuedTrack> queue = PersistentQueue.empty();
+	// the player that is playing, swapped with the standby player when a preloaded
+	// track starts
+	private volatile AudioPlayer player;
+	// a paused player that loads the next track before the current one ends,
+	// created the first time a track is preloaded
+	private AudioPlayer standby;
+	private final AudioPlayerManager playerManager;
 	private boolean repeat = false;
 
+	// the head of the queue that is loading on the standby player, the track it
+	// was decoded to and the track playing when it started loading, guarded by
+	// this
+	private QueuedTrack preloaded;
+	private AudioTrack preloadedTrack;
+	private volatile AudioTrack preloadedFor;
+
+	// when the last track ended on its own, 0 once the next track provided its
+	// first frame
+	private volatile long gapStart = 0;
+	private volatile boolean gapPreloaded = false;
+
+	// the volume a user set with the volume command, -1 to play at the default or
+	// normalized volume
+	private volatile int volumeOverride = -1;
+	// the player that measures the loudness of its track, null if none does
+	private volatile AudioPlayer measuring;
+	// frames of this guild, only counted with METRICS_PER_GUILD=true
+	private final LongAdder guildEligibleFrames = new LongAdder();
+	private final LongAdder guildTranscodedFrames = new LongAdder();
+
 	/**
 	 * Creates a track scheduler for the given channel
 	 * 
-	 * @param player the AudioPlayer used for this TrackScheduler
+	 * @param player        the AudioPlayer used for this TrackScheduler
+	 * @param playerManager the manager that loads the tracks, used to encode
+	 *                      queued tracks
 	 */
-	public TrackScheduler(AudioPlayer player) {
+	public TrackScheduler(AudioPlayer player, AudioPlayerManager playerManager) {
 		this.player = player;
+		this.playerManager = playerManager;
 		// add this as a listener so we can listen for tracks ending
 		player.addListener(this);
 	}
@@ -52,30 +107,205 @@ public final class TrackScheduler extends AudioEventAdapter {
 		// player was already playing so this
 		// track goes to the queue instead.
 		if (!player.startTrack(track, true)) {
-			queue.offer(track);
-			LOGGER.info("Track added to the queue: " + queue.size());
+			final QueuedTrack queued = QueuedTrack.encode(playerManager, track);
+			final int size;
+			synchronized (this) {
+				queue = queue.append(queued);
+				size = queue.size();
+			}
+			LOGGER.info("Track added to the queue: " + size);
 			return EmojiHelper.CHECK_MARK + " " + CommandUtil.trackInfo(track) + " was added to the queue ("
-					+ EmojiHelper.numToEmoji(getQueue().size()) + ") " + EmojiHelper.CHECK_MARK;
+					+ EmojiHelper.numToEmoji(size) + ") " + EmojiHelper.CHECK_MARK;
 		}
 		return EmojiHelper.NOTES + " Now playing " + CommandUtil.trackInfo(track) + " " + EmojiHelper.NOTES;
 	}
 
+	/**
+	 * Adds the tracks of a playlist to the queue at once. The first track starts
+	 * playing if nothing is playing, the others are queued with a single change to
+	 * the queue.
+	 * 
+	 * @param tracks the tracks to queue, in order
+	 * @return the reply telling what was queued and started
+	 */
+	public String queueAll(List<AudioTrack> tracks) {
+		if (tracks.isEmpty())
+			return "";
+
+		final AudioTrack first = tracks.get(0);
+		final boolean started = player.startTrack(first, true);
+		final List<AudioTrack> toQueue = started ? tracks.subList(1, tracks.size()) : tracks;
+
+		final List<QueuedTrack> queued = new ArrayList<>(toQueue.size());
+		for (AudioTrack track : toQueue)
+			queued.add(QueuedTrack.encode(playerManager, track));
+
+		final int size;
+		synchronized (this) {
+			queue = queue.appendAll(queued);
+			size = queue.size();
+		}
+		LOGGER.info(queued.size() + " tracks added to the queue: " + size);
+
+		final String added = EmojiHelper.CHECK_MARK + " Playlist with " + EmojiHelper.numToEmoji(tracks.size())
+				+ " songs added to queue " + EmojiHelper.CHECK_MARK;
+		if (started)
+			return EmojiHelper.NOTES + " Now playing " + CommandUtil.trackInfo(first) + " " + EmojiHelper.NOTES + "\n"
+					+ added;
+		return added;
+	}
+
 	/**
 	 * Start the next track, stopping the current one if it is playing.
+	 * 
+	 * @return the track that started, null if the queue was empty
 	 */
-	public void nextTrack() {
+	public AudioTrack nextTrack() {
+		final AudioTrack preloadedNext = startPreloaded();
+		if (preloadedNext != null)
+			return preloadedNext;
+
 		// Start the next track, regardless of if something is already playing or not.
 		// In case queue was empty, we are
 		// giving null to startTrack, which is a valid argument and will simply stop the
 		// player.
-		player.startTrack(queue.poll(), false);
+		final AudioTrack next = pollQueue();
+		player.startTrack(next, false);
+		return next;
+	}
+
+	/**
+	 * Starts loading the head of the queue on the standby player once the playing
+	 * track is about to end, so the next track has its connection open and frames
+	 * buffered when it starts. Called for every frame by the audio provider, so it
+	 * returns early unless a track has to be preloaded.
+	 */
+	public void preloadIfEnding() {
+		final AudioTrack current = player.getPlayingTrack();
+		if (current == null || current == preloadedFor || repeat || current.getInfo().isStream)
+			return;
+		final QueuedTrack head = queue.peek();
+		if (head == null || current.getDuration() - current.getPosition() > PRELOAD_MS)
+			return;
+
+		synchronized (this) {
+			if (queue.peek() != head || player.getPlayingTrack() != current)
+				return;
+			// only try once per track, a head that can't be decoded is skipped when
+			// it is polled
+			preloadedFor = current;
+			final AudioTrack track = head.decode(playerManager);
+			if (track == null)
+				return;
+
+			if (standby == null) {
+				standby = AudioNodes.createPlayer(playerManager);
+				standby.addListener(this);
+			}
+			standby.setPaused(true);
+			preloaded = head;
+			preloadedTrack = track;
+			standby.startTrack(track, false);
+		}
+		LOGGER.debug("Preloading " + head.getTitle());
+	}
+
+	/**
+	 * Switches to the standby player if it preloaded the head of the queue,
+	 * stopping the track of the previous player
+	 * 
+	 * @return the preloaded track that started, null if there is none, the queue
+	 *         changed since it was preloaded or the standby player no longer
+	 *         has the track
+	 */
+	private AudioTrack startPreloaded() {
+		final AudioPlayer previous;
+		final AudioTrack next;
+		synchronized (this) {
+			if (preloaded == null)
+				return null;
+			// LavaPlayer stops the track of a player nobody takes frames from after a
+			// minute, e.g. while paused just before the end of the current track
+			if (queue.peek() != preloaded || standby.getPlayingTrack() != preloadedTrack
+					|| preloadedTrack.getState() == AudioTrackState.FINISHED) {
+				discardPreload();
+				return null;
+			}
+
+			queue = queue.removeFirst();
+			next = preloadedTrack;
+			preloaded = null;
+			preloadedTrack = null;
+
+			previous = player;
+			player = standby;
+			standby = previous;
+			player.setPaused(previous.isPaused());
+			previous.setPaused(true);
+		}
+		previous.stopTrack();
+		return next;
+	}
+
+	/**
+	 * Stops the track loading on the standby player
+	 */
+	private synchronized void discardPreload() {
+		if (preloaded == null)
+			return;
+		preloaded = null;
+		preloadedTrack = null;
+		standby.stopTrack();
+	}
+
+	/**
+	 * Records how long the audio stopped between a track that ended and the next
+	 * one and if the player left the frame alone so it was eligible to pass
+	 * through, called by the audio provider for every frame it provides.
+	 * LavaPlayer doesn't tell if it actually passed it through, which also
+	 * depends on the source being Opus.
+	 */
+	public void frameProvided() {
+		final AudioPlayer current = player;
+		final boolean eligible = current.getVolume() == 100 && measuring != current;
+		(eligible ? eligibleFrames : transcodedFrames).increment();
+		if (PER_GUILD_FRAMES)
+			(eligible ? guildEligibleFrames : guildTranscodedFrames).increment();
+
+		final long start = gapStart;
+		if (start == 0)
+			return;
+		gapStart = 0;
+		(gapPreloaded ? preloadedGaps : coldGaps).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Takes the first track out of the queue and decodes it, skipping tracks that
+	 * can't be decoded
+	 * 
+	 * @return the track to play next, null if the queue is empty
+	 */
+	private AudioTrack pollQueue() {
+		while (true) {
+			final QueuedTrack next;
+			synchronized (this) {
+				next = queue.peek();
+				if (next == null)
+					return null;
+				queue = queue.removeFirst();
+			}
+
+			final AudioTrack track = next.decode(playerManager);
+			if (track != null)
+				return track;
+		}
 	}
 
 	/**
 	 * Clears the queue of all objects
 	 */
-	public void clearQueue() {
-		queue.clear();
+	public synchronized void clearQueue() {
+		queue = PersistentQueue.empty();
 	}
 
 	/**
@@ -84,55 +314,84 @@ public final class TrackScheduler extends AudioEventAdapter {
 	 * @param elementNumber
 	 */
 	public String skipQueue(int elementNumber) {
-		if (elementNumber > queue.size())
-			return "";
+		synchronized (this) {
+			if (elementNumber > queue.size())
+				return "";
 
-		queue = queue.stream().skip(elementNumber - 1).collect(Collectors.toCollection(LinkedBlockingQueue::new));
-		String ret = CommandUtil.trackInfo(queue.peek());
-		nextTrack();
-		return ret;
+			queue = queue.drop(elementNumber - 1);
+		}
+		final AudioTrack next = nextTrack();
+		return next != null ? CommandUtil.trackInfo(next) : "";
 	}
 
 	/**
 	 * Removes a specific track from the queue given by the index
 	 * 
 	 * @param index index of the item to remove from the queue
-	 * @return the AudioTrack that was removed or null if none was removed
+	 * @return the track that was removed or null if none was removed
 	 */
-	public AudioTrack removeFromQueue(int index) {
+	public synchronized QueuedTrack removeFromQueue(int index) {
 		if (index >= queue.size() || index < 0)
 			return null;
 
-		// convert the queue into a list
-		List<AudioTrack> listQueue = getQueue();
-		// remove the item from that list
-		AudioTrack removed = listQueue.remove(index);
-		// convert the list back into a queue
-		queue = new LinkedBlockingQueue<AudioTrack>(listQueue);
-
+		final QueuedTrack removed = queue.get(index);
+		queue = queue.removeAt(index);
 		return removed;
 	}
 
 	/**
-	 * Gets a list of the songs that are currently in the queue.
+	 * Gets the songs that are currently in the queue. The list is an immutable
+	 * snapshot that later changes to the queue don't affect, getting it doesn't
+	 * copy the queue.
 	 * 
 	 * @return List of queued songs
 	 */
-	public List<AudioTrack> getQueue() {
-		List<AudioTrack> ret = new ArrayList<AudioTrack>(queue);
-		return ret;
+	public List<QueuedTrack> getQueue() {
+		return queue;
+	}
+
+	/**
+	 * @return an estimate of the heap used by the queued tracks in bytes, kept by
+	 *         the queue so it is never walked
+	 */
+	public long getQueueHeapSize() {
+		return queue.getWeight();
+	}
+
+	/**
+	 * Replaces the queue and playback with a restored checkpoint. Tracks are
+	 * restored encoded, the current track starts at the position it was at.
+	 * 
+	 * @param current  the track that was playing, or null
+	 * @param position the position of the current track in milliseconds
+	 * @param queued   the tracks that were queued
+	 * @param volume   the volume a user set, -1 if none was set
+	 * @param repeat   if repeat was enabled
+	 * @param paused   if the player was paused
+	 */
+	public void restore(AudioTrack current, long position, List<QueuedTrack> queued, int volume, boolean repeat,
+			boolean paused) {
+		synchronized (this) {
+			queue = PersistentQueue.of(queued);
+			this.repeat = repeat;
+		}
+
+		volumeOverride = volume;
+		if (current != null) {
+			if (current.isSeekable())
+				current.setPosition(position);
+			player.startTrack(current, false);
+		} else {
+			applyVolume(player, null);
+		}
+		player.setPaused(paused);
 	}
 
 	/**
 	 * Shuffles the songs currently in the queue
 	 */
-	public void shuffleQueue() {
-		// convert the queue to a list
-		List<AudioTrack> ret = getQueue();
-		// shuffle that list
-		Collections.shuffle(ret);
-		// convert the list back into a queue
-		queue = new LinkedBlockingQueue<AudioTrack>(ret);
+	public synchronized void shuffleQueue() {
+		queue = queue.shuffle(ThreadLocalRandom.current());
 	}
 
 	/**
@@ -207,6 +466,91 @@ public final class TrackScheduler extends AudioEventAdapter {
 		}
 	}
 
+	/**
+	 * Sets the volume of the player until it is reset, every track plays at it
+	 * instead of its normalized volume
+	 * 
+	 * @param volume the volume from 0 to 100
+	 */
+	public void setVolume(int volume) {
+		volumeOverride = volume;
+		// a preloaded track got its volume when it started loading
+		synchronized (this) {
+			player.setVolume(volume);
+			if (preloaded != null)
+				applyVolume(standby, preloadedTrack);
+		}
+	}
+
+	/**
+	 * Goes back to the default volume, or to the normalized volume of the track
+	 * with passthrough
+	 */
+	public void resetVolume() {
+		volumeOverride = -1;
+		synchronized (this) {
+			applyVolume(player, player.getPlayingTrack());
+			if (preloaded != null)
+				applyVolume(standby, preloadedTrack);
+		}
+	}
+
+	/**
+	 * @return the volume a user set, -1 if none was set
+	 */
+	public int getVolumeOverride() {
+		return volumeOverride;
+	}
+
+	/**
+	 * Sets the volume of the track that started on the player
+	 */
+	@Override
+	public void onTrackStart(AudioPlayer player, AudioTrack track) {
+		applyVolume(player, track);
+	}
+
+	/**
+	 * Plays the track at the volume a user set, or else at the default volume, or
+	 * with passthrough at the normalized volume of the track, measuring it if it
+	 * wasn't measured yet and no other track of this scheduler is being measured
+	 */
+	private void applyVolume(AudioPlayer target, AudioTrack track) {
+		final int override = volumeOverride;
+		final Integer normalized = track != null && LoudnessNormalizer.ENABLED ? LoudnessNormalizer.getVolume(track)
+				: null;
+		final AudioPlayer measurer = measuring;
+		if (override >= 0 || track == null || !LoudnessNormalizer.ENABLED || normalized != null
+				|| !LoudnessNormalizer.canMeasure(target) || (measurer != null && measurer != target)) {
+			if (measurer == target) {
+				measuring = null;
+				target.setFilterFactory(null);
+			}
+			target.setVolume(override >= 0 ? override
+					: normalized != null ? normalized : LoudnessNormalizer.getDefaultVolume());
+			return;
+		}
+
+		measuring = target;
+		target.setVolume(LoudnessNormalizer.getDefaultVolume());
+		target.setFilterFactory(LoudnessNormalizer.measure(track, volume -> measured(target, track, volume)));
+	}
+
+	/**
+	 * Removes the filter that measured the track and turns it down if it is too
+	 * loud
+	 */
+	private void measured(AudioPlayer target, AudioTrack track, int volume) {
+		if (target.getPlayingTrack() != track)
+			return;
+		if (measuring == target) {
+			measuring = null;
+			target.setFilterFactory(null);
+		}
+		if (volumeOverride < 0)
+			target.setVolume(volume);
+	}
+
 	/**
 	 * Gets the track that is currently playing.
 	 * 
@@ -221,6 +565,18 @@ public final class TrackScheduler extends AudioEventAdapter {
 	 */
 	@Override
 	public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+		// the standby player ends tracks when this scheduler stops or replaces them,
+		// or when LavaPlayer cleans up a track it stopped taking frames from, which
+		// is then loaded again once it is polled
+		if (player != this.player) {
+			synchronized (this) {
+				if (track == preloadedTrack) {
+					preloaded = null;
+					preloadedTrack = null;
+				}
+			}
+			return;
+		}
 
 		// Only start the next track if the end reason is suitable for it (FINISHED or
 		// LOAD_FAILED)
@@ -228,26 +584,66 @@ public final class TrackScheduler extends AudioEventAdapter {
 
 			if (endReason != AudioTrackEndReason.STOPPED) {
 				if (repeat) {
+					discardPreload();
 					player.startTrack(track.makeClone(), false);
 					return;
 				} else if (track.getInfo().length == Long.MAX_VALUE) {
 					LOGGER.error("Live stream track ended, restarting track");
+					discardPreload();
 					player.startTrack(track.makeClone(), false);
 					return;
 				}
 			}
 
-			nextTrack();
+			final boolean wasPreloaded;
+			synchronized (this) {
+				wasPreloaded = preloaded != null && queue.peek() == preloaded;
+			}
+			if (nextTrack() != null && endReason == AudioTrackEndReason.FINISHED) {
+				gapPreloaded = wasPreloaded;
+				gapStart = System.nanoTime();
+			}
+		} else {
+			discardPreload();
 		}
 	}
 
 	/**
-	 * @return The {@link AudioPlayer} for this {@link TrackScheduler}
+	 * @return the number of frames of this guild that were eligible to pass
+	 *         through, only counted with METRICS_PER_GUILD=true
+	 */
+	long getEligibleFrames() {
+		return guildEligibleFrames.sum();
+	}
+
+	/**
+	 * @return the number of frames of this guild that were transcoded, only
+	 *         counted with METRICS_PER_GUILD=true
+	 */
+	long getTranscodedFrames() {
+		return guildTranscodedFrames.sum();
+	}
+
+	/**
+	 * @return The {@link AudioPlayer} that is playing for this
+	 *         {@link TrackScheduler}, which changes when a preloaded track starts
 	 */
 	public AudioPlayer getPlayer() {
 		return player;
 	}
 
+	private static void collect(PrometheusWriter writer) {
+		writer.header(GAP, "histogram", "Time between the end of a track and the first frame of the next one");
+		preloadedGaps.write(writer, GAP, "preloaded", "true");
+		coldGaps.write(writer, GAP, "preloaded", "false");
+		// the frames of every guild are exported with the guilds instead
+		if (PER_GUILD_FRAMES)
+			return;
+		writer.header(FRAMES, "counter", FRAMES_HELP);
+		writer.sample(FRAMES, eligibleFrames.sum(), "mode", "passthrough_eligible");
+		writer.sample(FRAMES, transcodedFrames.sum(), "mode", "transcode");
+	}
+
 	public boolean repeatEnabled() {
 		return repeat;
 	}
@@ -261,6 +657,12 @@ public final class TrackScheduler extends AudioEventAdapter {
 			player.getPlayingTrack().stop();
 		}
 		player.destroy();
+		synchronized (this) {
+			preloaded = null;
+			preloadedTrack = null;
+			if (standby != null)
+				standby.destroy();
+		}
 		clearQueue();
 	}
 
@@ -0,0 +1,193 @@
+package com.github.mubot.music;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.LatencyHistogram;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+
+import discord4j.common.util.Snowflake;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Tracks which voice channel the bot is connected to in every guild and lets
+ * commands wait for a connection that is still being made, e.g. the play in
+ * "!join !play". The join command marks a guild as connecting, and the join
+ * command or a voice state update of the bot completes it. Commands only wait
+ * while a connection is in progress and at most VOICE_READY_TIMEOUT_MS.
+ */
+public final class VoiceReadiness {
+
+	private static final Logger LOGGER = Loggers.getLogger(VoiceReadiness.class);
+
+	private static final Duration TIMEOUT = Duration.ofMillis(Config.getInt("VOICE_READY_TIMEOUT_MS", 10000));
+	private static final String WAIT_SECONDS = "mubot_voice_ready_wait_seconds";
+
+	private static final Map<Snowflake, GuildVoice> guilds = new ConcurrentHashMap<>();
+
+	// how long commands waited for the bot to connect, by outcome
+	private static final LatencyHistogram ready = new LatencyHistogram();
+	private static final LatencyHistogram otherChannel = new LatencyHistogram();
+	private static final LatencyHistogram timedOut = new LatencyHistogram();
+
+	static {
+		MetricsRegistry.register(VoiceReadiness::collect);
+	}
+
+	private VoiceReadiness() {
+	}
+
+	/**
+	 * Called when the bot starts connecting to a voice channel, before looking up
+	 * which channel that is so that commands right after it wait for it
+	 *
+	 * @param guildId the guild the bot connects in
+	 */
+	public static void connecting(Snowflake guildId) {
+		guilds.computeIfAbsent(guildId, id -> new GuildVoice()).connecting();
+		LOGGER.debug("{Guild ID: {}} Connecting", guildId.asLong());
+	}
+
+	/**
+	 * Called when the bot is connected to a voice channel, completes the
+	 * connection in progress if any
+	 *
+	 * @param guildId   the guild of the channel
+	 * @param channelId the channel the bot is connected to
+	 */
+	public static void connected(Snowflake guildId, Snowflake channelId) {
+		guilds.computeIfAbsent(guildId, id -> new GuildVoice()).connected(channelId);
+	}
+
+	/**
+	 * Called when the bot left the voice channel of a guild. A connection in
+	 * progress is not completed, joining another channel leaves the old one first.
+	 *
+	 * @param guildId the guild the bot left the voice channel of
+	 */
+	public static void disconnected(Snowflake guildId) {
+		guilds.computeIfPresent(guildId, (id, voice) -> voice.disconnected() ? null : voice);
+	}
+
+	/**
+	 * Called when connecting failed, commands waiting for the connection stop
+	 * waiting
+	 *
+	 * @param guildId the guild the bot failed to connect in
+	 */
+	public static void failed(Snowflake guildId) {
+		guilds.computeIfPresent(guildId, (id, voice) -> voice.failed() ? null : voice);
+	}
+
+	/**
+	 * Waits until the bot is connected to the given channel if it is connecting
+	 * right now
+	 *
+	 * @param guildId   the guild of the channel
+	 * @param channelId the channel
+	 * @return true if the bot is or got connected to the channel, false if it
+	 *         isn't connecting, connected to another channel or didn't connect in
+	 *         time
+	 */
+	public static Mono<Boolean> awaitConnected(Snowflake guildId, Snowflake channelId) {
+		return awaitConnected(guildId, channelId, TIMEOUT);
+	}
+
+	static Mono<Boolean> awaitConnected(Snowflake guildId, Snowflake channelId, Duration timeout) {
+		return Mono.defer(() -> {
+			final GuildVoice voice = guilds.get(guildId);
+			final Mono<Snowflake> connection = voice != null ? voice.getConnection() : null;
+			if (connection == null)
+				return Mono.just(false);
+
+			final long start = System.nanoTime();
+			return connection.map(channelId::equals).defaultIfEmpty(false).timeout(timeout)
+					.doOnNext(connected -> (connected ? ready : otherChannel).record(System.nanoTime() - start))
+					.onErrorResume(TimeoutException.class, error -> {
+						timedOut.record(System.nanoTime() - start);
+						LOGGER.info("{Guild ID: {}} Gave up waiting for voice connection", guildId.asLong());
+						return Mono.just(false);
+					});
+		});
+	}
+
+	/**
+	 * @param guildId the guild
+	 * @return the voice channel the bot is connected to in the guild
+	 */
+	public static Optional<Snowflake> getConnectedChannel(Snowflake guildId) {
+		final GuildVoice voice = guilds.get(guildId);
+		return voice != null ? voice.getChannelId() : Optional.empty();
+	}
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header(WAIT_SECONDS, "histogram", "Time commands waited for the bot to connect to a voice channel");
+		ready.write(writer, WAIT_SECONDS, "outcome", "ready");
+		otherChannel.write(writer, WAIT_SECONDS, "outcome", "other_channel");
+		timedOut.write(writer, WAIT_SECONDS, "outcome", "timeout");
+	}
+
+	private static final class GuildVoice {
+
+		private Snowflake channelId;
+		// completes with the channel the bot connected to, or empty if connecting
+		// failed
+		private Sinks.One<Snowflake> pending;
+
+		synchronized void connecting() {
+			if (pending == null)
+				pending = Sinks.one();
+		}
+
+		synchronized void connected(Snowflake channelId) {
+			this.channelId = channelId;
+			if (pending != null) {
+				pending.tryEmitValue(channelId);
+				pending = null;
+			}
+		}
+
+		/**
+		 * @return true if nothing is left to track for the guild
+		 */
+		synchronized boolean disconnected() {
+			channelId = null;
+			return pending == null;
+		}
+
+		/**
+		 * @return true if nothing is left to track for the guild
+		 */
+		synchronized boolean failed() {
+			if (pending != null) {
+				pending.tryEmitEmpty();
+				pending = null;
+			}
+			return channelId == null;
+		}
+
+		synchronized Optional<Snowflake> getChannelId() {
+			return Optional.ofNullable(channelId);
+		}
+
+		/**
+		 * @return the connected channel right away, the connection in progress, or
+		 *         null if the bot isn't connecting
+		 */
+		synchronized Mono<Snowflake> getConnection() {
+			if (pending != null)
+				return pending.asMono();
+			return channelId != null ? Mono.just(channelId) : null;
+		}
+
+	}
+
+}
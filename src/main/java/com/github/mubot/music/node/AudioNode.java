@@ -0,0 +1,335 @@
+package com.github.mubot.music.node;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsEndpoint;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.music.AudioLoadGovernor;
+import com.github.mubot.music.GuildMusicManager;
+import com.github.mubot.music.QueuedTrack;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.websocket.WebsocketInbound;
+import reactor.netty.http.websocket.WebsocketOutbound;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Runs the players of bot processes, started with AUDIO_NODE=true instead of
+ * logging in to Discord. Bots connect to the websocket on AUDIO_NODE_PORT with
+ * the password in AUDIO_NODE_PASSWORD, and the node loads, decodes and encodes
+ * their tracks and sends back Opus frames, so the bot only forwards frames to
+ * Discord. The node encodes at the lowest quality any connected bot asks for,
+ * and also serves its /metrics with the METRICS_TOKEN of the bot. It only
+ * listens on localhost
+ * unless AUDIO_NODE_HOST is set, and refuses to listen anywhere else without a
+ * password, since it loads any link it is sent.
+ */
+public final class AudioNode {
+
+	private static final Logger LOGGER = Loggers.getLogger(AudioNode.class);
+
+	private static final String HOST = Config.getString("AUDIO_NODE_HOST", "127.0.0.1");
+	private static final byte[] PASSWORD = Config.getString("AUDIO_NODE_PASSWORD", "")
+			.getBytes(StandardCharsets.UTF_8);
+	private static final long FRAME_INTERVAL_MS = 10;
+	private static final long STATS_INTERVAL_S = 5;
+	private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+	private static final int OUTBOUND_QUEUE = 4096;
+
+	private static final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+
+	private AudioNode() {
+	}
+
+	/**
+	 * Starts serving bots
+	 *
+	 * @param port the port to listen on
+	 * @throws IllegalStateException if the node would listen beyond localhost
+	 *                               without a password
+	 */
+	public static void start(int port) {
+		if (PASSWORD.length == 0 && !isLoopback(HOST))
+			throw new IllegalStateException("Set AUDIO_NODE_PASSWORD to serve bots on " + HOST);
+
+		HttpServer.create().host(HOST).port(port).route(routes -> {
+			routes.ws(NodeProtocol.PATH, AudioNode::connect);
+			MetricsEndpoint.route(routes);
+		}).bindNow();
+
+		Schedulers.newSingle("audio-node-frames").schedulePeriodically(() -> sessions.forEach(Session::sendFrames),
+				FRAME_INTERVAL_MS, FRAME_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		Schedulers.parallel().schedulePeriodically(AudioNode::sendStats, STATS_INTERVAL_S, STATS_INTERVAL_S,
+				TimeUnit.SECONDS);
+
+		MetricsRegistry.register("mubot_audio_node_sessions", "gauge", "Number of bots connected to this audio node",
+				sessions::size);
+		MetricsRegistry.register("mubot_audio_node_served_players", "gauge",
+				"Number of players this audio node runs for bots", () -> countPlayers(false));
+		LOGGER.info("Audio node started on {}:{}", HOST, port);
+	}
+
+	private static boolean isLoopback(String host) {
+		try {
+			return InetAddress.getByName(host).isLoopbackAddress();
+		} catch (UnknownHostException e) {
+			return false;
+		}
+	}
+
+	private static Mono<Void> connect(WebsocketInbound in, WebsocketOutbound out) {
+		final String authorization = in.headers().get(HttpHeaderNames.AUTHORIZATION, "");
+		if (PASSWORD.length > 0
+				&& !MessageDigest.isEqual(PASSWORD, authorization.getBytes(StandardCharsets.UTF_8))) {
+			LOGGER.warn("Refused a bot with a wrong password");
+			return out.sendClose(4001, "Wrong password");
+		}
+
+		final Session session = new Session();
+		sessions.add(session);
+		LOGGER.info("Bot connected, {} connected", sessions.size());
+		final Mono<Void> receive = in.aggregateFrames(MAX_MESSAGE_BYTES).receive().doOnNext(session::handle).then()
+				.doFinally(signal -> {
+					sessions.remove(session);
+					session.close();
+					applyQuality();
+					LOGGER.info("Bot disconnected, {} connected", sessions.size());
+				});
+		return Mono.when(receive, out.send(session.outbound.asFlux()));
+	}
+
+	/**
+	 * Encodes the tracks that start after at the lowest quality the connected
+	 * bots ask for
+	 */
+	private static synchronized void applyQuality() {
+		int level = 0;
+		for (Session session : sessions)
+			level = Math.max(level, session.qualityLevel);
+		AudioLoadGovernor.setLevel(level);
+	}
+
+	private static void sendStats() {
+		final double load = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage()
+				/ Runtime.getRuntime().availableProcessors();
+		final ByteBuf stats = NodeProtocol.stats(countPlayers(false), countPlayers(true), Math.max(0, load));
+		for (Session session : sessions)
+			session.send(stats.retainedDuplicate());
+		stats.release();
+	}
+
+	private static int countPlayers(boolean playingOnly) {
+		int count = 0;
+		for (Session session : sessions) {
+			for (NodePlayer player : session.players.values()) {
+				if (!playingOnly || player.isPlaying())
+					count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * The connection of one bot and its players
+	 */
+	private static final class Session {
+
+		private final Map<Long, NodePlayer> players = new ConcurrentHashMap<>();
+		private volatile int qualityLevel = 0;
+		private final Sinks.Many<ByteBuf> outbound = Sinks.many().unicast()
+				.onBackpressureBuffer(Queues.<ByteBuf>get(OUTBOUND_QUEUE).get());
+
+		/**
+		 * Handles a message of the bot, dropping it if it is malformed
+		 */
+		private void handle(ByteBuf message) {
+			try {
+				decode(message);
+			} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+				LOGGER.warn("Dropped a malformed message: " + e.getMessage());
+			}
+		}
+
+		private void decode(ByteBuf message) {
+			NodeProtocol.require(message, 1);
+			final byte op = message.readByte();
+			if (op == NodeProtocol.QUALITY) {
+				NodeProtocol.require(message, 1);
+				qualityLevel = message.readByte();
+				applyQuality();
+				return;
+			}
+
+			NodeProtocol.require(message, 8);
+			final long id = message.readLong();
+			if (op == NodeProtocol.PLAY) {
+				NodeProtocol.require(message, 18);
+				final int seq = message.readInt();
+				final long position = message.readLong();
+				final int volume = message.readShort();
+				final int length = message.readInt();
+				NodeProtocol.require(message, length);
+				final byte[] track = new byte[length];
+				message.readBytes(track);
+				players.computeIfAbsent(id, ignored -> new NodePlayer(this, id)).play(seq, position, volume, track);
+				return;
+			}
+
+			final NodePlayer player = op == NodeProtocol.DESTROY ? players.remove(id) : players.get(id);
+			if (player == null)
+				return;
+			switch (op) {
+			case NodeProtocol.STOP:
+				NodeProtocol.require(message, 4);
+				player.stop(message.readInt());
+				break;
+			case NodeProtocol.VOLUME:
+				NodeProtocol.require(message, 2);
+				player.player.setVolume(message.readShort());
+				break;
+			case NodeProtocol.SEEK:
+				NodeProtocol.require(message, 12);
+				player.seek(message.readInt(), message.readLong());
+				break;
+			case NodeProtocol.CREDIT:
+				NodeProtocol.require(message, 8);
+				player.credit(message.readInt(), message.readInt());
+				break;
+			case NodeProtocol.DESTROY:
+				player.player.destroy();
+				break;
+			default:
+				LOGGER.warn("Unknown op " + op);
+			}
+		}
+
+		private synchronized void send(ByteBuf message) {
+			if (outbound.tryEmitNext(message).isFailure())
+				message.release();
+		}
+
+		private void sendFrames() {
+			for (NodePlayer player : players.values())
+				player.sendFrames();
+		}
+
+		private void close() {
+			players.values().forEach(player -> player.player.destroy());
+			players.clear();
+			synchronized (this) {
+				outbound.tryEmitComplete();
+			}
+		}
+	}
+
+	/**
+	 * A player of a bot, sending its frames while the bot has credit for them
+	 */
+	private static final class NodePlayer extends AudioEventAdapter {
+
+		private final Session session;
+		private final long id;
+		private final AudioPlayer player;
+		private final ByteBuffer buffer = ByteBuffer
+				.allocate(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize());
+		private final MutableAudioFrame frame = new MutableAudioFrame();
+
+		// written while holding this, read without it when the track ends
+		private volatile int seq = 0;
+		// guarded by this
+		private int credits = 0;
+
+		private NodePlayer(Session session, long id) {
+			this.session = session;
+			this.id = id;
+			this.player = GuildMusicManager.getPlayerManager().createPlayer();
+			player.addListener(this);
+			frame.setBuffer(buffer);
+		}
+
+		private synchronized void play(int seq, long position, int volume, byte[] encoded) {
+			this.seq = seq;
+			credits = NodeProtocol.CREDIT_WINDOW;
+			player.setVolume(volume);
+
+			final AudioTrack track = QueuedTrack.decodeTrack(GuildMusicManager.getPlayerManager(), encoded);
+			if (track == null) {
+				player.stopTrack();
+				session.send(NodeProtocol.end(id, seq, NodeProtocol.END_LOAD_FAILED));
+				return;
+			}
+			if (position > 0 && track.isSeekable())
+				track.setPosition(position);
+			player.startTrack(track, false);
+		}
+
+		private synchronized void stop(int seq) {
+			this.seq = seq;
+			player.stopTrack();
+		}
+
+		private synchronized void seek(int seq, long position) {
+			this.seq = seq;
+			credits = NodeProtocol.CREDIT_WINDOW;
+			final AudioTrack track = player.getPlayingTrack();
+			if (track != null && track.isSeekable())
+				track.setPosition(position);
+		}
+
+		private synchronized void credit(int seq, int frames) {
+			if (seq == this.seq)
+				credits = Math.min(credits + frames, NodeProtocol.CREDIT_WINDOW);
+		}
+
+		private synchronized void sendFrames() {
+			while (credits > 0 && player.provide(frame)) {
+				buffer.flip();
+				final ByteBuf message = NodeProtocol.frameHeader(id, seq, frame.getTimecode(), buffer.remaining())
+						.writeBytes(buffer);
+				buffer.clear();
+				credits--;
+				session.send(message);
+			}
+		}
+
+		private boolean isPlaying() {
+			return player.getPlayingTrack() != null;
+		}
+
+		/**
+		 * Tells the bot when a track ended on its own, the bot already knows about
+		 * tracks it stopped or replaced
+		 */
+		@Override
+		public void onTrackEnd(AudioPlayer player, AudioTrack track, AudioTrackEndReason endReason) {
+			if (endReason == AudioTrackEndReason.FINISHED)
+				session.send(NodeProtocol.end(id, seq, NodeProtocol.END_FINISHED));
+			else if (endReason == AudioTrackEndReason.LOAD_FAILED)
+				session.send(NodeProtocol.end(id, seq, NodeProtocol.END_LOAD_FAILED));
+		}
+	}
+
+}
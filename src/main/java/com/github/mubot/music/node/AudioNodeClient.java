@@ -0,0 +1,192 @@
+package com.github.mubot.music.node;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.mubot.main.Config;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import reactor.util.concurrent.Queues;
+
+/**
+ * The connection of this bot to one audio node. It reconnects when the
+ * connection drops and then starts its players again where they were.
+ */
+final class AudioNodeClient {
+
+	private static final Logger LOGGER = Loggers.getLogger(AudioNodeClient.class);
+
+	private static final String PASSWORD = Config.getString("AUDIO_NODE_PASSWORD", "");
+	private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+	private static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+	private static final int OUTBOUND_QUEUE = 4096;
+	// how much a fully loaded CPU counts against a node compared to one playing
+	// track
+	private static final int CPU_PENALTY = 100;
+
+	private static final AtomicLong nextId = new AtomicLong();
+
+	private final String uri;
+	private final Map<Long, RemoteAudioPlayer> players = new ConcurrentHashMap<>();
+	// null while disconnected, guarded by this
+	private Sinks.Many<ByteBuf> outbound;
+
+	// what the node reported last, and the players created here since then
+	private volatile int nodePlayers = 0;
+	private volatile int nodePlaying = 0;
+	private volatile double cpuLoad = 0;
+	private final AtomicInteger createdSinceStats = new AtomicInteger();
+
+	AudioNodeClient(String uri) {
+		this.uri = uri;
+	}
+
+	/**
+	 * Connects to the node and keeps reconnecting when the connection drops
+	 */
+	void connect() {
+		Mono.defer(this::session).onErrorResume(error -> {
+			LOGGER.warn("Audio node {} unavailable: {}", uri, error.getMessage());
+			return Mono.empty();
+		}).repeatWhen(sessions -> sessions.delayElements(RECONNECT_DELAY)).subscribe();
+	}
+
+	private Mono<Void> session() {
+		return HttpClient.create().headers(headers -> {
+			if (!PASSWORD.isEmpty())
+				headers.set(HttpHeaderNames.AUTHORIZATION, PASSWORD);
+		}).websocket().uri(uri).handle((in, out) -> {
+			final Sinks.Many<ByteBuf> sink = Sinks.many().unicast()
+					.onBackpressureBuffer(Queues.<ByteBuf>get(OUTBOUND_QUEUE).get());
+			connected(sink);
+			final Mono<Void> receive = in.aggregateFrames(MAX_MESSAGE_BYTES).receive().doOnNext(this::handle).then()
+					.doFinally(signal -> disconnected(sink));
+			return Mono.when(receive, out.send(sink.asFlux()));
+		}).then();
+	}
+
+	private void connected(Sinks.Many<ByteBuf> sink) {
+		synchronized (this) {
+			outbound = sink;
+		}
+		LOGGER.info("Connected to audio node {}, resuming {} players", uri, players.size());
+		send(NodeProtocol.quality(AudioNodes.getQualityLevel()));
+		players.values().forEach(RemoteAudioPlayer::resume);
+	}
+
+	private void disconnected(Sinks.Many<ByteBuf> sink) {
+		synchronized (this) {
+			if (outbound == sink)
+				outbound = null;
+			sink.tryEmitComplete();
+		}
+		LOGGER.warn("Disconnected from audio node {}", uri);
+	}
+
+	/**
+	 * Handles a message of the node, dropping it if it is malformed
+	 */
+	private void handle(ByteBuf message) {
+		try {
+			decode(message);
+		} catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+			LOGGER.warn("Dropped a malformed message of audio node {}: {}", uri, e.getMessage());
+		}
+	}
+
+	private void decode(ByteBuf message) {
+		NodeProtocol.require(message, 1);
+		final byte op = message.readByte();
+		if (op == NodeProtocol.STATS) {
+			NodeProtocol.require(message, 16);
+			nodePlayers = message.readInt();
+			nodePlaying = message.readInt();
+			cpuLoad = message.readDouble();
+			createdSinceStats.set(0);
+			return;
+		}
+
+		NodeProtocol.require(message, 8);
+		final RemoteAudioPlayer player = players.get(message.readLong());
+		if (player == null)
+			return;
+		if (op == NodeProtocol.FRAME) {
+			NodeProtocol.require(message, 12);
+			final int seq = message.readInt();
+			final long position = message.readLong();
+			final byte[] frame = new byte[message.readableBytes()];
+			message.readBytes(frame);
+			player.frameReceived(seq, position, frame);
+		} else if (op == NodeProtocol.END) {
+			NodeProtocol.require(message, 5);
+			player.endReceived(message.readInt(), message.readByte());
+		}
+	}
+
+	/**
+	 * Sends a message if connected, messages sent while disconnected are dropped
+	 * since the players are resumed from their state when reconnecting
+	 */
+	synchronized void send(ByteBuf message) {
+		if (outbound == null || outbound.tryEmitNext(message).isFailure())
+			message.release();
+	}
+
+	/**
+	 * @param playerManager the manager that encodes the tracks sent to the node
+	 * @return a new player on this node
+	 */
+	RemoteAudioPlayer createPlayer(AudioPlayerManager playerManager) {
+		final RemoteAudioPlayer player = new RemoteAudioPlayer(this, nextId.incrementAndGet(), playerManager);
+		players.put(player.getId(), player);
+		createdSinceStats.incrementAndGet();
+		return player;
+	}
+
+	void removePlayer(RemoteAudioPlayer player) {
+		players.remove(player.getId());
+	}
+
+	synchronized boolean isConnected() {
+		return outbound != null;
+	}
+
+	/**
+	 * @return how loaded the node is, by the tracks it plays for all bots and its
+	 *         CPU load
+	 */
+	int getPenalty() {
+		return nodePlaying + createdSinceStats.get() + (int) (cpuLoad * CPU_PENALTY);
+	}
+
+	String getUri() {
+		return uri;
+	}
+
+	int getNodePlayers() {
+		return nodePlayers;
+	}
+
+	int getNodePlaying() {
+		return nodePlaying;
+	}
+
+	double getCpuLoad() {
+		return cpuLoad;
+	}
+
+	int getPlayerCount() {
+		return players.size();
+	}
+
+}
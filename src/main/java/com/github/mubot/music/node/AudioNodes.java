@@ -0,0 +1,113 @@
+package com.github.mubot.music.node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.mubot.main.Config;
+import com.github.mubot.metrics.MetricsRegistry;
+import com.github.mubot.metrics.PrometheusWriter;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * Creates players on the audio nodes in AUDIO_NODES, a comma separated list of
+ * websocket URIs like ws://localhost:8090/audio. A new player goes to the
+ * connected node with the lowest load, counting the tracks it plays for all
+ * bots and its CPU load. Without nodes, or while none is connected, players are
+ * created in this process as before.
+ */
+public final class AudioNodes {
+
+	private static final Logger LOGGER = Loggers.getLogger(AudioNodes.class);
+
+	private static final List<AudioNodeClient> nodes = new ArrayList<>();
+	private static final LongAdder localFallbacks = new LongAdder();
+	// the quality level of the bot, sent to every node it connects to
+	private static volatile int qualityLevel = 0;
+
+	static {
+		for (String uri : Config.getString("AUDIO_NODES", "").split(",")) {
+			if (!uri.isBlank())
+				nodes.add(new AudioNodeClient(uri.trim()));
+		}
+	}
+
+	private AudioNodes() {
+	}
+
+	/**
+	 * Connects to the configured audio nodes
+	 */
+	public static void start() {
+		if (nodes.isEmpty())
+			return;
+
+		nodes.forEach(AudioNodeClient::connect);
+		MetricsRegistry.register(AudioNodes::collect);
+		LOGGER.info("Using {} audio nodes", nodes.size());
+	}
+
+	/**
+	 * @param playerManager the manager of the local players and that encodes the
+	 *                      tracks sent to nodes
+	 * @return a player on the least loaded node, or a local player if no node is
+	 *         connected
+	 */
+	public static AudioPlayer createPlayer(AudioPlayerManager playerManager) {
+		AudioNodeClient best = null;
+		for (AudioNodeClient node : nodes) {
+			if (node.isConnected() && (best == null || node.getPenalty() < best.getPenalty()))
+				best = node;
+		}
+
+		if (best != null)
+			return best.createPlayer(playerManager);
+		if (!nodes.isEmpty()) {
+			localFallbacks.increment();
+			LOGGER.warn("No audio node connected, playing in this process");
+		}
+		return playerManager.createPlayer();
+	}
+
+	/**
+	 * Asks the nodes to lower the quality of the tracks they start for the bot
+	 * like the local player manager
+	 *
+	 * @param level how far to lower the quality, 0 is full quality
+	 */
+	public static void setQualityLevel(int level) {
+		qualityLevel = level;
+		for (AudioNodeClient node : nodes)
+			node.send(NodeProtocol.quality(level));
+	}
+
+	static int getQualityLevel() {
+		return qualityLevel;
+	}
+
+	private static void collect(PrometheusWriter writer) {
+		writer.header("mubot_audio_node_connected", "gauge", "1 if the bot is connected to the audio node");
+		for (AudioNodeClient node : nodes)
+			writer.sample("mubot_audio_node_connected", node.isConnected() ? 1 : 0, "node", node.getUri());
+		writer.header("mubot_audio_node_players", "gauge", "Number of players of all bots on the audio node");
+		for (AudioNodeClient node : nodes)
+			writer.sample("mubot_audio_node_players", node.getNodePlayers(), "node", node.getUri());
+		writer.header("mubot_audio_node_playing", "gauge", "Number of tracks playing on the audio node");
+		for (AudioNodeClient node : nodes)
+			writer.sample("mubot_audio_node_playing", node.getNodePlaying(), "node", node.getUri());
+		writer.header("mubot_audio_node_cpu_load", "gauge", "Load average per core of the audio node");
+		for (AudioNodeClient node : nodes)
+			writer.sample("mubot_audio_node_cpu_load", node.getCpuLoad(), "node", node.getUri());
+		writer.header("mubot_audio_node_bot_players", "gauge", "Number of players of this bot on the audio node");
+		for (AudioNodeClient node : nodes)
+			writer.sample("mubot_audio_node_bot_players", node.getPlayerCount(), "node", node.getUri());
+		writer.header("mubot_audio_node_local_fallbacks_total", "counter",
+				"Number of players created in this process because no audio node was connected");
+		writer.sample("mubot_audio_node_local_fallbacks_total", localFallbacks.sum());
+	}
+
+}
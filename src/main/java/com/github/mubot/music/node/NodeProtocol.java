@@ -0,0 +1,113 @@
+package com.github.mubot.music.node;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * The messages between the bot and an audio node. Every message is one binary
+ * websocket frame starting with its op and the id of the player it is for,
+ * except QUALITY and STATS. Players are created on the node by their first
+ * PLAY. The node
+ * only sends a player as many frames as the bot gave it credit for, so a player
+ * nobody listens to stops at its position just like a local player. Pausing
+ * happens in the bot, which stops taking frames, so the frames a paused or
+ * preloading player already received play right away when it resumes.
+ *
+ * <pre>
+ * bot to node
+ *   PLAY    id, seq, position, volume, track length, encoded track
+ *   STOP    id, seq
+ *   VOLUME  id, volume
+ *   SEEK    id, seq, position
+ *   CREDIT  id, seq, frames
+ *   DESTROY id
+ *   QUALITY level
+ * node to bot
+ *   FRAME   id, seq, position, opus frame
+ *   END     id, seq, reason
+ *   STATS   players, playing, cpu load
+ * </pre>
+ *
+ * The seq of a player changes with every PLAY and SEEK, so frames, ends and
+ * credits that were in flight for the previous track or position are ignored.
+ */
+final class NodeProtocol {
+
+	static final byte PLAY = 1;
+	static final byte STOP = 2;
+	static final byte VOLUME = 3;
+	static final byte SEEK = 4;
+	static final byte CREDIT = 5;
+	static final byte DESTROY = 6;
+	static final byte QUALITY = 7;
+
+	static final byte FRAME = 16;
+	static final byte END = 17;
+	static final byte STATS = 18;
+
+	static final byte END_FINISHED = 0;
+	static final byte END_LOAD_FAILED = 1;
+
+	// frames a player may be ahead of the bot after a PLAY or SEEK, 500 ms
+	static final int CREDIT_WINDOW = 25;
+
+	static final String PATH = "/audio";
+
+	private NodeProtocol() {
+	}
+
+	/**
+	 * Checks that the rest of a message is long enough before reading from it
+	 *
+	 * @param message the message being read
+	 * @param bytes   the number of bytes about to be read
+	 * @throws IllegalArgumentException if the message is shorter
+	 */
+	static void require(ByteBuf message, int bytes) {
+		if (bytes < 0 || message.readableBytes() < bytes)
+			throw new IllegalArgumentException(
+					"Need " + bytes + " bytes but only " + message.readableBytes() + " are left");
+	}
+
+	static ByteBuf play(long id, int seq, long position, int volume, byte[] track) {
+		return Unpooled.buffer(27 + track.length).writeByte(PLAY).writeLong(id).writeInt(seq).writeLong(position)
+				.writeShort(volume).writeInt(track.length).writeBytes(track);
+	}
+
+	static ByteBuf stop(long id, int seq) {
+		return Unpooled.buffer(13).writeByte(STOP).writeLong(id).writeInt(seq);
+	}
+
+	static ByteBuf volume(long id, int volume) {
+		return Unpooled.buffer(11).writeByte(VOLUME).writeLong(id).writeShort(volume);
+	}
+
+	static ByteBuf seek(long id, int seq, long position) {
+		return Unpooled.buffer(21).writeByte(SEEK).writeLong(id).writeInt(seq).writeLong(position);
+	}
+
+	static ByteBuf credit(long id, int seq, int frames) {
+		return Unpooled.buffer(17).writeByte(CREDIT).writeLong(id).writeInt(seq).writeInt(frames);
+	}
+
+	static ByteBuf destroy(long id) {
+		return Unpooled.buffer(9).writeByte(DESTROY).writeLong(id);
+	}
+
+	static ByteBuf quality(int level) {
+		return Unpooled.buffer(2).writeByte(QUALITY).writeByte(level);
+	}
+
+	static ByteBuf frameHeader(long id, int seq, long position, int length) {
+		return Unpooled.buffer(21 + length).writeByte(FRAME).writeLong(id).writeInt(seq).writeLong(position);
+	}
+
+	static ByteBuf end(long id, int seq, byte reason) {
+		return Unpooled.buffer(14).writeByte(END).writeLong(id).writeInt(seq).writeByte(reason);
+	}
+
+	static ByteBuf stats(int players, int playing, double cpuLoad) {
+		return Unpooled.buffer(17).writeByte(STATS).writeInt(players).writeInt(playing).writeDouble(cpuLoad);
+	}
+
+}
@@ -0,0 +1,313 @@
+package com.github.mubot.music.node;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.github.mubot.music.QueuedTrack;
+import com.sedmelluq.discord.lavaplayer.filter.PcmFilterFactory;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEvent;
+import com.sedmelluq.discord.lavaplayer.player.event.AudioEventListener;
+import com.sedmelluq.discord.lavaplayer.player.event.PlayerPauseEvent;
+import com.sedmelluq.discord.lavaplayer.player.event.PlayerResumeEvent;
+import com.sedmelluq.discord.lavaplayer.player.event.TrackEndEvent;
+import com.sedmelluq.discord.lavaplayer.player.event.TrackStartEvent;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.ImmutableAudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A player whose tracks play on an audio node. Tracks are encoded and sent to
+ * the node, which sends back their Opus frames, so this process never decodes
+ * or encodes audio. The track given to the player is never started here, it
+ * only holds the info of the track and the position of the last provided
+ * frame. Setting its position, like a seek does, is sent to the node. Pausing
+ * only stops taking frames, so it doesn't wait for the node.
+ */
+public final class RemoteAudioPlayer implements AudioPlayer {
+
+	private static final Logger LOGGER = Loggers.getLogger(RemoteAudioPlayer.class);
+
+	// provided frames are credited back to the node in batches
+	private static final int CREDIT_BATCH = 5;
+
+	private final AudioNodeClient node;
+	private final long id;
+	private final AudioPlayerManager playerManager;
+	private final List<AudioEventListener> listeners = new CopyOnWriteArrayList<>();
+
+	// guarded by this
+	private AudioTrack track;
+	private int seq = 0;
+	private int volume = 100;
+	private boolean paused = false;
+	// position of the track after the last provided frame
+	private long position = 0;
+	private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+	// set once the node ended the track, it ends here after the buffered frames
+	private AudioTrackEndReason endReason;
+	private int uncredited = 0;
+
+	RemoteAudioPlayer(AudioNodeClient node, long id, AudioPlayerManager playerManager) {
+		this.node = node;
+		this.id = id;
+		this.playerManager = playerManager;
+	}
+
+	long getId() {
+		return id;
+	}
+
+	@Override
+	public synchronized AudioTrack getPlayingTrack() {
+		return track;
+	}
+
+	@Override
+	public void playTrack(AudioTrack track) {
+		startTrack(track, false);
+	}
+
+	@Override
+	public boolean startTrack(AudioTrack newTrack, boolean noInterrupt) {
+		final AudioTrack previous;
+		synchronized (this) {
+			if (noInterrupt && track != null)
+				return false;
+
+			previous = track;
+			track = newTrack;
+			restart();
+			if (newTrack != null) {
+				position = newTrack.getPosition();
+				play();
+			} else {
+				node.send(NodeProtocol.stop(id, seq));
+			}
+		}
+
+		if (previous != null)
+			dispatch(new TrackEndEvent(this, previous,
+					newTrack == null ? AudioTrackEndReason.STOPPED : AudioTrackEndReason.REPLACED));
+		if (newTrack != null)
+			dispatch(new TrackStartEvent(this, newTrack));
+		return newTrack != null;
+	}
+
+	@Override
+	public void stopTrack() {
+		startTrack(null, false);
+	}
+
+	@Override
+	public synchronized int getVolume() {
+		return volume;
+	}
+
+	@Override
+	public synchronized void setVolume(int volume) {
+		this.volume = volume;
+		node.send(NodeProtocol.volume(id, volume));
+	}
+
+	/**
+	 * Filters aren't supported on audio nodes
+	 */
+	@Override
+	public void setFilterFactory(PcmFilterFactory factory) {
+		if (factory != null)
+			LOGGER.warn("Filters are not supported by audio nodes");
+	}
+
+	/**
+	 * The frame buffer is on the node, the frames buffered here are bounded by the
+	 * credit of the node
+	 */
+	@Override
+	public void setFrameBufferDuration(Integer duration) {
+	}
+
+	@Override
+	public synchronized boolean isPaused() {
+		return paused;
+	}
+
+	@Override
+	public void setPaused(boolean value) {
+		synchronized (this) {
+			if (paused == value)
+				return;
+			paused = value;
+		}
+		dispatch(value ? new PlayerPauseEvent(this) : new PlayerResumeEvent(this));
+	}
+
+	@Override
+	public void destroy() {
+		stopTrack();
+		node.removePlayer(this);
+		node.send(NodeProtocol.destroy(id));
+	}
+
+	@Override
+	public void addListener(AudioEventListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeListener(AudioEventListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Idle players are cleaned up by the idle reaper instead
+	 */
+	@Override
+	public void checkCleanup(long threshold) {
+	}
+
+	@Override
+	public AudioFrame provide() {
+		final MutableAudioFrame frame = new MutableAudioFrame();
+		frame.setBuffer(ByteBuffer.allocate(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize()));
+		if (!provide(frame))
+			return null;
+		return new ImmutableAudioFrame(frame.getTimecode(), frame.getData(), frame.getVolume(),
+				StandardAudioDataFormats.DISCORD_OPUS);
+	}
+
+	@Override
+	public AudioFrame provide(long timeout, TimeUnit unit) {
+		return provide();
+	}
+
+	/**
+	 * Provides the next frame received from the node. Once the node ended the
+	 * track and its frames are used up, the track ends here while providing like
+	 * it does on a local player.
+	 */
+	@Override
+	public boolean provide(MutableAudioFrame targetFrame) {
+		final AudioTrack ended;
+		final AudioTrackEndReason reason;
+		synchronized (this) {
+			if (track == null || paused)
+				return false;
+			if (track.getPosition() != position) {
+				seek(track.getPosition());
+				return false;
+			}
+
+			final Frame frame = frames.poll();
+			if (frame != null) {
+				targetFrame.store(frame.data, 0, frame.data.length);
+				targetFrame.setTimecode(frame.position);
+				position = frame.position;
+				track.setPosition(position);
+				if (++uncredited >= CREDIT_BATCH) {
+					node.send(NodeProtocol.credit(id, seq, uncredited));
+					uncredited = 0;
+				}
+				return true;
+			}
+			if (endReason == null)
+				return false;
+
+			ended = track;
+			reason = endReason;
+			track = null;
+			restart();
+		}
+		dispatch(new TrackEndEvent(this, ended, reason));
+		return false;
+	}
+
+	@Override
+	public boolean provide(MutableAudioFrame targetFrame, long timeout, TimeUnit unit) {
+		return provide(targetFrame);
+	}
+
+	/**
+	 * Called when the node sent a frame
+	 */
+	synchronized void frameReceived(int seq, long position, byte[] data) {
+		if (seq == this.seq && track != null && frames.size() < NodeProtocol.CREDIT_WINDOW)
+			frames.add(new Frame(position, data));
+	}
+
+	/**
+	 * Called when the track ended on the node
+	 */
+	synchronized void endReceived(int seq, byte reason) {
+		if (seq == this.seq && track != null)
+			endReason = reason == NodeProtocol.END_FINISHED ? AudioTrackEndReason.FINISHED
+					: AudioTrackEndReason.LOAD_FAILED;
+	}
+
+	/**
+	 * Starts the track again on the node from the last provided position, after
+	 * reconnecting to the node
+	 */
+	synchronized void resume() {
+		if (track == null)
+			return;
+		restart();
+		play();
+	}
+
+	/**
+	 * Forgets the frames and end of the previous track or position
+	 */
+	private void restart() {
+		seq++;
+		frames.clear();
+		endReason = null;
+		uncredited = 0;
+	}
+
+	private void play() {
+		final byte[] encoded = QueuedTrack.encodeTrack(playerManager, track);
+		if (encoded == null) {
+			endReason = AudioTrackEndReason.LOAD_FAILED;
+			return;
+		}
+		node.send(NodeProtocol.play(id, seq, position, volume, encoded));
+	}
+
+	private void seek(long newPosition) {
+		restart();
+		position = newPosition;
+		node.send(NodeProtocol.seek(id, seq, newPosition));
+	}
+
+	private void dispatch(AudioEvent event) {
+		for (AudioEventListener listener : listeners) {
+			try {
+				listener.onEvent(event);
+			} catch (RuntimeException e) {
+				LOGGER.error("Error in audio event listener: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private static final class Frame {
+		private final long position;
+		private final byte[] data;
+
+		private Frame(long position, byte[] data) {
+			this.position = position;
+			this.data = data;
+		}
+	}
+
+}
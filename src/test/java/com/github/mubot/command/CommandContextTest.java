@@ -0,0 +1,229 @@
+package com.github.mubot.command;
+
+import static com.github.mubot.command.util.CommandUtil.sendReply;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.mockito.stubbing.Answer;
+
+import com.github.mubot.command.CommandContext.Lookup;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.GatewayDiscordClient;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.VoiceState;
+import discord4j.core.object.entity.Guild;
+import discord4j.core.object.entity.Member;
+import discord4j.core.object.entity.Message;
+import discord4j.core.object.entity.channel.TextChannel;
+import discord4j.core.object.entity.channel.VoiceChannel;
+import discord4j.rest.util.PermissionSet;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs every command against a message whose guild, members and voice states
+ * are mocks counting how often they are looked up. A command may look up each
+ * of them once, the context shares that lookup between the permission checks,
+ * the command and the reply.
+ */
+public class CommandContextTest {
+
+	private static final Snowflake GUILD_ID = Snowflake.of(1000);
+	private static final Snowflake SELF_ID = Snowflake.of(2000);
+	private static final Snowflake MEMBER_ID = Snowflake.of(3000);
+	private static final Snowflake TEXT_CHANNEL_ID = Snowflake.of(4000);
+	private static final Snowflake VOICE_CHANNEL_ID = Snowflake.of(5000);
+
+	private static final List<String> VOICE_COMMANDS = List.of("join", "pause", "stop", "clear", "shuffle");
+
+	private static final CommandExecutor commandExecutor = new CommandExecutor();
+
+	@Test
+	public void commandsStayWithinLookupBudget() {
+		for (boolean botInChannel : new boolean[] { true, false }) {
+			for (Command command : CommandsHelper.values().stream().distinct().collect(Collectors.toList())) {
+				final Discord discord = new Discord(botInChannel);
+				final CommandContext context = new CommandContext(discord.event);
+				run(context, command);
+
+				final String name = command.getPrimaryTrigger() + (botInChannel ? " with" : " without")
+						+ " the bot in the channel";
+				for (Lookup lookup : Lookup.values()) {
+					// permissions are looked up once per channel, which the mocks check
+					final int budget = lookup == Lookup.SELF_CHANNEL_PERMISSIONS ? 2 : 1;
+					assertTrue(context.getLookupCount(lookup) <= budget, name + " looked up " + lookup + " "
+							+ context.getLookupCount(lookup) + " times");
+				}
+				discord.assertLookedUpAtMostOnce(name);
+				// the voice commands without arguments got as far as the voice checks
+				if (VOICE_COMMANDS.contains(command.getPrimaryTrigger()))
+					assertEquals(1, context.getLookupCount(Lookup.MEMBER_VOICE_STATE), name);
+			}
+		}
+	}
+
+	@Test
+	public void sharesLookupsWithinAnInvocation() {
+		final Discord discord = new Discord(true);
+		final CommandContext context = new CommandContext(discord.event);
+		for (int i = 0; i < 3; i++) {
+			context.getGuild().block();
+			context.getMemberVoiceChannel().block();
+			context.getSelfVoiceState().block();
+			context.getSelfGuildPermissions().block();
+		}
+		assertEquals(1, context.getLookupCount(Lookup.GUILD));
+		assertEquals(1, context.getLookupCount(Lookup.MEMBER_VOICE_STATE));
+		assertEquals(1, context.getLookupCount(Lookup.MEMBER_VOICE_CHANNEL));
+		assertEquals(1, context.getLookupCount(Lookup.SELF_MEMBER));
+		assertEquals(1, context.getLookupCount(Lookup.SELF_VOICE_STATE));
+		assertEquals(6, context.getLookupCount());
+		discord.assertLookedUpAtMostOnce("the context");
+
+		context.invalidateSelfVoiceState();
+		context.getSelfVoiceState().block();
+		assertEquals(2, context.getLookupCount(Lookup.SELF_VOICE_STATE));
+		// the bot as a member is still cached
+		assertEquals(1, context.getLookupCount(Lookup.SELF_MEMBER));
+	}
+
+	/**
+	 * Executes the command and sends its reply like CommandListener, the outcome
+	 * doesn't matter as the mocks can't do everything a command may ask for
+	 */
+	private static void run(CommandContext context, Command command) {
+		try {
+			commandExecutor.executeCommand(context, command, "")
+					.flatMap(response -> sendReply(context, response)).onErrorResume(error -> Mono.empty())
+					.block(Duration.ofSeconds(5));
+		} catch (RuntimeException e) {
+			// timed out waiting for something the mocks never emit
+		}
+	}
+
+	/**
+	 * A guild with a text channel the command is used in and a voice channel the
+	 * member is in
+	 */
+	private static final class Discord {
+
+		private final GatewayDiscordClient gateway = stub(GatewayDiscordClient.class);
+		private final MessageCreateEvent event = stub(MessageCreateEvent.class);
+		private final Message message = stub(Message.class);
+		private final Guild guild = stub(Guild.class);
+		private final Member member = stub(Member.class);
+		private final Member self = stub(Member.class);
+		private final VoiceState memberVoiceState = stub(VoiceState.class);
+		private final VoiceState selfVoiceState = stub(VoiceState.class);
+		private final TextChannel textChannel = stub(TextChannel.class);
+		private final VoiceChannel voiceChannel = stub(VoiceChannel.class);
+
+		private Discord(boolean botInChannel) {
+			when(gateway.getSelfId()).thenReturn(SELF_ID);
+			when(gateway.getGuildById(GUILD_ID)).thenReturn(Mono.just(guild));
+			when(gateway.getMemberById(GUILD_ID, SELF_ID)).thenReturn(Mono.just(self));
+			when(gateway.getMemberById(GUILD_ID, MEMBER_ID)).thenReturn(Mono.just(member));
+			when(gateway.getChannelById(VOICE_CHANNEL_ID)).thenReturn(Mono.just(voiceChannel));
+			when(gateway.getChannelById(TEXT_CHANNEL_ID)).thenReturn(Mono.just(textChannel));
+
+			when(event.getClient()).thenReturn(gateway);
+			when(event.getGuildId()).thenReturn(Optional.of(GUILD_ID));
+			when(event.getMember()).thenReturn(Optional.of(member));
+			when(event.getMessage()).thenReturn(message);
+			when(event.getGuild()).thenReturn(Mono.just(guild));
+			when(message.getClient()).thenReturn(gateway);
+			when(message.getContent()).thenReturn("");
+			when(message.getGuildId()).thenReturn(Optional.of(GUILD_ID));
+			when(message.getChannelId()).thenReturn(TEXT_CHANNEL_ID);
+			when(message.getChannel()).thenReturn(Mono.just(textChannel));
+			when(message.getGuild()).thenReturn(Mono.just(guild));
+			when(guild.getId()).thenReturn(GUILD_ID);
+
+			for (Member m : new Member[] { member, self }) {
+				when(m.getClient()).thenReturn(gateway);
+				when(m.getGuildId()).thenReturn(GUILD_ID);
+				when(m.getGuild()).thenReturn(Mono.just(guild));
+				when(m.getBasePermissions()).thenReturn(Mono.just(PermissionSet.all()));
+			}
+			when(member.getId()).thenReturn(MEMBER_ID);
+			when(self.getId()).thenReturn(SELF_ID);
+			when(self.isBot()).thenReturn(true);
+			when(member.getVoiceState()).thenReturn(Mono.just(memberVoiceState));
+			when(memberVoiceState.getChannelId()).thenReturn(Optional.of(VOICE_CHANNEL_ID));
+			when(self.getVoiceState()).thenReturn(botInChannel ? Mono.just(selfVoiceState) : Mono.empty());
+			when(selfVoiceState.getChannelId()).thenReturn(Optional.of(VOICE_CHANNEL_ID));
+
+			when(textChannel.getId()).thenReturn(TEXT_CHANNEL_ID);
+			when(textChannel.getGuildId()).thenReturn(GUILD_ID);
+			when(textChannel.getName()).thenReturn("general");
+			when(textChannel.getEffectivePermissions(any(Snowflake.class)))
+					.thenReturn(Mono.just(PermissionSet.all()));
+			when(voiceChannel.getId()).thenReturn(VOICE_CHANNEL_ID);
+			when(voiceChannel.getGuildId()).thenReturn(GUILD_ID);
+			when(voiceChannel.getName()).thenReturn("music");
+			when(voiceChannel.getEffectivePermissions(any(Snowflake.class)))
+					.thenReturn(Mono.just(PermissionSet.all()));
+			when(voiceChannel.getGuild()).thenReturn(Mono.just(guild));
+		}
+
+		/**
+		 * Checks that every lookup of the guild, the members, their voice states and
+		 * permissions went to the gateway at most once
+		 */
+		private void assertLookedUpAtMostOnce(String name) {
+			assertAtMostOnce(name, "guild", lookups(event, "getGuild") + lookups(message, "getGuild")
+					+ lookups(gateway, "getGuildById") + lookups(member, "getGuild") + lookups(self, "getGuild"));
+			assertAtMostOnce(name, "the channel", lookups(message, "getChannel"));
+			assertAtMostOnce(name, "the bot as a member", lookups(gateway, "getMemberById"));
+			assertAtMostOnce(name, "the voice state of the member", lookups(member, "getVoiceState"));
+			assertAtMostOnce(name, "the voice state of the bot", lookups(self, "getVoiceState"));
+			assertAtMostOnce(name, "the voice channel", lookups(gateway, "getChannelById"));
+			assertAtMostOnce(name, "the permissions of the member", lookups(member, "getBasePermissions"));
+			assertAtMostOnce(name, "the permissions of the bot", lookups(self, "getBasePermissions"));
+			assertAtMostOnce(name, "the permissions in the text channel",
+					lookups(textChannel, "getEffectivePermissions"));
+			assertAtMostOnce(name, "the permissions in the voice channel",
+					lookups(voiceChannel, "getEffectivePermissions"));
+		}
+
+		private static void assertAtMostOnce(String name, String what, long lookups) {
+			assertTrue(lookups <= 1, name + " looked up " + what + " " + lookups + " times");
+		}
+
+		private static long lookups(Object mock, String method) {
+			return mockingDetails(mock).getInvocations().stream().map(Invocation::getMethod)
+					.filter(invoked -> invoked.getName().equals(method)).count();
+		}
+
+		/**
+		 * @return a mock that emits nothing from the publishers it wasn't told to
+		 *         return, so commands end instead of failing on null
+		 */
+		private static <T> T stub(Class<T> type) {
+			final Answer<Object> empty = invocation -> {
+				final Class<?> returned = invocation.getMethod().getReturnType();
+				if (returned == Mono.class)
+					return Mono.empty();
+				if (returned == Flux.class)
+					return Flux.empty();
+				return Mockito.RETURNS_DEFAULTS.answer(invocation);
+			};
+			return mock(type, empty);
+		}
+
+	}
+
+}
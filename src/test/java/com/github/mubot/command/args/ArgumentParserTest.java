@@ -0,0 +1,56 @@
+package com.github.mubot.command.args;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.mubot.command.exceptions.ArgumentException;
+
+public class ArgumentParserTest {
+
+	private static final ArgumentSchema DURATION = ArgumentSchema.builder().duration("time", "The time.", false)
+			.build();
+	private static final ArgumentSchema CATEGORY = ArgumentSchema.builder()
+			.keyword("category", "The category.", true, "Any", "Pun").build();
+
+	@Test
+	public void parsesDurations() {
+		assertEquals(Duration.ofSeconds(90), duration("90"));
+		assertEquals(Duration.ofSeconds(90), duration("1:30"));
+		assertEquals(Duration.ofSeconds(3723), duration("1:02:03"));
+		assertEquals(Duration.ofSeconds(90), duration("1m30s"));
+		assertEquals(Duration.ofSeconds(90), duration("1m30"));
+		assertEquals(Duration.ofSeconds(3630), duration("1h30s"));
+		assertEquals(Duration.ofHours(2), duration("2H"));
+	}
+
+	@Test
+	public void rejectsRepeatedOrUnorderedUnits() {
+		for (String invalid : new String[] { "1m1m", "1s1s", "30s1m", "1m2h", "1s30", "1m30s10", "1:30s", "1m:30",
+				"m", "1:", "1x" })
+			assertThrows(ArgumentException.class, () -> duration(invalid), invalid);
+	}
+
+	@Test
+	public void keywordArgumentsOnlyAcceptTheirKeywords() {
+		assertEquals("Pun", ArgumentParser.parse(CATEGORY, "pun").getKeyword("category"));
+		assertEquals("Any", ArgumentParser.parse(CATEGORY, " ANY ").getKeyword("category"));
+		assertFalse(ArgumentParser.parse(CATEGORY, "").has("category"));
+		assertNull(ArgumentParser.parse(CATEGORY, "").getKeyword("category"));
+
+		final ArgumentException error = assertThrows(ArgumentException.class,
+				() -> ArgumentParser.parse(CATEGORY, "unsafe"));
+		assertEquals("\"unsafe\" is not a valid category, expected Any or Pun", error.getMessage());
+		assertEquals("[Any|Pun]", CATEGORY.getUsage());
+	}
+
+	private static Duration duration(String input) {
+		return ArgumentParser.parse(DURATION, input).getDuration("time");
+	}
+
+}
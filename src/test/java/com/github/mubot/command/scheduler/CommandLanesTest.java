@@ -0,0 +1,45 @@
+package com.github.mubot.command.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+public class CommandLanesTest {
+
+	private final CommandLanes lanes = CommandLanes.getInstance();
+	private final AtomicInteger rejected = new AtomicInteger();
+
+	@Test
+	public void rejectsMessagesOverLaneDepth() {
+		final long lane = 4001;
+		final List<Disposable> waiting = new ArrayList<>();
+		for (int i = 0; i < 5; i++)
+			waiting.add(submit(lane));
+		assertEquals(0, rejected.get());
+
+		// rejected right away instead of waiting behind the slow message
+		submit(lane);
+		assertEquals(1, rejected.get());
+		// other guilds still get a lane
+		waiting.add(submit(lane + 1));
+		assertEquals(1, rejected.get());
+
+		// once a message finishes there is room again
+		waiting.get(0).dispose();
+		waiting.add(submit(lane));
+		assertEquals(1, rejected.get());
+		waiting.forEach(Disposable::dispose);
+	}
+
+	private Disposable submit(long lane) {
+		return lanes.submit(lane, Mono.never(), Mono.fromRunnable(rejected::incrementAndGet)).subscribe();
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.github.mubot.command.scheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.mubot.command.exceptions.CommandException;
+
+import reactor.core.publisher.Mono;
+
+public class CommandSchedulerTest {
+
+	private final CommandScheduler scheduler = CommandScheduler.getInstance();
+	private final AtomicInteger executed = new AtomicInteger();
+
+	@Test
+	public void guildRejectionDoesNotCostUserTokens() {
+		final long busyGuild = 1001;
+		final long quietGuild = 1002;
+		final long user = 2001;
+		// other users use up the burst of the guild
+		for (int i = 0; i < 10; i++)
+			run(busyGuild, 3000 + i);
+		assertEquals(10, executed.get());
+
+		assertThrows(CommandException.class, () -> run(busyGuild, user));
+		run(busyGuild, user);
+		run(busyGuild, user);
+		assertEquals(10, executed.get());
+
+		// the rejected commands didn't take from the burst of 5 of the user
+		for (int i = 0; i < 5; i++)
+			run(quietGuild, user);
+		assertEquals(15, executed.get());
+	}
+
+	@Test
+	public void userBucketLimitsAcrossGuilds() {
+		final long user = 2002;
+		for (int i = 0; i < 5; i++)
+			run(1100 + i, user);
+		assertEquals(5, executed.get());
+		assertThrows(CommandException.class, () -> run(1200, user));
+		assertEquals(5, executed.get());
+	}
+
+	private void run(long guildId, long userId) {
+		scheduler.schedule(guildId, userId, Mono.fromRunnable(executed::incrementAndGet)).block();
+	}
+
+}
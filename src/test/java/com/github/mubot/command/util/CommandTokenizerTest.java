@@ -0,0 +1,129 @@
+package com.github.mubot.command.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the regex parsing CommandListener used before the tokenizer and the
+ * tokenizer over the same messages and compares the commands they read
+ */
+public class CommandTokenizerTest {
+
+	private static final int MAX_COMMANDS_PER_MESSAGE = 5;
+
+	private static final String[] PREFIXES = { "!", "?", "$", ".", "*", "+", "^", "|", "\\", "(", "[", "{", "mu!",
+			"->", "~" };
+
+	// messages as they are typed, {p} is replaced by the prefix
+	private static final String[] CORPUS = { "{p}ping", "{p}PING",
+			"{p}play https://www.youtube.com/watch?v=dQw4w9WgXcQ", "{p}play never gonna give you up",
+			"{p}join {p}play lofi hip hop", "{p}join   {p}play   lofi   hip hop  ",
+			"{p}volume 50", "{p}volume  50 ", "   {p}ping", "{p}ping   ", "{p}", "{p} ", "{p}  ping",
+			"hello there", "lol {p}ping", "lol{p}ping", "{p}kick <@!123456789012345678> spamming the chat",
+			"{p}ban <@123456789012345678>", "{p}poll \"what should we play\" lofi jazz \"synth wave\"",
+			"{p}poll \"unclosed question lofi", "{p}seek 1:30", "{p}rewind 1m30s", "{p}echo   spaced    out words",
+			"{p}skip {p}skip {p}skip {p}skip {p}skip {p}skip {p}skip", "{p}remove 3 {p}queue", "{p}help play",
+			"{p}play help", "{p}roll 20", "just chatting about the bot", "{p}unknown command {p}ping",
+			"{p}clear\t{p}ping", "multi\nline {p}ping\nsecond line", "{p}play café ☕ müsic", "" };
+
+	/**
+	 * The tokenizer reads the same commands as the regex parser, except that it
+	 * only strips the leading prefix, see keepsPrefixInsideArguments
+	 */
+	@Test
+	public void corpusMatchesRegexParser() {
+		for (String prefix : PREFIXES) {
+			for (String template : CORPUS) {
+				final String message = template.replace("{p}", prefix);
+				assertEquals(resolvable(regexParse(message, prefix, true)), resolvable(tokenize(message, prefix)),
+						"prefix " + prefix + ", message \"" + message + "\"");
+			}
+		}
+	}
+
+	@Test
+	public void rejectsMessagesWithoutCommands() {
+		assertFalse(CommandTokenizer.mayContainCommand("hello there", "!"));
+		assertFalse(CommandTokenizer.mayContainCommand("wow!", "!"));
+		assertFalse(CommandTokenizer.mayContainCommand("", "!"));
+		assertFalse(CommandTokenizer.mayContainCommand(null, "!"));
+	}
+
+	/**
+	 * The regex parser removed the prefix everywhere in a command, the tokenizer
+	 * only strips the leading one
+	 */
+	@Test
+	public void keepsPrefixInsideArguments() {
+		assertEquals(List.of(List.of("play", "https://youtube.com/watch?v=abc")),
+				tokenize("?play https://youtube.com/watch?v=abc", "?"));
+		assertEquals(List.of(List.of("play", "https://youtube.com/watchv=abc")),
+				regexParse("?play https://youtube.com/watch?v=abc", "?", false));
+		assertEquals(List.of(List.of("kick", "<@!123>")), tokenize("!kick <@!123>", "!"));
+		assertEquals(List.of(List.of("kick", "<@123>")), regexParse("!kick <@!123>", "!", false));
+	}
+
+	/**
+	 * @return the commands that can name a command, a blank trigger like in "!
+	 *         ping" never does so the parsers may read its arguments differently
+	 */
+	private static List<List<String>> resolvable(List<List<String>> commands) {
+		return commands.stream().filter(command -> !command.get(0).isEmpty()).collect(Collectors.toList());
+	}
+
+	/**
+	 * The parsing of CommandListener before the tokenizer: split before every
+	 * prefix that follows a space, strip the prefix from fragments starting with
+	 * it and split them on spaces
+	 *
+	 * @param onlyLeadingPrefix strip only the prefix the command starts with
+	 *                          instead of every occurrence
+	 * @return the trigger and the words of the arguments of every command
+	 */
+	private static List<List<String>> regexParse(String content, String prefix, boolean onlyLeadingPrefix) {
+		final String escaped = CommandUtil.escapeSpecialRegexChars(prefix);
+		return Arrays.stream(content.split(" (?=" + escaped + ")")).map(fragment -> {
+			if (!fragment.startsWith(prefix))
+				return "";
+			return onlyLeadingPrefix ? fragment.substring(prefix.length()) : fragment.replaceAll(escaped, "");
+		})
+				.filter(command -> !command.isBlank()).limit(MAX_COMMANDS_PER_MESSAGE).map(command -> {
+					final List<String> words = new ArrayList<>();
+					words.add(command.split(" ")[0].toLowerCase());
+					final String[] split = command.trim().split(" ");
+					words.addAll(words(String.join(" ", Arrays.copyOfRange(split, 1, split.length))));
+					return words;
+				}).collect(Collectors.toList());
+	}
+
+	private static List<List<String>> tokenize(String content, String prefix) {
+		final List<List<String>> commands = new ArrayList<>();
+		if (!CommandTokenizer.mayContainCommand(content, prefix))
+			return commands;
+
+		final CommandTokenizer tokenizer = new CommandTokenizer(content, prefix);
+		for (int i = 0; i < MAX_COMMANDS_PER_MESSAGE && tokenizer.next(); i++) {
+			final List<String> words = new ArrayList<>();
+			words.add(tokenizer.getTrigger());
+			words.addAll(words(tokenizer.getArguments().toString()));
+			commands.add(words);
+		}
+		return commands;
+	}
+
+	/**
+	 * @return the words of the arguments as the argument parser reads them,
+	 *         ignoring repeated whitespace
+	 */
+	private static List<String> words(String arguments) {
+		return Arrays.stream(arguments.split("\\s+")).filter(word -> !word.isEmpty()).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.github.mubot.database.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Checks which of a running load, a stored value and an invalidation wins, and
+ * the eviction order of a segment
+ */
+public class BoundedCacheTest {
+
+	private static final Duration NO_TTL = Duration.ZERO;
+	private static final long GUILD_ID = 1000;
+
+	@Test
+	public void concurrentMissesShareOneLoad() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		final CompletableFuture<String> first = cache.get(GUILD_ID, loader).toFuture();
+		final CompletableFuture<String> second = cache.get(GUILD_ID, loader).toFuture();
+
+		loader.complete(0, "loaded");
+		assertEquals("loaded", first.join());
+		assertEquals("loaded", second.join());
+		assertEquals(1, loader.loads());
+		assertEquals("loaded", cache.getIfPresent(GUILD_ID));
+	}
+
+	@Test
+	public void putWinsOverRunningLoad() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		final CompletableFuture<String> load = cache.get(GUILD_ID, loader).toFuture();
+
+		cache.put(GUILD_ID, "stored");
+		loader.complete(0, "loaded");
+		// the subscribers of the load still get what it read
+		assertEquals("loaded", load.join());
+		assertEquals("stored", cache.getIfPresent(GUILD_ID));
+	}
+
+	@Test
+	public void invalidateWinsOverRunningLoad() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		final CompletableFuture<String> load = cache.get(GUILD_ID, loader).toFuture();
+
+		cache.invalidate(GUILD_ID);
+		loader.complete(0, "loaded");
+		assertEquals("loaded", load.join());
+		assertNull(cache.getIfPresent(GUILD_ID));
+	}
+
+	/**
+	 * A load that was invalidated neither stores its value nor ends the load that
+	 * was started after it
+	 */
+	@Test
+	public void overriddenLoadLeavesNewerLoadRunning() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		final CompletableFuture<String> old = cache.get(GUILD_ID, loader).toFuture();
+		cache.invalidate(GUILD_ID);
+		final CompletableFuture<String> current = cache.get(GUILD_ID, loader).toFuture();
+		assertEquals(2, loader.loads());
+
+		loader.complete(0, "old");
+		assertEquals("old", old.join());
+		assertNull(cache.getIfPresent(GUILD_ID));
+		// still shares the newer load
+		final CompletableFuture<String> shared = cache.get(GUILD_ID, loader).toFuture();
+		assertEquals(2, loader.loads());
+
+		loader.complete(1, "new");
+		assertEquals("new", current.join());
+		assertEquals("new", shared.join());
+		assertEquals("new", cache.getIfPresent(GUILD_ID));
+	}
+
+	@Test
+	public void invalidateAllDropsRunningLoads() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		cache.put(GUILD_ID + 2, "cached");
+		final CompletableFuture<String> first = cache.get(GUILD_ID, loader).toFuture();
+		final CompletableFuture<String> second = cache.get(GUILD_ID + 1, loader).toFuture();
+
+		cache.invalidateAll();
+		loader.complete(0, "first");
+		loader.complete(1, "second");
+		assertEquals("first", first.join());
+		assertEquals("second", second.join());
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void failedLoadIsNotCached() {
+		final Loader loader = new Loader();
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, NO_TTL);
+		final CompletableFuture<String> load = cache.get(GUILD_ID, loader).toFuture();
+		loader.fail(0);
+		assertEquals(IllegalStateException.class, load.handle((value, error) -> error.getClass()).join());
+
+		cache.get(GUILD_ID, loader).subscribe();
+		assertEquals(2, loader.loads());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsedOfSegment() {
+		// two entries in each of the 16 segments
+		final BoundedCache<String> cache = new BoundedCache<>("test", 32, NO_TTL);
+		final long[] keys = keysOfOneSegment(3);
+		cache.put(keys[0], "a");
+		cache.put(keys[1], "b");
+		// a is used again, so b is the least recently used when c comes in
+		assertEquals("a", cache.getIfPresent(keys[0]));
+		cache.put(keys[2], "c");
+
+		assertEquals("a", cache.getIfPresent(keys[0]));
+		assertNull(cache.getIfPresent(keys[1]));
+		assertEquals("c", cache.getIfPresent(keys[2]));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void expiresAfterTtl() throws InterruptedException {
+		final BoundedCache<String> cache = new BoundedCache<>("test", 100, Duration.ofMillis(50));
+		cache.put(GUILD_ID, "value");
+		assertEquals("value", cache.getIfPresent(GUILD_ID));
+		Thread.sleep(100);
+		assertNull(cache.getIfPresent(GUILD_ID));
+		assertEquals(0, cache.size());
+	}
+
+	/**
+	 * @return keys that go to the same segment
+	 */
+	private static long[] keysOfOneSegment(int count) {
+		final long[] keys = new long[count];
+		final long segment = segment(GUILD_ID);
+		int found = 0;
+		for (long key = GUILD_ID; found < count; key++) {
+			if (segment(key) == segment)
+				keys[found++] = key;
+		}
+		return keys;
+	}
+
+	private static long segment(long key) {
+		return key * 0x9E3779B97F4A7C15L >>> 60;
+	}
+
+	/**
+	 * Loads that finish when the test completes them, in the order they were
+	 * started
+	 */
+	private static final class Loader implements LongFunction<Mono<String>> {
+
+		private final List<Sinks.One<String>> loads = new ArrayList<>();
+
+		@Override
+		public Mono<String> apply(long key) {
+			final Sinks.One<String> load = Sinks.one();
+			loads.add(load);
+			return load.asMono();
+		}
+
+		private int loads() {
+			return loads.size();
+		}
+
+		private void complete(int load, String value) {
+			loads.get(load).tryEmitValue(value);
+		}
+
+		private void fail(int load) {
+			loads.get(load).tryEmitError(new IllegalStateException("database down"));
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+package com.github.mubot.database.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks LongStringMap against a HashMap on one thread, and that readers never
+ * see a value another key put while writers keep removing keys and reusing the
+ * indexes of their values
+ */
+public class LongStringMapTest {
+
+	private static final int OPERATIONS = 200_000;
+
+	@Test
+	public void matchesHashMapModel() {
+		final Random random = new Random(23);
+		final LongStringMap map = new LongStringMap();
+		final Map<Long, String> model = new HashMap<>();
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			// few keys so removed slots are reused, and a key range that slowly moves
+			// so the table is cleaned up and grows
+			final long key = 1 + i / 1000 + random.nextInt(i < OPERATIONS / 2 ? 2000 : 200);
+			final String value = "v" + random.nextInt(50);
+			switch (random.nextInt(6)) {
+			case 0:
+			case 1:
+				assertEquals(model.put(key, value), map.put(key, new String(value)));
+				break;
+			case 2:
+				assertEquals(model.putIfAbsent(key, value), map.putIfAbsent(key, value));
+				break;
+			case 3:
+				assertEquals(model.remove(key), map.remove(key));
+				break;
+			case 4:
+				assertEquals(model.containsValue(value), map.containsValue(value));
+				break;
+			default:
+				assertEquals(model.get(key), map.get(key));
+				assertEquals(model.containsKey(key), map.containsKey(key));
+				break;
+			}
+			assertEquals(model.size(), map.size());
+			// indexes start over after clearing, as when a cache is reloaded
+			if (i % 50_000 == 49_999) {
+				model.clear();
+				map.clear();
+			}
+		}
+
+		for (Map.Entry<Long, String> entry : model.entrySet())
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+	}
+
+	@Test
+	public void sharesEqualValues() {
+		final LongStringMap map = new LongStringMap();
+		map.put(1, new String("mu!"));
+		map.put(2, new String("mu!"));
+		assertSame(map.get(1), map.get(2));
+
+		// the value stays while a key uses it
+		map.remove(1);
+		assertTrue(map.containsValue("mu!"));
+		map.put(2, "?");
+		assertFalse(map.containsValue("mu!"));
+		assertEquals("?", map.get(2));
+	}
+
+	@Test
+	public void ignoresKeysThatAreNotPositive() {
+		final LongStringMap map = new LongStringMap();
+		assertNull(map.put(0, "a"));
+		assertNull(map.put(-5, "a"));
+		assertNull(map.get(0));
+		assertNull(map.remove(-5));
+		assertEquals(0, map.size());
+	}
+
+	/**
+	 * Every key only ever gets values of its own group, so a reader finding a
+	 * value of another group read an index that was reused for another key
+	 */
+	@Test
+	public void readersOnlySeeValuesOfTheKey() throws InterruptedException {
+		final int writers = 2;
+		final int readers = 6;
+		final int keys = 64;
+		final int groups = 8;
+		final LongStringMap map = new LongStringMap();
+		final AtomicBoolean writing = new AtomicBoolean(true);
+		final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Map<Long, String>> models = new ArrayList<>();
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int w = 0; w < writers; w++) {
+			final int writer = w;
+			final Map<Long, String> model = new HashMap<>();
+			models.add(model);
+			threads.add(new Thread(() -> {
+				final Random random = new Random(writer);
+				await(start);
+				for (int i = 0; i < OPERATIONS; i++) {
+					// every writer owns the keys with its remainder
+					final long key = 1 + writer + writers * random.nextInt(keys / writers);
+					if (random.nextInt(3) == 0) {
+						map.remove(key);
+						model.remove(key);
+					} else {
+						final String value = value(key, groups, random.nextInt(1000));
+						map.put(key, value);
+						model.put(key, value);
+					}
+				}
+			}));
+		}
+		for (int r = 0; r < readers; r++) {
+			final int reader = r;
+			threads.add(new Thread(() -> {
+				final Random random = new Random(100 + reader);
+				await(start);
+				while (writing.get()) {
+					final long key = 1 + random.nextInt(keys);
+					final String value = map.get(key);
+					if (value != null && !value.startsWith(group(key, groups)))
+						failures.add("key " + key + " had " + value);
+				}
+			}));
+		}
+
+		threads.forEach(Thread::start);
+		start.countDown();
+		for (Thread thread : threads.subList(0, writers))
+			thread.join();
+		writing.set(false);
+		for (Thread thread : threads.subList(writers, threads.size()))
+			thread.join();
+
+		assertTrue(failures.isEmpty(), failures.size() + " wrong reads, first " + failures.peek());
+		int size = 0;
+		for (Map<Long, String> model : models) {
+			size += model.size();
+			for (Map.Entry<Long, String> entry : model.entrySet())
+				assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		assertEquals(size, map.size());
+	}
+
+	private static String group(long key, int groups) {
+		return "g" + key % groups + "-";
+	}
+
+	/**
+	 * @return one of the values of the group of the key, mostly used by one key
+	 *         so its index is freed and reused all the time
+	 */
+	private static String value(long key, int groups, int variant) {
+		return group(key, groups) + variant;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.github.mubot.music;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs random operations on a PersistentQueue and an ArrayList side by side and
+ * checks that they hold the same elements, that the tree stays balanced and
+ * that older versions of the queue don't change
+ */
+public class PersistentQueueTest {
+
+	private static final int OPERATIONS = 20_000;
+	// how often a version is kept to check at the end
+	private static final int KEEP_EVERY = 97;
+
+	@Test
+	public void matchesArrayListModel() {
+		final Random random = new Random(11);
+		final List<PersistentQueue<Integer>> versions = new ArrayList<>();
+		final List<List<Integer>> expectedVersions = new ArrayList<>();
+		PersistentQueue<Integer> queue = PersistentQueue.empty();
+		List<Integer> model = new ArrayList<>();
+
+		for (int i = 0; i < OPERATIONS; i++) {
+			final int size = model.size();
+			// grows on average until it is a few hundred elements long
+			switch (random.nextInt(size > 500 ? 9 : 10)) {
+			case 0:
+			case 1:
+			case 9:
+				queue = queue.append(i);
+				model.add(i);
+				break;
+			case 2:
+				final List<Integer> added = new ArrayList<>();
+				for (int j = random.nextInt(20); j > 0; j--)
+					added.add(-j);
+				queue = queue.appendAll(added);
+				model.addAll(added);
+				break;
+			case 3:
+				final int at = random.nextInt(size + 1);
+				queue = queue.insert(at, i);
+				model.add(at, i);
+				break;
+			case 4:
+				if (size > 0) {
+					final int removed = random.nextInt(size);
+					queue = queue.removeAt(removed);
+					model.remove(removed);
+				}
+				break;
+			case 5:
+				queue = queue.removeFirst();
+				if (size > 0)
+					model.remove(0);
+				break;
+			case 6:
+				final int count = random.nextInt(size / 4 + 2);
+				queue = queue.drop(count);
+				model = new ArrayList<>(model.subList(Math.min(count, size), size));
+				break;
+			case 7:
+				queue = queue.shuffle(random);
+				model = new ArrayList<>(queue);
+				break;
+			default:
+				if (size > 0) {
+					final int index = random.nextInt(size);
+					assertEquals(model.get(index), queue.get(index));
+				}
+				assertEquals(size > 0 ? model.get(0) : null, queue.peek());
+				break;
+			}
+
+			assertEquals(model.size(), queue.size());
+			assertTrue(queue.isBalanced(), "unbalanced after operation " + i);
+			if (i % KEEP_EVERY == 0) {
+				assertEquals(model, queue);
+				versions.add(queue);
+				expectedVersions.add(new ArrayList<>(model));
+			}
+		}
+
+		for (int i = 0; i < versions.size(); i++)
+			assertEquals(expectedVersions.get(i), versions.get(i));
+	}
+
+	@Test
+	public void shuffleKeepsElements() {
+		final List<Integer> elements = new ArrayList<>();
+		for (int i = 0; i < 1000; i++)
+			elements.add(i);
+		final PersistentQueue<Integer> shuffled = PersistentQueue.of(elements).shuffle(new Random(1));
+		assertTrue(shuffled.isBalanced());
+
+		final List<Integer> sorted = new ArrayList<>(shuffled);
+		Collections.sort(sorted);
+		assertEquals(elements, sorted);
+	}
+
+	@Test
+	public void staysBalancedWhenGrowingAtOneEnd() {
+		PersistentQueue<Integer> appended = PersistentQueue.empty();
+		PersistentQueue<Integer> prepended = PersistentQueue.empty();
+		for (int i = 0; i < 4096; i++) {
+			appended = appended.append(i);
+			prepended = prepended.insert(0, i);
+		}
+		assertTrue(appended.isBalanced());
+		assertTrue(prepended.isBalanced());
+		assertEquals(4095, (int) prepended.get(0));
+
+		// skipping most of the queue joins what is kept into a balanced tree
+		for (int count : new int[] { 1, 100, 2047, 4000, 4095 }) {
+			final PersistentQueue<Integer> dropped = appended.drop(count);
+			assertTrue(dropped.isBalanced(), "unbalanced after dropping " + count);
+			assertEquals(count, (int) dropped.peek());
+		}
+	}
+
+	@Test
+	public void emptyQueue() {
+		final PersistentQueue<Integer> empty = PersistentQueue.empty();
+		assertNull(empty.peek());
+		assertSame(empty, empty.removeFirst());
+		assertSame(empty, empty.drop(3));
+		assertSame(empty, empty.appendAll(Collections.emptyList()));
+		assertThrows(IndexOutOfBoundsException.class, () -> empty.get(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> empty.removeAt(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> empty.insert(1, 1));
+	}
+
+}
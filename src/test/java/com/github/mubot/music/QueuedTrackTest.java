@@ -0,0 +1,124 @@
+package com.github.mubot.music;
+
+import static com.github.mubot.music.TestTracks.playerManager;
+import static com.github.mubot.music.TestTracks.track;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+public class QueuedTrackTest {
+
+	// a queued track and its tree node
+	private static final int ENTRY_BYTES = 80;
+	// the header of the encoded array
+	private static final int ARRAY_BYTES = 16;
+
+	private final AudioPlayerManager playerManager = playerManager();
+
+	@Test
+	public void roundTripsThroughCheckpoints() throws IOException {
+		final QueuedTrack queued = QueuedTrack.encode(playerManager,
+				track("dQw4w9WgXcQ", new String("Never Gonna Give You Up"), "Rick Astley", 213_000));
+		assertTrue(queued.isEncoded());
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		queued.write(new DataOutputStream(bytes));
+		final QueuedTrack read = QueuedTrack.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals("Never Gonna Give You Up", read.getTitle());
+		assertSame("Never Gonna Give You Up", read.getTitle(), "titles are interned");
+		assertEquals("Rick Astley", read.getAuthor());
+		assertEquals(213_000, read.getDuration());
+		assertEquals(queued.getHeapSize(), read.getHeapSize());
+
+		final AudioTrack decoded = read.decode(playerManager);
+		assertEquals("dQw4w9WgXcQ", decoded.getIdentifier());
+		assertEquals(213_000, decoded.getDuration());
+	}
+
+	@Test
+	public void rejectsCorruptLength() throws IOException {
+		for (int length : new int[] { -1, QueuedTrack.MAX_ENCODED_BYTES + 1, Integer.MAX_VALUE }) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			new DataOutputStream(bytes).writeInt(length);
+			final DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+			assertThrows(IOException.class, () -> QueuedTrack.read(input));
+		}
+	}
+
+	@Test
+	public void estimatesHeapOfEncodedTrack() {
+		final AudioTrack track = track("abc", "Title", "Author", 1000);
+		final byte[] encoded = QueuedTrack.encodeTrack(playerManager, track);
+		final QueuedTrack queued = QueuedTrack.encode(playerManager, track);
+
+		// arrays are padded to 8 bytes
+		final int arrayBytes = ARRAY_BYTES + (encoded.length + 7) / 8 * 8;
+		assertEquals(ENTRY_BYTES + arrayBytes, queued.getHeapSize());
+		assertEquals(0, queued.getHeapSize() % 8);
+		assertEquals(queued.getHeapSize(), queued.getWeight());
+	}
+
+	@Test
+	public void keepsTrackThatCannotBeEncoded() throws IOException {
+		final AudioTrack track = track("live", "Live Stream", "Someone", Long.MAX_VALUE);
+		doAnswer(invocation -> {
+			throw new IOException("not encodable");
+		}).when(playerManager).encodeTrack(any(MessageOutput.class), eq(track));
+
+		final QueuedTrack queued = QueuedTrack.encode(playerManager, track);
+		assertFalse(queued.isEncoded());
+		assertNull(QueuedTrack.encodeTrack(playerManager, track));
+		assertSame(track, queued.decode(playerManager));
+		// the live track isn't counted
+		assertEquals(ENTRY_BYTES, queued.getHeapSize());
+	}
+
+	@Test
+	public void queueKnowsHeapOfDroppedTracks() {
+		final List<QueuedTrack> tracks = new ArrayList<>();
+		long total = 0;
+		for (int i = 0; i < 1000; i++) {
+			final QueuedTrack queued = QueuedTrack.encode(playerManager,
+					track("id" + "x".repeat(i % 50), "Title " + i, "Author", i));
+			tracks.add(queued);
+			total += queued.getHeapSize();
+		}
+
+		PersistentQueue<QueuedTrack> queue = PersistentQueue.of(tracks.subList(0, 500))
+				.appendAll(tracks.subList(500, 1000));
+		assertEquals(total, queue.getWeight());
+
+		for (int skipped : new int[] { 1, 37, 300 }) {
+			final long dropped = queue.subList(0, skipped).stream().mapToLong(QueuedTrack::getHeapSize).sum();
+			final long before = queue.getWeight();
+			queue = queue.drop(skipped);
+			assertEquals(before - dropped, queue.getWeight());
+			assertTrue(queue.isBalanced());
+		}
+		final QueuedTrack removed = queue.get(10);
+		assertEquals(queue.getWeight() - removed.getHeapSize(), queue.removeAt(10).getWeight());
+		assertEquals(0, queue.drop(queue.size()).getWeight());
+	}
+
+}
@@ -0,0 +1,60 @@
+package com.github.mubot.music;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+
+/**
+ * Mock tracks and a player manager that encodes them as their identifier and
+ * length, like the player manager encodes the info of a track before the state
+ * of its source
+ */
+final class TestTracks {
+
+	private TestTracks() {
+	}
+
+	static AudioTrack track(String identifier, String title, String author, long length) {
+		final AudioTrack track = mock(AudioTrack.class);
+		when(track.getIdentifier()).thenReturn(identifier);
+		when(track.getDuration()).thenReturn(length);
+		when(track.getInfo()).thenReturn(new AudioTrackInfo(title, author, length, identifier, false, null));
+		return track;
+	}
+
+	static AudioPlayerManager playerManager() {
+		final AudioPlayerManager playerManager = mock(AudioPlayerManager.class);
+		try {
+			doAnswer(invocation -> {
+				final MessageOutput stream = invocation.getArgument(0);
+				final AudioTrack track = invocation.getArgument(1);
+				final DataOutput output = stream.startMessage();
+				output.writeUTF(track.getIdentifier());
+				output.writeLong(track.getDuration());
+				stream.commitMessage();
+				return null;
+			}).when(playerManager).encodeTrack(any(MessageOutput.class), any(AudioTrack.class));
+			when(playerManager.decodeTrack(any(MessageInput.class))).thenAnswer(invocation -> {
+				final DataInput input = ((MessageInput) invocation.getArgument(0)).nextMessage();
+				final String identifier = input.readUTF();
+				return new DecodedTrackHolder(track(identifier, "", "", input.readLong()));
+			});
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return playerManager;
+	}
+
+}
@@ -0,0 +1,261 @@
+package com.github.mubot.music;
+
+import static com.github.mubot.music.TestTracks.playerManager;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioLoadResultHandler;
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.tools.FriendlyException.Severity;
+import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+public class TrackLoadCacheTest {
+
+	private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+	private static final long SHORT_TTL = TimeUnit.MILLISECONDS.toNanos(50);
+	private static final Object GUILD = "guild";
+
+	@Test
+	public void normalizesLinks() {
+		assertEquals("https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+				TrackLoadCache.normalize("  HTTPS://WWW.YouTube.com/watch?v=dQw4w9WgXcQ "));
+		// the path and query are case sensitive
+		assertEquals("https://youtu.be/AbC", TrackLoadCache.normalize("https://YOUTU.BE/AbC"));
+		assertEquals("https://youtu.be", TrackLoadCache.normalize("https://YouTu.be"));
+		assertEquals("youtu.be/AbC", TrackLoadCache.normalize("YouTu.be/AbC"));
+	}
+
+	@Test
+	public void normalizesSearches() {
+		assertEquals("ytsearch:never gonna give you up",
+				TrackLoadCache.normalize(" YTSearch:  Never   Gonna\tGive You Up  "));
+		assertEquals("scsearch:daft punk", TrackLoadCache.normalize("ScSearch:Daft  PUNK"));
+		assertEquals(TrackLoadCache.normalize("ytsearch:a b"), TrackLoadCache.normalize("ytsearch: A  B "));
+	}
+
+	@Test
+	public void answersRepeatedLoadsFromCache() {
+		final Loader loader = new Loader();
+		loader.track("https://youtu.be/abc", "abc");
+		final TrackLoadCache cache = new TrackLoadCache(100, 1 << 20, HOUR, HOUR);
+
+		final Results first = new Results();
+		cache.load(loader.playerManager, GUILD, "https://youtu.be/abc", first);
+		final Results second = new Results();
+		cache.load(loader.playerManager, GUILD, " HTTPS://YOUTU.BE/abc", second);
+
+		assertEquals(1, loader.loads("https://youtu.be/abc"));
+		assertEquals(List.of("track abc"), first.results);
+		assertEquals(List.of("track abc"), second.results);
+		assertEquals(1, cache.getEntryCount());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		final Loader loader = new Loader();
+		for (String id : new String[] { "a", "b", "c", "d" })
+			loader.track(id, id);
+		final TrackLoadCache cache = new TrackLoadCache(3, 1 << 20, HOUR, HOUR);
+
+		cache.load(loader.playerManager, GUILD, "a", new Results());
+		cache.load(loader.playerManager, GUILD, "b", new Results());
+		cache.load(loader.playerManager, GUILD, "c", new Results());
+		// a is used again, so b is the least recently used when d comes in
+		cache.load(loader.playerManager, GUILD, "a", new Results());
+		cache.load(loader.playerManager, GUILD, "d", new Results());
+		assertEquals(3, cache.getEntryCount());
+
+		cache.load(loader.playerManager, GUILD, "a", new Results());
+		cache.load(loader.playerManager, GUILD, "c", new Results());
+		cache.load(loader.playerManager, GUILD, "d", new Results());
+		assertEquals(1, loader.loads("a"));
+		assertEquals(1, loader.loads("c"));
+		assertEquals(1, loader.loads("d"));
+		cache.load(loader.playerManager, GUILD, "b", new Results());
+		assertEquals(2, loader.loads("b"));
+	}
+
+	@Test
+	public void staysWithinBytes() {
+		final Loader loader = new Loader();
+		for (int i = 0; i < 100; i++)
+			loader.track("id" + i, "id" + i);
+		final TrackLoadCache single = new TrackLoadCache(100, 1 << 20, HOUR, HOUR);
+		single.load(loader.playerManager, GUILD, "id0", new Results());
+		final long entryBytes = single.getBytes();
+		assertTrue(entryBytes > 0);
+
+		final TrackLoadCache cache = new TrackLoadCache(100, entryBytes * 10, HOUR, HOUR);
+		for (int i = 0; i < 100; i++)
+			cache.load(loader.playerManager, GUILD, "id" + i, new Results());
+		assertTrue(cache.getBytes() <= entryBytes * 10);
+		assertTrue(cache.getEntryCount() >= 9, cache.getEntryCount() + " entries");
+	}
+
+	@Test
+	public void expiresAfterTtl() throws InterruptedException {
+		final Loader loader = new Loader();
+		loader.track("abc", "abc");
+		final TrackLoadCache cache = new TrackLoadCache(100, 1 << 20, SHORT_TTL, HOUR);
+
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+		assertEquals(1, loader.loads("abc"));
+
+		TimeUnit.NANOSECONDS.sleep(SHORT_TTL * 2);
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+		assertEquals(2, loader.loads("abc"));
+	}
+
+	@Test
+	public void cachesSearchesWithoutMatches() throws InterruptedException {
+		final Loader loader = new Loader();
+		final TrackLoadCache cache = new TrackLoadCache(100, 1 << 20, HOUR, SHORT_TTL);
+
+		for (String search : new String[] { "ytsearch:nothing here", "scsearch:nothing here" }) {
+			final Results first = new Results();
+			cache.load(loader.playerManager, GUILD, search, first);
+			final Results second = new Results();
+			cache.load(loader.playerManager, GUILD, search, second);
+			assertEquals(1, loader.loads(search));
+			assertEquals(List.of("no matches"), first.results);
+			assertEquals(List.of("no matches"), second.results);
+		}
+
+		// nothing found is only kept for the negative ttl
+		TimeUnit.NANOSECONDS.sleep(SHORT_TTL * 2);
+		cache.load(loader.playerManager, GUILD, "ytsearch:nothing here", new Results());
+		assertEquals(2, loader.loads("ytsearch:nothing here"));
+	}
+
+	@Test
+	public void doesNotCacheLinksWithoutMatchesOrFailures() {
+		final Loader loader = new Loader();
+		loader.fail("https://youtu.be/private");
+		final TrackLoadCache cache = new TrackLoadCache(100, 1 << 20, HOUR, HOUR);
+
+		for (int i = 0; i < 2; i++) {
+			cache.load(loader.playerManager, GUILD, "https://youtu.be/missing", new Results());
+			final Results failed = new Results();
+			cache.load(loader.playerManager, GUILD, "https://youtu.be/private", failed);
+			assertEquals(List.of("failed"), failed.results);
+		}
+		assertEquals(2, loader.loads("https://youtu.be/missing"));
+		assertEquals(2, loader.loads("https://youtu.be/private"));
+		assertEquals(0, cache.getEntryCount());
+	}
+
+	@Test
+	public void loadsInOrderBehindRunningLoad() {
+		final Loader loader = new Loader();
+		loader.track("abc", "abc");
+		final TrackLoadCache cache = new TrackLoadCache(100, 1 << 20, HOUR, HOUR);
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+
+		loader.hold("slow");
+		cache.load(loader.playerManager, GUILD, "slow", new Results());
+		// a hit would overtake the slow load of the same guild
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+		assertEquals(2, loader.loads("abc"));
+		// other guilds aren't held up
+		cache.load(loader.playerManager, "other guild", "abc", new Results());
+		assertEquals(2, loader.loads("abc"));
+
+		loader.release("slow");
+		cache.load(loader.playerManager, GUILD, "abc", new Results());
+		assertEquals(2, loader.loads("abc"));
+	}
+
+	/**
+	 * A player manager that answers loads right away with the results it was
+	 * given, no matches for anything else, and counts the loads
+	 */
+	private static final class Loader {
+
+		private final AudioPlayerManager playerManager = playerManager();
+		private final Map<String, Consumer<AudioLoadResultHandler>> results = new HashMap<>();
+		private final Map<String, Integer> loads = new HashMap<>();
+		private final Map<String, List<AudioLoadResultHandler>> held = new HashMap<>();
+
+		private Loader() {
+			doAnswer(invocation -> {
+				final String identifier = invocation.getArgument(1);
+				final AudioLoadResultHandler handler = invocation.getArgument(2);
+				loads.merge(identifier, 1, Integer::sum);
+				if (held.containsKey(identifier))
+					held.get(identifier).add(handler);
+				else
+					results.getOrDefault(identifier, AudioLoadResultHandler::noMatches).accept(handler);
+				return null;
+			}).when(playerManager).loadItemOrdered(any(), anyString(), any(AudioLoadResultHandler.class));
+		}
+
+		private void track(String identifier, String trackIdentifier) {
+			results.put(identifier, handler -> handler.trackLoaded(TestTracks.track(trackIdentifier, "", "", 1000)));
+		}
+
+		private void fail(String identifier) {
+			results.put(identifier,
+					handler -> handler.loadFailed(new FriendlyException("unavailable", Severity.COMMON, null)));
+		}
+
+		/**
+		 * Keeps loads of the identifier running until released
+		 */
+		private void hold(String identifier) {
+			held.put(identifier, new ArrayList<>());
+		}
+
+		private void release(String identifier) {
+			for (AudioLoadResultHandler handler : held.remove(identifier))
+				handler.trackLoaded(TestTracks.track(identifier, "", "", 1000));
+		}
+
+		private int loads(String identifier) {
+			return loads.getOrDefault(identifier, 0);
+		}
+	}
+
+	/**
+	 * Records what a load resulted in
+	 */
+	private static final class Results implements AudioLoadResultHandler {
+
+		private final List<String> results = new ArrayList<>();
+
+		@Override
+		public void trackLoaded(AudioTrack track) {
+			results.add("track " + track.getIdentifier());
+		}
+
+		@Override
+		public void playlistLoaded(AudioPlaylist playlist) {
+			results.add("playlist " + playlist.getTracks().size());
+		}
+
+		@Override
+		public void noMatches() {
+			results.add("no matches");
+		}
+
+		@Override
+		public void loadFailed(FriendlyException exception) {
+			results.add("failed");
+		}
+	}
+
+}
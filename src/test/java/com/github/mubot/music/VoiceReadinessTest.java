@@ -0,0 +1,113 @@
+package com.github.mubot.music;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.mubot.command.CommandContext;
+import com.github.mubot.command.args.Arguments;
+import com.github.mubot.command.commands.music.JoinVoiceCommand;
+
+import discord4j.common.util.Snowflake;
+import discord4j.core.event.domain.message.MessageCreateEvent;
+import discord4j.core.object.entity.Member;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+public class VoiceReadinessTest {
+
+	private static final Snowflake CHANNEL_ID = Snowflake.of(500);
+	private static final Snowflake OTHER_CHANNEL_ID = Snowflake.of(501);
+	private static final Duration WAIT = Duration.ofSeconds(5);
+
+	/**
+	 * The play in "!join !play" waits for the join even if it checks before the
+	 * join looked up the voice channel of the member
+	 */
+	@Test
+	public void playWaitsForJoinStillLookingUpTheChannel() {
+		final Snowflake guildId = Snowflake.of(101);
+		final Member member = mock(Member.class);
+		when(member.getVoiceState()).thenReturn(Mono.never());
+		final MessageCreateEvent event = mock(MessageCreateEvent.class);
+		when(event.getGuildId()).thenReturn(Optional.of(guildId));
+		when(event.getMember()).thenReturn(Optional.of(member));
+
+		final Disposable join = new JoinVoiceCommand().execute(new CommandContext(event), Arguments.EMPTY)
+				.subscribe();
+		final CompletableFuture<Boolean> play = VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).toFuture();
+		assertFalse(play.isDone());
+
+		// the voice state update of the bot once it joined
+		VoiceReadiness.connected(guildId, CHANNEL_ID);
+		assertTrue(play.join());
+		assertEquals(Optional.of(CHANNEL_ID), VoiceReadiness.getConnectedChannel(guildId));
+		join.dispose();
+	}
+
+	/**
+	 * A join cancelled by the lane timeout doesn't leave later commands waiting
+	 */
+	@Test
+	public void cancelledJoinStopsWaiting() {
+		final Snowflake guildId = Snowflake.of(105);
+		final Member member = mock(Member.class);
+		when(member.getVoiceState()).thenReturn(Mono.never());
+		final MessageCreateEvent event = mock(MessageCreateEvent.class);
+		when(event.getGuildId()).thenReturn(Optional.of(guildId));
+		when(event.getMember()).thenReturn(Optional.of(member));
+
+		final Disposable join = new JoinVoiceCommand().execute(new CommandContext(event), Arguments.EMPTY)
+				.subscribe();
+		final CompletableFuture<Boolean> play = VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).toFuture();
+		assertFalse(play.isDone());
+
+		// stops waiting right away instead of after the timeout
+		join.dispose();
+		assertTrue(play.isDone());
+		assertFalse(play.join());
+	}
+
+	@Test
+	public void failedJoinStopsWaiting() {
+		final Snowflake guildId = Snowflake.of(102);
+		VoiceReadiness.connecting(guildId);
+		final CompletableFuture<Boolean> play = VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).toFuture();
+		VoiceReadiness.failed(guildId);
+		assertFalse(play.join());
+		assertEquals(Optional.empty(), VoiceReadiness.getConnectedChannel(guildId));
+	}
+
+	@Test
+	public void givesUpAfterTimeout() {
+		final Snowflake guildId = Snowflake.of(103);
+		VoiceReadiness.connecting(guildId);
+		final long start = System.nanoTime();
+		assertFalse(VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, Duration.ofMillis(50)).block(WAIT));
+		assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+
+		// a join that completes late still counts for later commands
+		VoiceReadiness.connected(guildId, CHANNEL_ID);
+		assertTrue(VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).block(WAIT));
+	}
+
+	@Test
+	public void doesNotWaitWithoutJoin() {
+		final Snowflake guildId = Snowflake.of(104);
+		assertFalse(VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).block(Duration.ofMillis(100)));
+
+		VoiceReadiness.connected(guildId, OTHER_CHANNEL_ID);
+		assertFalse(VoiceReadiness.awaitConnected(guildId, CHANNEL_ID, WAIT).block(Duration.ofMillis(100)));
+		VoiceReadiness.disconnected(guildId);
+		assertEquals(Optional.empty(), VoiceReadiness.getConnectedChannel(guildId));
+	}
+
+}